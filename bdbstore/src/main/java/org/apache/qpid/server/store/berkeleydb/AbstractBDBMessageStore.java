@@ -34,9 +34,14 @@ import java.util.UUID;
 
 import com.google.common.util.concurrent.ListenableFuture;
 import com.sleepycat.bind.tuple.LongBinding;
+import com.sleepycat.bind.tuple.TupleBase;
+import com.sleepycat.bind.tuple.TupleInput;
+import com.sleepycat.bind.tuple.TupleOutput;
 import com.sleepycat.je.Cursor;
 import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseConfig;
 import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.DatabaseNotFoundException;
 import com.sleepycat.je.LockConflictException;
 import com.sleepycat.je.LockMode;
 import com.sleepycat.je.OperationStatus;
@@ -73,12 +78,20 @@ import org.apache.qpid.server.store.handler.MessageInstanceHandler;
 
 public abstract class AbstractBDBMessageStore implements MessageStore
 {
+    /**
+     * Messages with content larger than this number of bytes are stored as a sequence of chunk records of at most
+     * this size rather than as a single record.  Zero (the default) disables chunking.
+     */
+    public static final String MESSAGE_CONTENT_CHUNK_SIZE_PROPERTY_NAME = "qpid.bdb.message_content_chunk_size";
+    public static final int DEFAULT_MESSAGE_CONTENT_CHUNK_SIZE = 0;
 
     private static final int LOCK_RETRY_ATTEMPTS = 5;
+    private static final int MAX_RETAINED_STAGING_BUFFER_SIZE = 256 * 1024;
 
     private static final String MESSAGE_META_DATA_DB_NAME = "MESSAGE_METADATA";
     private static final String MESSAGE_META_DATA_SEQ_DB_NAME = "MESSAGE_METADATA.SEQ";
     private static final String MESSAGE_CONTENT_DB_NAME = "MESSAGE_CONTENT";
+    static final String MESSAGE_CONTENT_CHUNK_DB_NAME = "MESSAGE_CONTENT_CHUNKS";
     private static final String DELIVERY_DB_NAME = "QUEUE_ENTRIES";
 
     //TODO: Add upgrader to remove BRIDGES and LINKS
@@ -87,6 +100,8 @@ public abstract class AbstractBDBMessageStore implements MessageStore
     private static final String XID_DB_NAME = "XIDS";
     private static final ByteBuffer EMPTY_BYTE_BUFFER = ByteBuffer.allocateDirect(0);
 
+    private static final ThreadLocal<byte[]> CONTENT_STAGING_BUFFER = new ThreadLocal<>();
+
     private final EventManager _eventManager = new EventManager();
 
     private final DatabaseEntry MESSAGE_METADATA_SEQ_KEY = new DatabaseEntry("MESSAGE_METADATA_SEQ_KEY".getBytes(
@@ -100,6 +115,8 @@ public abstract class AbstractBDBMessageStore implements MessageStore
 
     private boolean _limitBusted;
     private long _totalStoreSize;
+    private volatile int _contentChunkSize = -1;
+    private volatile boolean _contentChunkDbAbsent;
     private final Random _lockConflictRandom = new Random();
 
     @Override
@@ -212,7 +229,53 @@ public abstract class AbstractBDBMessageStore implements MessageStore
         }
     }
 
+    @Override
+    public void removeMessages(final Collection<? extends StoredMessage<?>> messages)
+    {
+        checkMessageStoreOpen();
+
+        final List<StoredBDBMessage<?>> storedMessages = new ArrayList<>(messages.size());
+        final List<StorableMessageMetaData> metaData = new ArrayList<>(messages.size());
+        for(StoredMessage<?> message : messages)
+        {
+            if(message instanceof StoredBDBMessage && ((StoredBDBMessage<?>) message).isStoredIn(this))
+            {
+                StoredBDBMessage<?> storedMessage = (StoredBDBMessage<?>) message;
+                storedMessages.add(storedMessage);
+                metaData.add(storedMessage.getMetaData());
+            }
+            else
+            {
+                message.remove();
+            }
+        }
+
+        final long[] messageIds = new long[storedMessages.size()];
+        int count = 0;
+        for(StoredBDBMessage<?> storedMessage : storedMessages)
+        {
+            if(storedMessage.stored())
+            {
+                messageIds[count++] = storedMessage.getMessageNumber();
+            }
+        }
+        if(count != 0)
+        {
+            removeMessages(Arrays.copyOf(messageIds, count), false);
+        }
+
+        for(int i = 0; i < storedMessages.size(); i++)
+        {
+            storedMessages.get(i).removed(metaData.get(i));
+        }
+    }
+
     void removeMessage(long messageId, boolean sync) throws StoreException
+    {
+        removeMessages(new long[]{messageId}, sync);
+    }
+
+    void removeMessages(long[] messageIds, boolean sync) throws StoreException
     {
         boolean complete = false;
         Transaction tx = null;
@@ -226,27 +289,34 @@ public abstract class AbstractBDBMessageStore implements MessageStore
                 {
                     tx = getEnvironmentFacade().beginTransaction(null);
 
-                    //remove the message meta data from the store
-                    DatabaseEntry key = new DatabaseEntry();
-                    LongBinding.longToEntry(messageId, key);
+                    for(long messageId : messageIds)
+                    {
+                        //remove the message meta data from the store
+                        DatabaseEntry key = new DatabaseEntry();
+                        LongBinding.longToEntry(messageId, key);
 
-                    getLogger().debug("Removing message id {}", messageId);
+                        getLogger().debug("Removing message id {}", messageId);
 
 
-                    OperationStatus status = getMessageMetaDataDb().delete(tx, key);
-                    if (status == OperationStatus.NOTFOUND)
-                    {
-                        getLogger().debug("Message id {} not found (attempt to remove failed - probably application initiated rollback)",messageId);
-                    }
+                        OperationStatus status = getMessageMetaDataDb().delete(tx, key);
+                        if (status == OperationStatus.NOTFOUND)
+                        {
+                            getLogger().debug("Message id {} not found (attempt to remove failed - probably application initiated rollback)",messageId);
+                        }
 
-                    getLogger().debug("Deleted metadata for message {}", messageId);
+                        getLogger().debug("Deleted metadata for message {}", messageId);
 
-                    //now remove the content data from the store if there is any.
-                    DatabaseEntry contentKeyEntry = new DatabaseEntry();
-                    LongBinding.longToEntry(messageId, contentKeyEntry);
-                    getMessageContentDb().delete(tx, contentKeyEntry);
+                        //now remove the content data from the store if there is any.
+                        DatabaseEntry contentKeyEntry = new DatabaseEntry();
+                        LongBinding.longToEntry(messageId, contentKeyEntry);
+                        if (getMessageContentDb().delete(tx, contentKeyEntry) == OperationStatus.NOTFOUND)
+                        {
+                            // content of large messages may have been stored in chunks
+                            deleteContentChunks(tx, messageId);
+                        }
 
-                    getLogger().debug("Deleted content for message {}", messageId);
+                        getLogger().debug("Deleted content for message {}", messageId);
+                    }
 
                     getEnvironmentFacade().commit(tx, sync);
 
@@ -264,12 +334,12 @@ public abstract class AbstractBDBMessageStore implements MessageStore
                     }
                     catch(RuntimeException e2)
                     {
-                        getLogger().warn("Unable to abort transaction after LockConflictException on removal of message with id {}", messageId,
+                        getLogger().warn("Unable to abort transaction after LockConflictException on removal of {}", describeMessageIds(messageIds),
                                 e2);
                         // rethrow the original log conflict exception, the secondary exception should already have
                         // been logged.
-                        throw getEnvironmentFacade().handleDatabaseException("Cannot remove message with id "
-                                                                             + messageId, e);
+                        throw getEnvironmentFacade().handleDatabaseException("Cannot remove "
+                                                                             + describeMessageIds(messageIds), e);
                     }
 
                     sleepOrThrowOnLockConflict(attempts++, "Cannot remove messages", e);
@@ -291,8 +361,8 @@ public abstract class AbstractBDBMessageStore implements MessageStore
                 tx = null;
             }
 
-            throw getEnvironmentFacade().handleDatabaseException("Error removing message with id "
-                                                                 + messageId
+            throw getEnvironmentFacade().handleDatabaseException("Error removing "
+                                                                 + describeMessageIds(messageIds)
                                                                  + " from database: "
                                                                  + e.getMessage(), e);
         }
@@ -311,6 +381,11 @@ public abstract class AbstractBDBMessageStore implements MessageStore
     }
 
 
+    private static String describeMessageIds(long[] messageIds)
+    {
+        return messageIds.length == 1 ? "message with id " + messageIds[0] : messageIds.length + " messages";
+    }
+
     /**
      * Fills the provided ByteBuffer with as much content for the specified message as possible, starting
      * from the specified offset in the message.
@@ -358,6 +433,10 @@ public abstract class AbstractBDBMessageStore implements MessageStore
                 buffer = buffer.view(offset, written);
                 buffer.get(dst);
             }
+            else
+            {
+                written = Math.max(0, getContentFromChunks(messageId, offset, dst));
+            }
             return written;
         }
         catch (RuntimeException e)
@@ -383,22 +462,16 @@ public abstract class AbstractBDBMessageStore implements MessageStore
 
             if (status == OperationStatus.SUCCESS)
             {
-                byte[] data = value.getData();
-                int offset = value.getOffset();
-                int length = value.getSize();
-                Collection<QpidByteBuffer> buffers = QpidByteBuffer.allocateDirectCollection(length);
-                for(QpidByteBuffer buf : buffers)
-                {
-                    int bufSize = buf.remaining();
-                    buf.put(data, offset, bufSize);
-                    buf.flip();
-                    offset+=bufSize;
-                }
-                return buffers;
+                return copyToDirectBuffers(value);
             }
             else
             {
-                throw new StoreException("Unable to find message with id " + messageId);
+                Collection<QpidByteBuffer> buffers = getContentChunks(messageId);
+                if (buffers == null)
+                {
+                    throw new StoreException("Unable to find message with id " + messageId);
+                }
+                return buffers;
             }
 
         }
@@ -411,6 +484,188 @@ public abstract class AbstractBDBMessageStore implements MessageStore
         }
     }
 
+    /**
+     * Copies content from the chunks of a message starting at the given offset, reading only the chunks which
+     * overlap the requested range.  Every chunk but the last has the size of the first, which is used to find
+     * the chunk holding the offset, as the chunk size may have been changed since the message was stored.
+     *
+     * @return the number of bytes copied, or -1 if there are no chunks for the message
+     */
+    private int getContentFromChunks(final long messageId, final int offset, final ByteBuffer dst)
+    {
+        final Database contentChunkDb = getMessageContentChunkDb(false);
+        if (contentChunkDb == null)
+        {
+            return -1;
+        }
+
+        Cursor cursor = null;
+        try
+        {
+            cursor = contentChunkDb.openCursor(null, null);
+            DatabaseEntry key = new DatabaseEntry();
+            contentChunkKeyToEntry(messageId, 0, key);
+            DatabaseEntry value = new DatabaseEntry();
+
+            OperationStatus status = cursor.getSearchKeyRange(key, value, LockMode.READ_UNCOMMITTED);
+            if (status != OperationStatus.SUCCESS || entryToContentChunkMessageId(key) != messageId)
+            {
+                return -1;
+            }
+
+            final int chunkSize = value.getSize();
+            final int firstChunk = offset / chunkSize;
+            int position = firstChunk * chunkSize;
+            if (firstChunk > 0)
+            {
+                contentChunkKeyToEntry(messageId, firstChunk, key);
+                status = cursor.getSearchKeyRange(key, value, LockMode.READ_UNCOMMITTED);
+                if (status != OperationStatus.SUCCESS || entryToContentChunkMessageId(key) != messageId)
+                {
+                    // the offset lies beyond the start of the last chunk, find its end
+                    status = status == OperationStatus.SUCCESS
+                            ? cursor.getPrev(key, value, LockMode.READ_UNCOMMITTED)
+                            : cursor.getLast(key, value, LockMode.READ_UNCOMMITTED);
+                    int size = entryToContentChunkNumber(key) * chunkSize + value.getSize();
+                    if (offset > size)
+                    {
+                        throw new RuntimeException("Offset " + offset + " is greater than message size " + size
+                                                   + " for message id " + messageId + "!");
+                    }
+                    return 0;
+                }
+            }
+
+            int written = 0;
+            while (status == OperationStatus.SUCCESS
+                   && entryToContentChunkMessageId(key) == messageId
+                   && dst.hasRemaining())
+            {
+                int chunkOffset = Math.max(0, offset - position);
+                if (chunkOffset > value.getSize())
+                {
+                    throw new RuntimeException("Offset " + offset + " is greater than message size "
+                                               + (position + value.getSize()) + " for message id "
+                                               + messageId + "!");
+                }
+                int length = Math.min(value.getSize() - chunkOffset, dst.remaining());
+                dst.put(value.getData(), value.getOffset() + chunkOffset, length);
+                written += length;
+                position += value.getSize();
+                status = cursor.getNext(key, value, LockMode.READ_UNCOMMITTED);
+            }
+            return written;
+        }
+        finally
+        {
+            closeCursorSafely(cursor, getEnvironmentFacade());
+        }
+    }
+
+    private Collection<QpidByteBuffer> getContentChunks(final long messageId)
+    {
+        final Database contentChunkDb = getMessageContentChunkDb(false);
+        if (contentChunkDb == null)
+        {
+            return null;
+        }
+
+        List<QpidByteBuffer> buffers = null;
+        Cursor cursor = null;
+        try
+        {
+            cursor = contentChunkDb.openCursor(null, null);
+            DatabaseEntry key = new DatabaseEntry();
+            contentChunkKeyToEntry(messageId, 0, key);
+            DatabaseEntry value = new DatabaseEntry();
+
+            OperationStatus status = cursor.getSearchKeyRange(key, value, LockMode.READ_UNCOMMITTED);
+            while (status == OperationStatus.SUCCESS && entryToContentChunkMessageId(key) == messageId)
+            {
+                if (buffers == null)
+                {
+                    buffers = new ArrayList<>();
+                }
+                buffers.addAll(copyToDirectBuffers(value));
+                status = cursor.getNext(key, value, LockMode.READ_UNCOMMITTED);
+            }
+        }
+        finally
+        {
+            closeCursorSafely(cursor, getEnvironmentFacade());
+        }
+        return buffers;
+    }
+
+    private void deleteContentChunks(final Transaction tx, final long messageId)
+    {
+        final Database contentChunkDb = getMessageContentChunkDb(false);
+        if (contentChunkDb == null)
+        {
+            return;
+        }
+
+        Cursor cursor = contentChunkDb.openCursor(tx, null);
+        try
+        {
+            DatabaseEntry key = new DatabaseEntry();
+            contentChunkKeyToEntry(messageId, 0, key);
+            DatabaseEntry value = new DatabaseEntry();
+            value.setPartial(0, 0, true);
+
+            OperationStatus status = cursor.getSearchKeyRange(key, value, LockMode.RMW);
+            int deleted = 0;
+            while (status == OperationStatus.SUCCESS && entryToContentChunkMessageId(key) == messageId)
+            {
+                cursor.delete();
+                deleted++;
+                status = cursor.getNext(key, value, LockMode.RMW);
+            }
+            getLogger().debug("Deleted {} content chunk(s) for message {}", deleted, messageId);
+        }
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+    private static Collection<QpidByteBuffer> copyToDirectBuffers(final DatabaseEntry value)
+    {
+        byte[] data = value.getData();
+        int offset = value.getOffset();
+        int length = value.getSize();
+        Collection<QpidByteBuffer> buffers = QpidByteBuffer.allocateDirectCollection(length);
+        for(QpidByteBuffer buf : buffers)
+        {
+            int bufSize = buf.remaining();
+            buf.put(data, offset, bufSize);
+            buf.flip();
+            offset+=bufSize;
+        }
+        return buffers;
+    }
+
+    private static void contentChunkKeyToEntry(final long messageId, final int chunk, final DatabaseEntry entry)
+    {
+        TupleOutput output = new TupleOutput();
+        output.writeLong(messageId);
+        output.writeInt(chunk);
+        TupleBase.outputToEntry(output, entry);
+    }
+
+    private static long entryToContentChunkMessageId(final DatabaseEntry entry)
+    {
+        TupleInput input = TupleBase.entryToInput(entry);
+        return input.readLong();
+    }
+
+    private static int entryToContentChunkNumber(final DatabaseEntry entry)
+    {
+        TupleInput input = TupleBase.entryToInput(entry);
+        input.readLong();
+        return input.readInt();
+    }
+
     private void visitMessagesInternal(MessageHandler handler, EnvironmentFacade environmentFacade)
     {
         Cursor cursor = null;
@@ -526,29 +781,52 @@ public abstract class AbstractBDBMessageStore implements MessageStore
     private void addContent(final Transaction tx, long messageId,
                             Collection<QpidByteBuffer> contentBody) throws StoreException
     {
-        DatabaseEntry key = new DatabaseEntry();
-        LongBinding.longToEntry(messageId, key);
-        DatabaseEntry value = new DatabaseEntry();
-
         int size = 0;
 
         for(QpidByteBuffer buf : contentBody)
         {
             size += buf.remaining();
         }
-        byte[] data = new byte[size];
-        ByteBuffer dst = ByteBuffer.wrap(data);
-        for(QpidByteBuffer buf : contentBody)
-        {
-            buf.copyTo(dst);
-        }
-        value.setData(data);
+
         try
         {
-            OperationStatus status = getMessageContentDb().put(tx, key, value);
-            if (status != OperationStatus.SUCCESS)
+            int chunkSize = getContentChunkSize();
+            if (chunkSize > 0 && size > chunkSize)
             {
-                throw new StoreException("Error adding content for message id " + messageId + ": " + status);
+                addContentChunks(tx, messageId, contentBody, size, chunkSize);
+            }
+            else
+            {
+                DatabaseEntry key = new DatabaseEntry();
+                LongBinding.longToEntry(messageId, key);
+                DatabaseEntry value = new DatabaseEntry();
+
+                QpidByteBuffer single = contentBody.size() == 1 ? contentBody.iterator().next() : null;
+                if (single != null && single.hasArray())
+                {
+                    // the database takes its own copy of the entry, so heap content can be handed over directly
+                    value.setData(single.array(), single.arrayOffset() + single.position(), size);
+                }
+                else
+                {
+                    byte[] data = getStagingBuffer(size);
+                    int offset = 0;
+                    for (QpidByteBuffer buf : contentBody)
+                    {
+                        int length = buf.remaining();
+                        QpidByteBuffer dup = buf.duplicate();
+                        dup.get(data, offset, length);
+                        dup.dispose();
+                        offset += length;
+                    }
+                    value.setData(data, 0, size);
+                }
+
+                OperationStatus status = getMessageContentDb().put(tx, key, value);
+                if (status != OperationStatus.SUCCESS)
+                {
+                    throw new StoreException("Error adding content for message id " + messageId + ": " + status);
+                }
             }
 
             getLogger().debug("Storing content for message {} in transaction {}", messageId, tx);
@@ -563,6 +841,85 @@ public abstract class AbstractBDBMessageStore implements MessageStore
         }
     }
 
+    private void addContentChunks(final Transaction tx,
+                                  final long messageId,
+                                  final Collection<QpidByteBuffer> contentBody,
+                                  final int size,
+                                  final int chunkSize)
+    {
+        byte[] data = getStagingBuffer(chunkSize);
+        DatabaseEntry key = new DatabaseEntry();
+        DatabaseEntry value = new DatabaseEntry();
+        int chunk = 0;
+        int chunkLength = 0;
+        int remaining = size;
+
+        for (QpidByteBuffer buf : contentBody)
+        {
+            QpidByteBuffer dup = buf.duplicate();
+            try
+            {
+                while (dup.hasRemaining())
+                {
+                    int length = Math.min(dup.remaining(), chunkSize - chunkLength);
+                    dup.get(data, chunkLength, length);
+                    chunkLength += length;
+                    remaining -= length;
+
+                    if (chunkLength == chunkSize || remaining == 0)
+                    {
+                        contentChunkKeyToEntry(messageId, chunk, key);
+                        value.setData(data, 0, chunkLength);
+                        OperationStatus status = getMessageContentChunkDb(true).put(tx, key, value);
+                        if (status != OperationStatus.SUCCESS)
+                        {
+                            throw new StoreException("Error adding content chunk " + chunk + " for message id "
+                                                     + messageId + ": " + status);
+                        }
+                        chunk++;
+                        chunkLength = 0;
+                    }
+                }
+            }
+            finally
+            {
+                dup.dispose();
+            }
+        }
+    }
+
+    /**
+     * Returns a per-thread array of at least the given size to stage content in before it is written.  The database
+     * copies the entry data on put, so the array can be reused.  Unusually large arrays are not retained.
+     */
+    private static byte[] getStagingBuffer(final int size)
+    {
+        byte[] buffer = CONTENT_STAGING_BUFFER.get();
+        if (buffer == null || buffer.length < size)
+        {
+            buffer = new byte[size];
+            if (size <= MAX_RETAINED_STAGING_BUFFER_SIZE)
+            {
+                CONTENT_STAGING_BUFFER.set(buffer);
+            }
+        }
+        return buffer;
+    }
+
+    private int getContentChunkSize()
+    {
+        int chunkSize = _contentChunkSize;
+        if (chunkSize < 0)
+        {
+            chunkSize = Math.max(0, BDBUtils.getContextValue(getParent(),
+                                                             Integer.class,
+                                                             MESSAGE_CONTENT_CHUNK_SIZE_PROPERTY_NAME,
+                                                             DEFAULT_MESSAGE_CONTENT_CHUNK_SIZE));
+            _contentChunkSize = chunkSize;
+        }
+        return chunkSize;
+    }
+
     /**
      * Stores message meta-data.
      *
@@ -894,6 +1251,34 @@ public abstract class AbstractBDBMessageStore implements MessageStore
         return getEnvironmentFacade().openDatabase(MESSAGE_CONTENT_DB_NAME, DEFAULT_DATABASE_CONFIG);
     }
 
+    /**
+     * Returns the database of content chunks.  Unless chunking is enabled the database is only opened if it
+     * already exists, so that stores which never chunk content are not given an empty database.
+     *
+     * @return the database, or null if it does not exist and is not to be created
+     */
+    private Database getMessageContentChunkDb(final boolean create)
+    {
+        if (create || getContentChunkSize() > 0)
+        {
+            return getEnvironmentFacade().openDatabase(MESSAGE_CONTENT_CHUNK_DB_NAME, DEFAULT_DATABASE_CONFIG);
+        }
+        if (_contentChunkDbAbsent)
+        {
+            return null;
+        }
+        try
+        {
+            DatabaseConfig config = new DatabaseConfig().setTransactional(true).setAllowCreate(false);
+            return getEnvironmentFacade().openDatabase(MESSAGE_CONTENT_CHUNK_DB_NAME, config);
+        }
+        catch (DatabaseNotFoundException e)
+        {
+            _contentChunkDbAbsent = true;
+            return null;
+        }
+    }
+
     private Database getMessageMetaDataDb()
     {
         return getEnvironmentFacade().openDatabase(MESSAGE_META_DATA_DB_NAME, DEFAULT_DATABASE_CONFIG);
@@ -1221,14 +1606,21 @@ public abstract class AbstractBDBMessageStore implements MessageStore
         public synchronized void remove()
         {
             checkMessageStoreOpen();
-            Collection<QpidByteBuffer> data = _messageDataRef.getData();
 
             final T metaData = getMetaData();
-            int delta = metaData.getContentSize();
             if(stored())
             {
                 removeMessage(_messageId, false);
-                storedSizeChangeOccurred(-delta);
+            }
+            removed(metaData);
+        }
+
+        private synchronized void removed(final StorableMessageMetaData metaData)
+        {
+            Collection<QpidByteBuffer> data = _messageDataRef.getData();
+            if(stored())
+            {
+                storedSizeChangeOccurred(-metaData.getContentSize());
             }
             if(data != null)
             {
@@ -1253,6 +1645,11 @@ public abstract class AbstractBDBMessageStore implements MessageStore
             return _messageDataRef != null && !_messageDataRef.isHardRef();
         }
 
+        private boolean isStoredIn(final AbstractBDBMessageStore store)
+        {
+            return AbstractBDBMessageStore.this == store;
+        }
+
         @Override
         public synchronized boolean flowToDisk()
         {
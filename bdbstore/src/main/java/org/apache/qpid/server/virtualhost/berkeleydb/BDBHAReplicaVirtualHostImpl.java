@@ -143,6 +143,12 @@ public class BDBHAReplicaVirtualHostImpl extends AbstractConfiguredObject<BDBHAR
         throwUnsupportedForReplica();
     }
 
+    @Override
+    public void executeReadAheadTask(final String name, Runnable task, AccessControlContext context)
+    {
+        throwUnsupportedForReplica();
+    }
+
     @Override
     public Broker<?> getBroker()
     {
@@ -285,6 +291,36 @@ public class BDBHAReplicaVirtualHostImpl extends AbstractConfiguredObject<BDBHAR
         return 0;
     }
 
+    @Override
+    public long getHousekeepingPassDuration()
+    {
+        return 0;
+    }
+
+    @Override
+    public long getHousekeepingLag()
+    {
+        return 0;
+    }
+
+    @Override
+    public long getHousekeepingSkippedChecks()
+    {
+        return 0;
+    }
+
+    @Override
+    public long getRecoveredQueueCount()
+    {
+        return 0;
+    }
+
+    @Override
+    public long getRecoveryRate()
+    {
+        return 0;
+    }
+
     @Override
     public Collection<? extends Connection<?>> getConnections()
     {
@@ -26,6 +26,11 @@ import static org.mockito.Mockito.when;
 import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
 
 import org.apache.qpid.bytebuffer.QpidByteBuffer;
 import org.apache.qpid.framing.AMQShortString;
@@ -343,6 +348,82 @@ public class BDBMessageStoreTest extends MessageStoreTestCase
                         0, bdbStore.getContent(messageid_0_8, 0, dst));
     }
 
+    public void testChunkedMessageContent() throws Exception
+    {
+        BDBMessageStore bdbStore = (BDBMessageStore) getStore();
+
+        StoredMessage<MessageMetaData> storedMessage_0_8 = createAndStoreSingleChunkMessage_0_8(bdbStore);
+        long messageid_0_8 = storedMessage_0_8.getMessageNumber();
+
+        Collection<QpidByteBuffer> content = bdbStore.getAllContent(messageid_0_8);
+        ByteBuffer allContent = ByteBuffer.allocate(CONTENT_BYTES.length);
+        for (QpidByteBuffer buf : content)
+        {
+            buf.get(allContent);
+            buf.dispose();
+        }
+        assertFalse("Unexpected content length", allContent.hasRemaining());
+        assertTrue("Unexpected content", Arrays.equals(CONTENT_BYTES, allContent.array()));
+
+        // the read spans the first and second chunks
+        ByteBuffer dst = ByteBuffer.allocate(5);
+        int length = bdbStore.getContent(messageid_0_8, 2, dst);
+        assertEquals("Unexpected length", 5, length);
+        byte[] expected = new byte[5];
+        System.arraycopy(CONTENT_BYTES, 2, expected, 0, 5);
+        assertTrue("Unexpected content", Arrays.equals(expected, dst.array()));
+
+        // the read starts in the middle of the second chunk and runs to the end of the last
+        dst = ByteBuffer.allocate(8);
+        length = bdbStore.getContent(messageid_0_8, 6, dst);
+        assertEquals("Unexpected length", 4, length);
+        expected = new byte[4];
+        System.arraycopy(CONTENT_BYTES, 6, expected, 0, 4);
+        assertTrue("Unexpected content", Arrays.equals(expected, Arrays.copyOf(dst.array(), 4)));
+
+        assertEquals("Unexpected length at the end of the content",
+                     0, bdbStore.getContent(messageid_0_8, CONTENT_BYTES.length, ByteBuffer.allocate(1)));
+        try
+        {
+            bdbStore.getContent(messageid_0_8, CONTENT_BYTES.length + 5, ByteBuffer.allocate(1));
+            fail("Reading beyond the end of the content should fail");
+        }
+        catch (StoreException e)
+        {
+            // pass
+        }
+
+        bdbStore.removeMessage(messageid_0_8, true);
+
+        assertEquals("Retrieved content when none was expected",
+                     0, bdbStore.getContent(messageid_0_8, 0, ByteBuffer.allocate(1)));
+    }
+
+    public void testContentChunkDatabaseNotCreatedUnlessChunkingEnabled() throws Exception
+    {
+        BDBMessageStore bdbStore = (BDBMessageStore) getStore();
+
+        StoredMessage<MessageMetaData> storedMessage_0_8 = createAndStoreSingleChunkMessage_0_8(bdbStore);
+        long messageid_0_8 = storedMessage_0_8.getMessageNumber();
+        bdbStore.removeMessage(messageid_0_8, true);
+        assertEquals("Retrieved content when none was expected",
+                     0, bdbStore.getContent(messageid_0_8, 0, ByteBuffer.allocate(1)));
+
+        String storeLocation = bdbStore.getStoreLocation();
+        bdbStore.closeMessageStore();
+
+        Environment environment = new Environment(new File(storeLocation), new EnvironmentConfig().setReadOnly(true));
+        try
+        {
+            assertFalse("Content chunk database should not have been created",
+                        environment.getDatabaseNames().contains(AbstractBDBMessageStore.MESSAGE_CONTENT_CHUNK_DB_NAME));
+        }
+        finally
+        {
+            environment.close();
+        }
+    }
+
     private StoredMessage<MessageMetaData> createAndStoreSingleChunkMessage_0_8(MessageStore store)
     {
         QpidByteBuffer chunk1 = QpidByteBuffer.wrap(CONTENT_BYTES);
@@ -392,6 +473,13 @@ public class BDBMessageStoreTest extends MessageStoreTestCase
 
         final BDBVirtualHost parent = mock(BDBVirtualHost.class);
         when(parent.getStorePath()).thenReturn(_storeLocation);
+        if (getName().startsWith("testChunked"))
+        {
+            when(parent.getContextKeys(false)).thenReturn(Collections.singleton(
+                    AbstractBDBMessageStore.MESSAGE_CONTENT_CHUNK_SIZE_PROPERTY_NAME));
+            when(parent.getContextValue(Integer.class,
+                                        AbstractBDBMessageStore.MESSAGE_CONTENT_CHUNK_SIZE_PROPERTY_NAME)).thenReturn(4);
+        }
         return parent;
     }
 
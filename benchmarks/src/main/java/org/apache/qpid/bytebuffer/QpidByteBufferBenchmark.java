@@ -0,0 +1,107 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures allocating and disposing {@link QpidByteBuffer}s with the buffer pool initialised as it is in the
+ * broker: whole pooled network buffers, smaller direct buffers carved from them, heap buffers and slices.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QpidByteBufferBenchmark
+{
+    private static final int POOLED_BUFFER_SIZE = 256 * 1024;
+    private static final int MAX_POOL_SIZE = 1024;
+
+    @Param({"64", "1024", "16384"})
+    private int _size;
+
+    private QpidByteBuffer _source;
+
+    @Setup
+    public void setUp()
+    {
+        QpidByteBuffer.initialisePool(POOLED_BUFFER_SIZE, MAX_POOL_SIZE);
+        _source = QpidByteBuffer.allocateDirect(POOLED_BUFFER_SIZE);
+        _source.limit(_size);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        _source.dispose();
+    }
+
+    @Benchmark
+    public int pooledNetworkBuffer()
+    {
+        QpidByteBuffer buffer = QpidByteBuffer.allocateDirect(POOLED_BUFFER_SIZE);
+        int capacity = buffer.capacity();
+        buffer.dispose();
+        return capacity;
+    }
+
+    @Benchmark
+    public int direct()
+    {
+        QpidByteBuffer buffer = QpidByteBuffer.allocateDirect(_size);
+        int capacity = buffer.capacity();
+        buffer.dispose();
+        return capacity;
+    }
+
+    @Benchmark
+    public int heap()
+    {
+        QpidByteBuffer buffer = QpidByteBuffer.allocate(_size);
+        int capacity = buffer.capacity();
+        buffer.dispose();
+        return capacity;
+    }
+
+    @Benchmark
+    public int slice()
+    {
+        QpidByteBuffer buffer = _source.slice();
+        int remaining = buffer.remaining();
+        buffer.dispose();
+        return remaining;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.filter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.qpid.filter.selector.SelectorParser;
+
+/**
+ * Compares evaluating a JMS selector with the interpreted expression tree produced by the parser against the
+ * evaluator produced by {@link SelectorCompiler}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectorBenchmark
+{
+    @Param({"size > 100 AND size < 1000",
+            "colour = 'red' OR colour = 'blue'",
+            "region IN ('uk', 'us', 'de') AND JMSPriority > 4 AND size BETWEEN 10 AND 500",
+            "NOT (colour LIKE 'gr%') AND weight * 2 > 10.5"})
+    private String _selector;
+
+    private BooleanExpression<FilterableMessage> _interpreted;
+    private BooleanExpression<FilterableMessage> _compiled;
+    private FilterableMessage _message;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        SelectorParser<FilterableMessage> parser = new SelectorParser<>();
+        parser.setPropertyExpressionFactory(JMSMessagePropertyExpression.FACTORY);
+        _interpreted = parser.parse(_selector);
+        _compiled = SelectorCompiler.compile(parser.parse(_selector));
+
+        Map<String, Object> headers = new HashMap<>();
+        headers.put("size", 250);
+        headers.put("colour", "blue");
+        headers.put("region", "us");
+        headers.put("weight", 7.25d);
+        _message = new BenchmarkMessage(headers);
+    }
+
+    @Benchmark
+    public boolean interpreted()
+    {
+        return _interpreted.matches(_message);
+    }
+
+    @Benchmark
+    public boolean compiled()
+    {
+        return _compiled.matches(_message);
+    }
+
+    private static final class BenchmarkMessage implements FilterableMessage
+    {
+        private final Map<String, Object> _headers;
+
+        private BenchmarkMessage(final Map<String, Object> headers)
+        {
+            _headers = headers;
+        }
+
+        @Override
+        public Object getHeader(final String name)
+        {
+            return _headers.get(name);
+        }
+
+        @Override
+        public boolean isPersistent()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean isRedelivered()
+        {
+            return false;
+        }
+
+        @Override
+        public String getReplyTo()
+        {
+            return null;
+        }
+
+        @Override
+        public String getType()
+        {
+            return null;
+        }
+
+        @Override
+        public byte getPriority()
+        {
+            return 7;
+        }
+
+        @Override
+        public String getMessageId()
+        {
+            return "ID:1";
+        }
+
+        @Override
+        public long getTimestamp()
+        {
+            return 0L;
+        }
+
+        @Override
+        public String getCorrelationId()
+        {
+            return null;
+        }
+
+        @Override
+        public long getExpiration()
+        {
+            return 0L;
+        }
+    }
+}
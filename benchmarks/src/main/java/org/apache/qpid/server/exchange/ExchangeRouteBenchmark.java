@@ -0,0 +1,146 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.exchange;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.qpid.exchange.ExchangeDefaults;
+import org.apache.qpid.server.message.InstanceProperties;
+import org.apache.qpid.server.message.internal.InternalMessage;
+import org.apache.qpid.server.model.Queue;
+import org.apache.qpid.server.model.VirtualHost;
+import org.apache.qpid.server.queue.BaseQueue;
+import org.apache.qpid.server.virtualhost.VirtualHostBenchmarkHelper;
+
+/**
+ * Measures resolving the queues a message is routed to by the direct, topic and headers exchanges, with one
+ * queue bound per binding and exactly one binding matching the message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExchangeRouteBenchmark
+{
+    private static final String HEADER_NAME = "symbol";
+
+    @Param({ExchangeDefaults.DIRECT_EXCHANGE_CLASS,
+            ExchangeDefaults.TOPIC_EXCHANGE_CLASS,
+            ExchangeDefaults.HEADERS_EXCHANGE_CLASS})
+    private String _exchangeType;
+
+    @Param({"10", "1000"})
+    private int _bindings;
+
+    private VirtualHost<?> _virtualHost;
+    private AbstractExchange<?> _exchange;
+    private InternalMessage _message;
+    private String _routingAddress;
+
+    @Setup
+    public void setUp()
+    {
+        _virtualHost = VirtualHostBenchmarkHelper.createVirtualHost("ExchangeRouteBenchmark");
+        _exchange = (AbstractExchange<?>) VirtualHostBenchmarkHelper.createExchange(_virtualHost,
+                                                                                   "benchmark." + _exchangeType,
+                                                                                   _exchangeType);
+
+        for (int i = 0; i < _bindings; i++)
+        {
+            Queue<?> queue = VirtualHostBenchmarkHelper.createQueue(_virtualHost, "queue" + i);
+            _exchange.addBinding(bindingKey(i), queue, bindingArguments(i));
+        }
+
+        int matching = _bindings / 2;
+        Map<String, Object> headers = Collections.<String, Object>singletonMap(HEADER_NAME, "S" + matching);
+        _message = VirtualHostBenchmarkHelper.createMessage(_virtualHost, headers, 256);
+        _routingAddress = routingAddress(matching);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        _virtualHost.close();
+    }
+
+    @Benchmark
+    public List<? extends BaseQueue> route()
+    {
+        return _exchange.route(_message, _routingAddress, InstanceProperties.EMPTY);
+    }
+
+    private String bindingKey(int i)
+    {
+        switch (_exchangeType)
+        {
+            case ExchangeDefaults.TOPIC_EXCHANGE_CLASS:
+                return "stock." + i + ".*";
+            case ExchangeDefaults.HEADERS_EXCHANGE_CLASS:
+                return "binding" + i;
+            default:
+                return "key" + i;
+        }
+    }
+
+    private Map<String, Object> bindingArguments(int i)
+    {
+        if (ExchangeDefaults.HEADERS_EXCHANGE_CLASS.equals(_exchangeType))
+        {
+            Map<String, Object> arguments = new HashMap<>();
+            arguments.put("x-match", "all");
+            arguments.put(HEADER_NAME, "S" + i);
+            return arguments;
+        }
+        return Collections.emptyMap();
+    }
+
+    private String routingAddress(int i)
+    {
+        switch (_exchangeType)
+        {
+            case ExchangeDefaults.TOPIC_EXCHANGE_CLASS:
+                return "stock." + i + ".price";
+            case ExchangeDefaults.HEADERS_EXCHANGE_CLASS:
+                return "";
+            default:
+                return "key" + i;
+        }
+    }
+}
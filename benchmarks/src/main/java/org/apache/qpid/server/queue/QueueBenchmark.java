@@ -0,0 +1,236 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.security.AccessController;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.qpid.server.consumer.ConsumerImpl;
+import org.apache.qpid.server.consumer.MockConsumer;
+import org.apache.qpid.server.message.MessageInstance;
+import org.apache.qpid.server.message.internal.InternalMessage;
+import org.apache.qpid.server.model.VirtualHost;
+import org.apache.qpid.server.util.Action;
+import org.apache.qpid.server.virtualhost.VirtualHostBenchmarkHelper;
+
+/**
+ * Measures enqueueing onto a standard queue held in an in-VM memory virtual host: with no consumers, with a
+ * consumer receiving each message as it is enqueued, and with a backlog delivered by
+ * {@link AbstractQueue#processQueue(QueueRunner)}.  Delivered and enqueued messages are deleted straight away so
+ * that every operation sees a queue of the same depth.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueBenchmark
+{
+    private static final int BACKLOG_SIZE = 1000;
+    private static final int MESSAGE_SIZE = 256;
+
+    private static final Action<MessageInstance> DELETE_ENTRY = new Action<MessageInstance>()
+    {
+        @Override
+        public void performAction(final MessageInstance entry)
+        {
+            if (entry.acquire())
+            {
+                entry.delete();
+            }
+        }
+    };
+
+    @State(Scope.Benchmark)
+    public static class Host
+    {
+        private VirtualHost<?> _virtualHost;
+        private InternalMessage _message;
+
+        @Setup
+        public void setUp()
+        {
+            _virtualHost = VirtualHostBenchmarkHelper.createVirtualHost("QueueBenchmark");
+            _message = VirtualHostBenchmarkHelper.createMessage(_virtualHost, null, MESSAGE_SIZE);
+        }
+
+        @TearDown
+        public void tearDown()
+        {
+            _virtualHost.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class UnconsumedQueue
+    {
+        private AbstractQueue<?> _queue;
+
+        @Setup
+        public void setUp(Host host)
+        {
+            _queue = (AbstractQueue<?>) VirtualHostBenchmarkHelper.createQueue(host._virtualHost, "unconsumed");
+        }
+
+        @TearDown
+        public void tearDown()
+        {
+            _queue.delete();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ConsumedQueue
+    {
+        private AbstractQueue<?> _queue;
+        private DeletingConsumerTarget _target;
+
+        @Setup
+        public void setUp(Host host) throws Exception
+        {
+            _target = new DeletingConsumerTarget();
+            _queue = createConsumedQueue(host, "consumed", _target);
+        }
+
+        @TearDown
+        public void tearDown()
+        {
+            _queue.delete();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BackloggedQueue
+    {
+        private AbstractQueue<?> _queue;
+        private DeletingConsumerTarget _target;
+        private QueueRunner _runner;
+
+        @Setup
+        public void setUp(Host host) throws Exception
+        {
+            _target = new DeletingConsumerTarget();
+            _queue = createConsumedQueue(host, "backlogged", _target);
+            _runner = new QueueRunner(_queue, AccessController.getContext())
+            {
+                @Override
+                public void run()
+                {
+                    // delivery is driven by the benchmark itself
+                }
+            };
+        }
+
+        @Setup(Level.Invocation)
+        public void fillBacklog(Host host)
+        {
+            _target.setSuspended(true);
+            for (int i = 0; i < BACKLOG_SIZE; i++)
+            {
+                _queue.enqueue(host._message, null, null);
+            }
+            _target.setSuspended(false);
+        }
+
+        @TearDown
+        public void tearDown()
+        {
+            _queue.delete();
+        }
+    }
+
+    @Benchmark
+    public void enqueueWithoutConsumers(Host host, UnconsumedQueue queue)
+    {
+        queue._queue.enqueue(host._message, DELETE_ENTRY, null);
+    }
+
+    @Benchmark
+    public void enqueueToConsumer(Host host, ConsumedQueue queue)
+    {
+        queue._queue.enqueue(host._message, null, null);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BACKLOG_SIZE)
+    public void processQueue(BackloggedQueue queue)
+    {
+        while (queue._queue.getQueueDepthMessages() > 0)
+        {
+            queue._queue.processQueue(queue._runner);
+        }
+    }
+
+    private static AbstractQueue<?> createConsumedQueue(final Host host,
+                                                        final String name,
+                                                        final DeletingConsumerTarget target) throws Exception
+    {
+        AbstractQueue<?> queue = (AbstractQueue<?>) VirtualHostBenchmarkHelper.createQueue(host._virtualHost, name);
+        queue.addConsumer(target,
+                          null,
+                          InternalMessage.class,
+                          name,
+                          EnumSet.of(ConsumerImpl.Option.ACQUIRES, ConsumerImpl.Option.SEES_REQUEUES));
+        return queue;
+    }
+
+    /**
+     * Acknowledges every message as soon as it is sent, and can be suspended to let a backlog build up.
+     */
+    private static final class DeletingConsumerTarget extends MockConsumer
+    {
+        private volatile boolean _suspended;
+
+        @Override
+        public boolean isSuspended()
+        {
+            return _suspended;
+        }
+
+        private void setSuspended(final boolean suspended)
+        {
+            _suspended = suspended;
+        }
+
+        @Override
+        public long send(final ConsumerImpl consumer, final MessageInstance entry, final boolean batch)
+        {
+            long size = entry.getMessage().getSize();
+            entry.delete();
+            return size;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.apache.qpid.server.message.internal.InternalMessage;
+import org.apache.qpid.server.model.VirtualHost;
+import org.apache.qpid.server.virtualhost.VirtualHostBenchmarkHelper;
+
+/**
+ * Measures adding entries to a {@link StandardQueueEntryList} and deleting them again, which drives the
+ * periodic scavenging of deleted entries.  The backlog parameter leaves that many live entries at the head
+ * of the list, as when messages are waiting for a slow consumer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StandardQueueEntryListBenchmark
+{
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"0", "10000"})
+    private int _backlog;
+
+    private VirtualHost<?> _virtualHost;
+    private StandardQueueEntryList _list;
+    private InternalMessage _message;
+    private final QueueEntry[] _batch = new QueueEntry[BATCH_SIZE];
+
+    @Setup
+    public void setUp()
+    {
+        _virtualHost = VirtualHostBenchmarkHelper.createVirtualHost("StandardQueueEntryListBenchmark");
+        StandardQueueImpl queue =
+                (StandardQueueImpl) VirtualHostBenchmarkHelper.createQueue(_virtualHost, "entryList");
+        _list = new StandardQueueEntryList(queue);
+        _message = VirtualHostBenchmarkHelper.createMessage(_virtualHost, null, 256);
+
+        for (int i = 0; i < _backlog; i++)
+        {
+            _list.add(_message, null);
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        _virtualHost.close();
+    }
+
+    @Benchmark
+    public void addAndDelete()
+    {
+        QueueEntry entry = _list.add(_message, null);
+        entry.acquire();
+        entry.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void addBatchThenDelete()
+    {
+        for (int i = 0; i < BATCH_SIZE; i++)
+        {
+            _batch[i] = _list.add(_message, null);
+        }
+        for (int i = 0; i < BATCH_SIZE; i++)
+        {
+            QueueEntry entry = _batch[i];
+            entry.acquire();
+            entry.delete();
+            _batch[i] = null;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.stats;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of registering events on a single {@link StatisticsCounter} shared by many
+ * threads, as happens for the broker and virtual host wide message and data counters.  The
+ * {@link #synchronizedCounter()} benchmark reproduces the previous single monitor implementation
+ * so that the two can be compared in one run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(32)
+public class StatisticsCounterBenchmark
+{
+    private StatisticsCounter _counter;
+    private SynchronizedCounter _synchronizedCounter;
+
+    @Setup
+    public void setUp()
+    {
+        _counter = new StatisticsCounter("benchmark");
+        _synchronizedCounter = new SynchronizedCounter(StatisticsCounter.DEFAULT_SAMPLE_PERIOD);
+    }
+
+    @Benchmark
+    public void stripedCounter()
+    {
+        _counter.registerEvent(1L);
+    }
+
+    @Benchmark
+    public void synchronizedCounter()
+    {
+        _synchronizedCounter.registerEvent(1L, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void stripedCounter64Threads()
+    {
+        _counter.registerEvent(1L);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void synchronizedCounter64Threads()
+    {
+        _synchronizedCounter.registerEvent(1L, System.currentTimeMillis());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void stripedCounterUncontended()
+    {
+        _counter.registerEvent(1L);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void synchronizedCounterUncontended()
+    {
+        _synchronizedCounter.registerEvent(1L, System.currentTimeMillis());
+    }
+
+    private static final class SynchronizedCounter
+    {
+        private final long _period;
+        private long _peak;
+        private long _total;
+        private long _temp;
+        private long _last;
+        private long _rate;
+
+        private SynchronizedCounter(final long period)
+        {
+            _period = period;
+            _last = System.currentTimeMillis() / period;
+        }
+
+        private void registerEvent(long value, long timestamp)
+        {
+            long thisSample = (timestamp / _period);
+            synchronized (this)
+            {
+                if (thisSample > _last)
+                {
+                    _last = thisSample;
+                    _rate = _temp;
+                    _temp = 0L;
+                    if (_rate > _peak)
+                    {
+                        _peak = _rate;
+                    }
+                }
+
+                _total += value;
+                _temp += value;
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.virtualhost;
+
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.qpid.server.configuration.updater.CurrentThreadTaskExecutor;
+import org.apache.qpid.server.configuration.updater.TaskExecutor;
+import org.apache.qpid.server.message.internal.InternalMessage;
+import org.apache.qpid.server.message.internal.InternalMessageHeader;
+import org.apache.qpid.server.model.Broker;
+import org.apache.qpid.server.model.BrokerTestHelper;
+import org.apache.qpid.server.model.ConfiguredObjectFactory;
+import org.apache.qpid.server.model.Exchange;
+import org.apache.qpid.server.model.Queue;
+import org.apache.qpid.server.model.VirtualHost;
+import org.apache.qpid.server.model.VirtualHostNode;
+import org.apache.qpid.server.store.DurableConfigurationStore;
+import org.apache.qpid.server.store.preferences.PreferenceStore;
+import org.apache.qpid.server.virtualhost.memory.MemoryVirtualHost;
+
+/**
+ * Builds a started, in-VM virtual host backed by a {@code MemoryMessageStore} for the benchmarks.  The broker and
+ * virtual host node above it are mocked in the same way as in the broker-core unit tests, so no configuration
+ * store, ports or other external services are needed.
+ */
+public class VirtualHostBenchmarkHelper
+{
+    private static final Principal SYSTEM_PRINCIPAL = new Principal()
+    {
+        @Override
+        public String getName()
+        {
+            return "BENCHMARK";
+        }
+    };
+
+    private static final TaskExecutor TASK_EXECUTOR = new CurrentThreadTaskExecutor();
+
+    static
+    {
+        TASK_EXECUTOR.start();
+    }
+
+    private VirtualHostBenchmarkHelper()
+    {
+    }
+
+    public static VirtualHost<?> createVirtualHost(String name)
+    {
+        Broker<?> broker = BrokerTestHelper.createBrokerMock();
+        ConfiguredObjectFactory objectFactory = broker.getObjectFactory();
+
+        VirtualHostNode virtualHostNode =
+                BrokerTestHelper.mockWithSystemPrincipalAndAccessControl(VirtualHostNode.class,
+                                                                         SYSTEM_PRINCIPAL,
+                                                                         BrokerTestHelper.createAccessControlMock());
+        when(virtualHostNode.getName()).thenReturn(name + "_node");
+        when(virtualHostNode.getParent(eq(Broker.class))).thenReturn(broker);
+        when(virtualHostNode.getParent(eq(VirtualHostNode.class))).thenReturn(virtualHostNode);
+        when(virtualHostNode.getConfigurationStore()).thenReturn(mock(DurableConfigurationStore.class));
+        when(virtualHostNode.getModel()).thenReturn(objectFactory.getModel());
+        when(virtualHostNode.getObjectFactory()).thenReturn(objectFactory);
+        when(virtualHostNode.getCategoryClass()).thenReturn(VirtualHostNode.class);
+        when(virtualHostNode.getTaskExecutor()).thenReturn(TASK_EXECUTOR);
+        when(virtualHostNode.getChildExecutor()).thenReturn(TASK_EXECUTOR);
+        when(virtualHostNode.createPreferenceStore()).thenReturn(mock(PreferenceStore.class));
+        when(broker.getVirtualHostNodes()).thenReturn(Collections.<VirtualHostNode<?>>singleton(virtualHostNode));
+
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(VirtualHost.TYPE, MemoryVirtualHost.VIRTUAL_HOST_TYPE);
+        attributes.put(VirtualHost.NAME, name);
+
+        AbstractVirtualHost<?> host =
+                (AbstractVirtualHost<?>) objectFactory.create(VirtualHost.class, attributes, virtualHostNode);
+        host.start();
+        when(virtualHostNode.getVirtualHost()).thenReturn(host);
+        return host;
+    }
+
+    public static Queue<?> createQueue(VirtualHost<?> virtualHost, String name)
+    {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(Queue.ID, UUID.randomUUID());
+        attributes.put(Queue.NAME, name);
+        return virtualHost.createChild(Queue.class, attributes);
+    }
+
+    public static Exchange<?> createExchange(VirtualHost<?> virtualHost, String name, String type)
+    {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(Exchange.ID, UUID.randomUUID());
+        attributes.put(Exchange.NAME, name);
+        attributes.put(Exchange.TYPE, type);
+        return virtualHost.createChild(Exchange.class, attributes);
+    }
+
+    /**
+     * Creates a message held in the virtual host's message store.  An extra reference is taken on the message so
+     * that it remains in the store however many times it is enqueued and deleted.
+     */
+    public static InternalMessage createMessage(VirtualHost<?> virtualHost,
+                                                Map<String, Object> headers,
+                                                int bodySize)
+    {
+        InternalMessageHeader header = new InternalMessageHeader(headers, null, 0L, null, null, null, null, null,
+                                                                 (byte) 4, System.currentTimeMillis(), 0L, null, null);
+        InternalMessage message =
+                InternalMessage.createBytesMessage(virtualHost.getMessageStore(), header, new byte[bodySize]);
+        message.newReference();
+        return message;
+    }
+}
@@ -117,6 +117,38 @@ class HeadersBinding
         return _binding;
     }
 
+    Set<String> getRequiredHeaders()
+    {
+        return Collections.unmodifiableSet(required);
+    }
+
+    Map<String, Object> getRequiredValues()
+    {
+        return Collections.unmodifiableMap(matches);
+    }
+
+    boolean isMatchAny()
+    {
+        return matchAny;
+    }
+
+    /**
+     * @return the number of header presence and value conditions this binding places on a message
+     */
+    int getConditionCount()
+    {
+        return required.size() + matches.size();
+    }
+
+    /**
+     * Checks the supplied message against any selector given in the binding arguments, ignoring
+     * the header conditions.
+     */
+    boolean passesFilter(Filterable message)
+    {
+        return _filter == null || _filter.allAllow(message);
+    }
+
     /**
      * Checks whether the supplied headers match the requirements of this binding
      * @param headers the headers to check
@@ -137,7 +169,7 @@ class HeadersBinding
 
     public boolean matches(Filterable message)
     {
-        return matches(message.getMessageHeader()) && (_filter == null || _filter.allAllow(message));
+        return matches(message.getMessageHeader()) && passesFilter(message);
     }
 
     private boolean and(AMQMessageHeader headers)
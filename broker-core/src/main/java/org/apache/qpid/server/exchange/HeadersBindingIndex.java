@@ -0,0 +1,308 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.exchange;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.apache.qpid.server.filter.Filterable;
+import org.apache.qpid.server.message.AMQMessageHeader;
+
+/**
+ * Indexes {@link HeadersBinding}s by the header names and values they require, so that a message
+ * can be matched by looking up each of its own headers once rather than by testing every binding.
+ * <p>
+ * Each header a message carries contributes one satisfied condition to every binding that requires
+ * the presence of that header, and to every binding that requires that header to have the value
+ * carried.  An x-match any binding matches once one of its conditions is satisfied; an x-match all
+ * binding matches once all of its conditions are satisfied.  Bindings with no header conditions
+ * match every message.
+ * <p>
+ * Updates are serialised, lookups are not.  A lookup which overlaps an update is repeated, so that it sees each
+ * update either in full or not at all; in particular a binding whose conditions are being replaced is never missed.
+ */
+final class HeadersBindingIndex
+{
+    private final ConcurrentMap<String, HeaderConditions> _conditionsByHeader = new ConcurrentHashMap<>();
+    private final Set<HeadersBinding> _unconditionalBindings = new CopyOnWriteArraySet<>();
+
+    /** Incremented at the start and end of each update, so odd while an update is in progress. */
+    private volatile int _version;
+
+    synchronized void add(HeadersBinding binding)
+    {
+        _version++;
+        try
+        {
+            addConditions(binding);
+        }
+        finally
+        {
+            _version++;
+        }
+    }
+
+    synchronized void remove(HeadersBinding binding)
+    {
+        _version++;
+        try
+        {
+            removeConditions(binding);
+        }
+        finally
+        {
+            _version++;
+        }
+    }
+
+    /**
+     * Replaces the conditions of one binding with those of another as a single update.
+     */
+    synchronized void replace(HeadersBinding oldBinding, HeadersBinding newBinding)
+    {
+        _version++;
+        try
+        {
+            removeConditions(oldBinding);
+            addConditions(newBinding);
+        }
+        finally
+        {
+            _version++;
+        }
+    }
+
+    private void addConditions(HeadersBinding binding)
+    {
+        if (binding.getConditionCount() == 0)
+        {
+            _unconditionalBindings.add(binding);
+            return;
+        }
+
+        for (String header : binding.getRequiredHeaders())
+        {
+            getOrCreateConditions(header).addPresence(binding);
+        }
+        for (Map.Entry<String, Object> entry : binding.getRequiredValues().entrySet())
+        {
+            getOrCreateConditions(entry.getKey()).addValue(entry.getValue(), binding);
+        }
+    }
+
+    private void removeConditions(HeadersBinding binding)
+    {
+        if (binding.getConditionCount() == 0)
+        {
+            _unconditionalBindings.remove(binding);
+            return;
+        }
+
+        for (String header : binding.getRequiredHeaders())
+        {
+            HeaderConditions conditions = _conditionsByHeader.get(header);
+            if (conditions != null)
+            {
+                conditions.removePresence(binding);
+                removeIfEmpty(header, conditions);
+            }
+        }
+        for (Map.Entry<String, Object> entry : binding.getRequiredValues().entrySet())
+        {
+            HeaderConditions conditions = _conditionsByHeader.get(entry.getKey());
+            if (conditions != null)
+            {
+                conditions.removeValue(entry.getValue(), binding);
+                removeIfEmpty(entry.getKey(), conditions);
+            }
+        }
+    }
+
+    /**
+     * Finds the bindings whose header conditions and selectors (if any) are met by the given message.
+     */
+    Collection<HeadersBinding> match(Filterable message)
+    {
+        final AMQMessageHeader headers = message.getMessageHeader();
+        Collection<HeadersBinding> matched;
+        int version;
+        do
+        {
+            while (((version = _version) & 1) != 0)
+            {
+                Thread.yield();
+            }
+            matched = matchConditions(headers);
+        }
+        while (version != _version);
+
+        if (!matched.isEmpty())
+        {
+            for (Iterator<HeadersBinding> iterator = matched.iterator(); iterator.hasNext(); )
+            {
+                if (!iterator.next().passesFilter(message))
+                {
+                    iterator.remove();
+                }
+            }
+        }
+        return matched;
+    }
+
+    private Collection<HeadersBinding> matchConditions(final AMQMessageHeader headers)
+    {
+        final Collection<HeadersBinding> matched = new LinkedHashSet<>(_unconditionalBindings);
+        if (headers != null && !_conditionsByHeader.isEmpty())
+        {
+            Map<HeadersBinding, int[]> partialMatches = null;
+            for (String header : headers.getHeaderNames())
+            {
+                HeaderConditions conditions = _conditionsByHeader.get(header);
+                if (conditions != null)
+                {
+                    partialMatches = satisfy(conditions.getPresenceBindings(), matched, partialMatches);
+
+                    Object value = headers.getHeader(header);
+                    if (value != null)
+                    {
+                        partialMatches = satisfy(conditions.getValueBindings(value), matched, partialMatches);
+                    }
+                }
+            }
+        }
+        return matched;
+    }
+
+    private Map<HeadersBinding, int[]> satisfy(final Collection<HeadersBinding> bindings,
+                                               final Collection<HeadersBinding> matched,
+                                               Map<HeadersBinding, int[]> partialMatches)
+    {
+        if (bindings != null)
+        {
+            for (HeadersBinding binding : bindings)
+            {
+                if (binding.isMatchAny() || binding.getConditionCount() == 1)
+                {
+                    matched.add(binding);
+                }
+                else
+                {
+                    if (partialMatches == null)
+                    {
+                        partialMatches = new HashMap<>();
+                    }
+                    int[] satisfied = partialMatches.get(binding);
+                    if (satisfied == null)
+                    {
+                        satisfied = new int[1];
+                        partialMatches.put(binding, satisfied);
+                    }
+                    if (++satisfied[0] == binding.getConditionCount())
+                    {
+                        matched.add(binding);
+                    }
+                }
+            }
+        }
+        return partialMatches;
+    }
+
+    private HeaderConditions getOrCreateConditions(final String header)
+    {
+        HeaderConditions conditions = _conditionsByHeader.get(header);
+        if (conditions == null)
+        {
+            conditions = new HeaderConditions();
+            _conditionsByHeader.put(header, conditions);
+        }
+        return conditions;
+    }
+
+    private void removeIfEmpty(final String header, final HeaderConditions conditions)
+    {
+        if (conditions.isEmpty())
+        {
+            _conditionsByHeader.remove(header, conditions);
+        }
+    }
+
+    private static final class HeaderConditions
+    {
+        private final Set<HeadersBinding> _presenceBindings = new CopyOnWriteArraySet<>();
+        private final ConcurrentMap<Object, Set<HeadersBinding>> _valueBindings = new ConcurrentHashMap<>();
+
+        void addPresence(HeadersBinding binding)
+        {
+            _presenceBindings.add(binding);
+        }
+
+        void removePresence(HeadersBinding binding)
+        {
+            _presenceBindings.remove(binding);
+        }
+
+        void addValue(Object value, HeadersBinding binding)
+        {
+            Set<HeadersBinding> bindings = _valueBindings.get(value);
+            if (bindings == null)
+            {
+                bindings = new CopyOnWriteArraySet<>();
+                _valueBindings.put(value, bindings);
+            }
+            bindings.add(binding);
+        }
+
+        void removeValue(Object value, HeadersBinding binding)
+        {
+            Set<HeadersBinding> bindings = _valueBindings.get(value);
+            if (bindings != null)
+            {
+                bindings.remove(binding);
+                if (bindings.isEmpty())
+                {
+                    _valueBindings.remove(value, bindings);
+                }
+            }
+        }
+
+        Collection<HeadersBinding> getPresenceBindings()
+        {
+            return _presenceBindings;
+        }
+
+        Collection<HeadersBinding> getValueBindings(Object value)
+        {
+            return _valueBindings.get(value);
+        }
+
+        boolean isEmpty()
+        {
+            return _presenceBindings.isEmpty() && _valueBindings.isEmpty();
+        }
+    }
+}
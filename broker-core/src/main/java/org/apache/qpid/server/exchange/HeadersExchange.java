@@ -22,11 +22,9 @@ package org.apache.qpid.server.exchange;
 
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.slf4j.Logger;
@@ -79,8 +77,9 @@ public class HeadersExchange extends AbstractExchange<HeadersExchange>
     private final ConcurrentMap<String, CopyOnWriteArraySet<Binding<?>>> _bindingsByKey =
                             new ConcurrentHashMap<>();
 
-    private final CopyOnWriteArrayList<HeadersBinding> _bindingHeaderMatchers =
-                            new CopyOnWriteArrayList<HeadersBinding>();
+    private final ConcurrentMap<Binding<?>, HeadersBinding> _bindingHeaderMatchers = new ConcurrentHashMap<>();
+
+    private final HeadersBindingIndex _bindingIndex = new HeadersBindingIndex();
 
     @ManagedObjectFactoryConstructor
     public HeadersExchange(final Map<String, Object> attributes, final VirtualHost<?> vhost)
@@ -97,21 +96,18 @@ public class HeadersExchange extends AbstractExchange<HeadersExchange>
 
         LinkedHashSet<BaseQueue> queues = new LinkedHashSet<BaseQueue>();
 
-        for (HeadersBinding hb : _bindingHeaderMatchers)
+        for (HeadersBinding hb : _bindingIndex.match(Filterable.Factory.newInstance(payload, instanceProperties)))
         {
-            if (hb.matches(Filterable.Factory.newInstance(payload,instanceProperties)))
-            {
-                Binding<?> b = hb.getBinding();
+            Binding<?> b = hb.getBinding();
 
-                b.incrementMatches();
+            b.incrementMatches();
 
-                if (_logger.isDebugEnabled())
-                {
-                    _logger.debug("Exchange " + getName() + ": delivering message with headers " +
-                                  payload.getMessageHeader() + " to " + b.getQueue().getName());
-                }
-                queues.add(b.getQueue());
+            if (_logger.isDebugEnabled())
+            {
+                _logger.debug("Exchange " + getName() + ": delivering message with headers " +
+                              payload.getMessageHeader() + " to " + b.getQueue().getName());
             }
+            queues.add(b.getQueue());
         }
 
         return new ArrayList<>(queues);
@@ -144,7 +140,9 @@ public class HeadersExchange extends AbstractExchange<HeadersExchange>
                           " with binding key '" +bindingKey + "' and args: " + binding.getArguments());
         }
 
-        _bindingHeaderMatchers.add(new HeadersBinding(binding));
+        HeadersBinding headersBinding = new HeadersBinding(binding);
+        _bindingHeaderMatchers.put(binding, headersBinding);
+        _bindingIndex.add(headersBinding);
         bindings.add(binding);
 
     }
@@ -153,15 +151,11 @@ public class HeadersExchange extends AbstractExchange<HeadersExchange>
     protected void onBindingUpdated(final Binding<?> binding, final Map<String, Object> oldArguments)
     {
         HeadersBinding headersBinding = new HeadersBinding(binding);
-        ListIterator<HeadersBinding> iter = _bindingHeaderMatchers.listIterator();
-        while(iter.hasNext())
+        HeadersBinding oldHeadersBinding = _bindingHeaderMatchers.replace(binding, headersBinding);
+        if(oldHeadersBinding != null)
         {
-            if(iter.next().equals(headersBinding))
-            {
-                iter.set(headersBinding);
-            }
+            _bindingIndex.replace(oldHeadersBinding, headersBinding);
         }
-
     }
 
     protected void onUnbind(final Binding<?> binding)
@@ -174,8 +168,12 @@ public class HeadersExchange extends AbstractExchange<HeadersExchange>
             bindings.remove(binding);
         }
 
-        boolean removedBinding = _bindingHeaderMatchers.remove(new HeadersBinding(binding));
-        _logger.debug("Removing Binding: {}", removedBinding);
+        HeadersBinding headersBinding = _bindingHeaderMatchers.remove(binding);
+        if(headersBinding != null)
+        {
+            _bindingIndex.remove(headersBinding);
+        }
+        _logger.debug("Removing Binding: {}", headersBinding != null);
 
     }
 
@@ -0,0 +1,179 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.exchange.topic;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.qpid.server.filter.Filterable;
+import org.apache.qpid.server.model.Binding;
+import org.apache.qpid.server.model.Queue;
+
+/**
+ * Remembers the results of matching routing keys against the topic bindings of an exchange, so that
+ * messages published repeatedly to the same routing keys need not be run through the {@link TopicParser}.
+ * <p>
+ * Each remembered route is tagged with the generation current when it was computed; any change to the
+ * bindings must call {@link #invalidate()} after it has been applied, which makes every route computed
+ * before it stale.  The cache holds at most a fixed number of routing keys, evicting an arbitrary one
+ * when full.
+ */
+public final class TopicRoutingKeyCache
+{
+    private final TopicParser _parser;
+    private final int _maximumSize;
+    private final ConcurrentMap<String, Route> _routes = new ConcurrentHashMap<>();
+    private final AtomicLong _generation = new AtomicLong();
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+
+    public TopicRoutingKeyCache(final TopicParser parser, final int maximumSize)
+    {
+        _parser = parser;
+        _maximumSize = maximumSize;
+    }
+
+    public Route getRoute(final String routingKey)
+    {
+        if (_maximumSize <= 0)
+        {
+            return new Route(0L, _parser.parse(routingKey));
+        }
+
+        Route route = _routes.get(routingKey);
+        if (route != null && route._generation == _generation.get())
+        {
+            _hits.incrementAndGet();
+            return route;
+        }
+
+        _misses.incrementAndGet();
+        final long generation = _generation.get();
+        route = new Route(generation, _parser.parse(routingKey));
+        if (_routes.size() >= _maximumSize && !_routes.containsKey(routingKey))
+        {
+            evictOne();
+        }
+        _routes.put(routingKey, route);
+        return route;
+    }
+
+    public void invalidate()
+    {
+        _generation.incrementAndGet();
+    }
+
+    public long getHits()
+    {
+        return _hits.get();
+    }
+
+    public long getMisses()
+    {
+        return _misses.get();
+    }
+
+    int size()
+    {
+        return _routes.size();
+    }
+
+    private void evictOne()
+    {
+        Iterator<String> iterator = _routes.keySet().iterator();
+        if (iterator.hasNext())
+        {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * The bindings matched by a routing key.  Where none of the matched bindings carries a selector the
+     * queues are merged once, when the route is computed, rather than for every message.
+     */
+    public static final class Route
+    {
+        private final long _generation;
+        private final Collection<TopicMatcherResult> _results;
+        private final List<Binding<?>> _bindings;
+        private final Collection<Queue<?>> _unfilteredQueues;
+
+        private Route(final long generation, final Collection<TopicMatcherResult> results)
+        {
+            _generation = generation;
+            _results = results;
+            if (results.size() > 1)
+            {
+                _bindings = new ArrayList<>();
+                boolean filtered = false;
+                Set<Queue<?>> queues = new HashSet<>();
+                for (TopicMatcherResult result : results)
+                {
+                    TopicExchangeResult res = (TopicExchangeResult) result;
+                    _bindings.addAll(res.getBindings());
+                    filtered |= res.hasFilteredQueues();
+                    queues.addAll(res.getUnfilteredQueues());
+                }
+                _unfilteredQueues = filtered ? null : new ArrayList<>(queues);
+            }
+            else
+            {
+                _bindings = Collections.emptyList();
+                _unfilteredQueues = null;
+            }
+        }
+
+        public Collection<Queue<?>> processMessage(final Filterable message)
+        {
+            switch (_results.size())
+            {
+                case 0:
+                    return Collections.emptySet();
+                case 1:
+                    return ((TopicExchangeResult) _results.iterator().next()).processMessage(message, null);
+                default:
+                    for (Binding<?> b : _bindings)
+                    {
+                        b.incrementMatches();
+                    }
+                    if (_unfilteredQueues != null)
+                    {
+                        return _unfilteredQueues;
+                    }
+                    Collection<Queue<?>> queues = new HashSet<>();
+                    for (TopicMatcherResult result : _results)
+                    {
+                        queues = ((TopicExchangeResult) result).processMessage(message, queues);
+                    }
+                    return queues;
+            }
+        }
+    }
+}
@@ -20,6 +20,11 @@
  */
 package org.apache.qpid.server.filter;
 
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,6 +32,7 @@ import org.apache.qpid.common.AMQPFilterTypes;
 import org.apache.qpid.filter.BooleanExpression;
 import org.apache.qpid.filter.FilterableMessage;
 import org.apache.qpid.filter.JMSMessagePropertyExpression;
+import org.apache.qpid.filter.SelectorCompiler;
 import org.apache.qpid.filter.SelectorParsingException;
 import org.apache.qpid.filter.selector.ParseException;
 import org.apache.qpid.filter.selector.SelectorParser;
@@ -39,15 +45,33 @@ public class JMSSelectorFilter implements MessageFilter
 {
     private final static Logger _logger = LoggerFactory.getLogger(JMSSelectorFilter.class);
 
+    /** Compiled selectors are stateless, so consumers using the same selector string share one instance */
+    private static final Map<String, WeakReference<BooleanExpression<FilterableMessage>>> _compiledSelectors =
+            Collections.synchronizedMap(new WeakHashMap<String, WeakReference<BooleanExpression<FilterableMessage>>>());
+
     private String _selector;
-    private BooleanExpression _matcher;
+    private BooleanExpression<FilterableMessage> _matcher;
 
     public JMSSelectorFilter(String selector) throws ParseException, TokenMgrError, SelectorParsingException
     {
         _selector = selector;
-        SelectorParser<FilterableMessage> selectorParser = new SelectorParser<>();
-        selectorParser.setPropertyExpressionFactory(JMSMessagePropertyExpression.FACTORY);
-        _matcher = selectorParser.parse(selector);
+        _matcher = getCompiledSelector(selector);
+    }
+
+    private static BooleanExpression<FilterableMessage> getCompiledSelector(final String selector)
+            throws ParseException, TokenMgrError, SelectorParsingException
+    {
+        WeakReference<BooleanExpression<FilterableMessage>> matcherRef = _compiledSelectors.get(selector);
+        BooleanExpression<FilterableMessage> matcher;
+
+        if (matcherRef == null || (matcher = matcherRef.get()) == null)
+        {
+            SelectorParser<FilterableMessage> selectorParser = new SelectorParser<>();
+            selectorParser.setPropertyExpressionFactory(JMSMessagePropertyExpression.FACTORY);
+            matcher = SelectorCompiler.compile(selectorParser.parse(selector));
+            _compiledSelectors.put(selector, new WeakReference<>(matcher));
+        }
+        return matcher;
     }
 
     @Override
@@ -25,10 +25,15 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import org.apache.qpid.bytebuffer.QpidByteBuffer;
+import org.apache.qpid.server.model.NamedAddressSpace;
+import org.apache.qpid.server.plugin.MessageConverter;
+import org.apache.qpid.server.protocol.MessageConverterRegistry;
 import org.apache.qpid.server.store.StorableMessageMetaData;
 import org.apache.qpid.server.store.StoredMessage;
 import org.apache.qpid.server.store.TransactionLogResource;
@@ -43,11 +48,14 @@ public abstract class AbstractServerMessageImpl<X extends AbstractServerMessageI
     private static final AtomicReferenceFieldUpdater<AbstractServerMessageImpl, Collection> _resourcesUpdater =
             AtomicReferenceFieldUpdater.newUpdater(AbstractServerMessageImpl.class, Collection.class,"_resources");
 
+    private static final AtomicReferenceFieldUpdater<AbstractServerMessageImpl, ConcurrentMap> _convertedMessagesUpdater =
+            AtomicReferenceFieldUpdater.newUpdater(AbstractServerMessageImpl.class, ConcurrentMap.class, "_convertedMessages");
 
     private volatile int _referenceCount = 0;
     private final StoredMessage<T> _handle;
     private final Object _connectionReference;
     private volatile Collection<UUID> _resources;
+    private volatile ConcurrentMap<ConversionKey, ServerMessage<?>> _convertedMessages;
 
 
     public AbstractServerMessageImpl(StoredMessage<T> handle, Object connectionReference)
@@ -108,6 +116,7 @@ public abstract class AbstractServerMessageImpl<X extends AbstractServerMessageI
                     {
                         _handle.remove();
                     }
+                    releaseConvertedMessages();
                 }
             }
             else
@@ -185,6 +194,89 @@ public abstract class AbstractServerMessageImpl<X extends AbstractServerMessageI
         }
     }
 
+    /**
+     * Returns this message converted to the given class for the given address space.  Conversions are performed at
+     * most once per output class and address space (unless the message content is not held in memory, in which case
+     * the conversion is not retained), and the converted messages are shared by all callers until this message is
+     * deleted or its content is flowed to disk.  Callers must not modify the converted message.
+     */
+    @Override
+    final public <N extends ServerMessage> N getConvertedMessage(final Class<N> outputClass,
+                                                                 final NamedAddressSpace addressSpace)
+    {
+        if (outputClass.isInstance(this))
+        {
+            return outputClass.cast(this);
+        }
+
+        final ConversionKey key = new ConversionKey(outputClass, addressSpace);
+        ConcurrentMap<ConversionKey, ServerMessage<?>> convertedMessages = _convertedMessages;
+        ServerMessage<?> converted = convertedMessages == null ? null : convertedMessages.get(key);
+        if (converted == null)
+        {
+            final MessageConverter<X, N> converter =
+                    MessageConverterRegistry.getConverter((Class<X>) getClass(), outputClass);
+            converted = converter.convert((X) this, addressSpace);
+
+            if (_refCountUpdater.get(this) >= 0 && isContentInMemory())
+            {
+                if (convertedMessages == null)
+                {
+                    _convertedMessagesUpdater.compareAndSet(this,
+                                                            null,
+                                                            new ConcurrentHashMap<ConversionKey, ServerMessage<?>>(2));
+                    convertedMessages = _convertedMessages;
+                }
+
+                if (convertedMessages != null)
+                {
+                    final ServerMessage<?> existing = convertedMessages.putIfAbsent(key, converted);
+                    if (existing != null)
+                    {
+                        converted.getStoredMessage().remove();
+                        converted = existing;
+                    }
+                    else if (_refCountUpdater.get(this) < 0 || !isContentInMemory())
+                    {
+                        // deleted or flowed to disk concurrently - leave the conversion to the caller alone
+                        convertedMessages.remove(key, converted);
+                    }
+                }
+            }
+        }
+        return outputClass.cast(converted);
+    }
+
+    /**
+     * Flows the content of this message to disk, and stops retaining any converted copies of it so that they do not
+     * keep the content in memory.  Converted messages already handed out remain usable by their callers.
+     */
+    @Override
+    public boolean flowToDisk()
+    {
+        final boolean flowed = _handle != null && _handle.flowToDisk();
+        _convertedMessagesUpdater.set(this, null);
+        return flowed;
+    }
+
+    private boolean isContentInMemory()
+    {
+        return _handle == null || _handle.isInMemory();
+    }
+
+    private void releaseConvertedMessages()
+    {
+        final ConcurrentMap<ConversionKey, ServerMessage<?>> convertedMessages =
+                _convertedMessagesUpdater.getAndSet(this, null);
+        if (convertedMessages != null)
+        {
+            for (ServerMessage<?> converted : convertedMessages.values())
+            {
+                converted.getStoredMessage().remove();
+            }
+        }
+    }
+
     final public Object getConnectionReference()
     {
         return _connectionReference;
@@ -193,6 +285,40 @@ public abstract class AbstractServerMessageImpl<X extends AbstractServerMessageI
         return "Message[" + debugIdentity() + "]";
     }
 
+    private static final class ConversionKey
+    {
+        private final Class<? extends ServerMessage> _outputClass;
+        private final NamedAddressSpace _addressSpace;
+
+        private ConversionKey(final Class<? extends ServerMessage> outputClass, final NamedAddressSpace addressSpace)
+        {
+            _outputClass = outputClass;
+            _addressSpace = addressSpace;
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass())
+            {
+                return false;
+            }
+
+            final ConversionKey that = (ConversionKey) o;
+            return _outputClass.equals(that._outputClass) && _addressSpace == that._addressSpace;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * _outputClass.hashCode() + System.identityHashCode(_addressSpace);
+        }
+    }
+
     private static class Reference<X extends AbstractServerMessageImpl<X,T>, T extends StorableMessageMetaData>
             implements MessageReference<X>
     {
@@ -23,6 +23,7 @@ package org.apache.qpid.server.message;
 import java.nio.ByteBuffer;
 import java.util.Collection;
 
+import org.apache.qpid.server.model.NamedAddressSpace;
 import org.apache.qpid.server.store.StorableMessageMetaData;
 import org.apache.qpid.server.store.StoredMessage;
 import org.apache.qpid.server.store.TransactionLogResource;
@@ -52,4 +53,8 @@ public interface ServerMessage<T extends StorableMessageMetaData> extends Enqueu
     long getArrivalTime();
 
     Object getConnectionReference();
+
+    <N extends ServerMessage> N getConvertedMessage(Class<N> outputClass, NamedAddressSpace addressSpace);
+
+    boolean flowToDisk();
 }
@@ -223,6 +223,36 @@ public interface Broker<X extends Broker<X>> extends ConfiguredObject<X>, EventL
                       description = "Number of objects pending finalization")
     int getNumberOfObjectsPendingFinalization();
 
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE,
+                      units = StatisticUnit.COUNT,
+                      label = "Network Buffer Pool Hits",
+                      description = "Number of network buffer allocations satisfied from the direct buffer pool")
+    long getNetworkBufferPoolHits();
+
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE,
+                      units = StatisticUnit.COUNT,
+                      label = "Network Buffer Pool Misses",
+                      description = "Number of network buffer allocations which found the direct buffer pool empty")
+    long getNetworkBufferPoolMisses();
+
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE,
+                      units = StatisticUnit.COUNT,
+                      label = "Network Buffer Pool Overflows",
+                      description = "Number of released network buffers discarded because the direct buffer pool was full")
+    long getNetworkBufferPoolOverflows();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.BYTES,
+                      label = "Small Buffer Slab Capacity",
+                      description = "Direct memory held by the slabs from which small buffers are allocated")
+    long getSmallBufferSlabCapacity();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.BYTES,
+                      label = "Small Buffer Slab Used",
+                      description = "Direct memory used by small buffers allocated from slabs. The remainder of the slab capacity is wasted")
+    long getSmallBufferSlabUsed();
+
     @ManagedOperation(nonModifying = true, description = "Initiates garbage collection")
     void performGC();
 
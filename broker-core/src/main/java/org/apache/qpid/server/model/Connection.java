@@ -52,10 +52,21 @@ public interface Connection<X extends Connection<X>> extends ConfiguredObject<X>
     @ManagedContextDefault(name = MAX_UNCOMMITTED_IN_MEMORY_SIZE)
     long DEFAULT_MAX_UNCOMMITTED_IN_MEMORY_SIZE = 10l * 1024l * 1024l;
 
+    String PUBLISH_AUTHORISATION_CACHE_SIZE = "connection.publishAuthorisationCacheSize";
+    @ManagedContextDefault(name = PUBLISH_AUTHORISATION_CACHE_SIZE,
+            description = "The maximum number of publish authorisations remembered by each session of a connection.")
+    int DEFAULT_PUBLISH_AUTHORISATION_CACHE_SIZE = 256;
+
     String MAX_MESSAGE_SIZE = "qpid.max_message_size";
     @ManagedContextDefault(name = MAX_MESSAGE_SIZE)
     int DEFAULT_MAX_MESSAGE_SIZE = 0x1f40000; // 500Mb
 
+    String DISPOSITION_COALESCING_LATENCY = "connection.dispositionCoalescingLatency";
+    @ManagedContextDefault(name = DISPOSITION_COALESCING_LATENCY,
+            description = "The maximum time in milliseconds for which an AMQP 1.0 session may hold back the"
+                          + " dispositions it sends in order to combine them into ranges. Zero disables coalescing.")
+    long DEFAULT_DISPOSITION_COALESCING_LATENCY = 5L;
+
     @DerivedAttribute
     String getClientId();
 
@@ -90,6 +90,19 @@ public interface Queue<X extends Queue<X>> extends ConfiguredObject<X>,
     @ManagedContextDefault( name = QUEUE_ESTIMATED_MESSAGE_MEMORY_OVERHEAD)
     long DEFAULT_ESTIMATED_MESSAGE_MEMORY_OVERHEAD = 1024l;
 
+    String QUEUE_MESSAGE_INDEX_ENABLED = "queue.messageIndexEnabled";
+    @ManagedContextDefault( name = QUEUE_MESSAGE_INDEX_ENABLED,
+                            description = "If true, queue entries are indexed by message id so that management "
+                                          + "operations addressing messages by id do not need to scan the queue")
+    boolean DEFAULT_MESSAGE_INDEX_ENABLED = false;
+
+    String QUEUE_READ_AHEAD_MESSAGE_COUNT = "queue.readAheadMessageCount";
+    @ManagedContextDefault( name = QUEUE_READ_AHEAD_MESSAGE_COUNT,
+                            description = "While the queue is flowing messages to disk, the number of messages "
+                                          + "ahead of each consumer whose content is reloaded into memory in the "
+                                          + "background before delivery. Zero disables read ahead.")
+    int DEFAULT_READ_AHEAD_MESSAGE_COUNT = 16;
+
     String MAX_ASYNCHRONOUS_DELIVERIES = "queue.maxAsynchronousDeliveries";
     @ManagedContextDefault(name = MAX_ASYNCHRONOUS_DELIVERIES )
     int DEFAULT_MAX_ASYNCHRONOUS_DELIVERIES = 80;
@@ -216,6 +229,8 @@ public interface Queue<X extends Queue<X>> extends ConfiguredObject<X>,
 
     void visit(QueueEntryVisitor visitor);
 
+    void visit(QueueEntryVisitor visitor, Collection<Long> messageIds);
+
     ListenableFuture<Integer> deleteAndReturnCountAsync();
 
     int deleteAndReturnCount();
@@ -271,6 +286,15 @@ public interface Queue<X extends Queue<X>> extends ConfiguredObject<X>,
     @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.ABSOLUTE_TIME, label = "Oldest Message")
     long getOldestMessageAge();
 
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.MESSAGES, label = "Read Ahead Hits",
+                      description = "Deliveries of messages whose content had been reloaded from disk by read ahead")
+    long getReadAheadHits();
+
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.MESSAGES, label = "Read Ahead Misses",
+                      description = "Deliveries of messages whose content had to be reloaded from disk by the "
+                                    + "delivering thread")
+    long getReadAheadMisses();
+
     @ManagedOperation
     List<Long> moveMessages(@Param(name = "destination", description = "The queue to which the messages should be moved") Queue<?> destination,
                             @Param(name = "messageIds", description = "If provided, only messages in the queue whose (internal) message-id is supplied will be considered for moving") List<Long> messageIds,
@@ -353,6 +377,13 @@ public interface Queue<X extends Queue<X>> extends ConfiguredObject<X>,
      */
     void checkMessageStatus();
 
+    /**
+     * @return true if {@link #checkMessageStatus()} has work to do at every housekeeping period, i.e. the queue holds
+     * messages which may expire or are held, is (or has just ceased to be) over its target size, or holds messages
+     * and has queue level alerts enabled
+     */
+    boolean isMessageStatusCheckRequired();
+
     Set<NotificationCheck> getNotificationChecks();
 
     void deliverAsync();
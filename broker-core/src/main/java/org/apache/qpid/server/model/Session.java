@@ -56,6 +56,14 @@ public interface Session<X extends Session<X>> extends ConfiguredObject<X>
     @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.MESSAGES, label = "Prefetched")
     long getUnacknowledgedMessages();
 
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.MESSAGES, label = "Publish Authorisation Cache Hits",
+                      description = "The number of published messages authorised from the session's publish authorisation cache.")
+    long getPublishAuthorisationCacheHits();
+
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.MESSAGES, label = "Publish Authorisation Cache Misses",
+                      description = "The number of published messages for which the access control rules were consulted.")
+    long getPublishAuthorisationCacheMisses();
+
     /**
      * Return the time the current transaction started.
      *
@@ -120,6 +120,35 @@ public interface VirtualHost<X extends VirtualHost<X>> extends ConfiguredObject<
     @ManagedAttribute( defaultValue = "${virtualhost.housekeepingThreadCount}")
     int getHousekeepingThreadCount();
 
+    String HOUSEKEEPING_QUIET_QUEUE_PASS_INTERVAL = "virtualhost.housekeepingQuietQueuePassInterval";
+    @SuppressWarnings("unused")
+    @ManagedContextDefault( name = HOUSEKEEPING_QUIET_QUEUE_PASS_INTERVAL,
+                            description = "The number of housekeeping periods between the checks of a queue which "
+                                          + "has no messages that may expire, is within its target size and has no "
+                                          + "outstanding queue level alerts")
+    int DEFAULT_HOUSEKEEPING_QUIET_QUEUE_PASS_INTERVAL = 8;
+
+    String READ_AHEAD_THREAD_COUNT = "virtualhost.readAheadThreadCount";
+    @SuppressWarnings("unused")
+    @ManagedContextDefault( name = READ_AHEAD_THREAD_COUNT,
+                            description = "The number of threads used to reload the content of messages which have "
+                                          + "been flowed to disk ahead of their delivery to consumers")
+    int DEFAULT_READ_AHEAD_THREAD_COUNT = 2;
+
+    String QUEUE_RECOVERY_THREAD_COUNT = "virtualhost.queueRecoveryThreadCount";
+    @SuppressWarnings("unused")
+    @ManagedContextDefault( name = QUEUE_RECOVERY_THREAD_COUNT,
+                            description = "The maximum number of threads used to recover queues in parallel from a "
+                                          + "persistent message store when the virtualhost is activated")
+    int DEFAULT_QUEUE_RECOVERY_THREAD_COUNT = Math.max(Runtime.getRuntime().availableProcessors(), 2);
+
+    String ORPHANED_MESSAGE_REMOVAL_BATCH_SIZE = "virtualhost.orphanedMessageRemovalBatchSize";
+    @SuppressWarnings("unused")
+    @ManagedContextDefault( name = ORPHANED_MESSAGE_REMOVAL_BATCH_SIZE,
+                            description = "The number of messages found in the store but on no queue at the end of "
+                                          + "recovery which are removed from the store in a single transaction")
+    int DEFAULT_ORPHANED_MESSAGE_REMOVAL_BATCH_SIZE = 1000;
+
     @ManagedAttribute( defaultValue = "[]",
             description = "a list of policies used for auto-creating nodes (such as Queues or Exchanges) when an "
                           + "address is published to or subscribed from and no node matching the address currently "
@@ -152,6 +181,8 @@ public interface VirtualHost<X extends VirtualHost<X>> extends ConfiguredObject<
 
     void executeTask(String name, Runnable task, AccessControlContext context);
 
+    void executeReadAheadTask(String name, Runnable task, AccessControlContext context);
+
     @ManagedAttribute( defaultValue = "${virtualhost.enabledConnectionValidators}")
     List<String> getEnabledConnectionValidators();
 
@@ -185,6 +216,29 @@ public interface VirtualHost<X extends VirtualHost<X>> extends ConfiguredObject<
     @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.MESSAGES, label = "Outbound")
     long getMessagesOut();
 
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION, label = "Housekeeping Pass Duration",
+                      description = "The time in milliseconds taken by the most recent housekeeping pass over the queues.")
+    long getHousekeepingPassDuration();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION, label = "Housekeeping Lag",
+                      description = "The longest time in milliseconds that a queue check waited for a housekeeping thread "
+                                    + "during the most recent housekeeping pass.")
+    long getHousekeepingLag();
+
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.COUNT, label = "Skipped Queue Housekeeping Checks",
+                      description = "The number of queue checks skipped because the queue's check from an earlier "
+                                    + "housekeeping pass was still in progress.")
+    long getHousekeepingSkippedChecks();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.COUNT, label = "Recovered Queues",
+                      description = "The number of queues whose messages have been recovered from the message store "
+                                    + "by asynchronous recovery.")
+    long getRecoveredQueueCount();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.MESSAGES, label = "Recovery Rate",
+                      description = "The number of message instances recovered per second by asynchronous recovery.")
+    long getRecoveryRate();
+
     Broker<?> getBroker();
 
     @Override
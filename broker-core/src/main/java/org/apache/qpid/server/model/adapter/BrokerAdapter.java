@@ -1231,6 +1231,36 @@ public class BrokerAdapter extends AbstractConfiguredObject<BrokerAdapter> imple
         return ManagementFactory.getMemoryMXBean().getObjectPendingFinalizationCount();
     }
 
+    @Override
+    public long getNetworkBufferPoolHits()
+    {
+        return QpidByteBuffer.getPoolHitCount();
+    }
+
+    @Override
+    public long getNetworkBufferPoolMisses()
+    {
+        return QpidByteBuffer.getPoolMissCount();
+    }
+
+    @Override
+    public long getNetworkBufferPoolOverflows()
+    {
+        return QpidByteBuffer.getPoolOverflowCount();
+    }
+
+    @Override
+    public long getSmallBufferSlabCapacity()
+    {
+        return QpidByteBuffer.getSlabAllocatedBytes();
+    }
+
+    @Override
+    public long getSmallBufferSlabUsed()
+    {
+        return QpidByteBuffer.getSlabUsedBytes();
+    }
+
     @Override
     public List<String> getJvmArguments()
     {
@@ -163,6 +163,18 @@ public final class SessionAdapter extends AbstractConfiguredObject<SessionAdapte
         return _session.getUnacknowledgedMessageCount();
     }
 
+    @Override
+    public long getPublishAuthorisationCacheHits()
+    {
+        return _session.getPublishAuthorisationCacheHits();
+    }
+
+    @Override
+    public long getPublishAuthorisationCacheMisses()
+    {
+        return _session.getPublishAuthorisationCacheMisses();
+    }
+
     @Override
     public Date getTransactionStartTime()
     {
@@ -86,6 +86,9 @@ public interface AMQSessionModel<T extends AMQSessionModel<T>> extends Comparabl
     Long getTxnCommits();
     Long getTxnRejects();
 
+    long getPublishAuthorisationCacheHits();
+    long getPublishAuthorisationCacheMisses();
+
     int getChannelId();
 
     int getConsumerCount();
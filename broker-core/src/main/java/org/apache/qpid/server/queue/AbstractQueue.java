@@ -35,12 +35,14 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -90,7 +92,6 @@ import org.apache.qpid.server.security.auth.AuthenticatedPrincipal;
 import org.apache.qpid.server.store.MessageDurability;
 import org.apache.qpid.server.store.MessageEnqueueRecord;
 import org.apache.qpid.server.store.StorableMessageMetaData;
-import org.apache.qpid.server.store.StoredMessage;
 import org.apache.qpid.server.transport.AMQPConnection;
 import org.apache.qpid.server.txn.AutoCommitTransaction;
 import org.apache.qpid.server.txn.LocalTransaction;
@@ -127,11 +128,13 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     };
 
     private static final long INITIAL_TARGET_QUEUE_SIZE = 102400l;
+    private static final long EXPIRY_WHEEL_TICK_MILLIS = 1000l;
 
     private final VirtualHost<?> _virtualHost;
     private final DeletedChildListener _deletedChildListener = new DeletedChildListener();
 
     private final AccessControlContext _immediateDeliveryContext;
+    private final AccessControlContext _readAheadContext;
 
     @ManagedAttributeField( beforeSet = "preSetAlternateExchange", afterSet = "postSetAlternateExchange")
     private Exchange _alternateExchange;
@@ -231,6 +234,21 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     private final AtomicBoolean _overfull = new AtomicBoolean(false);
     private final FlowToDiskChecker _flowToDiskChecker = new FlowToDiskChecker();
     private final long _estimatedAverageMessageHeaderSize = getContextValue(Long.class, QUEUE_ESTIMATED_MESSAGE_MEMORY_OVERHEAD);
+    private final QueueEntryExpiryWheel _expiryWheel = new QueueEntryExpiryWheel(EXPIRY_WHEEL_TICK_MILLIS);
+    private final QueueEntryIndex _messageIndex =
+            getContextValue(Boolean.class, QUEUE_MESSAGE_INDEX_ENABLED) ? new QueueEntryIndex() : null;
+    private final QueueReadAhead _readAhead =
+            new QueueReadAhead(this, getContextValue(Integer.class, QUEUE_READ_AHEAD_MESSAGE_COUNT), new Executor()
+            {
+                @Override
+                public void execute(final Runnable command)
+                {
+                    if (_virtualHost.getState() != State.UNAVAILABLE)
+                    {
+                        _virtualHost.executeReadAheadTask("Read Ahead[" + getName() + "]", command, _readAheadContext);
+                    }
+                }
+            });
     private final CopyOnWriteArrayList<Binding<?>> _bindings = new CopyOnWriteArrayList<>();
     private Map<String, Object> _arguments;
 
@@ -287,6 +305,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
         _virtualHost = virtualHost;
         _immediateDeliveryContext = getSystemTaskControllerContext("Immediate Delivery", virtualHost.getPrincipal());
+        _readAheadContext = getSystemTaskControllerContext("Read Ahead", virtualHost.getPrincipal());
 
         _queueRunner = new QueueRunner(this, getSystemTaskControllerContext("Queue Delivery",
                                                                             virtualHost.getPrincipal()));
@@ -1121,7 +1140,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         }
 
         long estimatedQueueSize = _atomicQueueSize.get() + _atomicQueueCount.get() * _estimatedAverageMessageHeaderSize;
-        _flowToDiskChecker.flowToDiskAndReportIfNecessary(message.getStoredMessage(), estimatedQueueSize,
+        _flowToDiskChecker.flowToDiskAndReportIfNecessary(message, estimatedQueueSize,
                                                           _targetQueueSize.get());
     }
 
@@ -1172,7 +1191,12 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     {
         final QueueConsumer<?> exclusiveSub = _exclusiveSubscriber;
         final QueueEntry entry = getEntries().add(message, enqueueRecord);
+        if (_messageIndex != null)
+        {
+            _messageIndex.add(entry);
+        }
         updateExpiration(entry);
+        _expiryWheel.add(entry);
 
         try
         {
@@ -1433,7 +1457,29 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
         _deliveredMessages.incrementAndGet();
 
-        sub.send(entry, batch);
+        if (_readAhead.isEnabled())
+        {
+            _readAhead.entryDelivered(entry);
+            sub.send(entry, batch);
+            readAheadIfNecessary(sub, entry);
+        }
+        else
+        {
+            sub.send(entry, batch);
+        }
+    }
+
+    private void readAheadIfNecessary(final QueueConsumer<?> sub, final QueueEntry entry)
+    {
+        final long targetQueueSize = _targetQueueSize.get();
+        final long estimatedQueueSize =
+                _atomicQueueSize.get() + _atomicQueueCount.get() * _estimatedAverageMessageHeaderSize;
+        final QueueContext context = sub.getQueueContext();
+        // content is only flowed to disk while the queue exceeds its target size
+        if (estimatedQueueSize > targetQueueSize && context != null)
+        {
+            _readAhead.consumerAdvanced(context, entry, targetQueueSize / Math.max(1, _consumerList.size()));
+        }
     }
 
 
@@ -1492,6 +1538,12 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     @Override
     public void dequeue(QueueEntry entry)
     {
+        if (_messageIndex != null)
+        {
+            _messageIndex.remove(entry);
+        }
+        _expiryWheel.remove(entry);
+        _readAhead.entryRemoved(entry);
         decrementQueueCount();
         decrementQueueSize(entry);
         if (entry.acquiredByConsumer())
@@ -1739,6 +1791,18 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
     public List<QueueEntry> getMessagesOnTheQueue(final long fromMessageId, final long toMessageId)
     {
+        if (_messageIndex != null)
+        {
+            List<QueueEntry> entryList = new ArrayList<>();
+            for (QueueEntry entry : _messageIndex.getRange(fromMessageId, toMessageId))
+            {
+                if (!entry.isDeleted())
+                {
+                    entryList.add(entry);
+                }
+            }
+            return entryList;
+        }
         return getMessagesOnTheQueue(new QueueEntryFilter()
         {
 
@@ -1757,6 +1821,11 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
     public QueueEntry getMessageOnTheQueue(final long messageId)
     {
+        if (_messageIndex != null)
+        {
+            QueueEntry entry = _messageIndex.get(messageId);
+            return entry == null || entry.isDeleted() ? null : entry;
+        }
         List<QueueEntry> entries = getMessagesOnTheQueue(new QueueEntryFilter()
         {
             private boolean _complete;
@@ -1830,6 +1899,48 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         }
     }
 
+    @Override
+    public void visit(final QueueEntryVisitor visitor, final Collection<Long> messageIds)
+    {
+        if (_messageIndex == null)
+        {
+            final Set<Long> remainingIds = new HashSet<>(messageIds);
+            visit(new QueueEntryVisitor()
+            {
+                @Override
+                public boolean visit(final QueueEntry entry)
+                {
+                    final ServerMessage message = entry.getMessage();
+                    return message != null
+                           && remainingIds.contains(message.getMessageNumber())
+                           && visitor.visit(entry);
+                }
+            });
+        }
+        else
+        {
+            for (Long messageId : new TreeSet<>(messageIds))
+            {
+                QueueEntry node = _messageIndex.get(messageId);
+                MessageReference reference = node == null ? null : node.newMessageReference();
+                if (reference != null)
+                {
+                    try
+                    {
+                        if (!node.isDeleted() && visitor.visit(node))
+                        {
+                            break;
+                        }
+                    }
+                    finally
+                    {
+                        reference.release();
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Returns a list of QueueEntries from a given range of queue positions, eg messages 5 to 10 on the queue.
      *
@@ -2475,58 +2586,53 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
     public void checkMessageStatus()
     {
-        QueueEntryIterator queueListIterator = getEntries().iterator();
-
         final long estimatedQueueSize = _atomicQueueSize.get() + _atomicQueueCount.get() * _estimatedAverageMessageHeaderSize;
-        _flowToDiskChecker.reportFlowToDiskStatusIfNecessary(estimatedQueueSize, _targetQueueSize.get());
-
-        final Set<NotificationCheck> perMessageChecks = new HashSet<>();
-        final Set<NotificationCheck> queueLevelChecks = new HashSet<>();
+        final long targetQueueSize = _targetQueueSize.get();
+        _flowToDiskChecker.reportFlowToDiskStatusIfNecessary(estimatedQueueSize, targetQueueSize);
 
-        for(NotificationCheck check : getNotificationChecks())
-        {
-            if(check.isMessageSpecific())
-            {
-                perMessageChecks.add(check);
-            }
-            else
-            {
-                queueLevelChecks.add(check);
-            }
-        }
-        QueueNotificationListener listener = _notificationListener;
         final long currentTime = System.currentTimeMillis();
-        final long thresholdTime = currentTime - getAlertRepeatGap();
 
-        long cumulativeQueueSize = 0;
-        while (queueListIterator.advance())
+        _expiryWheel.expire(currentTime, new QueueEntryVisitor()
         {
-            final QueueEntry node = queueListIterator.getNode();
-            // Only process nodes that are not currently deleted and not dequeued
-            if (!node.isDeleted())
+            @Override
+            public boolean visit(final QueueEntry node)
             {
-                // If the node has expired then acquire it
-                if (node.expired())
+                boolean acquiredForDequeueing = node.acquireOrSteal(new Runnable()
                 {
-                    boolean acquiredForDequeueing = node.acquireOrSteal(new Runnable()
-                    {
-                        @Override
-                        public void run()
-                        {
-                            dequeueEntry(node);
-                        }
-                    });
-
-                    if(acquiredForDequeueing)
+                    @Override
+                    public void run()
                     {
-                        _logger.debug("Dequeuing expired node {}", node);
-                        // Then dequeue it.
                         dequeueEntry(node);
                     }
+                });
+
+                if(acquiredForDequeueing)
+                {
+                    _logger.debug("Dequeuing expired node {}", node);
+                    // Then dequeue it.
+                    dequeueEntry(node);
                 }
-                else
+                return false;
+            }
+        });
+
+        // Only walk the queue if there is work which depends on the position of entries within it: releasing
+        // held entries, or flowing to disk the entries beyond the target size
+        final boolean holdMethodsPresent = !_holdMethods.isEmpty();
+        if (holdMethodsPresent || estimatedQueueSize > targetQueueSize)
+        {
+            QueueEntryIterator queueListIterator = getEntries().iterator();
+            long cumulativeQueueSize = 0;
+            while (queueListIterator.advance())
+            {
+                final QueueEntry node = queueListIterator.getNode();
+                // Only process nodes that are not currently deleted and not dequeued
+                if (!node.isDeleted())
                 {
-                    node.checkHeld(currentTime);
+                    if (holdMethodsPresent)
+                    {
+                        node.checkHeld(currentTime);
+                    }
 
                     // There is a chance that the node could be deleted by
                     // the time the check actually occurs. So verify we
@@ -2536,25 +2642,50 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
                     if (msg != null)
                     {
                         cumulativeQueueSize += msg.getSize() + _estimatedAverageMessageHeaderSize;
-                        _flowToDiskChecker.flowToDiskIfNecessary(msg.getStoredMessage(), cumulativeQueueSize,
-                                                                 _targetQueueSize.get());
-
-                        for(NotificationCheck check : perMessageChecks)
-                        {
-                            checkForNotification(msg, listener, currentTime, thresholdTime, check);
-                        }
+                        _flowToDiskChecker.flowToDiskIfNecessary(msg, cumulativeQueueSize, targetQueueSize);
                     }
                 }
             }
         }
 
-        for(NotificationCheck check : queueLevelChecks)
+        // Message specific checks are made as each message arrives, so only the queue level checks need repeating
+        QueueNotificationListener listener = _notificationListener;
+        final long thresholdTime = currentTime - getAlertRepeatGap();
+        for(NotificationCheck check : getNotificationChecks())
         {
-            checkForNotification(null, listener, currentTime, thresholdTime, check);
+            if(!check.isMessageSpecific())
+            {
+                checkForNotification(null, listener, currentTime, thresholdTime, check);
+            }
         }
 
     }
 
+    @Override
+    public boolean isMessageStatusCheckRequired()
+    {
+        final long estimatedQueueSize = _atomicQueueSize.get() + _atomicQueueCount.get() * _estimatedAverageMessageHeaderSize;
+        if (!_expiryWheel.isEmpty()
+            || !_holdMethods.isEmpty()
+            || estimatedQueueSize > _targetQueueSize.get()
+            || _flowToDiskChecker._lastReportedFlowToDiskStatus.get())
+        {
+            return true;
+        }
+
+        if (_atomicQueueCount.get() != 0)
+        {
+            for (NotificationCheck check : getNotificationChecks())
+            {
+                if (!check.isMessageSpecific())
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     @Override
     public long getPotentialMemoryFootprint()
     {
@@ -2805,6 +2936,18 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         return _unackedMsgCount.get();
     }
 
+    @Override
+    public long getReadAheadHits()
+    {
+        return _readAhead.getHits();
+    }
+
+    @Override
+    public long getReadAheadMisses()
+    {
+        return _readAhead.getMisses();
+    }
+
     public long getUnacknowledgedBytes()
     {
         return _unackedMsgBytes.get();
@@ -3457,7 +3600,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     public Content getMessageContent(final long messageId)
     {
         final MessageContentFinder messageFinder = new MessageContentFinder(messageId);
-        visit(messageFinder);
+        visit(messageFinder, Collections.singleton(messageId));
         if(messageFinder.isFound())
         {
             return new MessageContent(messageFinder.getMessageReference());
@@ -3481,7 +3624,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     public MessageInfo getMessageInfoById(final long messageId)
     {
         final MessageFinder messageFinder = new MessageFinder(messageId);
-        visit(messageFinder);
+        visit(messageFinder, Collections.singleton(messageId));
         return messageFinder.getMessageInfo();
     }
 
@@ -3504,6 +3647,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
                 if (_messageNumber == message.getMessageNumber())
                 {
                     _messageInfo = new MessageInfoImpl(entry, true);
+                    return true;
                 }
             }
             return false;
@@ -3612,19 +3756,19 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     {
         final AtomicBoolean _lastReportedFlowToDiskStatus = new AtomicBoolean(false);
 
-        void flowToDiskIfNecessary(StoredMessage<?> storedMessage, long estimatedQueueSize, final long targetQueueSize)
+        void flowToDiskIfNecessary(ServerMessage<?> message, long estimatedQueueSize, final long targetQueueSize)
         {
-            if ((estimatedQueueSize > targetQueueSize) && storedMessage.isInMemory())
+            if ((estimatedQueueSize > targetQueueSize) && message.getStoredMessage().isInMemory())
             {
-                storedMessage.flowToDisk();
+                message.flowToDisk();
             }
         }
 
-        void flowToDiskAndReportIfNecessary(StoredMessage<?> storedMessage,
+        void flowToDiskAndReportIfNecessary(ServerMessage<?> message,
                                             final long estimatedQueueSize,
                                             final long targetQueueSize)
         {
-            flowToDiskIfNecessary(storedMessage, estimatedQueueSize, targetQueueSize);
+            flowToDiskIfNecessary(message, estimatedQueueSize, targetQueueSize);
             reportFlowToDiskStatusIfNecessary(estimatedQueueSize, targetQueueSize);
         }
 
@@ -21,12 +21,16 @@
 
 package org.apache.qpid.server.queue;
 
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 final class QueueContext
 {
     private volatile QueueEntry _lastSeenEntry;
     private volatile QueueEntry _releasedEntry;
+    private volatile QueueEntry _readAheadEntry;
+    private volatile QueueEntry _readAheadTriggerEntry;
+    private final AtomicBoolean _readAheadScheduled = new AtomicBoolean();
 
     static final AtomicReferenceFieldUpdater<QueueContext, QueueEntry>
             _lastSeenUpdater =
@@ -53,6 +57,34 @@ final class QueueContext
         return _releasedEntry;
     }
 
+    /**
+     * @return the furthest entry examined by read ahead on behalf of this consumer
+     */
+    QueueEntry getReadAheadEntry()
+    {
+        return _readAheadEntry;
+    }
+
+    /**
+     * @return the entry whose delivery (or the delivery of any later entry) should schedule further read ahead
+     */
+    QueueEntry getReadAheadTriggerEntry()
+    {
+        return _readAheadTriggerEntry;
+    }
+
+    boolean startReadAhead()
+    {
+        return _readAheadScheduled.compareAndSet(false, true);
+    }
+
+    void completeReadAhead(final QueueEntry readAheadEntry, final QueueEntry triggerEntry)
+    {
+        _readAheadEntry = readAheadEntry;
+        _readAheadTriggerEntry = triggerEntry;
+        _readAheadScheduled.set(false);
+    }
+
     @Override
     public String toString()
     {
@@ -0,0 +1,166 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Timing wheel holding the queue entries which have an expiration time, bucketed by tick of expiry.
+ *
+ * Housekeeping only visits the buckets whose tick has been reached, so the work done to find expired entries is
+ * proportional to the number of entries expiring rather than to the depth of the queue.  Entries are removed from
+ * their bucket when dequeued.  An entry which arrives already expired is placed in the current tick's bucket, and
+ * the tick of that bucket is remembered so that the entry can be found again when it is removed.
+ *
+ * Emptied buckets are kept for a few ticks before being discarded, so that an entry being added concurrently
+ * with housekeeping of its bucket is picked up on the next pass rather than being lost.  Should an entry ever miss
+ * its bucket it will still be discarded as expired when it reaches the head of the queue.
+ */
+final class QueueEntryExpiryWheel
+{
+    private static final long RETAINED_EMPTY_TICKS = 10L;
+
+    private final long _tickMillis;
+    private final ConcurrentNavigableMap<Long, Set<QueueEntry>> _buckets = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<QueueEntry, Long> _lateEntryTicks = new ConcurrentHashMap<>();
+
+    QueueEntryExpiryWheel(final long tickMillis)
+    {
+        _tickMillis = tickMillis;
+    }
+
+    void add(final QueueEntry entry)
+    {
+        final long expiration = entry.getExpiration();
+        if (expiration != 0L)
+        {
+            final long expirationTick = tick(expiration);
+            final long currentTick = tick(System.currentTimeMillis());
+            final long tick;
+            if (expirationTick < currentTick)
+            {
+                tick = currentTick;
+                _lateEntryTicks.put(entry, tick);
+            }
+            else
+            {
+                tick = expirationTick;
+            }
+            Set<QueueEntry> bucket = _buckets.get(tick);
+            if (bucket == null)
+            {
+                final Set<QueueEntry> newBucket = Collections.newSetFromMap(new ConcurrentHashMap<QueueEntry, Boolean>());
+                bucket = _buckets.putIfAbsent(tick, newBucket);
+                if (bucket == null)
+                {
+                    bucket = newBucket;
+                }
+            }
+            bucket.add(entry);
+        }
+    }
+
+    void remove(final QueueEntry entry)
+    {
+        final long expiration = entry.getExpiration();
+        if (expiration != 0L)
+        {
+            final Long lateEntryTick = _lateEntryTicks.isEmpty() ? null : _lateEntryTicks.remove(entry);
+            final Set<QueueEntry> bucket = _buckets.get(lateEntryTick == null ? tick(expiration) : lateEntryTick);
+            if (bucket != null)
+            {
+                bucket.remove(entry);
+            }
+        }
+    }
+
+    /**
+     * Passes each entry which has expired by the given time to the visitor, removing it from the wheel.
+     *
+     * @return the number of expired entries visited
+     */
+    int expire(final long currentTime, final QueueEntryVisitor visitor)
+    {
+        final long currentTick = tick(currentTime);
+        int expired = 0;
+        for (Map.Entry<Long, Set<QueueEntry>> tickBucket : _buckets.headMap(currentTick, true).entrySet())
+        {
+            final Set<QueueEntry> bucket = tickBucket.getValue();
+            final Iterator<QueueEntry> iterator = bucket.iterator();
+            while (iterator.hasNext())
+            {
+                final QueueEntry entry = iterator.next();
+                if (entry.isDeleted())
+                {
+                    iterator.remove();
+                    forgetLateEntry(entry);
+                }
+                else if (entry.expired())
+                {
+                    iterator.remove();
+                    forgetLateEntry(entry);
+                    expired++;
+                    visitor.visit(entry);
+                }
+            }
+
+            if (bucket.isEmpty() && tickBucket.getKey() < currentTick - RETAINED_EMPTY_TICKS)
+            {
+                _buckets.remove(tickBucket.getKey(), bucket);
+            }
+        }
+        return expired;
+    }
+
+    boolean isEmpty()
+    {
+        return _buckets.isEmpty();
+    }
+
+    int size()
+    {
+        int size = 0;
+        for (Set<QueueEntry> bucket : _buckets.values())
+        {
+            size += bucket.size();
+        }
+        return size;
+    }
+
+    private void forgetLateEntry(final QueueEntry entry)
+    {
+        if (!_lateEntryTicks.isEmpty())
+        {
+            _lateEntryTicks.remove(entry);
+        }
+    }
+
+    private long tick(final long time)
+    {
+        return time / _tickMillis;
+    }
+}
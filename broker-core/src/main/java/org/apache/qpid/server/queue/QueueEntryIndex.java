@@ -0,0 +1,77 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.apache.qpid.server.message.ServerMessage;
+
+/**
+ * Index of the entries of a queue by message number, allowing management operations that address messages by id
+ * to avoid a scan of the whole queue entry list.
+ *
+ * Entries are added on enqueue and removed on dequeue; callers must still check whether an entry returned from the
+ * index has been deleted in the meantime.
+ */
+final class QueueEntryIndex
+{
+    private final ConcurrentNavigableMap<Long, QueueEntry> _entries = new ConcurrentSkipListMap<>();
+
+    void add(final QueueEntry entry)
+    {
+        final ServerMessage message = entry.getMessage();
+        if (message != null)
+        {
+            _entries.put(message.getMessageNumber(), entry);
+        }
+    }
+
+    void remove(final QueueEntry entry)
+    {
+        final ServerMessage message = entry.getMessage();
+        if (message != null)
+        {
+            _entries.remove(message.getMessageNumber(), entry);
+        }
+    }
+
+    QueueEntry get(final long messageNumber)
+    {
+        return _entries.get(messageNumber);
+    }
+
+    Collection<QueueEntry> getRange(final long fromMessageNumber, final long toMessageNumber)
+    {
+        if (fromMessageNumber > toMessageNumber)
+        {
+            return Collections.emptyList();
+        }
+        return _entries.subMap(fromMessageNumber, true, toMessageNumber, true).values();
+    }
+
+    int size()
+    {
+        return _entries.size();
+    }
+}
@@ -21,7 +21,9 @@
 package org.apache.qpid.server.queue;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.qpid.server.filter.MessageFilter;
 import org.apache.qpid.server.message.ServerMessage;
@@ -31,7 +33,7 @@ import org.apache.qpid.server.model.VirtualHost;
 abstract class QueueEntryTransaction implements VirtualHost.TransactionalOperation
 {
     private final Queue _sourceQueue;
-    private final List<Long> _messageIds;
+    private final Set<Long> _messageIds;
     private final MessageFilter _filter;
     private final List<Long> _modifiedMessageIds = new ArrayList<>();
     private int _limit;
@@ -39,7 +41,7 @@ abstract class QueueEntryTransaction implements VirtualHost.TransactionalOperati
     QueueEntryTransaction(Queue sourceQueue, List<Long> messageIds, final MessageFilter filter, final int limit)
     {
         _sourceQueue = sourceQueue;
-        _messageIds = messageIds == null ? null : new ArrayList<>(messageIds);
+        _messageIds = messageIds == null ? null : new HashSet<>(messageIds);
         _filter = filter;
         _limit = limit;
     }
@@ -49,7 +51,7 @@ abstract class QueueEntryTransaction implements VirtualHost.TransactionalOperati
     {
         if(_limit != 0)
         {
-            _sourceQueue.visit(new QueueEntryVisitor()
+            final QueueEntryVisitor visitor = new QueueEntryVisitor()
             {
 
                 public boolean visit(final QueueEntry entry)
@@ -71,7 +73,16 @@ abstract class QueueEntryTransaction implements VirtualHost.TransactionalOperati
                     }
                     return _limit == 0 || (_messageIds != null && _messageIds.isEmpty());
                 }
-            });
+            };
+
+            if (_messageIds == null)
+            {
+                _sourceQueue.visit(visitor);
+            }
+            else
+            {
+                _sourceQueue.visit(visitor, new ArrayList<>(_messageIds));
+            }
         }
 
     }
@@ -0,0 +1,209 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+import org.apache.qpid.server.message.MessageReference;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.store.StoredMessage;
+
+/**
+ * Reloads the content of messages which have been flowed to disk shortly before consumers reach them, so that the
+ * delivering thread does not have to wait for the store.
+ *
+ * As each entry is delivered to a consumer the read ahead for that consumer is checked.  Once the consumer has
+ * consumed half of the entries previously read ahead, a task is handed to the executor which walks the next
+ * window of entries beyond those already examined, loading any whose content is not in memory.  The bytes loaded by
+ * one task are bounded by the budget given by the queue.  At most one task per consumer is outstanding at a time.
+ *
+ * A delivery of an entry which was loaded by read ahead counts as a hit; a delivery of an entry whose content is not
+ * in memory counts as a miss.
+ */
+final class QueueReadAhead
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueueReadAhead.class);
+
+    private final AbstractQueue<?> _queue;
+    private final int _windowSize;
+    private final Executor _executor;
+    private final ConcurrentMap<QueueEntry, Boolean> _loadedEntries = new ConcurrentHashMap<>();
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+
+    QueueReadAhead(final AbstractQueue<?> queue, final int windowSize, final Executor executor)
+    {
+        _queue = queue;
+        _windowSize = windowSize;
+        _executor = executor;
+    }
+
+    boolean isEnabled()
+    {
+        return _windowSize > 0;
+    }
+
+    /**
+     * Records the delivery of an entry, before its content is read.
+     */
+    void entryDelivered(final QueueEntry entry)
+    {
+        if (!_loadedEntries.isEmpty() && _loadedEntries.remove(entry) != null)
+        {
+            _hits.incrementAndGet();
+        }
+        else
+        {
+            final ServerMessage message = entry.getMessage();
+            if (message != null && !message.getStoredMessage().isInMemory())
+            {
+                _misses.incrementAndGet();
+            }
+        }
+    }
+
+    void entryRemoved(final QueueEntry entry)
+    {
+        if (!_loadedEntries.isEmpty())
+        {
+            _loadedEntries.remove(entry);
+        }
+    }
+
+    /**
+     * Schedules further read ahead for the consumer if it has caught up with the entries already read ahead.
+     *
+     * @param context the consumer's queue context
+     * @param position the entry most recently delivered to the consumer
+     * @param byteBudget the maximum number of bytes to load
+     */
+    void consumerAdvanced(final QueueContext context, final QueueEntry position, final long byteBudget)
+    {
+        final QueueEntry trigger = context.getReadAheadTriggerEntry();
+        if ((trigger == null || position.compareTo(trigger) >= 0) && context.startReadAhead())
+        {
+            try
+            {
+                _executor.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        readAhead(context, position, byteBudget);
+                    }
+                });
+            }
+            catch (RejectedExecutionException e)
+            {
+                LOGGER.debug("Read ahead rejected", e);
+                context.completeReadAhead(context.getReadAheadEntry(), context.getReadAheadTriggerEntry());
+            }
+        }
+    }
+
+    void readAhead(final QueueContext context, final QueueEntry position, final long byteBudget)
+    {
+        final QueueEntry previous = context.getReadAheadEntry();
+        QueueEntry node = previous != null && !previous.isDeleted() && previous.compareTo(position) > 0
+                ? previous
+                : position;
+        QueueEntry trigger = null;
+        long bytesLoaded = 0L;
+        int examined = 0;
+        try
+        {
+            final QueueEntryList entries = _queue.getEntries();
+            QueueEntry next;
+            while (examined < _windowSize && bytesLoaded < byteBudget && (next = entries.next(node)) != null)
+            {
+                node = next;
+                examined++;
+                if (examined == (_windowSize + 1) / 2)
+                {
+                    trigger = node;
+                }
+                if (node.isAvailable())
+                {
+                    bytesLoaded += load(node);
+                }
+            }
+        }
+        catch (RuntimeException e)
+        {
+            LOGGER.debug("Read ahead failed", e);
+        }
+        finally
+        {
+            context.completeReadAhead(node, trigger == null ? node : trigger);
+        }
+    }
+
+    private long load(final QueueEntry entry)
+    {
+        final MessageReference<?> reference = entry.newMessageReference();
+        if (reference == null)
+        {
+            return 0L;
+        }
+
+        try
+        {
+            final ServerMessage<?> message = reference.getMessage();
+            final StoredMessage<?> storedMessage = message.getStoredMessage();
+            if (storedMessage.isInMemory())
+            {
+                return 0L;
+            }
+
+            storedMessage.getMetaData();
+            final Collection<QpidByteBuffer> content = storedMessage.getContent(0, Integer.MAX_VALUE);
+            for (QpidByteBuffer buf : content)
+            {
+                buf.dispose();
+            }
+            _loadedEntries.put(entry, Boolean.TRUE);
+            return message.getSize();
+        }
+        finally
+        {
+            reference.release();
+        }
+    }
+
+    long getHits()
+    {
+        return _hits.get();
+    }
+
+    long getMisses()
+    {
+        return _misses.get();
+    }
+}
@@ -25,6 +25,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.security.auth.Subject;
@@ -37,6 +38,8 @@ import org.apache.qpid.server.security.access.Operation;
 
 public class CompoundAccessControl implements AccessControl<CompoundSecurityToken>
 {
+    private static final AtomicLong GENERATION = new AtomicLong();
+
     private final AtomicReference<List<AccessControl<?>>> _underlyingControls = new AtomicReference<>();
     private final Result _defaultResult;
 
@@ -49,6 +52,16 @@ public class CompoundAccessControl implements AccessControl<CompoundSecurityToke
     public void setAccessControls(final List<AccessControl<?>> underlying)
     {
         _underlyingControls.set(new CopyOnWriteArrayList<>(underlying));
+        GENERATION.incrementAndGet();
+    }
+
+    /**
+     * @return a value which changes whenever the access controls underlying any compound access control change, so
+     * that callers holding on to the results of earlier authorisations can tell when they must be discarded
+     */
+    public static long getGeneration()
+    {
+        return GENERATION.get();
     }
 
     @Override
@@ -0,0 +1,222 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.security;
+
+import java.security.AccessControlException;
+
+import org.apache.qpid.framing.AMQShortString;
+import org.apache.qpid.server.model.ConfiguredObject;
+import org.apache.qpid.server.security.access.Operation;
+import org.apache.qpid.server.transport.AbstractAMQPConnection;
+
+/**
+ * Remembers, for a single session, which (destination, routing key, immediate) combinations the session has been
+ * authorised to publish to, so that repeated publishes need neither build the arguments for, nor consult, the
+ * access control rules.
+ *
+ * The cache holds at most the given number of authorisations, discarding the least recently used when full.  Only
+ * successful authorisations are cached.  The whole cache is discarded when the access control configuration
+ * changes (see {@link CompoundAccessControl#getGeneration()}).  A lookup which finds a cached authorisation does
+ * not allocate.
+ *
+ * Instances are not thread safe; each is intended to be used only by the thread processing its session's
+ * publishes.
+ */
+public final class PublishAuthorisationCache
+{
+    private static final Operation PUBLISH_ACTION = Operation.ACTION("publish");
+
+    private final SecurityToken _token;
+    private final int _maxSize;
+    private final Entry[] _table;
+    private final Entry _lru = new Entry(null, null, false, 0);
+    private int _size;
+    private long _generation;
+    private volatile long _hits;
+    private volatile long _misses;
+
+    public PublishAuthorisationCache(final SecurityToken token, final int maxSize)
+    {
+        _token = token;
+        _maxSize = Math.max(0, maxSize);
+        int capacity = 1;
+        while (capacity < _maxSize * 4 / 3 + 1)
+        {
+            capacity <<= 1;
+        }
+        _table = new Entry[capacity];
+        _lru._before = _lru;
+        _lru._after = _lru;
+        _generation = CompoundAccessControl.getGeneration();
+    }
+
+    public void authorisePublish(final ConfiguredObject<?> destination,
+                                 final AMQShortString routingKey,
+                                 final boolean immediate) throws AccessControlException
+    {
+        authorise(destination, routingKey, immediate);
+    }
+
+    public void authorisePublish(final ConfiguredObject<?> destination,
+                                 final String routingKey,
+                                 final boolean immediate) throws AccessControlException
+    {
+        authorise(destination, routingKey, immediate);
+    }
+
+    public long getHits()
+    {
+        return _hits;
+    }
+
+    public long getMisses()
+    {
+        return _misses;
+    }
+
+    private void authorise(final ConfiguredObject<?> destination, final Object routingKey, final boolean immediate)
+    {
+        final long generation = CompoundAccessControl.getGeneration();
+        if (generation != _generation)
+        {
+            clear();
+            _generation = generation;
+        }
+
+        final int hash = hash(destination, routingKey, immediate);
+        final int index = hash & (_table.length - 1);
+        for (Entry entry = _table[index]; entry != null; entry = entry._next)
+        {
+            if (entry._hash == hash
+                && entry._destination == destination
+                && entry._immediate == immediate
+                && (entry._routingKey == null ? routingKey == null : entry._routingKey.equals(routingKey)))
+            {
+                _hits++;
+                entry.unlink();
+                entry.linkBefore(_lru);
+                return;
+            }
+        }
+
+        _misses++;
+        destination.authorise(_token,
+                              PUBLISH_ACTION,
+                              AbstractAMQPConnection.PUBLISH_ACTION_MAP_CREATOR.createMap(routingKey == null
+                                                                                                  ? null
+                                                                                                  : routingKey.toString(),
+                                                                                          immediate));
+
+        if (_maxSize > 0)
+        {
+            if (_size == _maxSize)
+            {
+                remove(_lru._after);
+            }
+            final Entry entry = new Entry(destination, routingKey, immediate, hash);
+            entry._next = _table[index];
+            _table[index] = entry;
+            entry.linkBefore(_lru);
+            _size++;
+        }
+    }
+
+    private void remove(final Entry eldest)
+    {
+        final int index = eldest._hash & (_table.length - 1);
+        Entry previous = null;
+        for (Entry entry = _table[index]; entry != null; previous = entry, entry = entry._next)
+        {
+            if (entry == eldest)
+            {
+                if (previous == null)
+                {
+                    _table[index] = entry._next;
+                }
+                else
+                {
+                    previous._next = entry._next;
+                }
+                break;
+            }
+        }
+        eldest.unlink();
+        _size--;
+    }
+
+    private void clear()
+    {
+        if (_size != 0)
+        {
+            for (int i = 0; i < _table.length; i++)
+            {
+                _table[i] = null;
+            }
+            _lru._before = _lru;
+            _lru._after = _lru;
+            _size = 0;
+        }
+    }
+
+    private static int hash(final ConfiguredObject<?> destination, final Object routingKey, final boolean immediate)
+    {
+        int h = System.identityHashCode(destination);
+        h = 31 * h + (routingKey == null ? 0 : routingKey.hashCode());
+        h = 31 * h + (immediate ? 1 : 0);
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Entry
+    {
+        private final ConfiguredObject<?> _destination;
+        private final Object _routingKey;
+        private final boolean _immediate;
+        private final int _hash;
+        private Entry _next;
+        private Entry _before;
+        private Entry _after;
+
+        private Entry(final ConfiguredObject<?> destination,
+                      final Object routingKey,
+                      final boolean immediate,
+                      final int hash)
+        {
+            _destination = destination;
+            _routingKey = routingKey;
+            _immediate = immediate;
+            _hash = hash;
+        }
+
+        private void unlink()
+        {
+            _before._after = _after;
+            _after._before = _before;
+        }
+
+        private void linkBefore(final Entry sentinel)
+        {
+            _after = sentinel;
+            _before = sentinel._before;
+            _before._after = this;
+            sentinel._before = this;
+        }
+    }
+}
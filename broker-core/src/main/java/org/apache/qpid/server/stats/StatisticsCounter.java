@@ -23,10 +23,19 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Date;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * This class collects statistics and counts the total, rate per second and
  * peak rate per second values for the events that are registered with it. 
+ * <p>
+ * Registering an event adds the value to a single base counter until two
+ * threads are first seen contending for it; from then on the value is added
+ * to one of a number of striped cells chosen by the registering thread, so
+ * that threads publishing and delivering on different connections do not
+ * serialise on shared counters.  Uncontended counters never allocate cells.
+ * The rate and peak are sampled from the sum of the cells once per sample
+ * period, by whichever caller first observes that the period has ended.
  */
 public class StatisticsCounter
 {
@@ -36,14 +45,21 @@ public class StatisticsCounter
 
     private static final String COUNTER = "counter";
     private static final AtomicLong _counterIds = new AtomicLong(0L);
-    
-    private long _peak = 0L;
-    private long _total = 0L;
-    private long _temp = 0L;
-    private long _last = 0L;
-    private long _rate = 0L;
 
-    private long _start;
+    private static final int MAX_STRIPES = 64;
+    private static final int STRIPES = stripeCount();
+    // spread the cells a cache line apart to avoid false sharing
+    private static final int CELL_PADDING = 8;
+
+    private final AtomicLong _base = new AtomicLong();
+    private volatile AtomicLongArray _cells;
+
+    private volatile long _peak = 0L;
+    private volatile long _rate = 0L;
+    private volatile long _last = 0L;
+    private long _sampleStartTotal = 0L;
+
+    private volatile long _start;
     
     private final long _period;
     private final String _name;
@@ -76,24 +92,54 @@ public class StatisticsCounter
     public void registerEvent(long value, long timestamp)
     {
         long thisSample = (timestamp / _period);
-        synchronized (this)
+        if (thisSample > _last)
+        {
+            sample(thisSample);
+        }
+        if (value != 0L)
         {
-            if (thisSample > _last)
+            AtomicLongArray cells = _cells;
+            if (cells == null)
             {
-                _last = thisSample;
-                _rate = _temp;
-                _temp = 0L;
-                if (_rate > _peak)
+                final long base = _base.get();
+                if (_base.compareAndSet(base, base + value))
                 {
-                    _peak = _rate;
+                    return;
                 }
+                cells = createCells();
             }
-            
-            _total += value;
-            _temp += value;
+            cells.addAndGet(cellIndex(), value);
         }
     }
-    
+
+    private synchronized AtomicLongArray createCells()
+    {
+        if (_cells == null)
+        {
+            _cells = new AtomicLongArray(STRIPES * CELL_PADDING);
+        }
+        return _cells;
+    }
+
+    /**
+     * Closes the current sample period, taking the values accumulated in it as the current rate.
+     */
+    private synchronized void sample(final long thisSample)
+    {
+        if (thisSample > _last)
+        {
+            final long total = sum();
+            final long rate = total - _sampleStartTotal;
+            _sampleStartTotal = total;
+            _rate = rate;
+            if (rate > _peak)
+            {
+                _peak = rate;
+            }
+            _last = thisSample;
+        }
+    }
+
     /**
      * Update the current rate and peak - may reset rate to zero if a new
      * sample period has started.
@@ -106,12 +152,21 @@ public class StatisticsCounter
     /**
      * Reset 
      */
-    public void reset()
+    public synchronized void reset()
     {
         _log.info("Resetting statistics for counter: " + _name);
+        _base.set(0L);
+        final AtomicLongArray cells = _cells;
+        if (cells != null)
+        {
+            for (int i = 0; i < STRIPES; i++)
+            {
+                cells.set(i * CELL_PADDING, 0L);
+            }
+        }
+        _sampleStartTotal = 0L;
         _peak = 0L;
         _rate = 0L;
-        _total = 0L;
         _start = System.currentTimeMillis();
         _last = _start / _period;
     }
@@ -130,7 +185,7 @@ public class StatisticsCounter
 
     public long getTotal()
     {
-        return _total;
+        return sum();
     }
 
     public long getStart()
@@ -152,4 +207,34 @@ public class StatisticsCounter
     {
         return _period;
     }
+
+    private long sum()
+    {
+        long sum = _base.get();
+        final AtomicLongArray cells = _cells;
+        if (cells != null)
+        {
+            for (int i = 0; i < STRIPES; i++)
+            {
+                sum += cells.get(i * CELL_PADDING);
+            }
+        }
+        return sum;
+    }
+
+    private static int cellIndex()
+    {
+        return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * CELL_PADDING;
+    }
+
+    private static int stripeCount()
+    {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        int stripes = 1;
+        while (stripes < processors && stripes < MAX_STRIPES)
+        {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
 }
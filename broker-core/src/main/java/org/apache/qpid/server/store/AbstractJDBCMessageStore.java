@@ -36,15 +36,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.SettableFuture;
 import org.slf4j.Logger;
 
 import org.apache.qpid.bytebuffer.QpidByteBuffer;
@@ -57,6 +52,13 @@ import org.apache.qpid.server.store.handler.MessageInstanceHandler;
 
 public abstract class AbstractJDBCMessageStore implements MessageStore
 {
+    /** the maximum number of transactions committed together */
+    public static final String COMMIT_MAX_GROUP_SIZE = "qpid.jdbcstore.commitMaxGroupSize";
+    public static final int DEFAULT_COMMIT_MAX_GROUP_SIZE = 256;
+    /** the time in milliseconds the committer waits for more transactions before committing a group which is not full */
+    public static final String COMMIT_MAX_GROUP_DELAY = "qpid.jdbcstore.commitMaxGroupDelay";
+    public static final long DEFAULT_COMMIT_MAX_GROUP_DELAY = 0L;
+
     private static final String DB_VERSION_TABLE_NAME = "QPID_DB_VERSION";
 
     private static final String QUEUE_ENTRY_TABLE_NAME = "QPID_QUEUE_ENTRIES";
@@ -122,7 +124,7 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
     protected abstract boolean isMessageStoreOpen();
 
     protected abstract void checkMessageStoreOpen();
-    private ScheduledThreadPoolExecutor _executor;
+    private JDBCCoalescingCommitter _committer;
 
     public AbstractJDBCMessageStore()
     {
@@ -259,27 +261,37 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
     protected void initMessageStore(final ConfiguredObject<?> parent)
     {
         _parent = parent;
-        _executor = new ScheduledThreadPoolExecutor(4, new ThreadFactory()
-        {
-            private final AtomicInteger _count = new AtomicInteger();
-            @Override
-            public Thread newThread(final Runnable r)
-            {
-                final Thread thread = Executors.defaultThreadFactory().newThread(r);
-                thread.setName(parent.getName() + "-store-"+_count.incrementAndGet());
-                return thread;
-            }
-        });
-        _executor.prestartAllCoreThreads();
+        _committer = new JDBCCoalescingCommitter(parent.getName() + "-store-committer",
+                                                 this,
+                                                 getContextValue(parent, Integer.class, COMMIT_MAX_GROUP_SIZE,
+                                                                 DEFAULT_COMMIT_MAX_GROUP_SIZE),
+                                                 getContextValue(parent, Long.class, COMMIT_MAX_GROUP_DELAY,
+                                                                 DEFAULT_COMMIT_MAX_GROUP_DELAY));
+        _committer.start();
+    }
 
+    private static <T> T getContextValue(final ConfiguredObject<?> parent,
+                                         final Class<T> parameterClass,
+                                         final String parameterName,
+                                         final T defaultValue)
+    {
+        if (parent.getContextKeys(false).contains(parameterName))
+        {
+            return parent.getContextValue(parameterClass, parameterName);
+        }
+        else
+        {
+            return defaultValue;
+        }
     }
 
     @Override
     public void closeMessageStore()
     {
-        if(_executor != null)
+        if(_committer != null)
         {
-            _executor.shutdown();
+            _committer.stop();
+            _committer = null;
         }
 
     }
@@ -508,6 +520,104 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
 
     }
 
+    @Override
+    public void removeMessages(final Collection<? extends StoredMessage<?>> messages)
+    {
+        checkMessageStoreOpen();
+
+        final List<StoredJDBCMessage<?>> storedMessages = new ArrayList<>(messages.size());
+        final List<StorableMessageMetaData> metaData = new ArrayList<>(messages.size());
+        for(StoredMessage<?> message : messages)
+        {
+            if(message instanceof StoredJDBCMessage && ((StoredJDBCMessage<?>) message).isStoredIn(this))
+            {
+                StoredJDBCMessage<?> storedMessage = (StoredJDBCMessage<?>) message;
+                storedMessages.add(storedMessage);
+                metaData.add(storedMessage.getMetaData());
+            }
+            else
+            {
+                message.remove();
+            }
+        }
+
+        final long[] messageIds = new long[storedMessages.size()];
+        int count = 0;
+        for(StoredJDBCMessage<?> storedMessage : storedMessages)
+        {
+            if(storedMessage.stored())
+            {
+                messageIds[count++] = storedMessage.getMessageNumber();
+            }
+        }
+        if(count != 0)
+        {
+            removeMessages(Arrays.copyOf(messageIds, count));
+        }
+
+        for(int i = 0; i < storedMessages.size(); i++)
+        {
+            storedMessages.get(i).removed(metaData.get(i));
+        }
+    }
+
+    private void removeMessages(long[] messageIds)
+    {
+        try
+        {
+            Connection conn = newConnection();
+            try
+            {
+                try (PreparedStatement metaDataStmt = conn.prepareStatement(DELETE_FROM_META_DATA);
+                     PreparedStatement contentStmt = conn.prepareStatement(DELETE_FROM_MESSAGE_CONTENT))
+                {
+                    for(long messageId : messageIds)
+                    {
+                        metaDataStmt.setLong(1, messageId);
+                        metaDataStmt.addBatch();
+                        contentStmt.setLong(1, messageId);
+                        contentStmt.addBatch();
+                    }
+
+                    int[] results = metaDataStmt.executeBatch();
+                    for(int i = 0; i < results.length; i++)
+                    {
+                        if (results[i] == 0)
+                        {
+                            getLogger().debug("Message id {} not found (attempt to remove failed - probably application initiated rollback)", messageIds[i]);
+                        }
+                    }
+                    getLogger().debug("Deleted metadata for {} messages", messageIds.length);
+
+                    contentStmt.executeBatch();
+                }
+                conn.commit();
+            }
+            catch(SQLException e)
+            {
+                try
+                {
+                    conn.rollback();
+                }
+                catch(SQLException t)
+                {
+                    // ignore - we are re-throwing underlying exception
+                }
+
+                throw e;
+
+            }
+            finally
+            {
+                conn.close();
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new StoreException("Error removing " + messageIds.length + " messages from database: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Convenience method to create a new Connection configured for TRANSACTION_READ_COMMITED
      * isolation and with auto-commit transactions enabled.
@@ -571,76 +681,57 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
         return new JDBCTransaction();
     }
 
-    private void enqueueMessage(ConnectionWrapper connWrapper, final TransactionLogResource queue, Long messageId) throws StoreException
+    void insertQueueEntries(final Connection conn,
+                            final List<JDBCCoalescingCommitter.QueueEntryKey> entries) throws SQLException
     {
-        Connection conn = connWrapper.getConnection();
-
+        if (entries.isEmpty())
+        {
+            return;
+        }
 
-        try
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_INTO_QUEUE_ENTRY))
         {
-            if (getLogger().isDebugEnabled())
+            for (JDBCCoalescingCommitter.QueueEntryKey entry : entries)
             {
-                getLogger().debug("Enqueuing message {} on queue {} with id {} [Connection {}]",
-                                  messageId, queue.getName(), queue.getId(), conn);
-            }
+                getLogger().debug("Enqueuing message {} on queue with id {}", entry.getMessageId(), entry.getQueueId());
 
-            try (PreparedStatement stmt = conn.prepareStatement(INSERT_INTO_QUEUE_ENTRY))
-            {
-                stmt.setString(1, queue.getId().toString());
-                stmt.setLong(2, messageId);
-                stmt.executeUpdate();
+                stmt.setString(1, entry.getQueueId().toString());
+                stmt.setLong(2, entry.getMessageId());
+                stmt.addBatch();
             }
-
+            stmt.executeBatch();
         }
-        catch (SQLException e)
-        {
-            getLogger().error("Failed to enqueue message {}", messageId, e);
-            throw new StoreException("Error writing enqueued message with id " + messageId + " for queue " + queue.getName() + " with id " + queue.getId()
-                                     + " to database", e);
-        }
-
     }
 
-    private void dequeueMessage(ConnectionWrapper connWrapper, final UUID queueId,
-                                Long messageId) throws StoreException
+    /**
+     * @return the update counts of the deletions, in the order of the given entries
+     */
+    int[] deleteQueueEntries(final Connection conn,
+                             final List<JDBCCoalescingCommitter.QueueEntryKey> entries) throws SQLException
     {
+        if (entries.isEmpty())
+        {
+            return new int[0];
+        }
 
-        Connection conn = connWrapper.getConnection();
-
-        try
+        try (PreparedStatement stmt = conn.prepareStatement(DELETE_FROM_QUEUE_ENTRY))
         {
-            try (PreparedStatement stmt = conn.prepareStatement(DELETE_FROM_QUEUE_ENTRY))
+            for (JDBCCoalescingCommitter.QueueEntryKey entry : entries)
             {
-                stmt.setString(1, queueId.toString());
-                stmt.setLong(2, messageId);
-                int results = stmt.executeUpdate();
-
-
-                if (results != 1)
-                {
-                    throw new StoreException("Unable to find message with id " + messageId
-                                             + " on queue with id " + queueId);
-                }
-
-                getLogger().debug("Dequeuing message {} on queue with id {}", messageId, queueId);
-
+                stmt.setString(1, entry.getQueueId().toString());
+                stmt.setLong(2, entry.getMessageId());
+                stmt.addBatch();
             }
 
+            final int[] results = stmt.executeBatch();
+            getLogger().debug("Dequeued {} message(s)", entries.size());
+            return results;
         }
-        catch (SQLException e)
-        {
-            getLogger().error("Failed to dequeue message {}", messageId, e);
-            throw new StoreException("Error deleting enqueued message with id " + messageId + " for queue with id "
-                                     + queueId + " from database", e);
-        }
-
     }
 
-    private void removeXid(ConnectionWrapper connWrapper, long format, byte[] globalId, byte[] branchId)
+    private void removeXid(Connection conn, long format, byte[] globalId, byte[] branchId)
             throws StoreException
     {
-        Connection conn = connWrapper.getConnection();
-
 
         try
         {
@@ -687,11 +778,9 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
 
     }
 
-    private List<Runnable> recordXid(ConnectionWrapper connWrapper, long format, byte[] globalId, byte[] branchId,
-                                     Transaction.EnqueueRecord[] enqueues, Transaction.DequeueRecord[] dequeues) throws StoreException
+    private void recordXid(Connection conn, long format, byte[] globalId, byte[] branchId,
+                           Transaction.EnqueueRecord[] enqueues, Transaction.DequeueRecord[] dequeues) throws StoreException
     {
-        Connection conn = connWrapper.getConnection();
-
 
         try
         {
@@ -709,16 +798,6 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
                 stmt.close();
             }
 
-            for(Transaction.EnqueueRecord enqueue : enqueues)
-            {
-                StoredMessage storedMessage = enqueue.getMessage().getStoredMessage();
-                if(storedMessage instanceof StoredJDBCMessage)
-                {
-                    ((StoredJDBCMessage) storedMessage).store(conn);
-                }
-            }
-
-
             stmt = conn.prepareStatement(INSERT_INTO_XID_ACTIONS);
 
             try
@@ -754,7 +833,6 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
             {
                 stmt.close();
             }
-            return Collections.emptyList();
         }
         catch (SQLException e)
         {
@@ -764,83 +842,6 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
 
     }
 
-    private static final class ConnectionWrapper
-    {
-        private final Connection _connection;
-
-        public ConnectionWrapper(Connection conn)
-        {
-            _connection = conn;
-        }
-
-        public Connection getConnection()
-        {
-            return _connection;
-        }
-    }
-
-
-    private void commitTran(ConnectionWrapper connWrapper) throws StoreException
-    {
-        try
-        {
-            Connection conn = connWrapper.getConnection();
-            conn.commit();
-
-            getLogger().debug("commit tran completed");
-
-            conn.close();
-        }
-        catch (SQLException e)
-        {
-            throw new StoreException("Error commit tx", e);
-        }
-    }
-
-    private <X> ListenableFuture<X> commitTranAsync(final ConnectionWrapper connWrapper, final X val) throws StoreException
-    {
-        final SettableFuture<X> future = SettableFuture.create();
-        _executor.submit(new Runnable()
-                        {
-                            @Override
-                            public void run()
-                            {
-                                try
-                                {
-                                    commitTran(connWrapper);
-                                    future.set(val);
-                                }
-                                catch (RuntimeException e)
-                                {
-                                    future.setException(e);
-                                }
-                            }
-                        });
-        return future;
-    }
-
-    private void abortTran(ConnectionWrapper connWrapper) throws StoreException
-    {
-        if (connWrapper == null)
-        {
-            throw new StoreException("Fatal internal error: transactional context is empty at abortTran");
-        }
-
-        getLogger().debug("abort tran called: {}", connWrapper.getConnection());
-
-        try
-        {
-            Connection conn = connWrapper.getConnection();
-            conn.rollback();
-            conn.close();
-        }
-        catch (SQLException e)
-        {
-            throw new StoreException("Error aborting transaction: " + e.getMessage(), e);
-        }
-
-    }
-
     private void storeMetaData(Connection conn, long messageId, StorableMessageMetaData metaData)
             throws SQLException
     {
@@ -1104,21 +1105,11 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
 
     protected class JDBCTransaction implements Transaction
     {
-        private final ConnectionWrapper _connWrapper;
+        private final JDBCCoalescingCommitter.TransactionWork _work = new JDBCCoalescingCommitter.TransactionWork();
         private int _storeSizeIncrease;
-        private final List<Runnable> _preCommitActions = new ArrayList<>();
-        private final List<Runnable> _postCommitActions = new ArrayList<>();
 
         protected JDBCTransaction()
         {
-            try
-            {
-                _connWrapper = new ConnectionWrapper(newConnection());
-            }
-            catch (SQLException e)
-            {
-                throw new StoreException(e);
-            }
         }
 
         @Override
@@ -1129,25 +1120,16 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
             final StoredMessage storedMessage = message.getStoredMessage();
             if(storedMessage instanceof StoredJDBCMessage)
             {
-                _preCommitActions.add(new Runnable()
-                {
-                    @Override
-                    public void run()
-                    {
-                        try
-                        {
-                            ((StoredJDBCMessage) storedMessage).store(_connWrapper.getConnection());
-                            _storeSizeIncrease += storedMessage.getMetaData().getContentSize();
-                        }
-                        catch (SQLException e)
-                        {
-                            throw new StoreException("Exception on enqueuing message into message store" + _messageId,
-                                                     e);
-                        }
-                    }
-                });
+                _storeSizeIncrease += storedMessage.getMetaData().getContentSize();
+                final StoreMessageAction storeAction = new StoreMessageAction((StoredJDBCMessage<?>) storedMessage);
+                _work.addAction(storeAction);
+                _work.addOutcomeListener(storeAction);
             }
-            AbstractJDBCMessageStore.this.enqueueMessage(_connWrapper, queue, message.getMessageNumber());
+
+            getLogger().debug("Enqueuing message {} on queue {} with id {}",
+                              message.getMessageNumber(), queue.getName(), queue.getId());
+
+            _work.addEnqueue(queue.getId(), message.getMessageNumber());
             return new JDBCEnqueueRecord(queue.getId(), message.getMessageNumber());
         }
 
@@ -1156,56 +1138,37 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
         {
             checkMessageStoreOpen();
 
-            AbstractJDBCMessageStore.this.dequeueMessage(_connWrapper,
-                                                         enqueueRecord.getQueueId(),
-                                                         enqueueRecord.getMessageNumber());
+            final UUID queueId = enqueueRecord.getQueueId();
+            final long messageId = enqueueRecord.getMessageNumber();
+            getLogger().debug("Dequeuing message {} on queue with id {}", messageId, queueId);
+
+            // a missing queue entry is detected by the committer, and fails only this transaction
+            _work.addDequeue(queueId, messageId);
         }
 
         @Override
         public void commitTran()
         {
             checkMessageStoreOpen();
-            doPreCommitActions();
-            AbstractJDBCMessageStore.this.commitTran(_connWrapper);
+            _committer.commit(_work);
             storedSizeChange(_storeSizeIncrease);
-            doPostCommitActions();
         }
 
         @Override
         public <X> ListenableFuture<X> commitTranAsync(final X val)
         {
             checkMessageStoreOpen();
-            doPreCommitActions();
-            ListenableFuture<X> futureResult = AbstractJDBCMessageStore.this.commitTranAsync(_connWrapper, val);
+            ListenableFuture<X> futureResult = _committer.commitAsync(_work, val);
             storedSizeChange(_storeSizeIncrease);
-            doPostCommitActions();
             return futureResult;
         }
 
-        private void doPreCommitActions()
-        {
-            for(Runnable action : _preCommitActions)
-            {
-                action.run();
-            }
-            _preCommitActions.clear();
-        }
-
-        private void doPostCommitActions()
-        {
-            for(Runnable action : _postCommitActions)
-            {
-                action.run();
-            }
-            _postCommitActions.clear();
-        }
-
         @Override
         public void abortTran()
         {
             checkMessageStoreOpen();
-            _preCommitActions.clear();
-            AbstractJDBCMessageStore.this.abortTran(_connWrapper);
+            getLogger().debug("abort tran called");
+            _work.clear();
         }
 
         @Override
@@ -1213,28 +1176,99 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
         {
             checkMessageStoreOpen();
 
-            AbstractJDBCMessageStore.this.removeXid(_connWrapper,
-                                                    record.getFormat(),
-                                                    record.getGlobalId(),
-                                                    record.getBranchId());
+            _work.addAction(new JDBCCoalescingCommitter.ConnectionAction()
+            {
+                @Override
+                public void execute(final Connection connection)
+                {
+                    AbstractJDBCMessageStore.this.removeXid(connection,
+                                                            record.getFormat(),
+                                                            record.getGlobalId(),
+                                                            record.getBranchId());
+                }
+            });
         }
 
         @Override
         public StoredXidRecord recordXid(final long format,
                                          final byte[] globalId,
                                          final byte[] branchId,
-                                         EnqueueRecord[] enqueues,
-                                         DequeueRecord[] dequeues)
+                                         final EnqueueRecord[] enqueues,
+                                         final DequeueRecord[] dequeues)
         {
             checkMessageStoreOpen();
 
-            _postCommitActions.addAll(AbstractJDBCMessageStore.this.recordXid(_connWrapper, format, globalId, branchId, enqueues, dequeues));
+            if (enqueues != null)
+            {
+                for (EnqueueRecord enqueue : enqueues)
+                {
+                    final StoredMessage storedMessage = enqueue.getMessage().getStoredMessage();
+                    if (storedMessage instanceof StoredJDBCMessage)
+                    {
+                        final StoreMessageAction storeAction =
+                                new StoreMessageAction((StoredJDBCMessage<?>) storedMessage);
+                        _work.addAction(storeAction);
+                        _work.addOutcomeListener(storeAction);
+                    }
+                }
+            }
+
+            _work.addAction(new JDBCCoalescingCommitter.ConnectionAction()
+            {
+                @Override
+                public void execute(final Connection connection)
+                {
+                    AbstractJDBCMessageStore.this.recordXid(connection, format, globalId, branchId, enqueues, dequeues);
+                }
+            });
             return new JDBCStoredXidRecord(format, globalId, branchId);
         }
 
 
     }
 
+    /**
+     * Stores a message as part of a transaction.  The message only counts as stored once the database
+     * transaction has been committed, so that the work can be executed again should it be rolled back.
+     */
+    private static final class StoreMessageAction implements JDBCCoalescingCommitter.ConnectionAction,
+                                                              JDBCCoalescingCommitter.OutcomeListener
+    {
+        private final StoredJDBCMessage<?> _storedMessage;
+        private boolean _storing;
+
+        private StoreMessageAction(final StoredJDBCMessage<?> storedMessage)
+        {
+            _storedMessage = storedMessage;
+        }
+
+        @Override
+        public void execute(final Connection connection) throws SQLException
+        {
+            _storing = _storedMessage.store(connection);
+        }
+
+        @Override
+        public void committed()
+        {
+            if (_storing)
+            {
+                _storing = false;
+                _storedMessage.storeCommitted();
+            }
+        }
+
+        @Override
+        public void rolledBack()
+        {
+            if (_storing)
+            {
+                _storing = false;
+                _storedMessage.storeRolledBack();
+            }
+        }
+    }
+
     private static class JDBCStoredXidRecord implements Transaction.StoredXidRecord
     {
         private final long _format;
@@ -1400,6 +1434,7 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
         private final long _messageId;
 
         private MessageDataRef<T> _messageDataRef;
+        private boolean _storing;
 
 
         StoredJDBCMessage(long messageId, T metaData)
@@ -1552,9 +1587,14 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
             return content;
         }
 
-        synchronized void store(final Connection conn) throws SQLException
+        /**
+         * Writes the message on the given connection unless it is already stored or being stored by another
+         * transaction.  The caller must follow with {@link #storeCommitted()} or {@link #storeRolledBack()}
+         * if this returns true.
+         */
+        synchronized boolean store(final Connection conn) throws SQLException
         {
-            if (!stored())
+            if (_messageDataRef != null && !stored() && !_storing)
             {
 
                 AbstractJDBCMessageStore.this.storeMetaData(conn, _messageId, _messageDataRef.getMetaData());
@@ -1565,31 +1605,43 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
 
                 getLogger().debug("Storing message {} to store", _messageId);
 
-                MessageDataRef<T> hardRef = _messageDataRef;
-                MessageDataSoftRef<T> messageDataSoftRef;
-
-                messageDataSoftRef = new MessageDataSoftRef<>(hardRef.getMetaData(), hardRef.getData());
-
-                _messageDataRef = messageDataSoftRef;
-
+                _storing = true;
+                return true;
+            }
+            return false;
+        }
 
+        synchronized void storeCommitted()
+        {
+            _storing = false;
+            if (_messageDataRef != null && _messageDataRef.isHardRef())
+            {
+                MessageDataRef<T> hardRef = _messageDataRef;
+                _messageDataRef = new MessageDataSoftRef<>(hardRef.getMetaData(), hardRef.getData());
             }
         }
 
+        synchronized void storeRolledBack()
+        {
+            _storing = false;
+        }
+
         synchronized ListenableFuture<Void> flushToStore()
         {
             if (_messageDataRef != null)
             {
-                if(!stored())
+                if(!stored() && !_storing)
                 {
                     try (Connection conn = newConnection())
                     {
                         store(conn);
                         conn.commit();
+                        storeCommitted();
                         storedSizeChange(getMetaData().getContentSize());
                     }
                     catch (SQLException e)
                     {
+                        storeRolledBack();
                         throw new StoreException("Failed to flow to disk", e);
                     }
                 }
@@ -1604,14 +1656,21 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
             getLogger().debug("REMOVE called on message: {}", _messageId);
 
             checkMessageStoreOpen();
-            Collection<QpidByteBuffer> data = _messageDataRef.getData();
 
             final T metaData = getMetaData();
-            int delta = metaData.getContentSize();
             if(stored())
             {
                 AbstractJDBCMessageStore.this.removeMessage(_messageId);
-                storedSizeChange(-delta);
+            }
+            removed(metaData);
+        }
+
+        private synchronized void removed(final StorableMessageMetaData metaData)
+        {
+            Collection<QpidByteBuffer> data = _messageDataRef.getData();
+            if(stored())
+            {
+                storedSizeChange(-metaData.getContentSize());
             }
             if(data != null)
             {
@@ -1636,9 +1695,19 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
             return _messageDataRef != null && !_messageDataRef.isHardRef();
         }
 
+        private boolean isStoredIn(final AbstractJDBCMessageStore store)
+        {
+            return AbstractJDBCMessageStore.this == store;
+        }
+
         @Override
         public synchronized boolean flowToDisk()
         {
+            if (_storing)
+            {
+                // a transaction is still writing the content; it must stay in memory until that commits
+                return false;
+            }
 
             flushToStore();
             if(_messageDataRef != null && !_messageDataRef.isHardRef())
@@ -0,0 +1,750 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.store;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Commits the work of JDBC message store transactions in groups.
+ * <p>
+ * Transactions hand their deferred work to a single commit thread.  The thread takes all the work
+ * queued at that moment (up to a maximum group size), executes it on one connection, and commits once
+ * for the whole group.  The work of each transaction is executed in the order it was recorded;
+ * consecutive queue entry insertions or deletions, within a transaction or across neighbouring
+ * transactions in the group, are sent as one JDBC batch.  Optionally the thread waits a short time for
+ * more transactions to arrive before executing a group which is not yet full, trading latency for fewer
+ * commits.
+ * <p>
+ * A queue entry deletion which finds no entry fails the transaction that recorded it: the group is rolled
+ * back and executed again without that transaction.  If any other part of a group fails, the group is
+ * rolled back and each of its transactions is then executed and committed on its own, so that only the
+ * transactions which fail by themselves are reported as failed.
+ */
+final class JDBCCoalescingCommitter
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(JDBCCoalescingCommitter.class);
+
+    private final CommitThread _commitThread;
+
+    JDBCCoalescingCommitter(final String name,
+                            final AbstractJDBCMessageStore store,
+                            final int maxGroupSize,
+                            final long maxGroupDelay)
+    {
+        _commitThread = new CommitThread(name, store, Math.max(1, maxGroupSize), Math.max(0L, maxGroupDelay));
+    }
+
+    void start()
+    {
+        _commitThread.start();
+    }
+
+    void stop()
+    {
+        _commitThread.close();
+        if (Thread.currentThread() != _commitThread)
+        {
+            try
+            {
+                _commitThread.join();
+            }
+            catch (InterruptedException ie)
+            {
+                Thread.currentThread().interrupt();
+                throw new StoreException("Commit thread has not shutdown", ie);
+            }
+        }
+        _commitThread.abortRemainingJobs();
+    }
+
+    void commit(final TransactionWork work)
+    {
+        if (work.isEmpty())
+        {
+            return;
+        }
+        final CommitJob<Void> job = new CommitJob<>(work, null);
+        _commitThread.addJob(job, true);
+        job.awaitCompletion();
+    }
+
+    <X> ListenableFuture<X> commitAsync(final TransactionWork work, final X val)
+    {
+        final CommitJob<X> job = new CommitJob<>(work, val);
+        if (work.isEmpty())
+        {
+            job.complete();
+        }
+        else
+        {
+            _commitThread.addJob(job, false);
+        }
+        return job.getFuture();
+    }
+
+    interface ConnectionAction
+    {
+        void execute(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Informed of the outcome of each database transaction in which the work it was added to is executed.
+     * A failed group is rolled back before its transactions are executed again individually, so a listener
+     * may see a roll back followed by a commit.
+     */
+    interface OutcomeListener
+    {
+        void committed();
+
+        void rolledBack();
+    }
+
+    static final class QueueEntryKey
+    {
+        private final UUID _queueId;
+        private final long _messageId;
+
+        QueueEntryKey(final UUID queueId, final long messageId)
+        {
+            _queueId = queueId;
+            _messageId = messageId;
+        }
+
+        UUID getQueueId()
+        {
+            return _queueId;
+        }
+
+        long getMessageId()
+        {
+            return _messageId;
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass())
+            {
+                return false;
+            }
+            final QueueEntryKey that = (QueueEntryKey) o;
+            return _messageId == that._messageId && _queueId.equals(that._queueId);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return 31 * _queueId.hashCode() + (int) (_messageId ^ (_messageId >>> 32));
+        }
+    }
+
+    /**
+     * The work of one transaction, recorded as the transaction progresses and executed in the same order
+     * when it is committed.
+     */
+    static final class TransactionWork
+    {
+        private final List<Operation> _operations = new ArrayList<>();
+        private final Set<QueueEntryKey> _enqueues = new HashSet<>();
+        private final Set<QueueEntryKey> _dequeues = new HashSet<>();
+        private final List<OutcomeListener> _outcomeListeners = new ArrayList<>();
+
+        void addAction(final ConnectionAction action)
+        {
+            _operations.add(new Operation(action, null, false));
+        }
+
+        void addEnqueue(final UUID queueId, final long messageId)
+        {
+            final QueueEntryKey entry = new QueueEntryKey(queueId, messageId);
+            _operations.add(new Operation(null, entry, true));
+            _enqueues.add(entry);
+        }
+
+        void addDequeue(final UUID queueId, final long messageId)
+        {
+            final QueueEntryKey entry = new QueueEntryKey(queueId, messageId);
+            _operations.add(new Operation(null, entry, false));
+            _dequeues.add(entry);
+        }
+
+        void addOutcomeListener(final OutcomeListener listener)
+        {
+            _outcomeListeners.add(listener);
+        }
+
+        boolean isEmpty()
+        {
+            return _operations.isEmpty();
+        }
+
+        void clear()
+        {
+            _operations.clear();
+            _enqueues.clear();
+            _dequeues.clear();
+            _outcomeListeners.clear();
+        }
+
+        private void execute(final QueueEntryBatch batch) throws SQLException
+        {
+            for (Operation operation : _operations)
+            {
+                if (operation._action != null)
+                {
+                    batch.flush();
+                    operation._action.execute(batch.getConnection());
+                }
+                else
+                {
+                    batch.add(operation._enqueue, operation._entry, this);
+                }
+            }
+        }
+
+        private void committed()
+        {
+            for (OutcomeListener listener : _outcomeListeners)
+            {
+                listener.committed();
+            }
+        }
+
+        private void rolledBack()
+        {
+            for (OutcomeListener listener : _outcomeListeners)
+            {
+                listener.rolledBack();
+            }
+        }
+    }
+
+    /**
+     * Either an action or the insertion or deletion of a queue entry.
+     */
+    private static final class Operation
+    {
+        private final ConnectionAction _action;
+        private final QueueEntryKey _entry;
+        private final boolean _enqueue;
+
+        private Operation(final ConnectionAction action, final QueueEntryKey entry, final boolean enqueue)
+        {
+            _action = action;
+            _entry = entry;
+            _enqueue = enqueue;
+        }
+    }
+
+    /**
+     * Collects consecutive queue entry insertions or deletions so that they are sent as one batch.
+     */
+    private static final class QueueEntryBatch
+    {
+        private final AbstractJDBCMessageStore _store;
+        private final Connection _connection;
+        private List<QueueEntryKey> _entries = new ArrayList<>();
+        private List<TransactionWork> _owners = new ArrayList<>();
+        private boolean _enqueues;
+
+        private QueueEntryBatch(final AbstractJDBCMessageStore store, final Connection connection)
+        {
+            _store = store;
+            _connection = connection;
+        }
+
+        Connection getConnection()
+        {
+            return _connection;
+        }
+
+        void add(final boolean enqueue, final QueueEntryKey entry, final TransactionWork owner) throws SQLException
+        {
+            if (enqueue != _enqueues)
+            {
+                flush();
+                _enqueues = enqueue;
+            }
+            _entries.add(entry);
+            _owners.add(owner);
+        }
+
+        void flush() throws SQLException
+        {
+            if (!_entries.isEmpty())
+            {
+                final List<QueueEntryKey> entries = _entries;
+                final List<TransactionWork> owners = _owners;
+                _entries = new ArrayList<>();
+                _owners = new ArrayList<>();
+                if (_enqueues)
+                {
+                    _store.insertQueueEntries(_connection, entries);
+                }
+                else
+                {
+                    final int[] results = _store.deleteQueueEntries(_connection, entries);
+                    for (int i = 0; i < results.length; i++)
+                    {
+                        if (results[i] != 1 && results[i] != Statement.SUCCESS_NO_INFO)
+                        {
+                            throw new MissingQueueEntryException(entries.get(i), owners.get(i));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Thrown when the deletion of a queue entry finds no entry, identifying the transaction which recorded it.
+     */
+    private static final class MissingQueueEntryException extends StoreException
+    {
+        private final TransactionWork _work;
+
+        private MissingQueueEntryException(final QueueEntryKey entry, final TransactionWork work)
+        {
+            super("Unable to find message with id " + entry.getMessageId()
+                  + " on queue with id " + entry.getQueueId());
+            _work = work;
+        }
+
+        TransactionWork getWork()
+        {
+            return _work;
+        }
+    }
+
+    private static final class CommitJob<X>
+    {
+        private final TransactionWork _work;
+        private final X _value;
+        private final SettableFuture<X> _future = SettableFuture.create();
+
+        private CommitJob(final TransactionWork work, final X value)
+        {
+            _work = work;
+            _value = value;
+        }
+
+        TransactionWork getWork()
+        {
+            return _work;
+        }
+
+        ListenableFuture<X> getFuture()
+        {
+            return _future;
+        }
+
+        void complete()
+        {
+            _future.set(_value);
+        }
+
+        void abort(final RuntimeException e)
+        {
+            _future.setException(e);
+        }
+
+        void awaitCompletion()
+        {
+            boolean interrupted = false;
+            try
+            {
+                while (true)
+                {
+                    try
+                    {
+                        _future.get();
+                        return;
+                    }
+                    catch (InterruptedException e)
+                    {
+                        interrupted = true;
+                    }
+                    catch (ExecutionException e)
+                    {
+                        if (e.getCause() instanceof RuntimeException)
+                        {
+                            throw (RuntimeException) e.getCause();
+                        }
+                        throw new StoreException(e.getCause());
+                    }
+                }
+            }
+            finally
+            {
+                if (interrupted)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private static final class CommitThread extends Thread
+    {
+        private final AtomicBoolean _stopped = new AtomicBoolean(false);
+        private final Queue<CommitJob<?>> _jobQueue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger _queuedJobs = new AtomicInteger();
+        private final Object _lock = new Object();
+        private final AbstractJDBCMessageStore _store;
+        private final int _maxGroupSize;
+        private final long _maxGroupDelay;
+
+        private final List<CommitJob<?>> _group = new ArrayList<>();
+        private final Set<QueueEntryKey> _groupDequeues = new HashSet<>();
+        private CommitJob<?> _deferredJob;
+        private Connection _connection;
+        private boolean _flushRequested;
+
+        private CommitThread(final String name,
+                             final AbstractJDBCMessageStore store,
+                             final int maxGroupSize,
+                             final long maxGroupDelay)
+        {
+            super(name);
+            _store = store;
+            _maxGroupSize = maxGroupSize;
+            _maxGroupDelay = maxGroupDelay;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (!_stopped.get())
+                {
+                    synchronized (_lock)
+                    {
+                        while (!_stopped.get() && !hasJobs())
+                        {
+                            try
+                            {
+                                // Periodically wake up and check, just in case we
+                                // missed a notification.
+                                _lock.wait(500);
+                            }
+                            catch (InterruptedException e)
+                            {
+                            }
+                        }
+                        if (_maxGroupDelay > 0L && !_stopped.get() && !_flushRequested
+                            && _queuedJobs.get() < _maxGroupSize)
+                        {
+                            try
+                            {
+                                _lock.wait(_maxGroupDelay);
+                            }
+                            catch (InterruptedException e)
+                            {
+                            }
+                        }
+                        _flushRequested = false;
+                    }
+                    processJobs();
+                }
+                processJobs();
+            }
+            finally
+            {
+                closeConnection();
+            }
+        }
+
+        private boolean hasJobs()
+        {
+            return _deferredJob != null || !_jobQueue.isEmpty();
+        }
+
+        private void processJobs()
+        {
+            while (hasJobs())
+            {
+                fillGroup();
+                try
+                {
+                    commitGroup();
+                }
+                finally
+                {
+                    _group.clear();
+                    _groupDequeues.clear();
+                }
+            }
+        }
+
+        private void fillGroup()
+        {
+            if (_deferredJob != null)
+            {
+                addToGroup(_deferredJob);
+                _deferredJob = null;
+            }
+
+            CommitJob<?> job;
+            while (_group.size() < _maxGroupSize && (job = _jobQueue.poll()) != null)
+            {
+                _queuedJobs.decrementAndGet();
+                if (conflictsWithGroup(job))
+                {
+                    // the job re-inserts an entry deleted earlier in this group, it must follow the group's commit
+                    _deferredJob = job;
+                    break;
+                }
+                addToGroup(job);
+            }
+        }
+
+        private boolean conflictsWithGroup(final CommitJob<?> job)
+        {
+            if (!_groupDequeues.isEmpty())
+            {
+                for (QueueEntryKey key : job.getWork()._enqueues)
+                {
+                    if (_groupDequeues.contains(key))
+                    {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private void addToGroup(final CommitJob<?> job)
+        {
+            _group.add(job);
+            _groupDequeues.addAll(job.getWork()._dequeues);
+        }
+
+        private void commitGroup()
+        {
+            final List<CommitJob<?>> jobs = new ArrayList<>(_group);
+            while (!jobs.isEmpty())
+            {
+                final Exception groupFailure = commit(jobs);
+                if (groupFailure == null)
+                {
+                    LOGGER.debug("Committed group of {} transaction(s)", jobs.size());
+                    for (CommitJob<?> job : jobs)
+                    {
+                        job.complete();
+                    }
+                    return;
+                }
+
+                final CommitJob<?> failedJob = findFailedJob(jobs, groupFailure);
+                if (failedJob == null)
+                {
+                    LOGGER.debug("Failed to commit group of {} transaction(s), committing them individually",
+                                 jobs.size(), groupFailure);
+                    commitIndividually(jobs);
+                    return;
+                }
+
+                LOGGER.error("Failed to commit transaction", groupFailure);
+                abortJob(failedJob, groupFailure);
+                jobs.remove(failedJob);
+            }
+        }
+
+        private CommitJob<?> findFailedJob(final List<CommitJob<?>> jobs, final Exception failure)
+        {
+            if (jobs.size() == 1)
+            {
+                return jobs.get(0);
+            }
+            if (failure instanceof MissingQueueEntryException)
+            {
+                final TransactionWork work = ((MissingQueueEntryException) failure).getWork();
+                for (CommitJob<?> job : jobs)
+                {
+                    if (job.getWork() == work)
+                    {
+                        return job;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private void commitIndividually(final List<CommitJob<?>> jobs)
+        {
+            for (CommitJob<?> job : jobs)
+            {
+                final Exception failure = commit(Collections.<CommitJob<?>>singletonList(job));
+                if (failure == null)
+                {
+                    job.complete();
+                }
+                else
+                {
+                    LOGGER.error("Failed to commit transaction", failure);
+                    abortJob(job, failure);
+                }
+            }
+        }
+
+        /**
+         * Executes the work of the given jobs and commits it in one database transaction.
+         *
+         * @return the cause of the failure if the work could not be committed, otherwise null
+         */
+        private Exception commit(final List<CommitJob<?>> jobs)
+        {
+            try
+            {
+                final Connection connection = getConnection();
+                final QueueEntryBatch batch = new QueueEntryBatch(_store, connection);
+                for (CommitJob<?> job : jobs)
+                {
+                    job.getWork().execute(batch);
+                }
+                batch.flush();
+                connection.commit();
+            }
+            catch (SQLException | RuntimeException e)
+            {
+                rollbackAndCloseConnection();
+                for (CommitJob<?> job : jobs)
+                {
+                    job.getWork().rolledBack();
+                }
+                return e;
+            }
+
+            for (CommitJob<?> job : jobs)
+            {
+                job.getWork().committed();
+            }
+            return null;
+        }
+
+        private void abortJob(final CommitJob<?> job, final Exception e)
+        {
+            job.abort(e instanceof StoreException ? (StoreException) e : new StoreException("Error commit tx", e));
+        }
+
+        private Connection getConnection() throws SQLException
+        {
+            if (_connection == null)
+            {
+                _connection = _store.newConnection();
+            }
+            return _connection;
+        }
+
+        private void rollbackAndCloseConnection()
+        {
+            if (_connection != null)
+            {
+                try
+                {
+                    _connection.rollback();
+                }
+                catch (SQLException e)
+                {
+                    // ignore - the commit failure has already been reported
+                }
+                closeConnection();
+            }
+        }
+
+        private void closeConnection()
+        {
+            if (_connection != null)
+            {
+                JdbcUtils.closeConnection(_connection, LOGGER);
+                _connection = null;
+            }
+        }
+
+        void addJob(final CommitJob<?> job, final boolean sync)
+        {
+            if (_stopped.get())
+            {
+                throw new IllegalStateException("Commit thread is stopped");
+            }
+            _jobQueue.add(job);
+            final int queuedJobs = _queuedJobs.incrementAndGet();
+            if (sync || queuedJobs == 1 || queuedJobs >= _maxGroupSize)
+            {
+                synchronized (_lock)
+                {
+                    _flushRequested |= sync || queuedJobs >= _maxGroupSize;
+                    _lock.notifyAll();
+                }
+            }
+        }
+
+        void close()
+        {
+            synchronized (_lock)
+            {
+                _stopped.set(true);
+                _lock.notifyAll();
+            }
+        }
+
+        void abortRemainingJobs()
+        {
+            if (hasJobs())
+            {
+                final RuntimeException e = new StoreException("Commit thread has been closed, transaction aborted");
+                CommitJob<?> job;
+                if (_deferredJob != null)
+                {
+                    abortJob(_deferredJob, e);
+                    _deferredJob = null;
+                }
+                while ((job = _jobQueue.poll()) != null)
+                {
+                    abortJob(job, e);
+                }
+            }
+        }
+    }
+}
@@ -22,6 +22,7 @@ package org.apache.qpid.server.store;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -351,6 +352,15 @@ public class MemoryMessageStore implements MessageStore
     {
     }
 
+    @Override
+    public void removeMessages(final Collection<? extends StoredMessage<?>> messages)
+    {
+        for(StoredMessage<?> message : messages)
+        {
+            message.remove();
+        }
+    }
+
     @Override
     public MessageStoreReader newMessageStoreReader()
     {
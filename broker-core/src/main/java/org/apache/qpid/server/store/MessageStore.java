@@ -22,6 +22,7 @@ package org.apache.qpid.server.store;
 
 
 import java.io.File;
+import java.util.Collection;
 
 import org.apache.qpid.server.model.ConfiguredObject;
 import org.apache.qpid.server.store.handler.DistributedTransactionHandler;
@@ -70,6 +71,15 @@ public interface MessageStore
 
     Transaction newTransaction();
 
+    /**
+     * Removes the given messages from the store. Implementations should group the removals into as few
+     * store transactions as they are able, making this preferable to calling {@link StoredMessage#remove()}
+     * on each message when many messages are discarded at once.
+     *
+     * @param messages messages belonging to this store
+     */
+    void removeMessages(Collection<? extends StoredMessage<?>> messages);
+
     /**
      * Called to close and cleanup any resources used by the message store.
      */
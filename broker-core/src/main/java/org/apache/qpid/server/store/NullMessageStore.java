@@ -20,6 +20,7 @@
 package org.apache.qpid.server.store;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.UUID;
 
 import org.apache.qpid.server.model.ConfiguredObject;
@@ -106,6 +107,11 @@ public abstract class NullMessageStore implements MessageStore, DurableConfigura
         return null;
     }
 
+    @Override
+    public void removeMessages(final Collection<? extends StoredMessage<?>> messages)
+    {
+    }
+
     @Override
     public void addEventListener(EventListener eventListener, Event... events)
     {
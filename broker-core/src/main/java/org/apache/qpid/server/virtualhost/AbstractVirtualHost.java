@@ -137,6 +137,8 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
     private static final int HOUSEKEEPING_SHUTDOWN_TIMEOUT = 5;
 
     private ScheduledThreadPoolExecutor _houseKeepingTaskExecutor;
+    private volatile QueueHousekeepingScheduler _queueHousekeepingScheduler;
+    private ScheduledThreadPoolExecutor _readAheadTaskExecutor;
 
     private final Broker<?> _broker;
 
@@ -257,7 +259,7 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
     private MessageDestination _defaultDestination;
 
     private MessageStore _messageStore;
-    private MessageStoreRecoverer _messageStoreRecoverer;
+    private volatile MessageStoreRecoverer _messageStoreRecoverer;
     private final FileSystemSpaceChecker _fileSystemSpaceChecker;
     private int _fileSystemMaxUsagePercent;
     private Collection<VirtualHostLogger> _virtualHostLoggersToClose;
@@ -749,12 +751,31 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
     {
         if (period != 0L)
         {
+            _queueHousekeepingScheduler =
+                    new QueueHousekeepingScheduler(getHousekeepingThreadCount(),
+                                                   getContextValue(Integer.class, HOUSEKEEPING_QUIET_QUEUE_PASS_INTERVAL),
+                                                   new Executor()
+                                                   {
+                                                       @Override
+                                                       public void execute(final Runnable command)
+                                                       {
+                                                           executeTask("Housekeeping[" + getName() + "]",
+                                                                       command,
+                                                                       _housekeepingJobContext);
+                                                       }
+                                                   });
             scheduleHouseKeepingTask(period, new VirtualHostHouseKeepingTask());
         }
     }
 
     protected void shutdownHouseKeeping()
     {
+        if(_readAheadTaskExecutor != null)
+        {
+            // read ahead is only an optimisation, outstanding tasks need not complete
+            _readAheadTaskExecutor.shutdownNow();
+        }
+
         if(_houseKeepingTaskExecutor != null)
         {
             _houseKeepingTaskExecutor.shutdown();
@@ -822,6 +843,19 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
     }
 
 
+    @Override
+    public void executeReadAheadTask(final String name, final Runnable task, AccessControlContext context)
+    {
+        _readAheadTaskExecutor.execute(new HouseKeepingTask(name, this, context)
+        {
+            @Override
+            public void execute()
+            {
+                task.run();
+            }
+        });
+    }
+
     @Override
     public List<String> getEnabledConnectionValidators()
     {
@@ -1371,14 +1405,8 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
             Broker<?> broker = virtualHostNode.getParent(Broker.class);
             broker.assignTargetSizes();
 
-            for (Queue<?> q : getChildren(Queue.class))
-            {
-                if (q.getState() == State.ACTIVE)
-                {
-                    _logger.debug("Checking message status for queue: {}", q.getName());
-                    q.checkMessageStatus();
-                }
-            }
+            _queueHousekeepingScheduler.runPass(getChildren(Queue.class));
+
             for (AMQPConnection<?> connection : _connections)
             {
                 _logger.debug("Checking for long running open transactions on connection {}", connection);
@@ -1623,6 +1651,45 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
         return getMessageDeliveryStatistics().getTotal();
     }
 
+    @Override
+    public long getHousekeepingPassDuration()
+    {
+        final QueueHousekeepingScheduler scheduler = _queueHousekeepingScheduler;
+        return scheduler == null ? 0L : scheduler.getLastPassDuration();
+    }
+
+    @Override
+    public long getHousekeepingLag()
+    {
+        final QueueHousekeepingScheduler scheduler = _queueHousekeepingScheduler;
+        return scheduler == null ? 0L : scheduler.getLastPassLag();
+    }
+
+    @Override
+    public long getHousekeepingSkippedChecks()
+    {
+        final QueueHousekeepingScheduler scheduler = _queueHousekeepingScheduler;
+        return scheduler == null ? 0L : scheduler.getSkippedChecks();
+    }
+
+    @Override
+    public long getRecoveredQueueCount()
+    {
+        final MessageStoreRecoverer recoverer = _messageStoreRecoverer;
+        return recoverer instanceof AsynchronousMessageStoreRecoverer
+                ? ((AsynchronousMessageStoreRecoverer) recoverer).getRecoveredQueueCount()
+                : 0L;
+    }
+
+    @Override
+    public long getRecoveryRate()
+    {
+        final MessageStoreRecoverer recoverer = _messageStoreRecoverer;
+        return recoverer instanceof AsynchronousMessageStoreRecoverer
+                ? ((AsynchronousMessageStoreRecoverer) recoverer).getRecoveryRate()
+                : 0L;
+    }
+
     @Override
     public int getHousekeepingThreadCount()
     {
@@ -1998,6 +2065,9 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
         _houseKeepingTaskExecutor = new HousekeepingExecutor("virtualhost-" + getName() + "-pool",
                                                              getHousekeepingThreadCount(),
                                                              getSystemTaskSubject("Housekeeping", getPrincipal()));
+        _readAheadTaskExecutor = new HousekeepingExecutor("virtualhost-" + getName() + "-readahead-pool",
+                                                          getContextValue(Integer.class, READ_AHEAD_THREAD_COUNT),
+                                                          getSystemTaskSubject("Read Ahead", getPrincipal()));
 
         long threadPoolKeepAliveTimeout = getContextValue(Long.class, CONNECTION_THREAD_POOL_KEEP_ALIVE_TIMEOUT);
 
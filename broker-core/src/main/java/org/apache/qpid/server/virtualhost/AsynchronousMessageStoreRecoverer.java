@@ -22,14 +22,14 @@ package org.apache.qpid.server.virtualhost;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.base.Function;
 import com.google.common.util.concurrent.Futures;
@@ -67,7 +67,7 @@ import org.apache.qpid.transport.util.Functions;
 public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
 {
     private static final Logger _logger = LoggerFactory.getLogger(AsynchronousMessageStoreRecoverer.class);
-    private AsynchronousRecoverer _asynchronousRecoverer;
+    private volatile AsynchronousRecoverer _asynchronousRecoverer;
 
     @Override
     public ListenableFuture<Void> recover(final VirtualHost<?> virtualHost)
@@ -86,11 +86,56 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
         }
     }
 
+    public int getRecoveredQueueCount()
+    {
+        final AsynchronousRecoverer recoverer = _asynchronousRecoverer;
+        return recoverer == null ? 0 : recoverer.getRecoveredQueueCount();
+    }
+
+    public long getRecoveredMessageInstanceCount()
+    {
+        final AsynchronousRecoverer recoverer = _asynchronousRecoverer;
+        return recoverer == null ? 0L : recoverer.getRecoveredMessageInstanceCount();
+    }
+
+    public long getRecoveredMessageCount()
+    {
+        final AsynchronousRecoverer recoverer = _asynchronousRecoverer;
+        return recoverer == null ? 0L : recoverer.getRecoveredMessageCount();
+    }
+
+    public long getRemovedOrphanedMessageCount()
+    {
+        final AsynchronousRecoverer recoverer = _asynchronousRecoverer;
+        return recoverer == null ? 0L : recoverer.getRemovedOrphanedMessageCount();
+    }
+
+    /**
+     * @return the time in milliseconds spent recovering so far, or in total once recovery has completed
+     */
+    public long getRecoveryDuration()
+    {
+        final AsynchronousRecoverer recoverer = _asynchronousRecoverer;
+        return recoverer == null ? 0L : recoverer.getRecoveryDuration();
+    }
+
+    /**
+     * @return the number of message instances recovered per second
+     */
+    public long getRecoveryRate()
+    {
+        final AsynchronousRecoverer recoverer = _asynchronousRecoverer;
+        return recoverer == null ? 0L : recoverer.getRecoveryRate();
+    }
+
     private static class AsynchronousRecoverer
     {
         private static final Logger LOGGER = LoggerFactory.getLogger(AsynchronousRecoverer.class);
 
         public static final int THREAD_POOL_SHUTDOWN_TIMEOUT = 5000;
+        private static final int RECOVERED_MESSAGE_STRIPES = 64;
+        private static final int PROGRESS_UPDATE_INTERVAL = 1024;
+        private static final long PROGRESS_REPORT_PERIOD = 10000L;
         private final VirtualHost<?> _virtualHost;
         private final EventLogger _eventLogger;
         private final MessageStore _store;
@@ -98,9 +143,18 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
         private final long _maxMessageId;
         private final Set<Queue<?>> _recoveringQueues = new CopyOnWriteArraySet<>();
         private final AtomicBoolean _recoveryComplete = new AtomicBoolean();
-        private final Map<Long, MessageReference<? extends ServerMessage<?>>> _recoveredMessages = new HashMap<>();
-        private final ListeningExecutorService _queueRecoveryExecutor = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+        private final RecoveredMessages[] _recoveredMessages = new RecoveredMessages[RECOVERED_MESSAGE_STRIPES];
+        private final ListeningExecutorService _queueRecoveryExecutor;
         private final MessageStore.MessageStoreReader _storeReader;
+        private final int _queueCount;
+        private final int _orphanedMessageRemovalBatchSize;
+        private final long _recoveryStartTime = System.currentTimeMillis();
+        private final AtomicLong _lastProgressReportTime = new AtomicLong(_recoveryStartTime);
+        private final AtomicInteger _recoveredQueueCount = new AtomicInteger();
+        private final AtomicLong _recoveredMessageInstanceCount = new AtomicLong();
+        private final AtomicLong _recoveredMessageCount = new AtomicLong();
+        private final AtomicLong _removedOrphanedMessageCount = new AtomicLong();
+        private volatile long _recoveryEndTime;
         private AtomicBoolean _continueRecovery = new AtomicBoolean(true);
 
         private AsynchronousRecoverer(final VirtualHost<?> virtualHost)
@@ -114,7 +168,29 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
             _maxMessageId = _store.getNextMessageId();
             Collection children = _virtualHost.getChildren(Queue.class);
             _recoveringQueues.addAll((Collection<? extends Queue<?>>) children);
+            _queueCount = _recoveringQueues.size();
+
+            for (int i = 0; i < RECOVERED_MESSAGE_STRIPES; i++)
+            {
+                _recoveredMessages[i] = new RecoveredMessages();
+            }
 
+            // Recovering queues in parallel only pays off when there is store I/O to overlap, and is bounded
+            // to avoid swamping the store with one reader per queue
+            final int threadCount = _store.isPersistent()
+                    ? Math.max(1, Math.min(_queueCount, getContextValue(VirtualHost.QUEUE_RECOVERY_THREAD_COUNT,
+                                                                        VirtualHost.DEFAULT_QUEUE_RECOVERY_THREAD_COUNT)))
+                    : 1;
+            _queueRecoveryExecutor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(threadCount));
+            _orphanedMessageRemovalBatchSize =
+                    Math.max(1, getContextValue(VirtualHost.ORPHANED_MESSAGE_REMOVAL_BATCH_SIZE,
+                                                VirtualHost.DEFAULT_ORPHANED_MESSAGE_REMOVAL_BATCH_SIZE));
+        }
+
+        private int getContextValue(final String name, final int defaultValue)
+        {
+            final Integer value = _virtualHost.getContextValue(Integer.class, name);
+            return value == null ? defaultValue : value;
         }
 
         public ListenableFuture<Void> recover()
@@ -128,6 +204,14 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
                 queueRecoveryFutures.add(result);
             }
             ListenableFuture<List<Void>> combinedFuture = Futures.allAsList(queueRecoveryFutures);
+            combinedFuture.addListener(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    _queueRecoveryExecutor.shutdown();
+                }
+            }, MoreExecutors.directExecutor());
             return Futures.transform(combinedFuture, new Function<List<?>, Void>()
             {
                 @Override
@@ -172,6 +256,10 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
             getEventLogger().message(getLogSubject(), TransactionLogMessages.RECOVERY_COMPLETE(queue.getName(), true));
             queue.completeRecovery();
 
+            _recoveredMessageInstanceCount.addAndGet(handler.getRecoveredCount() % PROGRESS_UPDATE_INTERVAL);
+            _recoveredQueueCount.incrementAndGet();
+            reportProgressIfDue();
+
             _recoveringQueues.remove(queue);
             if (_recoveringQueues.isEmpty() && _recoveryComplete.compareAndSet(false, true))
             {
@@ -179,13 +267,12 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
             }
         }
 
-        private synchronized void completeRecovery()
+        private void completeRecovery()
         {
-            // at this point nothing should be writing to the map of recovered messages
-            for (Map.Entry<Long,MessageReference<? extends ServerMessage<?>>> entry : _recoveredMessages.entrySet())
+            // at this point nothing should be adding to the recovered messages
+            for (RecoveredMessages recoveredMessages : _recoveredMessages)
             {
-                entry.getValue().release();
-                entry.setValue(null); // free up any memory associated with the reference object
+                recoveredMessages.releaseAll(); // free up any memory associated with the reference objects
             }
             final List<StoredMessage<?>> messagesToDelete = new ArrayList<>();
             getStoreReader().visitMessages(new MessageHandler()
@@ -195,50 +282,131 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
                 {
 
                     long messageNumber = storedMessage.getMessageNumber();
-                    if (!_recoveredMessages.containsKey(messageNumber))
+                    if (!getRecoveredMessages(messageNumber).contains(messageNumber))
                     {
                         messagesToDelete.add(storedMessage);
                     }
                     return _continueRecovery.get() && messageNumber < _maxMessageId - 1;
                 }
             });
-            for(StoredMessage<?> storedMessage : messagesToDelete)
+            removeOrphanedMessages(messagesToDelete);
+
+            messagesToDelete.clear();
+            _recoveryEndTime = System.currentTimeMillis();
+            LOGGER.info("Recovery of virtualhost '{}' complete : {} message instances of {} messages recovered "
+                        + "on {} queues in {} ms ({} per second), {} orphaned messages removed",
+                        getVirtualHost().getName(),
+                        getRecoveredMessageInstanceCount(),
+                        getRecoveredMessageCount(),
+                        getRecoveredQueueCount(),
+                        getRecoveryDuration(),
+                        getRecoveryRate(),
+                        getRemovedOrphanedMessageCount());
+            for (RecoveredMessages recoveredMessages : _recoveredMessages)
+            {
+                recoveredMessages.clear();
+            }
+            _storeReader.close();
+        }
+
+        private void removeOrphanedMessages(final List<StoredMessage<?>> messagesToDelete)
+        {
+            for (int start = 0; start < messagesToDelete.size() && _continueRecovery.get();
+                 start += _orphanedMessageRemovalBatchSize)
             {
-                if (_continueRecovery.get())
+                final List<StoredMessage<?>> batch =
+                        messagesToDelete.subList(start, Math.min(messagesToDelete.size(),
+                                                                 start + _orphanedMessageRemovalBatchSize));
+                for (StoredMessage<?> storedMessage : batch)
                 {
                     _logger.info("Message id "
                                  + storedMessage.getMessageNumber()
                                  + " in store, but not in any queue - removing....");
-                    storedMessage.remove();
                 }
+                _store.removeMessages(batch);
+                _removedOrphanedMessageCount.addAndGet(batch.size());
             }
+        }
 
-            messagesToDelete.clear();
-            _recoveredMessages.clear();
-            _storeReader.close();
+        private RecoveredMessages getRecoveredMessages(final long messageId)
+        {
+            return _recoveredMessages[RecoveredMessages.hash(messageId) & (RECOVERED_MESSAGE_STRIPES - 1)];
         }
 
-        private synchronized ServerMessage<?> getRecoveredMessage(final long messageId)
+        private ServerMessage<?> getRecoveredMessage(final long messageId)
         {
-            MessageReference<? extends ServerMessage<?>> ref = _recoveredMessages.get(messageId);
-            if (ref == null)
+            final RecoveredMessages recoveredMessages = getRecoveredMessages(messageId);
+            synchronized (recoveredMessages)
             {
-                StoredMessage<?> message = _storeReader.getMessage(messageId);
-                if(message != null)
+                MessageReference<? extends ServerMessage<?>> ref = recoveredMessages.get(messageId);
+                if (ref == null)
                 {
-                    StorableMessageMetaData metaData = message.getMetaData();
+                    StoredMessage<?> message = _storeReader.getMessage(messageId);
+                    if(message != null)
+                    {
+                        StorableMessageMetaData metaData = message.getMetaData();
 
-                    @SuppressWarnings("rawtypes")
-                    MessageMetaDataType type = metaData.getType();
+                        @SuppressWarnings("rawtypes")
+                        MessageMetaDataType type = metaData.getType();
 
-                    @SuppressWarnings("unchecked")
-                    ServerMessage<?> serverMessage = type.createMessage(message);
+                        @SuppressWarnings("unchecked")
+                        ServerMessage<?> serverMessage = type.createMessage(message);
 
-                    ref = serverMessage.newReference();
-                    _recoveredMessages.put(messageId, ref);
+                        ref = serverMessage.newReference();
+                        recoveredMessages.put(messageId, ref);
+                        _recoveredMessageCount.incrementAndGet();
+                    }
                 }
+                return ref == null ? null : ref.getMessage();
             }
-            return ref == null ? null : ref.getMessage();
+        }
+
+        private void reportProgressIfDue()
+        {
+            final long now = System.currentTimeMillis();
+            final long lastReportTime = _lastProgressReportTime.get();
+            if (now - lastReportTime >= PROGRESS_REPORT_PERIOD
+                && _lastProgressReportTime.compareAndSet(lastReportTime, now))
+            {
+                LOGGER.info("Recovery of virtualhost '{}' in progress : {} of {} queues recovered, "
+                            + "{} message instances recovered ({} per second)",
+                            getVirtualHost().getName(),
+                            getRecoveredQueueCount(),
+                            _queueCount,
+                            getRecoveredMessageInstanceCount(),
+                            getRecoveryRate());
+            }
+        }
+
+        int getRecoveredQueueCount()
+        {
+            return _recoveredQueueCount.get();
+        }
+
+        long getRecoveredMessageInstanceCount()
+        {
+            return _recoveredMessageInstanceCount.get();
+        }
+
+        long getRecoveredMessageCount()
+        {
+            return _recoveredMessageCount.get();
+        }
+
+        long getRemovedOrphanedMessageCount()
+        {
+            return _removedOrphanedMessageCount.get();
+        }
+
+        long getRecoveryDuration()
+        {
+            final long endTime = _recoveryEndTime;
+            return (endTime == 0L ? System.currentTimeMillis() : endTime) - _recoveryStartTime;
+        }
+
+        long getRecoveryRate()
+        {
+            return getRecoveredMessageInstanceCount() * 1000L / Math.max(1L, getRecoveryDuration());
         }
 
         public void cancel()
@@ -487,7 +655,11 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
                         }
 
                         _queue.recover(message, record);
-                        _recoveredCount++;
+                        if (++_recoveredCount % PROGRESS_UPDATE_INTERVAL == 0)
+                        {
+                            _recoveredMessageInstanceCount.addAndGet(PROGRESS_UPDATE_INTERVAL);
+                            reportProgressIfDue();
+                        }
                     }
                     else
                     {
@@ -514,6 +686,108 @@ public class AsynchronousMessageStoreRecoverer implements MessageStoreRecoverer
                 return _recoveredCount;
             }
         }
+
+        /**
+         * One stripe of the messages recovered so far, keyed on the primitive message id in an open addressed
+         * table. Queue recovery threads only contend with each other when looking up messages in the same stripe.
+         * Callers must hold the stripe's monitor whilst recovery is in progress.
+         */
+        private static final class RecoveredMessages
+        {
+            private static final Object RELEASED = new Object();
+            private static final int INITIAL_CAPACITY = 64;
+
+            private long[] _messageIds = new long[INITIAL_CAPACITY];
+            private Object[] _references = new Object[INITIAL_CAPACITY];
+            private int _size;
+
+            static int hash(final long messageId)
+            {
+                final int h = (int) (messageId ^ (messageId >>> 32)) * 0x9E3779B9;
+                return h ^ (h >>> 16);
+            }
+
+            @SuppressWarnings("unchecked")
+            MessageReference<? extends ServerMessage<?>> get(final long messageId)
+            {
+                final Object reference = _references[indexOf(_messageIds, _references, messageId)];
+                return reference == RELEASED ? null : (MessageReference<? extends ServerMessage<?>>) reference;
+            }
+
+            synchronized boolean contains(final long messageId)
+            {
+                return _references[indexOf(_messageIds, _references, messageId)] != null;
+            }
+
+            void put(final long messageId, final MessageReference<? extends ServerMessage<?>> reference)
+            {
+                if ((_size + 1) * 3 > _references.length * 2)
+                {
+                    resize();
+                }
+                final int index = indexOf(_messageIds, _references, messageId);
+                if (_references[index] == null)
+                {
+                    _size++;
+                }
+                _messageIds[index] = messageId;
+                _references[index] = reference;
+            }
+
+            /**
+             * Releases the recovered message references whilst remembering which message ids were recovered.
+             */
+            synchronized void releaseAll()
+            {
+                for (int i = 0; i < _references.length; i++)
+                {
+                    final Object reference = _references[i];
+                    if (reference != null && reference != RELEASED)
+                    {
+                        ((MessageReference<?>) reference).release();
+                        _references[i] = RELEASED;
+                    }
+                }
+            }
+
+            synchronized void clear()
+            {
+                _messageIds = new long[INITIAL_CAPACITY];
+                _references = new Object[INITIAL_CAPACITY];
+                _size = 0;
+            }
+
+            private void resize()
+            {
+                final long[] oldMessageIds = _messageIds;
+                final Object[] oldReferences = _references;
+                final long[] messageIds = new long[oldMessageIds.length * 2];
+                final Object[] references = new Object[oldReferences.length * 2];
+                for (int i = 0; i < oldReferences.length; i++)
+                {
+                    if (oldReferences[i] != null)
+                    {
+                        final int index = indexOf(messageIds, references, oldMessageIds[i]);
+                        messageIds[index] = oldMessageIds[i];
+                        references[index] = oldReferences[i];
+                    }
+                }
+                _messageIds = messageIds;
+                _references = references;
+            }
+
+            private static int indexOf(final long[] messageIds, final Object[] references, final long messageId)
+            {
+                final int mask = references.length - 1;
+                // the low bits of the hash select the stripe, so use the higher bits within it
+                int index = (hash(messageId) >>> 6) & mask;
+                while (references[index] != null && messageIds[index] != messageId)
+                {
+                    index = (index + 1) & mask;
+                }
+                return index;
+            }
+        }
     }
 
 
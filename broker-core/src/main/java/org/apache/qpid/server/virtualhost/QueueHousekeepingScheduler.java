@@ -0,0 +1,277 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.virtualhost;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.server.model.Queue;
+import org.apache.qpid.server.model.State;
+
+/**
+ * Spreads the periodic message status checks of a virtualhost's queues across a number of housekeeping threads.
+ *
+ * On each pass the queues which are due a check are divided into at most <code>maxParallelism</code> batches of
+ * roughly equal depth, each of which is handed to the executor.  A queue which reports that it has work to do at
+ * every period (see {@link Queue#isMessageStatusCheckRequired()}) is checked on every pass; any other queue is
+ * checked only every <code>quietPassInterval</code> passes.  A queue whose previous check has not yet completed is
+ * skipped.
+ *
+ * The duration of the most recent pass (from its start until its last batch completes) and its lag (the longest
+ * time from the start of the pass until the check of one of its queues began) are recorded.
+ */
+final class QueueHousekeepingScheduler
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueueHousekeepingScheduler.class);
+
+    private static final Comparator<DueQueue> DEEPEST_FIRST = new Comparator<DueQueue>()
+    {
+        @Override
+        public int compare(final DueQueue q1, final DueQueue q2)
+        {
+            return Long.compare(q2._depth, q1._depth);
+        }
+    };
+
+    private final int _maxParallelism;
+    private final int _quietPassInterval;
+    private final Executor _executor;
+    private final ConcurrentMap<Queue<?>, QueueSchedule> _schedules = new ConcurrentHashMap<>();
+    private final AtomicLong _lastPassDuration = new AtomicLong();
+    private final AtomicLong _lastPassLag = new AtomicLong();
+    private final AtomicLong _skippedChecks = new AtomicLong();
+    private long _pass;
+
+    QueueHousekeepingScheduler(final int maxParallelism, final int quietPassInterval, final Executor executor)
+    {
+        _maxParallelism = Math.max(1, maxParallelism);
+        _quietPassInterval = Math.max(1, quietPassInterval);
+        _executor = executor;
+    }
+
+    /**
+     * Starts a housekeeping pass over the given queues.  Must not be called concurrently.
+     */
+    void runPass(final Collection<? extends Queue> queues)
+    {
+        final long pass = ++_pass;
+        final long passStart = System.currentTimeMillis();
+
+        final List<DueQueue> dueQueues = new ArrayList<>();
+        final Set<Queue<?>> currentQueues = new HashSet<>();
+        for (Queue<?> queue : queues)
+        {
+            currentQueues.add(queue);
+            QueueSchedule schedule = _schedules.get(queue);
+            if (schedule == null)
+            {
+                schedule = new QueueSchedule();
+                _schedules.put(queue, schedule);
+            }
+
+            if (queue.getState() == State.ACTIVE
+                && (pass >= schedule._nextPass || queue.isMessageStatusCheckRequired()))
+            {
+                if (schedule._inProgress.get())
+                {
+                    LOGGER.debug("Check of queue {} from an earlier pass still in progress", queue.getName());
+                    _skippedChecks.incrementAndGet();
+                }
+                else
+                {
+                    dueQueues.add(new DueQueue(queue));
+                }
+            }
+        }
+        _schedules.keySet().retainAll(currentQueues);
+
+        if (dueQueues.isEmpty())
+        {
+            _lastPassDuration.set(System.currentTimeMillis() - passStart);
+            _lastPassLag.set(0L);
+            return;
+        }
+
+        // assign the deepest queues first, each to the batch with the least depth so far; the depths are
+        // snapshotted when the queue is found due, as the live depths may change while sorting
+        Collections.sort(dueQueues, DEEPEST_FIRST);
+        final int batchCount = Math.min(_maxParallelism, dueQueues.size());
+        final List<List<Queue<?>>> batches = new ArrayList<>(batchCount);
+        final long[] batchDepths = new long[batchCount];
+        for (int i = 0; i < batchCount; i++)
+        {
+            batches.add(new ArrayList<Queue<?>>());
+        }
+        for (DueQueue dueQueue : dueQueues)
+        {
+            int lightest = 0;
+            for (int i = 1; i < batchCount; i++)
+            {
+                if (batchDepths[i] < batchDepths[lightest])
+                {
+                    lightest = i;
+                }
+            }
+            batches.get(lightest).add(dueQueue._queue);
+            batchDepths[lightest] += dueQueue._depth + 1;
+            _schedules.get(dueQueue._queue)._inProgress.set(true);
+        }
+
+        final PassProgress progress = new PassProgress(passStart, batchCount);
+        for (final List<Queue<?>> batch : batches)
+        {
+            final Runnable batchTask = new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    checkQueues(batch, pass, progress);
+                }
+            };
+            try
+            {
+                _executor.execute(batchTask);
+            }
+            catch (RejectedExecutionException e)
+            {
+                LOGGER.debug("Housekeeping of {} queues rejected", batch.size(), e);
+                for (Queue<?> queue : batch)
+                {
+                    final QueueSchedule schedule = _schedules.get(queue);
+                    if (schedule != null)
+                    {
+                        schedule._inProgress.set(false);
+                    }
+                }
+                progress.batchComplete(0L);
+            }
+        }
+    }
+
+    private void checkQueues(final List<Queue<?>> batch, final long pass, final PassProgress progress)
+    {
+        long lag = 0L;
+        try
+        {
+            for (Queue<?> queue : batch)
+            {
+                lag = Math.max(lag, System.currentTimeMillis() - progress._passStart);
+                final QueueSchedule schedule = _schedules.get(queue);
+                try
+                {
+                    if (queue.getState() == State.ACTIVE)
+                    {
+                        LOGGER.debug("Checking message status for queue: {}", queue.getName());
+                        queue.checkMessageStatus();
+                    }
+                }
+                finally
+                {
+                    if (schedule != null)
+                    {
+                        schedule._nextPass = pass + _quietPassInterval;
+                        schedule._inProgress.set(false);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            progress.batchComplete(lag);
+        }
+    }
+
+    long getLastPassDuration()
+    {
+        return _lastPassDuration.get();
+    }
+
+    long getLastPassLag()
+    {
+        return _lastPassLag.get();
+    }
+
+    long getSkippedChecks()
+    {
+        return _skippedChecks.get();
+    }
+
+    private static final class DueQueue
+    {
+        private final Queue<?> _queue;
+        private final long _depth;
+
+        private DueQueue(final Queue<?> queue)
+        {
+            _queue = queue;
+            _depth = queue.getQueueDepthMessages();
+        }
+    }
+
+    private static final class QueueSchedule
+    {
+        private final AtomicBoolean _inProgress = new AtomicBoolean();
+        private volatile long _nextPass;
+    }
+
+    private final class PassProgress
+    {
+        private final long _passStart;
+        private final AtomicInteger _outstandingBatches;
+        private final AtomicLong _maxLag = new AtomicLong();
+
+        private PassProgress(final long passStart, final int batches)
+        {
+            _passStart = passStart;
+            _outstandingBatches = new AtomicInteger(batches);
+        }
+
+        private void batchComplete(final long lag)
+        {
+            long currentMax;
+            while (lag > (currentMax = _maxLag.get()) && !_maxLag.compareAndSet(currentMax, lag))
+            {
+                // retry
+            }
+
+            if (_outstandingBatches.decrementAndGet() == 0)
+            {
+                _lastPassDuration.set(System.currentTimeMillis() - _passStart);
+                _lastPassLag.set(_maxLag.get());
+            }
+        }
+    }
+}
@@ -143,6 +143,12 @@ class RedirectingVirtualHostImpl
         throwUnsupportedForRedirector();
     }
 
+    @Override
+    public void executeReadAheadTask(final String name, Runnable task, AccessControlContext context)
+    {
+        throwUnsupportedForRedirector();
+    }
+
     @Override
     protected <C extends ConfiguredObject> ListenableFuture<C> addChildAsync(final Class<C> childClass,
                                                                              final Map<String, Object> attributes,
@@ -285,6 +291,36 @@ class RedirectingVirtualHostImpl
         return 0;
     }
 
+    @Override
+    public long getHousekeepingPassDuration()
+    {
+        return 0;
+    }
+
+    @Override
+    public long getHousekeepingLag()
+    {
+        return 0;
+    }
+
+    @Override
+    public long getHousekeepingSkippedChecks()
+    {
+        return 0;
+    }
+
+    @Override
+    public long getRecoveredQueueCount()
+    {
+        return 0;
+    }
+
+    @Override
+    public long getRecoveryRate()
+    {
+        return 0;
+    }
+
     @Override
     public Collection<? extends Connection<?>> getConnections()
     {
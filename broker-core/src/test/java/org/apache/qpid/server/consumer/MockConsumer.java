@@ -381,6 +381,18 @@ public class MockConsumer implements ConsumerTarget
             return null;
         }
 
+        @Override
+        public long getPublishAuthorisationCacheHits()
+        {
+            return 0;
+        }
+
+        @Override
+        public long getPublishAuthorisationCacheMisses()
+        {
+            return 0;
+        }
+
         @Override
         public int getChannelId()
         {
@@ -33,6 +33,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.qpid.server.model.Broker;
 import org.apache.qpid.server.model.VirtualHostNode;
@@ -224,6 +226,34 @@ public class HeadersExchangeTest extends QpidTestCase
     }
 
 
+    public void testBindingWithoutHeaderConditionsMatchesEverything() throws Exception
+    {
+        Queue<?> q1 = createAndBind("Q1");
+        Queue<?> q2 = createAndBind("Q2", "X-match=any");
+        Queue<?> q3 = createAndBind("Q3", "F0000=Aardvark");
+
+        routeAndTest(mockMessage(getArgsMapFromStrings("F0000")), q1, q2);
+        routeAndTest(mockMessage(getArgsMapFromStrings("F0000=Aardvark")), q1, q2, q3);
+        routeAndTest(mockMessage(getArgsMapFromStrings()), q1, q2);
+    }
+
+    public void testAllAndAnyBindingsSharingHeaders() throws Exception
+    {
+        Queue<?> q1 = createAndBind("Q1", "F0000=Aardvark", "F0001=Bear", "F0002");
+        Queue<?> q2 = createAndBind("Q2", "F0000=Aardvark", "F0001=Bear", "F0002", "X-match=any");
+        Queue<?> q3 = createAndBind("Q3", "F0000=Apple", "F0001=Bear");
+
+        routeAndTest(mockMessage(getArgsMapFromStrings("F0000=Aardvark", "F0001=Bear")), q2);
+        routeAndTest(mockMessage(getArgsMapFromStrings("F0000=Aardvark", "F0001=Bear", "F0002")), q1, q2);
+        routeAndTest(mockMessage(getArgsMapFromStrings("F0000=Apple", "F0001=Bear", "F0002")), q2, q3);
+        routeAndTest(mockMessage(getArgsMapFromStrings("F0000=Apple", "F0001=Cat")));
+
+        _exchange.deleteBinding("Q2", q2);
+
+        routeAndTest(mockMessage(getArgsMapFromStrings("F0000=Aardvark", "F0001=Bear", "F0002")), q1);
+        routeAndTest(mockMessage(getArgsMapFromStrings("F0000=Apple", "F0001=Bear")), q3);
+    }
+
     public void testWithSelectors() throws Exception
     {
         Queue<?> q1 = create("Q1");
@@ -247,6 +277,44 @@ public class HeadersExchangeTest extends QpidTestCase
 
     }
 
+    public void testRouteDuringBindingUpdateDoesNotMissBinding() throws Exception
+    {
+        final Queue<?> q1 = createAndBind("Q1", "F0000=Aardvark");
+        final ServerMessage message = mockMessage(getArgsMapFromStrings("F0000=Aardvark", "F0001=Bear"));
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicInteger missed = new AtomicInteger();
+
+        Thread router = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                while (!done.get())
+                {
+                    if (!_exchange.route(message, "", InstanceProperties.EMPTY).contains(q1))
+                    {
+                        missed.incrementAndGet();
+                    }
+                }
+            }
+        });
+        router.start();
+        try
+        {
+            for (int i = 0; i < 1000; i++)
+            {
+                _exchange.replaceBinding("Q1", q1, getArgsMapFromStrings(i % 2 == 0 ? "F0001=Bear" : "F0000=Aardvark"));
+            }
+        }
+        finally
+        {
+            done.set(true);
+            router.join();
+        }
+
+        assertEquals("Message not routed to binding during update", 0, missed.get());
+    }
+
     private ServerMessage mockMessage(final Map<String, Object> headerValues)
     {
         final AMQMessageHeader header = mock(AMQMessageHeader.class);
@@ -52,7 +52,7 @@ import org.apache.qpid.test.utils.QpidTestCase;
 public class TopicExchangeTest extends QpidTestCase
 {
 
-    private TopicExchange _exchange;
+    private TopicExchange<?> _exchange;
     private VirtualHost<?> _vhost;
 
 
@@ -67,7 +67,7 @@ public class TopicExchangeTest extends QpidTestCase
         attributes.put(Exchange.DURABLE, false);
         attributes.put(Exchange.TYPE, ExchangeDefaults.TOPIC_EXCHANGE_CLASS);
 
-        _exchange = (TopicExchange) _vhost.createChild(Exchange.class, attributes, _vhost);
+        _exchange = (TopicExchange<?>) _vhost.createChild(Exchange.class, attributes, _vhost);
         _exchange.open();
     }
 
@@ -430,6 +430,33 @@ public class TopicExchangeTest extends QpidTestCase
 
     }
 
+    public void testRoutingKeyCacheInvalidatedByBindingChanges() throws Exception
+    {
+        Queue<?> queue1 = createQueue("queue1");
+        Queue<?> queue2 = createQueue("queue2");
+        createBinding(UUID.randomUUID(), "a.*", queue1, _exchange, null);
+        createBinding(UUID.randomUUID(), "a.b", queue1, _exchange, null);
+
+        Assert.assertEquals(1, routeMessage("a.b", 0l));
+        Assert.assertEquals(1, routeMessage("a.b", 1l));
+        Assert.assertEquals("Unexpected cache misses", 1, _exchange.getRoutingKeyCacheMisses());
+        Assert.assertEquals("Unexpected cache hits", 1, _exchange.getRoutingKeyCacheHits());
+
+        createBinding(UUID.randomUUID(), "#", queue2, _exchange, null);
+
+        Assert.assertEquals("New binding not seen by cached routing key", 2, routeMessage("a.b", 2l));
+        Assert.assertEquals("Unexpected cache misses", 2, _exchange.getRoutingKeyCacheMisses());
+
+        _exchange.deleteBinding("#", queue2);
+
+        Assert.assertEquals("Deleted binding still seen by cached routing key", 1, routeMessage("a.b", 3l));
+        Assert.assertEquals(1, routeMessage("a.b", 4l));
+        Assert.assertEquals("Unexpected cache misses", 3, _exchange.getRoutingKeyCacheMisses());
+        Assert.assertEquals("Unexpected cache hits", 2, _exchange.getRoutingKeyCacheHits());
+        Assert.assertEquals(5, queue1.getQueueDepthMessages());
+        Assert.assertEquals(1, queue2.getQueueDepthMessages());
+    }
+
     // This demonstrates QPID-5785.  Deleting the exchange after this combination of binding
     // updates generated a NPE
     public void testUpdateBindingAddingSelector() throws Exception
@@ -21,10 +21,15 @@
 package org.apache.qpid.server.message;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.qpid.server.model.NamedAddressSpace;
+import org.apache.qpid.server.plugin.MessageConverter;
 import org.apache.qpid.server.store.StorableMessageMetaData;
 import org.apache.qpid.server.store.StoredMessage;
 import org.apache.qpid.server.store.TransactionLogResource;
@@ -32,7 +37,7 @@ import org.apache.qpid.test.utils.QpidTestCase;
 
 public class AbstractServerMessageTest extends QpidTestCase
 {
-    private static class TestMessage<T extends StorableMessageMetaData> extends AbstractServerMessageImpl<TestMessage<T>,T>
+    static class TestMessage<T extends StorableMessageMetaData> extends AbstractServerMessageImpl<TestMessage<T>,T>
     {
 
         public TestMessage(final StoredMessage<T> handle,
@@ -72,6 +77,44 @@ public class AbstractServerMessageTest extends QpidTestCase
         }
     }
 
+    static class ConvertedTestMessage extends TestMessage<StorableMessageMetaData>
+    {
+        public ConvertedTestMessage(final StoredMessage<StorableMessageMetaData> handle)
+        {
+            super(handle, null);
+        }
+    }
+
+    public static class TestMessageConverter implements MessageConverter<TestMessage, ConvertedTestMessage>
+    {
+        private static final AtomicInteger CONVERSIONS = new AtomicInteger();
+
+        @Override
+        public Class<TestMessage> getInputClass()
+        {
+            return TestMessage.class;
+        }
+
+        @Override
+        public Class<ConvertedTestMessage> getOutputClass()
+        {
+            return ConvertedTestMessage.class;
+        }
+
+        @Override
+        public ConvertedTestMessage convert(final TestMessage message, final NamedAddressSpace addressSpace)
+        {
+            CONVERSIONS.incrementAndGet();
+            return new ConvertedTestMessage(mock(StoredMessage.class));
+        }
+
+        @Override
+        public String getType()
+        {
+            return "Test to Converted Test";
+        }
+    }
+
     private TransactionLogResource createQueue(String name)
     {
         TransactionLogResource queue = mock(TransactionLogResource.class);
@@ -143,4 +186,69 @@ public class AbstractServerMessageTest extends QpidTestCase
         }
 
     }
+
+    public void testConvertedMessageSharedUntilMessageDeleted()
+    {
+        StoredMessage<StorableMessageMetaData> storedMessage = mock(StoredMessage.class);
+        when(storedMessage.isInMemory()).thenReturn(true);
+        TestMessage<StorableMessageMetaData> msg = new TestMessage<StorableMessageMetaData>(storedMessage, this);
+        MessageReference<TestMessage<StorableMessageMetaData>> ref = msg.newReference();
+
+        int conversions = TestMessageConverter.CONVERSIONS.get();
+        ConvertedTestMessage converted = msg.getConvertedMessage(ConvertedTestMessage.class, null);
+        assertNotNull(converted);
+        assertSame("Conversion should be shared", converted, msg.getConvertedMessage(ConvertedTestMessage.class, null));
+        assertEquals("Unexpected number of conversions", conversions + 1, TestMessageConverter.CONVERSIONS.get());
+        assertSame("Message should not be converted to its own class", msg, msg.getConvertedMessage(TestMessage.class, null));
+
+        verify(converted.getStoredMessage(), never()).remove();
+        ref.release();
+        verify(storedMessage).remove();
+        verify(converted.getStoredMessage()).remove();
+    }
+
+    public void testConvertedMessageNotRetainedWhenContentNotInMemory()
+    {
+        StoredMessage<StorableMessageMetaData> storedMessage = mock(StoredMessage.class);
+        when(storedMessage.isInMemory()).thenReturn(false);
+        TestMessage<StorableMessageMetaData> msg = new TestMessage<StorableMessageMetaData>(storedMessage, this);
+
+        ConvertedTestMessage converted = msg.getConvertedMessage(ConvertedTestMessage.class, null);
+        assertNotSame("Conversion should not be retained",
+                      converted, msg.getConvertedMessage(ConvertedTestMessage.class, null));
+    }
+
+    public void testConvertedMessageReleasedWhenContentFlowedToDisk()
+    {
+        StoredMessage<StorableMessageMetaData> storedMessage = mock(StoredMessage.class);
+        when(storedMessage.isInMemory()).thenReturn(true);
+        TestMessage<StorableMessageMetaData> msg = new TestMessage<StorableMessageMetaData>(storedMessage, this);
+
+        ConvertedTestMessage converted = msg.getConvertedMessage(ConvertedTestMessage.class, null);
+        assertSame("Conversion should be shared", converted, msg.getConvertedMessage(ConvertedTestMessage.class, null));
+
+        when(storedMessage.flowToDisk()).thenReturn(true);
+        assertTrue("Unexpected flow to disk result", msg.flowToDisk());
+        verify(storedMessage).flowToDisk();
+        verify(converted.getStoredMessage(), never()).remove();
+
+        when(storedMessage.isInMemory()).thenReturn(false);
+        assertNotSame("Conversion should not be retained after flow to disk",
+                      converted, msg.getConvertedMessage(ConvertedTestMessage.class, null));
+    }
+
+    public void testConvertedMessageNotSharedBetweenAddressSpaces()
+    {
+        StoredMessage<StorableMessageMetaData> storedMessage = mock(StoredMessage.class);
+        when(storedMessage.isInMemory()).thenReturn(true);
+        TestMessage<StorableMessageMetaData> msg = new TestMessage<StorableMessageMetaData>(storedMessage, this);
+        NamedAddressSpace addressSpace1 = mock(NamedAddressSpace.class);
+        NamedAddressSpace addressSpace2 = mock(NamedAddressSpace.class);
+
+        ConvertedTestMessage converted1 = msg.getConvertedMessage(ConvertedTestMessage.class, addressSpace1);
+        ConvertedTestMessage converted2 = msg.getConvertedMessage(ConvertedTestMessage.class, addressSpace2);
+        assertNotSame("Conversions for different address spaces should not be shared", converted1, converted2);
+        assertSame("Conversion should be shared within an address space",
+                   converted1, msg.getConvertedMessage(ConvertedTestMessage.class, addressSpace1));
+    }
 }
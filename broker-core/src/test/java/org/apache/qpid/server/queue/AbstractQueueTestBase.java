@@ -31,6 +31,7 @@ import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -850,6 +851,44 @@ abstract class AbstractQueueTestBase extends QpidTestCase
         }
     }
 
+    public void testMessageIndexLookupsSkipDequeuedEntry()
+    {
+        Map<String,Object> attributes = new HashMap<>(_arguments);
+        attributes.put(Queue.NAME, "indexed" + _qname);
+        attributes.put(Queue.OWNER, _owner);
+        attributes.put(Queue.CONTEXT, Collections.singletonMap(Queue.QUEUE_MESSAGE_INDEX_ENABLED, "true"));
+        Queue<?> queue = _virtualHost.createChild(Queue.class, attributes);
+
+        int messageNumber = 4;
+        int dequeueMessageIndex = 1;
+        enqueueGivenNumberOfMessages(queue, messageNumber);
+        dequeueMessage(queue, dequeueMessageIndex);
+
+        assertNull("Dequeued message returned", queue.getMessageOnTheQueue(dequeueMessageIndex));
+        QueueEntry entry = queue.getMessageOnTheQueue(2);
+        assertNotNull("Message not found", entry);
+        assertEquals("Unexpected message", 2L, entry.getMessage().getMessageNumber());
+
+        List<? extends QueueEntry> entries = ((AbstractQueue<?>) queue).getMessagesOnTheQueue(0L, 2L);
+        assertEquals("Unexpected number of entries in range", 2, entries.size());
+        assertEquals("Unexpected first entry", 0L, entries.get(0).getMessage().getMessageNumber());
+        assertEquals("Unexpected second entry", 2L, entries.get(1).getMessage().getMessageNumber());
+
+        final List<Long> visited = new ArrayList<>();
+        queue.visit(new QueueEntryVisitor()
+        {
+            @Override
+            public boolean visit(final QueueEntry entry)
+            {
+                visited.add(entry.getMessage().getMessageNumber());
+                return false;
+            }
+        }, Arrays.asList(3L, 1L, 0L, 99L));
+        assertEquals("Unexpected entries visited", Arrays.asList(0L, 3L), visited);
+
+        queue.close();
+    }
+
     /**
      * Tests that all messages including dequeued one are deleted from the queue
      * on invocation of {@link AbstractQueue#clearQueue()}
@@ -1131,6 +1170,18 @@ abstract class AbstractQueueTestBase extends QpidTestCase
         _arguments = arguments;
     }
 
+    public void testMessageStatusCheckRequiredWhileMessagesMayExpire() throws Exception
+    {
+        assertFalse("Empty queue should not require a status check", _queue.isMessageStatusCheckRequired());
+
+        ServerMessage message = createMessage(new Long(24));
+        when(message.getExpiration()).thenReturn(System.currentTimeMillis() + 60000L);
+        _queue.enqueue(message, null, null);
+
+        assertTrue("Queue holding an expiring message should require a status check",
+                   _queue.isMessageStatusCheckRequired());
+    }
+
     protected ServerMessage createMessage(Long id, byte priority, final Map<String,Object> arguments, long arrivalTime)
     {
         ServerMessage message = createMessage(id);
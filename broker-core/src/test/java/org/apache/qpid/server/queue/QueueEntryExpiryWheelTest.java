@@ -0,0 +1,135 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class QueueEntryExpiryWheelTest extends QpidTestCase
+{
+    private static final long TICK = 100L;
+
+    private QueueEntryExpiryWheel _wheel;
+    private CollectingVisitor _visitor;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _wheel = new QueueEntryExpiryWheel(TICK);
+        _visitor = new CollectingVisitor();
+    }
+
+    public void testEntryWithoutExpirationIsIgnored()
+    {
+        _wheel.add(createEntry(0L, false));
+        assertEquals("Unexpected wheel size", 0, _wheel.size());
+    }
+
+    public void testOnlyExpiredEntriesVisited()
+    {
+        long now = System.currentTimeMillis();
+        QueueEntry expired = createEntry(now - 10 * TICK, true);
+        QueueEntry notExpired = createEntry(now + 100 * TICK, false);
+        _wheel.add(expired);
+        _wheel.add(notExpired);
+
+        assertEquals("Unexpected number of expired entries", 1, _wheel.expire(now, _visitor));
+        assertEquals("Unexpected entries visited", 1, _visitor._visited.size());
+        assertSame("Unexpected entry visited", expired, _visitor._visited.get(0));
+        assertEquals("Expired entry not removed", 1, _wheel.size());
+
+        assertEquals("Expired entry visited twice", 0, _wheel.expire(now, _visitor));
+    }
+
+    public void testFutureBucketsNotVisited()
+    {
+        long now = System.currentTimeMillis();
+        QueueEntry entry = createEntry(now + 100 * TICK, false);
+        _wheel.add(entry);
+
+        when(entry.expired()).thenReturn(true);
+        assertEquals("Entry in a future bucket visited", 0, _wheel.expire(now, _visitor));
+        assertEquals("Entry in a due bucket not visited", 1, _wheel.expire(now + 101 * TICK, _visitor));
+    }
+
+    public void testRemovedEntryNotVisited()
+    {
+        long now = System.currentTimeMillis();
+        QueueEntry entry = createEntry(now + TICK, false);
+        _wheel.add(entry);
+        _wheel.remove(entry);
+        assertEquals("Unexpected wheel size", 0, _wheel.size());
+
+        when(entry.expired()).thenReturn(true);
+        assertEquals("Removed entry visited", 0, _wheel.expire(now + 10 * TICK, _visitor));
+    }
+
+    public void testRemovedEntryAddedAfterExpiryNotVisited()
+    {
+        long now = System.currentTimeMillis();
+        QueueEntry entry = createEntry(now - 10 * TICK, false);
+        _wheel.add(entry);
+        assertEquals("Unexpected wheel size", 1, _wheel.size());
+
+        _wheel.remove(entry);
+        assertEquals("Entry added after its expiry not removed", 0, _wheel.size());
+
+        when(entry.expired()).thenReturn(true);
+        assertEquals("Removed entry visited", 0, _wheel.expire(now + 10 * TICK, _visitor));
+    }
+
+    public void testDeletedEntryDiscarded()
+    {
+        long now = System.currentTimeMillis();
+        QueueEntry entry = createEntry(now - TICK, true);
+        when(entry.isDeleted()).thenReturn(true);
+        _wheel.add(entry);
+
+        assertEquals("Deleted entry visited", 0, _wheel.expire(now, _visitor));
+        assertEquals("Deleted entry not discarded", 0, _wheel.size());
+    }
+
+    private QueueEntry createEntry(final long expiration, final boolean expired)
+    {
+        QueueEntry entry = mock(QueueEntry.class);
+        when(entry.getExpiration()).thenReturn(expiration);
+        when(entry.expired()).thenReturn(expired);
+        return entry;
+    }
+
+    private static class CollectingVisitor implements QueueEntryVisitor
+    {
+        private final List<QueueEntry> _visited = new ArrayList<>();
+
+        @Override
+        public boolean visit(final QueueEntry entry)
+        {
+            _visited.add(entry);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.concurrent.Executor;
+
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+import org.apache.qpid.server.message.MessageReference;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.store.StoredMessage;
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class QueueReadAheadTest extends QpidTestCase
+{
+    private static final int MESSAGE_SIZE = 100;
+
+    private QueueEntry[] _entries;
+    private StoredMessage<?>[] _storedMessages;
+    private AbstractQueue<?> _queue;
+    private QueueContext _context;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        final int numberOfEntries = 10;
+        _entries = new QueueEntry[numberOfEntries];
+        _storedMessages = new StoredMessage<?>[numberOfEntries];
+        QueueEntryList entryList = mock(QueueEntryList.class);
+        for (int i = 0; i < numberOfEntries; i++)
+        {
+            _storedMessages[i] = mock(StoredMessage.class);
+            when(_storedMessages[i].getContent(0, Integer.MAX_VALUE)).thenReturn(Collections.<QpidByteBuffer>emptyList());
+            ServerMessage message = mock(ServerMessage.class);
+            when(message.getStoredMessage()).thenReturn(_storedMessages[i]);
+            when(message.getSize()).thenReturn((long) MESSAGE_SIZE);
+            MessageReference reference = mock(MessageReference.class);
+            when(reference.getMessage()).thenReturn(message);
+
+            _entries[i] = mock(QueueEntry.class);
+            when(_entries[i].isAvailable()).thenReturn(true);
+            when(_entries[i].getMessage()).thenReturn(message);
+            when(_entries[i].newMessageReference()).thenReturn(reference);
+            when(_entries[i].compareTo(_entries[i])).thenReturn(0);
+            for (int j = 0; j < i; j++)
+            {
+                when(_entries[i].compareTo(_entries[j])).thenReturn(1);
+                when(_entries[j].compareTo(_entries[i])).thenReturn(-1);
+            }
+            if (i > 0)
+            {
+                when(entryList.next(_entries[i - 1])).thenReturn(_entries[i]);
+            }
+        }
+        _queue = mock(AbstractQueue.class);
+        when(_queue.getEntries()).thenReturn(entryList);
+        _context = new QueueContext(_entries[0]);
+    }
+
+    public void testFlowedMessagesAheadOfConsumerAreLoaded()
+    {
+        QueueReadAhead readAhead = new QueueReadAhead(_queue, 4, new DirectExecutor());
+        when(_storedMessages[2].isInMemory()).thenReturn(true);
+
+        readAhead.consumerAdvanced(_context, _entries[0], Long.MAX_VALUE);
+
+        verify(_storedMessages[1]).getContent(0, Integer.MAX_VALUE);
+        verify(_storedMessages[2], never()).getContent(anyInt(), anyInt());
+        verify(_storedMessages[3]).getContent(0, Integer.MAX_VALUE);
+        verify(_storedMessages[4]).getContent(0, Integer.MAX_VALUE);
+        verify(_storedMessages[5], never()).getContent(anyInt(), anyInt());
+        assertSame("Unexpected read ahead position", _entries[4], _context.getReadAheadEntry());
+        assertSame("Unexpected trigger entry", _entries[2], _context.getReadAheadTriggerEntry());
+
+        // consumer has not yet reached the trigger entry
+        readAhead.consumerAdvanced(_context, _entries[1], Long.MAX_VALUE);
+        verify(_storedMessages[5], never()).getContent(anyInt(), anyInt());
+
+        // the next window continues from where the previous one ended
+        readAhead.consumerAdvanced(_context, _entries[2], Long.MAX_VALUE);
+        verify(_storedMessages[5]).getContent(0, Integer.MAX_VALUE);
+        verify(_storedMessages[8]).getContent(0, Integer.MAX_VALUE);
+        verify(_storedMessages[9], never()).getContent(anyInt(), anyInt());
+        assertSame("Unexpected read ahead position", _entries[8], _context.getReadAheadEntry());
+    }
+
+    public void testReadAheadBoundedByByteBudget()
+    {
+        QueueReadAhead readAhead = new QueueReadAhead(_queue, 8, new DirectExecutor());
+
+        readAhead.consumerAdvanced(_context, _entries[0], MESSAGE_SIZE + 1);
+
+        verify(_storedMessages[1]).getContent(0, Integer.MAX_VALUE);
+        verify(_storedMessages[2]).getContent(0, Integer.MAX_VALUE);
+        verify(_storedMessages[3], never()).getContent(anyInt(), anyInt());
+    }
+
+    public void testHitsAndMisses()
+    {
+        QueueReadAhead readAhead = new QueueReadAhead(_queue, 2, new DirectExecutor());
+        readAhead.consumerAdvanced(_context, _entries[0], Long.MAX_VALUE);
+
+        readAhead.entryDelivered(_entries[1]);
+        assertEquals("Unexpected hits", 1, readAhead.getHits());
+        assertEquals("Unexpected misses", 0, readAhead.getMisses());
+
+        readAhead.entryRemoved(_entries[2]);
+        readAhead.entryDelivered(_entries[2]);
+        assertEquals("Removed entry should not count as a hit", 1, readAhead.getHits());
+        assertEquals("Unexpected misses", 1, readAhead.getMisses());
+
+        when(_storedMessages[3].isInMemory()).thenReturn(true);
+        readAhead.entryDelivered(_entries[3]);
+        assertEquals("Unexpected hits", 1, readAhead.getHits());
+        assertEquals("Unexpected misses", 1, readAhead.getMisses());
+    }
+
+    private static class DirectExecutor implements Executor
+    {
+        @Override
+        public void execute(final Runnable command)
+        {
+            command.run();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.security;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.security.AccessControlException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.qpid.framing.AMQShortString;
+import org.apache.qpid.server.model.ConfiguredObject;
+import org.apache.qpid.server.security.access.Operation;
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class PublishAuthorisationCacheTest extends QpidTestCase
+{
+    private SecurityToken _token;
+    private ConfiguredObject<?> _destination;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _token = mock(SecurityToken.class);
+        _destination = mock(ConfiguredObject.class);
+    }
+
+    public void testRepeatedPublishAuthorisedOnce()
+    {
+        PublishAuthorisationCache cache = new PublishAuthorisationCache(_token, 10);
+
+        cache.authorisePublish(_destination, AMQShortString.valueOf("a"), false);
+        cache.authorisePublish(_destination, AMQShortString.valueOf("a"), false);
+        cache.authorisePublish(_destination, AMQShortString.valueOf("a"), true);
+        cache.authorisePublish(_destination, (AMQShortString) null, false);
+        cache.authorisePublish(_destination, (AMQShortString) null, false);
+
+        verifyAuthorised(1, "a", false);
+        verifyAuthorised(1, "a", true);
+        verifyAuthorised(1, null, false);
+        assertEquals("Unexpected hits", 2, cache.getHits());
+        assertEquals("Unexpected misses", 3, cache.getMisses());
+    }
+
+    public void testLeastRecentlyUsedEvicted()
+    {
+        PublishAuthorisationCache cache = new PublishAuthorisationCache(_token, 2);
+
+        cache.authorisePublish(_destination, "a", false);
+        cache.authorisePublish(_destination, "b", false);
+        cache.authorisePublish(_destination, "a", false);
+        cache.authorisePublish(_destination, "c", false);
+
+        cache.authorisePublish(_destination, "a", false);
+        cache.authorisePublish(_destination, "c", false);
+        verifyAuthorised(1, "a", false);
+        verifyAuthorised(1, "c", false);
+
+        cache.authorisePublish(_destination, "b", false);
+        verifyAuthorised(2, "b", false);
+    }
+
+    public void testDeniedPublishNotCached()
+    {
+        PublishAuthorisationCache cache = new PublishAuthorisationCache(_token, 10);
+        doThrow(new AccessControlException("denied")).when(_destination).authorise(eq(_token),
+                                                                                   eq(Operation.ACTION("publish")),
+                                                                                   any(Map.class));
+        for (int i = 0; i < 2; i++)
+        {
+            try
+            {
+                cache.authorisePublish(_destination, "a", false);
+                fail("Exception not thrown");
+            }
+            catch (AccessControlException e)
+            {
+                // pass
+            }
+        }
+        assertEquals("Unexpected hits", 0, cache.getHits());
+        assertEquals("Unexpected misses", 2, cache.getMisses());
+    }
+
+    public void testAccessControlChangeDiscardsCache()
+    {
+        PublishAuthorisationCache cache = new PublishAuthorisationCache(_token, 10);
+        cache.authorisePublish(_destination, "a", false);
+
+        new CompoundAccessControl(Collections.<AccessControl<?>>emptyList(), Result.ALLOWED);
+
+        cache.authorisePublish(_destination, "a", false);
+        verifyAuthorised(2, "a", false);
+    }
+
+    private void verifyAuthorised(final int times, final String routingKey, final boolean immediate)
+    {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("routingKey", routingKey);
+        arguments.put("immediate", immediate);
+        verify(_destination, times(times)).authorise(_token, Operation.ACTION("publish"), arguments);
+    }
+}
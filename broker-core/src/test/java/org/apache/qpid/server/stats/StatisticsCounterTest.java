@@ -146,4 +146,40 @@ public class StatisticsCounterTest extends QpidTestCase
         Thread.sleep(1000);
         assertEquals(0.0, counter.getRate());
     }
+
+    /**
+     * Check that totals add up correctly when events are registered concurrently.
+     */
+    public void testTotalConcurrent() throws Exception
+    {
+        final StatisticsCounter counter = new StatisticsCounter("test");
+        final int threadCount = 8;
+        final int eventsPerThread = 10000;
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++)
+        {
+            threads[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < eventsPerThread; j++)
+                    {
+                        counter.registerEvent(1L);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertEquals((long) threadCount * eventsPerThread, counter.getTotal());
+
+        counter.reset();
+        assertEquals(0L, counter.getTotal());
+        counter.registerEvent(5L);
+        assertEquals(5L, counter.getTotal());
+    }
 }
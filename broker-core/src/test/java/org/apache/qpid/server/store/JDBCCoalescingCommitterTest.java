@@ -0,0 +1,318 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.store;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.apache.qpid.server.store.JDBCCoalescingCommitter.QueueEntryKey;
+import org.apache.qpid.server.store.JDBCCoalescingCommitter.TransactionWork;
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class JDBCCoalescingCommitterTest extends QpidTestCase
+{
+    private static final UUID QUEUE_ID = UUID.randomUUID();
+
+    private final List<String> _operations = Collections.synchronizedList(new ArrayList<String>());
+    private final Set<Long> _missingEntries = Collections.synchronizedSet(new HashSet<Long>());
+    private AbstractJDBCMessageStore _store;
+    private JDBCCoalescingCommitter _committer;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _store = mock(AbstractJDBCMessageStore.class);
+        final Connection connection = mock(Connection.class);
+        when(_store.newConnection()).thenReturn(connection);
+        doAnswer(new RecordingAnswer("insert")).when(_store).insertQueueEntries(any(Connection.class),
+                                                                                 anyListOf(QueueEntryKey.class));
+        doAnswer(new RecordingAnswer("delete")).when(_store).deleteQueueEntries(any(Connection.class),
+                                                                                 anyListOf(QueueEntryKey.class));
+        doAnswer(new RecordingAnswer("commit")).when(connection).commit();
+        doAnswer(new RecordingAnswer("rollback")).when(connection).rollback();
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        try
+        {
+            if (_committer != null)
+            {
+                _committer.stop();
+            }
+        }
+        finally
+        {
+            super.tearDown();
+        }
+    }
+
+    public void testQueuedTransactionsCommittedAsOneGroup() throws Exception
+    {
+        _committer = new JDBCCoalescingCommitter(getTestName(), _store, 256, 0L);
+        List<ListenableFuture<Long>> futures = new ArrayList<>();
+        for (long messageId = 1L; messageId <= 3L; messageId++)
+        {
+            futures.add(_committer.commitAsync(enqueue(messageId), messageId));
+        }
+
+        _committer.start();
+
+        for (int i = 0; i < futures.size(); i++)
+        {
+            assertEquals("Unexpected future value", Long.valueOf(i + 1), futures.get(i).get(10, TimeUnit.SECONDS));
+        }
+        assertEquals("Unexpected operations", Arrays.asList("insert [1, 2, 3]", "commit"), _operations);
+    }
+
+    public void testGroupSizeIsLimited() throws Exception
+    {
+        _committer = new JDBCCoalescingCommitter(getTestName(), _store, 2, 0L);
+        List<ListenableFuture<Long>> futures = new ArrayList<>();
+        for (long messageId = 1L; messageId <= 3L; messageId++)
+        {
+            futures.add(_committer.commitAsync(enqueue(messageId), messageId));
+        }
+
+        _committer.start();
+
+        for (ListenableFuture<Long> future : futures)
+        {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals("Unexpected operations", Arrays.asList("insert [1, 2]", "commit", "insert [3]", "commit"),
+                     _operations);
+    }
+
+    public void testWorkOfTransactionExecutedInOrder() throws Exception
+    {
+        _committer = new JDBCCoalescingCommitter(getTestName(), _store, 256, 0L);
+        _committer.start();
+
+        TransactionWork work = new TransactionWork();
+        work.addDequeue(QUEUE_ID, 1L);
+        work.addEnqueue(QUEUE_ID, 1L);
+        work.addEnqueue(QUEUE_ID, 2L);
+        work.addAction(new JDBCCoalescingCommitter.ConnectionAction()
+        {
+            @Override
+            public void execute(final Connection connection)
+            {
+                _operations.add("action");
+            }
+        });
+        work.addDequeue(QUEUE_ID, 3L);
+        _committer.commit(work);
+
+        assertEquals("Unexpected operations",
+                     Arrays.asList("delete [1]", "insert [1, 2]", "action", "delete [3]", "commit"),
+                     _operations);
+    }
+
+    public void testReinsertionOfEntryDeletedInGroupIsDeferred() throws Exception
+    {
+        _committer = new JDBCCoalescingCommitter(getTestName(), _store, 256, 0L);
+        ListenableFuture<Void> dequeueFuture = _committer.commitAsync(dequeue(1L), null);
+        ListenableFuture<Void> reenqueueFuture = _committer.commitAsync(enqueue(1L), null);
+        ListenableFuture<Void> enqueueFuture = _committer.commitAsync(enqueue(2L), null);
+
+        _committer.start();
+
+        dequeueFuture.get(10, TimeUnit.SECONDS);
+        reenqueueFuture.get(10, TimeUnit.SECONDS);
+        enqueueFuture.get(10, TimeUnit.SECONDS);
+        assertEquals("Unexpected operations", Arrays.asList("delete [1]", "commit", "insert [1, 2]", "commit"),
+                     _operations);
+    }
+
+    public void testFailedTransactionIsolatedFromItsGroup() throws Exception
+    {
+        _missingEntries.add(2L);
+        _committer = new JDBCCoalescingCommitter(getTestName(), _store, 256, 0L);
+
+        TransactionWork firstWork = enqueue(1L);
+        final List<String> outcomes = new ArrayList<>();
+        firstWork.addOutcomeListener(new JDBCCoalescingCommitter.OutcomeListener()
+        {
+            @Override
+            public void committed()
+            {
+                outcomes.add("committed");
+            }
+
+            @Override
+            public void rolledBack()
+            {
+                outcomes.add("rolledBack");
+            }
+        });
+        ListenableFuture<Void> firstFuture = _committer.commitAsync(firstWork, null);
+        ListenableFuture<Void> failingFuture = _committer.commitAsync(dequeue(2L), null);
+        ListenableFuture<Void> lastFuture = _committer.commitAsync(enqueue(3L), null);
+
+        _committer.start();
+
+        firstFuture.get(10, TimeUnit.SECONDS);
+        lastFuture.get(10, TimeUnit.SECONDS);
+        try
+        {
+            failingFuture.get(10, TimeUnit.SECONDS);
+            fail("Exception not thrown");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue("Unexpected cause " + e.getCause(), e.getCause() instanceof StoreException);
+        }
+
+        assertEquals("Unexpected operations",
+                     Arrays.asList("insert [1]", "delete [2]", "rollback", "insert [1, 3]", "commit"),
+                     _operations);
+        assertEquals("Unexpected outcomes", Arrays.asList("rolledBack", "committed"), outcomes);
+    }
+
+    public void testGroupFailingOtherwiseIsCommittedIndividually() throws Exception
+    {
+        _committer = new JDBCCoalescingCommitter(getTestName(), _store, 256, 0L);
+
+        TransactionWork failingWork = enqueue(2L);
+        failingWork.addAction(new JDBCCoalescingCommitter.ConnectionAction()
+        {
+            @Override
+            public void execute(final Connection connection) throws SQLException
+            {
+                _operations.add("action");
+                throw new SQLException("Action failed");
+            }
+        });
+        ListenableFuture<Void> firstFuture = _committer.commitAsync(enqueue(1L), null);
+        ListenableFuture<Void> failingFuture = _committer.commitAsync(failingWork, null);
+
+        _committer.start();
+
+        firstFuture.get(10, TimeUnit.SECONDS);
+        try
+        {
+            failingFuture.get(10, TimeUnit.SECONDS);
+            fail("Exception not thrown");
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue("Unexpected cause " + e.getCause(), e.getCause() instanceof StoreException);
+        }
+
+        assertEquals("Unexpected operations",
+                     Arrays.asList("insert [1, 2]", "action", "rollback",
+                                   "insert [1]", "commit",
+                                   "insert [2]", "action", "rollback"),
+                     _operations);
+    }
+
+    public void testFailedTransactionFailsSynchronousCommit() throws Exception
+    {
+        _missingEntries.add(1L);
+        _committer = new JDBCCoalescingCommitter(getTestName(), _store, 256, 0L);
+        _committer.start();
+
+        try
+        {
+            _committer.commit(dequeue(1L));
+            fail("Exception not thrown");
+        }
+        catch (StoreException e)
+        {
+            // pass
+        }
+        assertEquals("Unexpected operations", Arrays.asList("delete [1]", "rollback"), _operations);
+    }
+
+    private TransactionWork enqueue(final long messageId)
+    {
+        TransactionWork work = new TransactionWork();
+        work.addEnqueue(QUEUE_ID, messageId);
+        return work;
+    }
+
+    private TransactionWork dequeue(final long messageId)
+    {
+        TransactionWork work = new TransactionWork();
+        work.addDequeue(QUEUE_ID, messageId);
+        return work;
+    }
+
+    private class RecordingAnswer implements Answer<Object>
+    {
+        private final String _operation;
+
+        private RecordingAnswer(final String operation)
+        {
+            _operation = operation;
+        }
+
+        @Override
+        public Object answer(final InvocationOnMock invocation) throws SQLException
+        {
+            Object[] arguments = invocation.getArguments();
+            if (arguments.length == 0)
+            {
+                _operations.add(_operation);
+                return null;
+            }
+
+            List<Long> messageIds = new ArrayList<>();
+            for (Object entry : (List<?>) arguments[1])
+            {
+                messageIds.add(((QueueEntryKey) entry).getMessageId());
+            }
+            _operations.add(_operation + " " + messageIds);
+            if ("delete".equals(_operation))
+            {
+                int[] updateCounts = new int[messageIds.size()];
+                for (int i = 0; i < updateCounts.length; i++)
+                {
+                    updateCounts[i] = _missingEntries.contains(messageIds.get(i)) ? 0 : 1;
+                }
+                return updateCounts;
+            }
+            return null;
+        }
+    }
+}
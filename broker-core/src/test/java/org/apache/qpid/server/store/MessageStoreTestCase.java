@@ -29,11 +29,17 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 import org.hamcrest.Description;
 import org.mockito.ArgumentMatcher;
 
@@ -284,6 +290,72 @@ public abstract class MessageStoreTestCase extends QpidTestCase
         assertTrue("Message with id " + messageId2 + " is not found", enqueuedIds.contains(messageId2));
     }
 
+    public void testCommitTransactionsAsynchronously() throws Exception
+    {
+        final UUID mockQueueId = UUIDGenerator.generateRandomUUID();
+        TransactionLogResource mockQueue = createTransactionLogResource(mockQueueId);
+
+        final int numberOfMessages = 50;
+        List<MessageEnqueueRecord> enqueueRecords = new ArrayList<>();
+        List<ListenableFuture<Long>> futures = new ArrayList<>();
+        for (long messageId = 100L; messageId < 100L + numberOfMessages; messageId++)
+        {
+            Transaction txn = getStore().newTransaction();
+            enqueueRecords.add(txn.enqueueMessage(mockQueue, createEnqueueableMessage(messageId)));
+            futures.add(txn.commitTranAsync(messageId));
+        }
+
+        for (int i = 0; i < numberOfMessages; i++)
+        {
+            assertEquals("Unexpected future value", Long.valueOf(100L + i), futures.get(i).get(10, TimeUnit.SECONDS));
+        }
+
+        List<ListenableFuture<Void>> dequeueFutures = new ArrayList<>();
+        for (int i = 0; i < numberOfMessages; i += 2)
+        {
+            Transaction txn = getStore().newTransaction();
+            txn.dequeueMessage(enqueueRecords.get(i));
+            dequeueFutures.add(txn.commitTranAsync((Void) null));
+        }
+
+        for (ListenableFuture<Void> future : dequeueFutures)
+        {
+            future.get(10, TimeUnit.SECONDS);
+        }
+
+        QueueFilteringMessageInstanceHandler filter = new QueueFilteringMessageInstanceHandler(mockQueueId);
+        _storeReader.visitMessageInstances(filter);
+        Set<Long> enqueuedIds = filter.getEnqueuedIds();
+
+        assertEquals("Number of enqueued messages is incorrect", numberOfMessages / 2, enqueuedIds.size());
+        for (int i = 0; i < numberOfMessages; i++)
+        {
+            long messageId = 100L + i;
+            assertEquals("Unexpected presence of message with id " + messageId,
+                         i % 2 == 1,
+                         enqueuedIds.contains(messageId));
+        }
+    }
+
+    public void testDequeueOfQueueEntryEnqueuedAsynchronously() throws Exception
+    {
+        final UUID mockQueueId = UUIDGenerator.generateRandomUUID();
+        TransactionLogResource mockQueue = createTransactionLogResource(mockQueueId);
+
+        Transaction txn = getStore().newTransaction();
+        MessageEnqueueRecord enqueueRecord = txn.enqueueMessage(mockQueue, createEnqueueableMessage(1L));
+        ListenableFuture<Void> enqueueFuture = txn.commitTranAsync((Void) null);
+
+        txn = getStore().newTransaction();
+        txn.dequeueMessage(enqueueRecord);
+        txn.commitTranAsync((Void) null).get(10, TimeUnit.SECONDS);
+        enqueueFuture.get(10, TimeUnit.SECONDS);
+
+        QueueFilteringMessageInstanceHandler filter = new QueueFilteringMessageInstanceHandler(mockQueueId);
+        _storeReader.visitMessageInstances(filter);
+        assertTrue("Message should have been dequeued", filter.getEnqueuedIds().isEmpty());
+    }
+
     public void testRollbackTransactionBeforeCommit() throws Exception
     {
         final UUID mockQueueId = UUIDGenerator.generateRandomUUID();
@@ -401,8 +473,46 @@ public abstract class MessageStoreTestCase extends QpidTestCase
         assertNull(retrievedMessageRef.get());
     }
 
+    public void testRemoveMessages() throws Exception
+    {
+        for (long messageId = 1; messageId <= 3; messageId++)
+        {
+            final StoredMessage<TestMessageMetaData> message = _store.addMessage(new TestMessageMetaData(messageId, 0)).allContentAdded();
+            enqueueMessage(message, "dummyQ");
+        }
+
+        final List<StoredMessage<?>> retrievedMessages = new ArrayList<>();
+        _storeReader.visitMessages(new MessageHandler()
+        {
+            @Override
+            public boolean handle(StoredMessage<?> storedMessage)
+            {
+                retrievedMessages.add(storedMessage);
+                return true;
+            }
+        });
+        assertEquals("Unexpected number of messages in store", 3, retrievedMessages.size());
+
+        final StoredMessage<?> retainedMessage = retrievedMessages.remove(1);
+        _store.removeMessages(retrievedMessages);
+
+        final List<Long> remainingMessageIds = new ArrayList<>();
+        _storeReader.visitMessages(new MessageHandler()
+        {
+            @Override
+            public boolean handle(StoredMessage<?> storedMessage)
+            {
+                remainingMessageIds.add(storedMessage.getMessageNumber());
+                return true;
+            }
+        });
+        assertEquals("Unexpected messages remaining in store",
+                     Collections.singletonList(retainedMessage.getMessageNumber()),
+                     remainingMessageIds);
+    }
+
 
-    private TransactionLogResource createTransactionLogResource(UUID queueId)
+    protected TransactionLogResource createTransactionLogResource(UUID queueId)
     {
         TransactionLogResource queue = mock(TransactionLogResource.class);
         when(queue.getId()).thenReturn(queueId);
@@ -435,7 +545,7 @@ public abstract class MessageStoreTestCase extends QpidTestCase
         return enqueueRecord;
     }
 
-    private EnqueueableMessage createEnqueueableMessage(long messageId1)
+    protected EnqueueableMessage createEnqueueableMessage(long messageId1)
     {
         final StoredMessage<TestMessageMetaData> message1 = _store.addMessage(new TestMessageMetaData(messageId1, 0)).allContentAdded();
         EnqueueableMessage enqueueableMessage1 = createMockEnqueueableMessage(messageId1, message1);
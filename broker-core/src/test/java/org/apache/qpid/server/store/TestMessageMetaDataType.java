@@ -26,6 +26,7 @@ import org.apache.qpid.bytebuffer.QpidByteBuffer;
 import org.apache.qpid.server.message.AMQMessageHeader;
 import org.apache.qpid.server.message.MessageReference;
 import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.model.NamedAddressSpace;
 import org.apache.qpid.server.plugin.MessageMetaDataType;
 
 public class TestMessageMetaDataType implements MessageMetaDataType<TestMessageMetaData>
@@ -111,6 +112,19 @@ public class TestMessageMetaDataType implements MessageMetaDataType<TestMessageM
             return null;
         }
 
+        @Override
+        public <N extends ServerMessage> N getConvertedMessage(final Class<N> outputClass,
+                                                               final NamedAddressSpace addressSpace)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean flowToDisk()
+        {
+            throw new UnsupportedOperationException();
+        }
+
         @Override
         public long getExpiration()
         {
@@ -27,6 +27,7 @@ import org.apache.qpid.bytebuffer.QpidByteBuffer;
 import org.apache.qpid.server.message.AMQMessageHeader;
 import org.apache.qpid.server.message.MessageReference;
 import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.model.NamedAddressSpace;
 import org.apache.qpid.server.store.StoredMessage;
 import org.apache.qpid.server.store.TransactionLogResource;
 
@@ -120,6 +121,18 @@ class MockServerMessage implements ServerMessage
         return null;
     }
 
+    @Override
+    public ServerMessage getConvertedMessage(final Class outputClass, final NamedAddressSpace addressSpace)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean flowToDisk()
+    {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public long getArrivalTime()
     {
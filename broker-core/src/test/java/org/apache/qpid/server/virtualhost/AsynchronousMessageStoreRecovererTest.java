@@ -21,21 +21,38 @@
 package org.apache.qpid.server.virtualhost;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 import com.google.common.util.concurrent.ListenableFuture;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import org.apache.qpid.server.logging.EventLogger;
+import org.apache.qpid.server.message.MessageReference;
+import org.apache.qpid.server.message.ServerMessage;
 import org.apache.qpid.server.model.Queue;
 import org.apache.qpid.server.model.VirtualHost;
+import org.apache.qpid.server.plugin.MessageMetaDataType;
+import org.apache.qpid.server.store.MessageEnqueueRecord;
 import org.apache.qpid.server.store.MessageStore;
+import org.apache.qpid.server.store.StorableMessageMetaData;
+import org.apache.qpid.server.store.StoredMessage;
 import org.apache.qpid.server.store.TransactionLogResource;
+import org.apache.qpid.server.store.handler.MessageHandler;
 import org.apache.qpid.server.store.handler.MessageInstanceHandler;
 import org.apache.qpid.server.util.ServerScopedRuntimeException;
 import org.apache.qpid.test.utils.QpidTestCase;
@@ -90,4 +107,107 @@ public class AsynchronousMessageStoreRecovererTest extends QpidTestCase
         ListenableFuture<Void> result = recoverer.recover(_virtualHost);
         assertNull(result.get());
     }
+
+    public void testMessageSharedByQueuesIsRecoveredOnce() throws Exception
+    {
+        final long messageId = 1L;
+        when(_store.getNextMessageId()).thenReturn(messageId + 1);
+        ServerMessage<?> message = createRecoverableMessage(messageId);
+
+        Queue<?> queue1 = mock(Queue.class);
+        Queue<?> queue2 = mock(Queue.class);
+        final MessageEnqueueRecord record = mock(MessageEnqueueRecord.class);
+        when(record.getMessageNumber()).thenReturn(messageId);
+        when(_virtualHost.getChildren(eq(Queue.class))).thenReturn(Arrays.asList(queue1, queue2));
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable
+            {
+                MessageInstanceHandler handler = (MessageInstanceHandler) invocation.getArguments()[1];
+                handler.handle(record);
+                return null;
+            }
+        }).when(_storeReader).visitMessageInstances(any(TransactionLogResource.class), any(MessageInstanceHandler.class));
+
+        AsynchronousMessageStoreRecoverer recoverer = new AsynchronousMessageStoreRecoverer();
+        recoverer.recover(_virtualHost).get();
+
+        verify(_storeReader, times(1)).getMessage(messageId);
+        verify(queue1).recover(message, record);
+        verify(queue2).recover(message, record);
+        assertEquals("Unexpected recovered queue count", 2, recoverer.getRecoveredQueueCount());
+        assertEquals("Unexpected recovered message instance count", 2, recoverer.getRecoveredMessageInstanceCount());
+        assertEquals("Unexpected recovered message count", 1, recoverer.getRecoveredMessageCount());
+        assertEquals("Unexpected removed orphaned message count", 0, recoverer.getRemovedOrphanedMessageCount());
+    }
+
+    public void testOrphanedMessagesRemovedInBatches() throws Exception
+    {
+        final int numberOfOrphans = 5;
+        when(_store.getNextMessageId()).thenReturn((long) numberOfOrphans + 1);
+        when(_virtualHost.getContextValue(Integer.class, VirtualHost.ORPHANED_MESSAGE_REMOVAL_BATCH_SIZE)).thenReturn(2);
+        when(_virtualHost.getChildren(eq(Queue.class))).thenReturn(Collections.singleton(mock(Queue.class)));
+
+        final List<StoredMessage<?>> orphans = new ArrayList<>();
+        for (long messageId = 1; messageId <= numberOfOrphans; messageId++)
+        {
+            StoredMessage<?> storedMessage = mock(StoredMessage.class);
+            when(storedMessage.getMessageNumber()).thenReturn(messageId);
+            orphans.add(storedMessage);
+        }
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable
+            {
+                MessageHandler handler = (MessageHandler) invocation.getArguments()[0];
+                for (StoredMessage<?> orphan : orphans)
+                {
+                    if (!handler.handle(orphan))
+                    {
+                        break;
+                    }
+                }
+                return null;
+            }
+        }).when(_storeReader).visitMessages(any(MessageHandler.class));
+
+        final List<Integer> batchSizes = new ArrayList<>();
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable
+            {
+                batchSizes.add(((Collection<?>) invocation.getArguments()[0]).size());
+                return null;
+            }
+        }).when(_store).removeMessages(anyCollection());
+
+        AsynchronousMessageStoreRecoverer recoverer = new AsynchronousMessageStoreRecoverer();
+        recoverer.recover(_virtualHost).get();
+
+        assertEquals("Unexpected removal batches", Arrays.asList(2, 2, 1), batchSizes);
+        assertEquals("Unexpected removed orphaned message count",
+                     numberOfOrphans,
+                     recoverer.getRemovedOrphanedMessageCount());
+    }
+
+    private ServerMessage<?> createRecoverableMessage(final long messageId)
+    {
+        StorableMessageMetaData metaData = mock(StorableMessageMetaData.class);
+        MessageMetaDataType metaDataType = mock(MessageMetaDataType.class);
+        StoredMessage storedMessage = mock(StoredMessage.class);
+        ServerMessage serverMessage = mock(ServerMessage.class);
+        MessageReference reference = mock(MessageReference.class);
+
+        when(_storeReader.getMessage(messageId)).thenReturn(storedMessage);
+        when(storedMessage.getMessageNumber()).thenReturn(messageId);
+        when(storedMessage.getMetaData()).thenReturn(metaData);
+        when(metaData.getType()).thenReturn(metaDataType);
+        when(metaDataType.createMessage(storedMessage)).thenReturn(serverMessage);
+        when(serverMessage.newReference()).thenReturn(reference);
+        when(reference.getMessage()).thenReturn(serverMessage);
+        return serverMessage;
+    }
 }
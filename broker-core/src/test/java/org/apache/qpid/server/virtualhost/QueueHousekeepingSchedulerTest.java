@@ -0,0 +1,149 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.virtualhost;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.apache.qpid.server.model.Queue;
+import org.apache.qpid.server.model.State;
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class QueueHousekeepingSchedulerTest extends QpidTestCase
+{
+    private final List<Runnable> _submitted = new ArrayList<>();
+    private final Executor _deferringExecutor = new Executor()
+    {
+        @Override
+        public void execute(final Runnable command)
+        {
+            _submitted.add(command);
+        }
+    };
+
+    public void testQuietQueuesCheckedLessOften()
+    {
+        Queue<?> busy = createQueue("busy", true, 10);
+        Queue<?> quiet = createQueue("quiet", false, 0);
+        QueueHousekeepingScheduler scheduler = new QueueHousekeepingScheduler(2, 3, _deferringExecutor);
+
+        for (int i = 0; i < 6; i++)
+        {
+            scheduler.runPass(Arrays.asList(busy, quiet));
+            runSubmitted();
+        }
+
+        verify(busy, times(6)).checkMessageStatus();
+        verify(quiet, times(2)).checkMessageStatus();
+    }
+
+    public void testQueuesSpreadAcrossBatches()
+    {
+        Queue<?> q1 = createQueue("q1", true, 100);
+        Queue<?> q2 = createQueue("q2", true, 60);
+        Queue<?> q3 = createQueue("q3", true, 50);
+        QueueHousekeepingScheduler scheduler = new QueueHousekeepingScheduler(2, 1, _deferringExecutor);
+
+        scheduler.runPass(Arrays.asList(q1, q2, q3));
+        assertEquals("Unexpected number of batches", 2, _submitted.size());
+
+        _submitted.remove(0).run();
+        verify(q1).checkMessageStatus();
+        verify(q2, never()).checkMessageStatus();
+        verify(q3, never()).checkMessageStatus();
+
+        _submitted.remove(0).run();
+        verify(q2).checkMessageStatus();
+        verify(q3).checkMessageStatus();
+    }
+
+    public void testQueueStillBeingCheckedIsSkipped()
+    {
+        Queue<?> queue = createQueue("queue", true, 1);
+        QueueHousekeepingScheduler scheduler = new QueueHousekeepingScheduler(2, 1, _deferringExecutor);
+
+        scheduler.runPass(Arrays.asList(queue));
+        scheduler.runPass(Arrays.asList(queue));
+        assertEquals("Unexpected number of batches", 1, _submitted.size());
+        assertEquals("Unexpected number of skipped checks", 1, scheduler.getSkippedChecks());
+
+        runSubmitted();
+        scheduler.runPass(Arrays.asList(queue));
+        runSubmitted();
+        verify(queue, times(2)).checkMessageStatus();
+    }
+
+    public void testInactiveQueueNotChecked()
+    {
+        Queue<?> queue = createQueue("queue", true, 1);
+        when(queue.getState()).thenReturn(State.STOPPED);
+        QueueHousekeepingScheduler scheduler = new QueueHousekeepingScheduler(2, 1, _deferringExecutor);
+
+        scheduler.runPass(Arrays.asList(queue));
+        runSubmitted();
+        verify(queue, never()).checkMessageStatus();
+    }
+
+    public void testQueueDepthReadOncePerPass()
+    {
+        List<Queue<?>> queues = new ArrayList<>();
+        for (int i = 0; i < 64; i++)
+        {
+            queues.add(createQueue("q" + i, true, i));
+        }
+        QueueHousekeepingScheduler scheduler = new QueueHousekeepingScheduler(4, 1, _deferringExecutor);
+
+        scheduler.runPass(queues);
+        runSubmitted();
+
+        for (Queue<?> queue : queues)
+        {
+            verify(queue).getQueueDepthMessages();
+            verify(queue).checkMessageStatus();
+        }
+    }
+
+    private void runSubmitted()
+    {
+        while (!_submitted.isEmpty())
+        {
+            _submitted.remove(0).run();
+        }
+    }
+
+    private Queue<?> createQueue(final String name, final boolean checkRequired, final int depth)
+    {
+        Queue<?> queue = mock(Queue.class);
+        when(queue.getName()).thenReturn(name);
+        when(queue.getState()).thenReturn(State.ACTIVE);
+        when(queue.isMessageStatusCheckRequired()).thenReturn(checkRequired);
+        when(queue.getQueueDepthMessages()).thenReturn(depth);
+        return queue;
+    }
+}
@@ -42,8 +42,6 @@ import org.apache.qpid.server.message.MessageInstance;
 import org.apache.qpid.server.message.ServerMessage;
 import org.apache.qpid.server.model.Exchange;
 import org.apache.qpid.server.model.Queue;
-import org.apache.qpid.server.plugin.MessageConverter;
-import org.apache.qpid.server.protocol.MessageConverterRegistry;
 import org.apache.qpid.server.store.TransactionLogResource;
 import org.apache.qpid.server.txn.AutoCommitTransaction;
 import org.apache.qpid.server.txn.ServerTransaction;
@@ -212,7 +210,7 @@ public class ConsumerTarget_0_10 extends AbstractConsumerTarget implements FlowC
 
     public void doSend(final ConsumerImpl consumer, final MessageInstance entry, boolean batch)
     {
-        ServerMessage serverMsg = entry.getMessage();
+        ServerMessage<?> serverMsg = entry.getMessage();
 
 
         MessageTransfer xfr;
@@ -220,22 +218,8 @@ public class ConsumerTarget_0_10 extends AbstractConsumerTarget implements FlowC
         DeliveryProperties deliveryProps;
         MessageProperties messageProps = null;
 
-        MessageTransferMessage msg;
-
-        if(serverMsg instanceof MessageTransferMessage)
-        {
-
-            msg = (MessageTransferMessage) serverMsg;
-
-        }
-        else
-        {
-            MessageConverter converter =
-                    MessageConverterRegistry.getConverter(serverMsg.getClass(), MessageTransferMessage.class);
-
-
-            msg = (MessageTransferMessage) converter.convert(serverMsg, _session.getAddressSpace());
-        }
+        MessageTransferMessage msg = serverMsg.getConvertedMessage(MessageTransferMessage.class,
+                                                                   _session.getAddressSpace());
         DeliveryProperties origDeliveryProps = msg.getHeader() == null ? null : msg.getHeader().getDeliveryProperties();
         messageProps = msg.getHeader() == null ? null : msg.getHeader().getMessageProperties();
 
@@ -286,6 +270,8 @@ public class ConsumerTarget_0_10 extends AbstractConsumerTarget implements FlowC
         if(msgCompressed && !compressionSupported && bodyBuffers != null)
         {
             Collection<QpidByteBuffer> uncompressedBuffers = inflateIfPossible(bodyBuffers);
+            // the message properties may be shared with other consumers so must not be modified
+            messageProps = new MessageProperties(messageProps);
             messageProps.setContentEncoding(null);
             for (QpidByteBuffer buf : bodyBuffers)
             {
@@ -300,10 +286,7 @@ public class ConsumerTarget_0_10 extends AbstractConsumerTarget implements FlowC
                 && ByteBufferUtils.remaining(bodyBuffers) > _session.getConnection().getMessageCompressionThreshold())
         {
             Collection<QpidByteBuffer> compressedBuffers = deflateIfPossible(bodyBuffers);
-            if(messageProps == null)
-            {
-                messageProps = new MessageProperties();
-            }
+            messageProps = messageProps == null ? new MessageProperties() : new MessageProperties(messageProps);
             messageProps.setContentEncoding(GZIPUtils.GZIP_CONTENT_ENCODING);
             for (QpidByteBuffer buf : bodyBuffers)
             {
@@ -86,7 +86,7 @@ public class MessageConverter_Internal_to_v0_10 implements MessageConverter<Inte
                     @Override
                     public void remove()
                     {
-                        throw new UnsupportedOperationException();
+                        // nothing to release
                     }
 
                     @Override
@@ -93,7 +93,7 @@ public class MessageConverter_v0_10 implements MessageConverter<ServerMessage, M
                     @Override
                     public void remove()
                     {
-                        throw new UnsupportedOperationException();
+                        // nothing to release
                     }
 
                     @Override
@@ -0,0 +1,136 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.protocol.v0_10;
+
+import org.apache.qpid.server.protocol.v0_10.ServerSession.MessageDispositionChangeListener;
+import org.apache.qpid.util.SerialNumberRing;
+
+/**
+ * The disposition listeners of the messages a session has transferred but which have not yet been accepted,
+ * released or rejected, indexed by the command id of their transfer.
+ *
+ * Listeners are held in a {@link SerialNumberRing}, so that adding and removing a listener neither boxes the command
+ * id nor allocates, and messages a client holds unacknowledged indefinitely do not prevent the ring from advancing.
+ * Operations on a range of command ids only visit the part of the range covered by outstanding transfers.
+ *
+ * The window is only modified on the connection's I/O thread.  Its size may be read from any thread.
+ */
+public class MessageDispositionListenerWindow
+{
+    private static final int DEFAULT_CAPACITY = 256;
+
+    public interface Visitor
+    {
+        void visit(int commandId, MessageDispositionChangeListener listener);
+    }
+
+    private final SerialNumberRing<MessageDispositionChangeListener> _listeners;
+    private volatile int _size;
+
+    public MessageDispositionListenerWindow()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MessageDispositionListenerWindow(final int initialCapacity)
+    {
+        _listeners = new SerialNumberRing<>(initialCapacity);
+    }
+
+    public MessageDispositionChangeListener get(final int commandId)
+    {
+        return _listeners.get(_listeners.unwrap(commandId));
+    }
+
+    public void put(final int commandId, final MessageDispositionChangeListener listener)
+    {
+        _listeners.put(_listeners.unwrap(commandId), listener);
+        updateSize();
+    }
+
+    public MessageDispositionChangeListener remove(final int commandId)
+    {
+        final MessageDispositionChangeListener listener = _listeners.remove(_listeners.unwrap(commandId));
+        if (listener != null)
+        {
+            updateSize();
+        }
+        return listener;
+    }
+
+    /**
+     * Removes the listeners with command ids from lower to upper inclusive, passing each to the visitor after it
+     * has been removed, in command id order.
+     */
+    public void remove(final int lower, final int upper, final Visitor visitor)
+    {
+        final long first = _listeners.unwrap(lower);
+        _listeners.remove(first, first + (upper - lower), adapt(visitor));
+        updateSize();
+    }
+
+    /**
+     * Passes the listeners with command ids from lower to upper inclusive to the visitor, in command id order.
+     */
+    public void visit(final int lower, final int upper, final Visitor visitor)
+    {
+        final long first = _listeners.unwrap(lower);
+        _listeners.visit(first, first + (upper - lower), adapt(visitor));
+    }
+
+    /**
+     * Removes all listeners, passing each to the visitor after it has been removed, in command id order.
+     */
+    public void removeAll(final Visitor visitor)
+    {
+        _listeners.removeAll(adapt(visitor));
+        updateSize();
+    }
+
+    public int size()
+    {
+        return _size;
+    }
+
+    public boolean isEmpty()
+    {
+        return _listeners.isEmpty();
+    }
+
+    private void updateSize()
+    {
+        _size = _listeners.size();
+    }
+
+    private SerialNumberRing.Visitor<MessageDispositionChangeListener> adapt(final Visitor visitor)
+    {
+        return new SerialNumberRing.Visitor<MessageDispositionChangeListener>()
+        {
+            @Override
+            public void visit(final long sequenceNumber, final MessageDispositionChangeListener listener)
+            {
+                // the visitor may read the size of the window it is altering
+                updateSize();
+                visitor.visit((int) sequenceNumber, listener);
+            }
+        };
+    }
+}
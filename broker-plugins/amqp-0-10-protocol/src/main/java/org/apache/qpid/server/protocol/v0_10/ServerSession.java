@@ -21,7 +21,6 @@
 package org.apache.qpid.server.protocol.v0_10;
 
 import static org.apache.qpid.server.logging.subjects.LogSubjectFormat.CHANNEL_FORMAT;
-import static org.apache.qpid.util.Serial.gt;
 
 import java.security.AccessControlContext;
 import java.security.AccessController;
@@ -37,10 +36,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.SortedMap;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -70,12 +67,14 @@ import org.apache.qpid.server.message.MessageInstance;
 import org.apache.qpid.server.model.Broker;
 import org.apache.qpid.server.model.ConfigurationChangeListener;
 import org.apache.qpid.server.model.ConfiguredObject;
+import org.apache.qpid.server.model.Connection;
 import org.apache.qpid.server.model.Consumer;
 import org.apache.qpid.server.model.NamedAddressSpace;
 import org.apache.qpid.server.model.Queue;
 import org.apache.qpid.server.protocol.AMQSessionModel;
 import org.apache.qpid.server.protocol.CapacityChecker;
 import org.apache.qpid.server.protocol.ConsumerListener;
+import org.apache.qpid.server.security.PublishAuthorisationCache;
 import org.apache.qpid.server.security.SecurityToken;
 import org.apache.qpid.server.store.MessageStore;
 import org.apache.qpid.server.store.StoreException;
@@ -99,7 +98,7 @@ import org.apache.qpid.server.util.Action;
 import org.apache.qpid.server.util.Deletable;
 import org.apache.qpid.server.util.ServerScopedRuntimeException;
 import org.apache.qpid.transport.Binary;
-import org.apache.qpid.transport.Connection;
+import org.apache.qpid.transport.CompactRangeSet;
 import org.apache.qpid.transport.MessageCreditUnit;
 import org.apache.qpid.transport.MessageFlow;
 import org.apache.qpid.transport.MessageFlowMode;
@@ -130,6 +129,7 @@ public class ServerSession extends Session
     private final Subject _subject = new Subject();
     private final AccessControlContext _accessControllerContext;
     private final SecurityToken _token;
+    private final PublishAuthorisationCache _publishAuthCache;
     private long _createTime = System.currentTimeMillis();
 
     private final Set<Object> _blockingEntities = Collections.synchronizedSet(new HashSet<Object>());
@@ -164,8 +164,8 @@ public class ServerSession extends Session
 
     }
 
-    private final SortedMap<Integer, MessageDispositionChangeListener> _messageDispositionListenerMap =
-            new ConcurrentSkipListMap<Integer, MessageDispositionChangeListener>();
+    private final MessageDispositionListenerWindow _messageDispositionListenerMap =
+            new MessageDispositionListenerWindow();
 
     private ServerTransaction _transaction;
 
@@ -188,7 +188,10 @@ public class ServerSession extends Session
     private long _maxUncommittedInMemorySize;
 
 
-    public ServerSession(Connection connection, SessionDelegate delegate, Binary name, long expiry)
+    public ServerSession(org.apache.qpid.transport.Connection connection,
+                         SessionDelegate delegate,
+                         Binary name,
+                         long expiry)
     {
         super(connection, delegate, name, expiry);
         _transaction = new AsyncAutoCommitTransaction(this.getMessageStore(),this);
@@ -210,6 +213,9 @@ public class ServerSession extends Session
         {
             _token = amqpConnection.getBroker().newToken(_subject);
         }
+        final int publishAuthCacheSize = amqpConnection.getContextProvider()
+                .getContextValue(Integer.class, Connection.PUBLISH_AUTHORISATION_CACHE_SIZE);
+        _publishAuthCache = new PublishAuthorisationCache(_token, publishAuthCacheSize);
         _transactionTimeoutHelper = new TransactionTimeoutHelper(_logSubject, new CloseAction()
         {
             @Override
@@ -221,7 +227,7 @@ public class ServerSession extends Session
 
         _blockingTimeout = serverConnection.getBroker().getContextValue(Long.class,
                                                                                        Broker.CHANNEL_FLOW_CONTROL_ENFORCEMENT_TIMEOUT);
-        _maxUncommittedInMemorySize = getConnection().getAmqpConnection().getContextProvider().getContextValue(Long.class, org.apache.qpid.server.model.Connection.MAX_UNCOMMITTED_IN_MEMORY_SIZE);
+        _maxUncommittedInMemorySize = getConnection().getAmqpConnection().getContextProvider().getContextValue(Long.class, Connection.MAX_UNCOMMITTED_IN_MEMORY_SIZE);
 
     }
 
@@ -400,102 +406,68 @@ public class ServerSession extends Session
 
     public RangeSet acquire(RangeSet transfers)
     {
-        RangeSet acquired = RangeSetFactory.createRangeSet();
+        final RangeSet acquired = RangeSetFactory.createCompactRangeSet();
 
-        if(!_messageDispositionListenerMap.isEmpty())
+        if(transfers != null && !_messageDispositionListenerMap.isEmpty())
         {
-            Iterator<Integer> unacceptedMessages = _messageDispositionListenerMap.keySet().iterator();
-            Iterator<Range> rangeIter = transfers.iterator();
-
-            if(rangeIter.hasNext())
+            final MessageDispositionListenerWindow.Visitor acquirer = new MessageDispositionListenerWindow.Visitor()
             {
-                Range range = rangeIter.next();
-
-                while(range != null && unacceptedMessages.hasNext())
+                @Override
+                public void visit(final int commandId, final MessageDispositionChangeListener listener)
                 {
-                    int next = unacceptedMessages.next();
-                    while(gt(next, range.getUpper()))
+                    if(listener.acquire())
                     {
-                        if(rangeIter.hasNext())
-                        {
-                            range = rangeIter.next();
-                        }
-                        else
-                        {
-                            range = null;
-                            break;
-                        }
+                        acquired.add(commandId);
                     }
-                    if(range != null && range.includes(next))
-                    {
-                        MessageDispositionChangeListener changeListener = _messageDispositionListenerMap.get(next);
-                        if(changeListener != null && changeListener.acquire())
-                        {
-                            acquired.add(next);
-                        }
-                    }
-
-
                 }
+            };
 
+            if(transfers instanceof CompactRangeSet)
+            {
+                final CompactRangeSet ranges = (CompactRangeSet) transfers;
+                for(int i = 0; i < ranges.size(); i++)
+                {
+                    _messageDispositionListenerMap.visit(ranges.getLower(i), ranges.getUpper(i), acquirer);
+                }
+            }
+            else
+            {
+                for(Range range : transfers)
+                {
+                    _messageDispositionListenerMap.visit(range.getLower(), range.getUpper(), acquirer);
+                }
             }
-
-
         }
 
         return acquired;
     }
 
-    public void dispositionChange(RangeSet ranges, MessageDispositionAction action)
+    public void dispositionChange(RangeSet ranges, final MessageDispositionAction action)
     {
-        if(ranges != null)
+        if(ranges != null && !_messageDispositionListenerMap.isEmpty())
         {
+            final MessageDispositionListenerWindow.Visitor visitor = new MessageDispositionListenerWindow.Visitor()
+            {
+                @Override
+                public void visit(final int commandId, final MessageDispositionChangeListener listener)
+                {
+                    action.performAction(listener);
+                }
+            };
 
-            if(ranges.size() == 1)
+            if(ranges instanceof CompactRangeSet)
             {
-                Range r = ranges.getFirst();
-                for(int i = r.getLower(); i <= r.getUpper(); i++)
+                final CompactRangeSet compactRanges = (CompactRangeSet) ranges;
+                for(int i = 0; i < compactRanges.size(); i++)
                 {
-                    MessageDispositionChangeListener changeListener = _messageDispositionListenerMap.remove(i);
-                    if(changeListener != null)
-                    {
-                        action.performAction(changeListener);
-                    }
+                    _messageDispositionListenerMap.remove(compactRanges.getLower(i), compactRanges.getUpper(i), visitor);
                 }
             }
-            else if(!_messageDispositionListenerMap.isEmpty())
+            else
             {
-                Iterator<Integer> unacceptedMessages = _messageDispositionListenerMap.keySet().iterator();
-                Iterator<Range> rangeIter = ranges.iterator();
-
-                if(rangeIter.hasNext())
+                for(Range range : ranges)
                 {
-                    Range range = rangeIter.next();
-
-                    while(range != null && unacceptedMessages.hasNext())
-                    {
-                        int next = unacceptedMessages.next();
-                        while(gt(next, range.getUpper()))
-                        {
-                            if(rangeIter.hasNext())
-                            {
-                                range = rangeIter.next();
-                            }
-                            else
-                            {
-                                range = null;
-                                break;
-                            }
-                        }
-                        if(range != null && range.includes(next))
-                        {
-                            MessageDispositionChangeListener changeListener = _messageDispositionListenerMap.remove(next);
-                            action.performAction(changeListener);
-                        }
-
-
-                    }
-
+                    _messageDispositionListenerMap.remove(range.getLower(), range.getUpper(), visitor);
                 }
             }
         }
@@ -517,11 +489,14 @@ public class ServerSession extends Session
             getAddressSpace().getDtxRegistry().endAssociations(this);
         }
 
-        for(MessageDispositionChangeListener listener : _messageDispositionListenerMap.values())
+        _messageDispositionListenerMap.removeAll(new MessageDispositionListenerWindow.Visitor()
         {
-            listener.onRelease(true);
-        }
-        _messageDispositionListenerMap.clear();
+            @Override
+            public void visit(final int commandId, final MessageDispositionChangeListener listener)
+            {
+                listener.onRelease(true);
+            }
+        });
 
         for (Action<? super ServerSession> task : _taskList)
         {
@@ -753,6 +728,23 @@ public class ServerSession extends Session
         return _txnRejects.get();
     }
 
+    @Override
+    public long getPublishAuthorisationCacheHits()
+    {
+        return _publishAuthCache.getHits();
+    }
+
+    @Override
+    public long getPublishAuthorisationCacheMisses()
+    {
+        return _publishAuthCache.getMisses();
+    }
+
+    public PublishAuthorisationCache getPublishAuthorisationCache()
+    {
+        return _publishAuthCache;
+    }
+
     public int getChannelId()
     {
         return getChannel();
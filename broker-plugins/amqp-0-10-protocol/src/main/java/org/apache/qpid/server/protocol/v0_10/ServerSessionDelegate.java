@@ -20,7 +20,6 @@
  */
 package org.apache.qpid.server.protocol.v0_10;
 
-import static org.apache.qpid.server.transport.AbstractAMQPConnection.PUBLISH_ACTION_MAP_CREATOR;
 
 import java.nio.charset.StandardCharsets;
 import java.security.AccessControlException;
@@ -45,8 +44,6 @@ import org.apache.qpid.server.logging.EventLogger;
 import org.apache.qpid.server.model.ConfiguredObject;
 import org.apache.qpid.server.model.Exchange;
 import org.apache.qpid.server.model.NamedAddressSpace;
-import org.apache.qpid.server.security.access.Operation;
-import org.apache.qpid.server.transport.AbstractAMQPConnection;
 import org.apache.qpid.server.transport.ProtocolEngine;
 import org.apache.qpid.server.consumer.ConsumerImpl;
 import org.apache.qpid.server.store.MessageHandle;
@@ -427,13 +424,10 @@ public class ServerSessionDelegate extends SessionDelegate
                     serverSession.getAMQPConnection().checkAuthorizedMessagePrincipal(getMessageUserId(xfr));
                     if(destination instanceof ConfiguredObject)
                     {
-
-                        ((ConfiguredObject)destination).authorise(serverSession.getToken(),
-                                                                  Operation.ACTION("publish"),
-                                                                  PUBLISH_ACTION_MAP_CREATOR.createMap(messageMetaData.getRoutingKey(),
-                                                                                                       messageMetaData.isImmediate()));
-
-                    };
+                        serverSession.getPublishAuthorisationCache().authorisePublish((ConfiguredObject<?>) destination,
+                                                                                      messageMetaData.getRoutingKey(),
+                                                                                      messageMetaData.isImmediate());
+                    }
                 }
                 catch (AccessControlException e)
                 {
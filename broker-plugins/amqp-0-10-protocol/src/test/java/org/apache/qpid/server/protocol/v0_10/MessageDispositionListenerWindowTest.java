@@ -0,0 +1,238 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.protocol.v0_10;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.apache.qpid.server.protocol.v0_10.ServerSession.MessageDispositionChangeListener;
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class MessageDispositionListenerWindowTest extends QpidTestCase
+{
+    private MessageDispositionListenerWindow _window;
+    private List<Integer> _visited;
+    private MessageDispositionListenerWindow.Visitor _visitor;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _window = new MessageDispositionListenerWindow();
+        _visited = new ArrayList<>();
+        _visitor = new MessageDispositionListenerWindow.Visitor()
+        {
+            @Override
+            public void visit(final int commandId, final MessageDispositionChangeListener listener)
+            {
+                assertEquals("Unexpected listener for command " + commandId,
+                             ((TestListener) listener).getCommandId(), commandId);
+                _visited.add(commandId);
+            }
+        };
+    }
+
+    public void testPutGetRemove()
+    {
+        TestListener listener = new TestListener(3);
+        _window.put(3, listener);
+        assertSame("Unexpected listener", listener, _window.get(3));
+        assertNull("Unexpected listener", _window.get(4));
+        assertEquals("Unexpected size", 1, _window.size());
+
+        assertSame("Unexpected listener", listener, _window.remove(3));
+        assertNull("Unexpected listener", _window.remove(3));
+        assertTrue("Window should be empty", _window.isEmpty());
+        assertEquals("Unexpected size", 0, _window.size());
+    }
+
+    public void testRemoveRangeVisitsOnlyOutstandingTransfersInOrder()
+    {
+        for (int commandId = 0; commandId < 100; commandId += 3)
+        {
+            _window.put(commandId, new TestListener(commandId));
+        }
+
+        _window.remove(10, 20, _visitor);
+        assertEquals("Unexpected commands visited", list(12, 15, 18), _visited);
+        assertNull("Listener should have been removed", _window.get(15));
+
+        _visited.clear();
+        _window.remove(0, 1000, _visitor);
+        assertEquals("Unexpected number of commands visited", 34 - 3, _visited.size());
+        assertTrue("Window should be empty", _window.isEmpty());
+    }
+
+    public void testVisitDoesNotRemove()
+    {
+        _window.put(1, new TestListener(1));
+        _window.put(2, new TestListener(2));
+
+        _window.visit(0, 5, _visitor);
+        assertEquals("Unexpected commands visited", list(1, 2), _visited);
+        assertEquals("Unexpected size", 2, _window.size());
+    }
+
+    public void testVisitorMayRemoveDuringIteration()
+    {
+        for (int commandId = 0; commandId < 10; commandId++)
+        {
+            _window.put(commandId, new TestListener(commandId));
+        }
+
+        _window.visit(0, 9, new MessageDispositionListenerWindow.Visitor()
+        {
+            @Override
+            public void visit(final int commandId, final MessageDispositionChangeListener listener)
+            {
+                _visited.add(commandId);
+                _window.remove(commandId + 1);
+            }
+        });
+        assertEquals("Unexpected commands visited", list(0, 2, 4, 6, 8), _visited);
+    }
+
+    public void testRemoveAll()
+    {
+        _window.put(Integer.MAX_VALUE, new TestListener(Integer.MAX_VALUE));
+        _window.put(Integer.MIN_VALUE, new TestListener(Integer.MIN_VALUE));
+        _window.put(Integer.MAX_VALUE - 1, new TestListener(Integer.MAX_VALUE - 1));
+
+        _window.removeAll(_visitor);
+        assertEquals("Unexpected commands visited",
+                     list(Integer.MAX_VALUE - 1, Integer.MAX_VALUE, Integer.MIN_VALUE), _visited);
+        assertTrue("Window should be empty", _window.isEmpty());
+    }
+
+    public void testUnacknowledgedTransferDoesNotPreventProgress()
+    {
+        _window.put(0, new TestListener(0));
+        final int count = 100000;
+        for (int commandId = 1; commandId < count; commandId++)
+        {
+            _window.put(commandId, new TestListener(commandId));
+            if (commandId > 5)
+            {
+                assertNotNull("Listener not found", _window.remove(commandId - 5));
+            }
+        }
+        assertEquals("Unexpected size", 6, _window.size());
+        assertNotNull("Listener not found", _window.get(0));
+
+        _window.removeAll(_visitor);
+        assertEquals("Unexpected commands visited", list(0, count - 5, count - 4, count - 3, count - 2, count - 1),
+                     _visited);
+    }
+
+    public void testBehavesAsSortedMap()
+    {
+        Random random = new Random(1);
+        Map<Integer, TestListener> expected = new TreeMap<>();
+        int nextCommandId = 0;
+        for (int i = 0; i < 100000; i++)
+        {
+            int operation = random.nextInt(10);
+            if (operation < 6)
+            {
+                TestListener listener = new TestListener(nextCommandId);
+                _window.put(nextCommandId, listener);
+                expected.put(nextCommandId, listener);
+                nextCommandId++;
+            }
+            else if (operation < 9)
+            {
+                int commandId = nextCommandId - 1 - random.nextInt(Math.min(100000, nextCommandId + 1));
+                assertSame("Unexpected listener removed", expected.remove(commandId), _window.remove(commandId));
+            }
+            else
+            {
+                int lower = nextCommandId - random.nextInt(500);
+                int upper = lower + random.nextInt(100);
+                List<Integer> expectedVisits = new ArrayList<>();
+                for (Integer commandId : new ArrayList<>(expected.keySet()))
+                {
+                    if (commandId >= lower && commandId <= upper)
+                    {
+                        expectedVisits.add(commandId);
+                        expected.remove(commandId);
+                    }
+                }
+                _visited.clear();
+                _window.remove(lower, upper, _visitor);
+                assertEquals("Unexpected commands visited", expectedVisits, _visited);
+            }
+            assertEquals("Unexpected size", expected.size(), _window.size());
+        }
+
+        _visited.clear();
+        _window.removeAll(_visitor);
+        assertEquals("Unexpected commands visited", new ArrayList<>(expected.keySet()), _visited);
+    }
+
+    private static List<Integer> list(int... values)
+    {
+        List<Integer> list = new ArrayList<>();
+        for (int value : values)
+        {
+            list.add(value);
+        }
+        return list;
+    }
+
+    private static class TestListener implements MessageDispositionChangeListener
+    {
+        private final int _commandId;
+
+        private TestListener(final int commandId)
+        {
+            _commandId = commandId;
+        }
+
+        int getCommandId()
+        {
+            return _commandId;
+        }
+
+        @Override
+        public void onAccept()
+        {
+        }
+
+        @Override
+        public void onRelease(final boolean setRedelivered)
+        {
+        }
+
+        @Override
+        public void onReject()
+        {
+        }
+
+        @Override
+        public boolean acquire()
+        {
+            return true;
+        }
+    }
+}
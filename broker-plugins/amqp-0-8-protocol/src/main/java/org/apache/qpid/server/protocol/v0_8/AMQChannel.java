@@ -99,14 +99,13 @@ import org.apache.qpid.server.protocol.AMQSessionModel;
 import org.apache.qpid.server.protocol.CapacityChecker;
 import org.apache.qpid.server.protocol.ConsumerListener;
 import org.apache.qpid.server.queue.QueueArgumentsConverter;
+import org.apache.qpid.server.security.PublishAuthorisationCache;
 import org.apache.qpid.server.security.SecurityToken;
-import org.apache.qpid.server.security.access.Operation;
 import org.apache.qpid.server.store.MessageHandle;
 import org.apache.qpid.server.store.MessageStore;
 import org.apache.qpid.server.store.StoredMessage;
 import org.apache.qpid.server.store.TransactionLogResource;
 import org.apache.qpid.server.transport.AMQPConnection;
-import org.apache.qpid.server.transport.AbstractAMQPConnection;
 import org.apache.qpid.server.txn.AsyncAutoCommitTransaction;
 import org.apache.qpid.server.txn.LocalTransaction;
 import org.apache.qpid.server.txn.LocalTransaction.ActivityTimeAccessor;
@@ -139,6 +138,7 @@ public class AMQChannel
     private final FlowCreditManager _noAckCreditManager;
     private final AccessControlContext _accessControllerContext;
     private final SecurityToken _token;
+    private final PublishAuthorisationCache _publishAuthCache;
 
     /**
      * The delivery tag is unique per channel. This is pre-incremented before putting into the deliver frame so that
@@ -247,6 +247,9 @@ public class AMQChannel
                 ? ((ConfiguredObject)_connection.getAddressSpace()).newToken(_subject)
                 :_connection.getBroker().newToken(_subject);
 
+        _publishAuthCache = new PublishAuthorisationCache(_token,
+                                                          connection.getContextProvider().getContextValue(Integer.class, Connection.PUBLISH_AUTHORISATION_CACHE_SIZE));
+
         _maxUncommittedInMemorySize = connection.getContextProvider().getContextValue(Long.class, Connection.MAX_UNCOMMITTED_IN_MEMORY_SIZE);
         _logSubject = new ChannelLogSubject(this);
 
@@ -390,6 +393,18 @@ public class AMQChannel
         return _txnRejects.get();
     }
 
+    @Override
+    public long getPublishAuthorisationCacheHits()
+    {
+        return _publishAuthCache.getHits();
+    }
+
+    @Override
+    public long getPublishAuthorisationCacheMisses()
+    {
+        return _publishAuthCache.getMisses();
+    }
+
     public Long getTxnCount()
     {
         return _txnCount.get();
@@ -429,7 +444,6 @@ public class AMQChannel
         if (_currentMessage.allContentReceived())
         {
             MessagePublishInfo info = _currentMessage.getMessagePublishInfo();
-            String routingKey = AMQShortString.toString(info.getRoutingKey());
             NamedAddressSpace virtualHost = getAddressSpace();
 
             try
@@ -439,11 +453,10 @@ public class AMQChannel
 
                 if(_currentMessage.getDestination() instanceof ConfiguredObject)
                 {
-                    ((ConfiguredObject)_currentMessage.getDestination()).authorise(_token,
-                                                                                   Operation.ACTION("publish"),
-                                                                                   AbstractAMQPConnection.PUBLISH_ACTION_MAP_CREATOR.createMap(routingKey, info.isImmediate()));
-
-                };
+                    _publishAuthCache.authorisePublish((ConfiguredObject<?>) _currentMessage.getDestination(),
+                                                       info.getRoutingKey(),
+                                                       info.isImmediate());
+                }
 
 
                 if (_confirmOnPublish)
@@ -99,7 +99,7 @@ public class MessageConverter_Internal_to_v0_8 implements MessageConverter<Inter
             @Override
             public void remove()
             {
-                throw new UnsupportedOperationException();
+                // nothing to release
             }
 
             @Override
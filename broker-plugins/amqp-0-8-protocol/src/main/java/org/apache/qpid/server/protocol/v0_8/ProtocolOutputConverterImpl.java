@@ -42,8 +42,6 @@ import org.apache.qpid.protocol.AMQVersionAwareProtocolSession;
 import org.apache.qpid.server.message.InstanceProperties;
 import org.apache.qpid.server.message.MessageContentSource;
 import org.apache.qpid.server.message.ServerMessage;
-import org.apache.qpid.server.plugin.MessageConverter;
-import org.apache.qpid.server.protocol.MessageConverterRegistry;
 import org.apache.qpid.transport.ByteBufferSender;
 import org.apache.qpid.util.GZIPUtils;
 
@@ -72,22 +70,9 @@ public class ProtocolOutputConverterImpl implements ProtocolOutputConverter
         return writeMessageDelivery(msg, channelId, deliverBody);
     }
 
-    private AMQMessage convertToAMQMessage(ServerMessage serverMessage)
+    private AMQMessage convertToAMQMessage(ServerMessage<?> serverMessage)
     {
-        if(serverMessage instanceof AMQMessage)
-        {
-            return (AMQMessage) serverMessage;
-        }
-        else
-        {
-            return getMessageConverter(serverMessage).convert(serverMessage, _connection.getAddressSpace());
-        }
-    }
-
-    private <M extends ServerMessage> MessageConverter<M, AMQMessage> getMessageConverter(M message)
-    {
-        Class<M> clazz = (Class<M>) message.getClass();
-        return MessageConverterRegistry.getConverter(clazz, AMQMessage.class);
+        return serverMessage.getConvertedMessage(AMQMessage.class, _connection.getAddressSpace());
     }
 
     private long writeMessageDelivery(AMQMessage message, int channelId, AMQBody deliverBody)
@@ -23,25 +23,28 @@ package org.apache.qpid.server.protocol.v0_8;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.qpid.server.message.MessageInstance;
+import org.apache.qpid.util.SerialNumberRing;
 
+/**
+ * Delivery tags on a channel are allocated in increasing order, so outstanding deliveries are held in a
+ * {@link SerialNumberRing} indexed by tag, sized from the prefetch limit.  Single and multiple acknowledgements then
+ * become slot and range operations without boxing the tags.
+ */
 public class UnacknowledgedMessageMapImpl implements UnacknowledgedMessageMap
 {
     private final Object _lock = new Object();
 
-    private Map<Long, MessageInstance> _map;
-
-    private final int _prefetchLimit;
+    private final SerialNumberRing<MessageInstance> _messages;
 
     public UnacknowledgedMessageMapImpl(int prefetchLimit)
     {
-        _prefetchLimit = prefetchLimit;
-        _map = new LinkedHashMap<>(prefetchLimit);
+        _messages = new SerialNumberRing<>(prefetchLimit);
     }
 
     public void collect(long deliveryTag, boolean multiple, Map<Long, MessageInstance> msgs)
@@ -76,21 +79,22 @@ public class UnacknowledgedMessageMapImpl implements UnacknowledgedMessageMap
     {
         synchronized (_lock)
         {
-
-            MessageInstance message = _map.remove(deliveryTag);
-            return message;
+            return _messages.remove(deliveryTag);
         }
     }
 
-    public void visit(Visitor visitor)
+    public void visit(final Visitor visitor)
     {
         synchronized (_lock)
         {
-            Set<Map.Entry<Long, MessageInstance>> currentEntries = _map.entrySet();
-            for (Map.Entry<Long, MessageInstance> entry : currentEntries)
+            _messages.visitAll(new SerialNumberRing.Visitor<MessageInstance>()
             {
-                visitor.callback(entry.getKey().longValue(), entry.getValue());
-            }
+                @Override
+                public void visit(final long deliveryTag, final MessageInstance message)
+                {
+                    visitor.callback(deliveryTag, message);
+                }
+            });
             visitor.visitComplete();
         }
     }
@@ -99,7 +103,7 @@ public class UnacknowledgedMessageMapImpl implements UnacknowledgedMessageMap
     {
         synchronized (_lock)
         {
-            _map.put(deliveryTag, message);
+            _messages.put(deliveryTag, message);
         }
     }
 
@@ -107,8 +111,9 @@ public class UnacknowledgedMessageMapImpl implements UnacknowledgedMessageMap
     {
         synchronized (_lock)
         {
-            Collection<MessageInstance> currentEntries = _map.values();
-            _map = new LinkedHashMap<>(_prefetchLimit);
+            final Collection<MessageInstance> currentEntries = new ArrayList<>(_messages.size());
+            _messages.visitAll(new CollectingVisitor(currentEntries));
+            _messages.clear();
             return currentEntries;
         }
     }
@@ -117,7 +122,7 @@ public class UnacknowledgedMessageMapImpl implements UnacknowledgedMessageMap
     {
         synchronized (_lock)
         {
-            return _map.size();
+            return _messages.size();
         }
     }
 
@@ -125,7 +130,7 @@ public class UnacknowledgedMessageMapImpl implements UnacknowledgedMessageMap
     {
         synchronized (_lock)
         {
-            _map.clear();
+            _messages.clear();
         }
     }
 
@@ -133,7 +138,7 @@ public class UnacknowledgedMessageMapImpl implements UnacknowledgedMessageMap
     {
         synchronized (_lock)
         {
-            return _map.get(key);
+            return _messages.get(key);
         }
     }
 
@@ -141,7 +146,16 @@ public class UnacknowledgedMessageMapImpl implements UnacknowledgedMessageMap
     {
         synchronized (_lock)
         {
-            return _map.keySet();
+            final Set<Long> deliveryTags = new LinkedHashSet<>();
+            _messages.visitAll(new SerialNumberRing.Visitor<MessageInstance>()
+            {
+                @Override
+                public void visit(final long deliveryTag, final MessageInstance message)
+                {
+                    deliveryTags.add(deliveryTag);
+                }
+            });
+            return deliveryTags;
         }
     }
 
@@ -149,11 +163,14 @@ public class UnacknowledgedMessageMapImpl implements UnacknowledgedMessageMap
     {
         if(multiple)
         {
-            Map<Long, MessageInstance> ackedMessageMap = new LinkedHashMap<Long, MessageInstance>();
-            collect(deliveryTag, multiple, ackedMessageMap);
-            remove(ackedMessageMap);
-            List<MessageInstance> acknowledged = new ArrayList<>();
-            for (MessageInstance instance : ackedMessageMap.values())
+            List<MessageInstance> removed = new ArrayList<>();
+            synchronized (_lock)
+            {
+                _messages.remove(Long.MIN_VALUE, upperBound(deliveryTag), new CollectingVisitor(removed));
+            }
+
+            List<MessageInstance> acknowledged = new ArrayList<>(removed.size());
+            for (MessageInstance instance : removed)
             {
                 if (instance.lockAcquisition(instance.getAcquiringConsumer()))
                 {
@@ -164,11 +181,7 @@ public class UnacknowledgedMessageMapImpl implements UnacknowledgedMessageMap
         }
         else
         {
-            MessageInstance instance;
-            synchronized (_lock)
-            {
-                instance = remove(deliveryTag);
-            }
+            MessageInstance instance = remove(deliveryTag);
             if(instance != null && instance.lockAcquisition(instance.getAcquiringConsumer()))
             {
                 return Collections.singleton(instance);
@@ -181,19 +194,43 @@ public class UnacknowledgedMessageMapImpl implements UnacknowledgedMessageMap
         }
     }
 
-    private void collect(long key, Map<Long, MessageInstance> msgs)
+    /**
+     * Collects the outstanding deliveries with tags up to and including the given tag, oldest first.  A tag of zero
+     * collects every outstanding delivery.
+     */
+    private void collect(long key, final Map<Long, MessageInstance> msgs)
     {
         synchronized (_lock)
         {
-            for (Map.Entry<Long, MessageInstance> entry : _map.entrySet())
+            _messages.visit(Long.MIN_VALUE, upperBound(key), new SerialNumberRing.Visitor<MessageInstance>()
             {
-                msgs.put(entry.getKey(),entry.getValue());
-                if (entry.getKey() == key)
+                @Override
+                public void visit(final long deliveryTag, final MessageInstance message)
                 {
-                    break;
+                    msgs.put(deliveryTag, message);
                 }
-            }
+            });
         }
     }
 
+    private static long upperBound(final long deliveryTag)
+    {
+        return deliveryTag == 0L ? Long.MAX_VALUE : deliveryTag;
+    }
+
+    private static final class CollectingVisitor implements SerialNumberRing.Visitor<MessageInstance>
+    {
+        private final Collection<MessageInstance> _messages;
+
+        private CollectingVisitor(final Collection<MessageInstance> messages)
+        {
+            _messages = messages;
+        }
+
+        @Override
+        public void visit(final long deliveryTag, final MessageInstance message)
+        {
+            _messages.add(message);
+        }
+    }
 }
@@ -23,7 +23,11 @@ package org.apache.qpid.server.protocol.v0_8;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.apache.qpid.server.consumer.ConsumerImpl;
 import org.apache.qpid.server.message.MessageInstance;
@@ -66,6 +70,81 @@ public class UnacknowledgedMessageMapTest extends QpidTestCase
 
     }
 
+    public void testMultipleAcknowledgeOfRangeWithGaps()
+    {
+        UnacknowledgedMessageMap map = new UnacknowledgedMessageMapImpl(4);
+        final int expectedSize = 20;
+        MessageInstance[] msgs = populateMap(map, expectedSize);
+
+        assertSame("Unexpected message removed", msgs[3], map.remove(3));
+        assertNull("Message should already have been removed", map.remove(3));
+
+        Collection<MessageInstance> acknowledged = map.acknowledge(5, true);
+        assertEquals("Unexpected number of acknowledged messages", 5, acknowledged.size());
+        assertFalse("Removed message was acknowledged", acknowledged.contains(msgs[3]));
+        assertTrue("Message 5 was not acknowledged", acknowledged.contains(msgs[5]));
+        assertEquals("Unexpected map size", expectedSize - 6, map.size());
+
+        acknowledged = map.acknowledge(10, false);
+        assertEquals("Unexpected number of acknowledged messages", 1, acknowledged.size());
+        assertNull("Acknowledged message still present", map.get(10));
+        assertSame("Unexpected message", msgs[11], map.get(11));
+
+        Map<Long, MessageInstance> collected = new LinkedHashMap<>();
+        map.collect(12, true, collected);
+        assertEquals("Unexpected delivery tags collected",
+                     Arrays.asList(6L, 7L, 8L, 9L, 11L, 12L),
+                     new ArrayList<>(collected.keySet()));
+        assertEquals("Collect should not remove messages", expectedSize - 7, map.size());
+    }
+
+    public void testOutOfOrderAndDistantDeliveryTags()
+    {
+        UnacknowledgedMessageMap map = new UnacknowledgedMessageMapImpl(4);
+        MessageInstance first = createMessageInstance(10);
+        MessageInstance earlier = createMessageInstance(5);
+        MessageInstance distant = createMessageInstance(10000000);
+        map.add(10L, first);
+        map.add(5L, earlier);
+        map.add(10000000L, distant);
+
+        assertEquals("Unexpected map size", 3, map.size());
+        assertEquals("Unexpected delivery tags",
+                     Arrays.asList(5L, 10L, 10000000L),
+                     new ArrayList<>(map.getDeliveryTags()));
+        assertSame("Unexpected message", earlier, map.get(5));
+        assertSame("Unexpected message", first, map.get(10));
+
+        Collection<MessageInstance> acknowledged = map.acknowledge(0, true);
+        assertEquals("Delivery tag zero should acknowledge all messages", 3, acknowledged.size());
+        assertEquals("Unexpected map size", 0, map.size());
+    }
+
+    public void testLongUnacknowledgedDeliveryDoesNotPreventProgress()
+    {
+        UnacknowledgedMessageMap map = new UnacknowledgedMessageMapImpl(4);
+        MessageInstance pinned = createMessageInstance(0);
+        map.add(0L, pinned);
+        for (long deliveryTag = 1; deliveryTag <= 1000; deliveryTag++)
+        {
+            map.add(deliveryTag, createMessageInstance((int) deliveryTag));
+            if (deliveryTag > 2)
+            {
+                assertNotNull("Message " + (deliveryTag - 2) + " is missing", map.remove(deliveryTag - 2));
+            }
+        }
+
+        assertEquals("Unexpected delivery tags",
+                     Arrays.asList(0L, 999L, 1000L),
+                     new ArrayList<>(map.getDeliveryTags()));
+        assertSame("Unexpected message", pinned, map.get(0));
+
+        Collection<MessageInstance> acknowledged = map.acknowledge(999, true);
+        assertEquals("Unexpected number of acknowledged messages", 2, acknowledged.size());
+        assertTrue("Pinned message was not acknowledged", acknowledged.contains(pinned));
+        assertEquals("Unexpected map size", 1, map.size());
+    }
+
     public MessageInstance[] populateMap(final UnacknowledgedMessageMap map, int size)
     {
         MessageInstance[] msgs = new MessageInstance[size];
@@ -170,7 +170,6 @@ public class AMQPConnection_1_0 extends AbstractAMQPConnection<AMQPConnection_1_
     private volatile FrameReceivingState _frameReceivingState = FrameReceivingState.AMQP_OR_SASL_HEADER;
 
     private static final short CONNECTION_CONTROL_CHANNEL = (short) 0;
-    private static final QpidByteBuffer EMPTY_BYTE_BUFFER = QpidByteBuffer.wrap(new byte[0]);
 
     private static final int DEFAULT_CHANNEL_MAX = Math.min(Integer.getInteger("amqp.channel_max", 255), 0xFFFF);
     private static final int DEFAULT_MAX_FRAME = Integer.getInteger("amqp.max_frame_size", 1 << 15);
@@ -195,6 +194,7 @@ public class AMQPConnection_1_0 extends AbstractAMQPConnection<AMQPConnection_1_
     private Session_1_0[] _receivingSessions;
     private boolean _closedForInput;
     private boolean _closedForOutput;
+    private boolean _receivingFrames;
 
     private long _idleTimeout;
 
@@ -1037,8 +1037,8 @@ public class AMQPConnection_1_0 extends AbstractAMQPConnection<AMQPConnection_1_
     {
         if (!_closedForOutput)
         {
-            ValueWriter<FrameBody> writer = _describedTypeRegistry.getValueWriter(body);
-            int size = writer.writeToBuffer(EMPTY_BYTE_BUFFER);
+            // the encoding is retained by the frame writer and reused when the frame is sent
+            int size = _frameWriter.encode(body);
             QpidByteBuffer payloadDup = payload == null ? null : payload.duplicate();
             int payloadSent = _maxFrameSize - (size + 9);
             try
@@ -1051,8 +1051,7 @@ public class AMQPConnection_1_0 extends AbstractAMQPConnection<AMQPConnection_1_
                         ((Transfer) body).setMore(Boolean.TRUE);
                     }
 
-                    writer = _describedTypeRegistry.getValueWriter(body);
-                    size = writer.writeToBuffer(EMPTY_BYTE_BUFFER);
+                    size = _frameWriter.encode(body);
                     payloadSent = _maxFrameSize - (size + 9);
 
                     payloadDup.limit(payloadDup.position() + payloadSent);
@@ -1143,6 +1142,7 @@ public class AMQPConnection_1_0 extends AbstractAMQPConnection<AMQPConnection_1_
             public Object run()
             {
                 updateLastReadTime();
+                _receivingFrames = true;
                 try
                 {
                     int remaining;
@@ -1174,6 +1174,8 @@ public class AMQPConnection_1_0 extends AbstractAMQPConnection<AMQPConnection_1_
 
                     }
                     while (msg.remaining() != remaining);
+
+                    receivedCompleteAllSessions();
                 }
                 catch (IllegalArgumentException | IllegalStateException e)
                 {
@@ -1190,12 +1192,32 @@ public class AMQPConnection_1_0 extends AbstractAMQPConnection<AMQPConnection_1_
                         throw new ConnectionScopedRuntimeException(e);
                     }
                 }
+                finally
+                {
+                    _receivingFrames = false;
+                }
                 return null;
             }
         }, getAccessControllerContext());
 
     }
 
+    private void receivedCompleteAllSessions()
+    {
+        for (Session_1_0 session : _sessions)
+        {
+            session.receivedComplete();
+        }
+    }
+
+    /**
+     * Returns true while the frames of a received buffer are being processed.  Only meaningful on the I/O thread.
+     */
+    boolean isReceivingFrames()
+    {
+        return _receivingFrames;
+    }
+
     private void processProtocolHeader(final QpidByteBuffer msg)
     {
         if(msg.remaining() >= 8)
@@ -1282,6 +1304,7 @@ public class AMQPConnection_1_0 extends AbstractAMQPConnection<AMQPConnection_1_
             finally
             {
                 markTransportClosed();
+                _frameWriter.close();
             }
         }
     }
@@ -50,10 +50,8 @@ import org.apache.qpid.server.consumer.AbstractConsumerTarget;
 import org.apache.qpid.server.consumer.ConsumerImpl;
 import org.apache.qpid.server.message.MessageInstance;
 import org.apache.qpid.server.message.ServerMessage;
-import org.apache.qpid.server.plugin.MessageConverter;
 import org.apache.qpid.server.protocol.AMQSessionModel;
 import org.apache.qpid.server.protocol.LinkRegistry;
-import org.apache.qpid.server.protocol.MessageConverterRegistry;
 import org.apache.qpid.server.txn.ServerTransaction;
 import org.apache.qpid.server.util.ConnectionScopedRuntimeException;
 
@@ -113,17 +111,8 @@ class ConsumerTarget_1_0 extends AbstractConsumerTarget
     public void doSend(final ConsumerImpl consumer, final MessageInstance entry, boolean batch)
     {
         // TODO
-        ServerMessage serverMessage = entry.getMessage();
-        Message_1_0 message;
-        if(serverMessage instanceof Message_1_0)
-        {
-            message = (Message_1_0) serverMessage;
-        }
-        else
-        {
-            final MessageConverter converter = MessageConverterRegistry.getConverter(serverMessage.getClass(), Message_1_0.class);
-            message = (Message_1_0) converter.convert(serverMessage, _link.getAddressSpace());
-        }
+        ServerMessage<?> serverMessage = entry.getMessage();
+        Message_1_0 message = serverMessage.getConvertedMessage(Message_1_0.class, _link.getAddressSpace());
 
         Transfer transfer = new Transfer();
         try
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.qpid.server.protocol.v1_0;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.qpid.server.protocol.v1_0.type.DeliveryState;
+import org.apache.qpid.server.protocol.v1_0.type.UnsignedInteger;
+import org.apache.qpid.server.protocol.v1_0.type.messaging.Accepted;
+import org.apache.qpid.server.protocol.v1_0.type.messaging.Released;
+import org.apache.qpid.server.protocol.v1_0.type.transport.Disposition;
+import org.apache.qpid.server.protocol.v1_0.type.transport.Role;
+import org.apache.qpid.server.util.Action;
+
+/**
+ * Combines the dispositions a session sends for consecutive delivery ids into a single ranged disposition.
+ *
+ * Dispositions are held back until {@link #flush()} is called, which the session does once the frames received in
+ * the current I/O cycle have been processed and before it sends any other frame.  A disposition which cannot extend
+ * the most recently held disposition, because its role, settlement, state or delivery id differ, starts a new range,
+ * so the order in which dispositions reach the peer is preserved.  Dispositions are never held for longer than the
+ * latency budget, nor are more than a fixed number of ranges held at once.
+ *
+ * This class is not thread safe.
+ */
+public class DispositionCoalescer
+{
+    static final int MAXIMUM_PENDING_DISPOSITIONS = 64;
+
+    private final Action<Disposition> _sender;
+    private final long _latencyBudget;
+    private final List<Disposition> _pending = new ArrayList<>();
+    private long _oldestPendingTime;
+    private long _framesSaved;
+
+    /**
+     * @param sender sends a disposition frame
+     * @param latencyBudget the maximum time in nanoseconds for which a disposition may be held back
+     */
+    public DispositionCoalescer(final Action<Disposition> sender, final long latencyBudget)
+    {
+        _sender = sender;
+        _latencyBudget = latencyBudget;
+    }
+
+    public void add(final Role role,
+                    final UnsignedInteger first,
+                    final UnsignedInteger last,
+                    final DeliveryState state,
+                    final boolean settled)
+    {
+        final long now = System.nanoTime();
+        final Disposition previous = _pending.isEmpty() ? null : _pending.get(_pending.size() - 1);
+        if (previous != null && canExtend(previous, role, first, state, settled))
+        {
+            previous.setLast(last);
+            _framesSaved++;
+        }
+        else
+        {
+            final Disposition disposition = new Disposition();
+            disposition.setRole(role);
+            disposition.setFirst(first);
+            disposition.setLast(last);
+            disposition.setSettled(settled);
+            disposition.setState(state);
+
+            if (_pending.isEmpty())
+            {
+                _oldestPendingTime = now;
+            }
+            _pending.add(disposition);
+        }
+
+        if (_pending.size() >= MAXIMUM_PENDING_DISPOSITIONS || now - _oldestPendingTime >= _latencyBudget)
+        {
+            flush();
+        }
+    }
+
+    public void flush()
+    {
+        if (!_pending.isEmpty())
+        {
+            final Disposition[] dispositions = _pending.toArray(new Disposition[_pending.size()]);
+            _pending.clear();
+            for (Disposition disposition : dispositions)
+            {
+                _sender.performAction(disposition);
+            }
+        }
+    }
+
+    public boolean hasPending()
+    {
+        return !_pending.isEmpty();
+    }
+
+    /**
+     * @return the number of disposition frames which did not need to be sent because their delivery was included
+     * in the range of another disposition
+     */
+    public long getFramesSaved()
+    {
+        return _framesSaved;
+    }
+
+    private boolean canExtend(final Disposition disposition,
+                              final Role role,
+                              final UnsignedInteger first,
+                              final DeliveryState state,
+                              final boolean settled)
+    {
+        return disposition.getRole() == role
+               && disposition.getSettled() == settled
+               && disposition.getLast().intValue() + 1 == first.intValue()
+               && isSameState(disposition.getState(), state);
+    }
+
+    private boolean isSameState(final DeliveryState state, final DeliveryState other)
+    {
+        if (state == other)
+        {
+            return true;
+        }
+        // accepted and released outcomes carry no fields, so any two instances are interchangeable
+        return state != null && other != null && state.getClass() == other.getClass()
+               && (state instanceof Accepted || state instanceof Released);
+    }
+}
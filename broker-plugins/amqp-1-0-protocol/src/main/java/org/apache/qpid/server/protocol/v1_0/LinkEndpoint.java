@@ -22,7 +22,6 @@
 package org.apache.qpid.server.protocol.v1_0;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeoutException;
 
@@ -82,7 +81,6 @@ public abstract class LinkEndpoint<T extends LinkEventListener>
     private UnsignedInteger _localHandle;
     private UnsignedLong _maxMessageSize;
 
-    private Map<Binary,Delivery> _unsettledTransfers = new HashMap<Binary,Delivery>();
 
     LinkEndpoint(final Session_1_0 sessionEndpoint, String name, Map<Binary, Outcome> unsettled)
     {
@@ -194,11 +192,6 @@ public abstract class LinkEndpoint<T extends LinkEventListener>
     {
     }
 
-    public void addUnsettled(final Delivery unsettled)
-    {
-        _unsettledTransfers.put(unsettled.getDeliveryTag(), unsettled);
-    }
-
     public void receiveDeliveryState(final Delivery unsettled,
                                      final DeliveryState state,
                                      final Boolean settled)
@@ -217,7 +210,6 @@ public abstract class LinkEndpoint<T extends LinkEventListener>
 
     public void settle(final Binary deliveryTag)
     {
-        _unsettledTransfers.remove(deliveryTag);
     }
 
     void setLocalHandle(final UnsignedInteger localHandle)
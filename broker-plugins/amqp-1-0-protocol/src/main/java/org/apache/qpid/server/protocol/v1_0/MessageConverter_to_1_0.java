@@ -242,7 +242,7 @@ public abstract class MessageConverter_to_1_0<M extends ServerMessage> implement
                         @Override
                         public void remove()
                         {
-                            throw new UnsupportedOperationException();
+                            allData.dispose();
                         }
 
                         @Override
@@ -37,6 +37,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.security.auth.Subject;
@@ -84,6 +85,7 @@ import org.apache.qpid.server.message.MessageDestination;
 import org.apache.qpid.server.message.MessageSource;
 import org.apache.qpid.server.model.ConfigurationChangeListener;
 import org.apache.qpid.server.model.ConfiguredObject;
+import org.apache.qpid.server.model.Connection;
 import org.apache.qpid.server.model.Consumer;
 import org.apache.qpid.server.model.Exchange;
 import org.apache.qpid.server.model.Queue;
@@ -151,8 +153,9 @@ public class Session_1_0 implements AMQSessionModel<Session_1_0>, LogSubject
     private SequenceNumber _nextIncomingTransferId;
     private SequenceNumber _nextOutgoingTransferId = new SequenceNumber(_initialOutgoingId.intValue());
 
-    private LinkedHashMap<UnsignedInteger,Delivery> _outgoingUnsettled = new LinkedHashMap<>(DEFAULT_SESSION_BUFFER_SIZE);
-    private LinkedHashMap<UnsignedInteger,Delivery> _incomingUnsettled = new LinkedHashMap<>(DEFAULT_SESSION_BUFFER_SIZE);
+    private final UnsettledDeliveries _outgoingUnsettled = new UnsettledDeliveries(DEFAULT_SESSION_BUFFER_SIZE);
+    private final UnsettledDeliveries _incomingUnsettled = new UnsettledDeliveries(DEFAULT_SESSION_BUFFER_SIZE);
+    private final DispositionCoalescer _dispositionCoalescer;
 
     private int _availableIncomingCredit = DEFAULT_SESSION_BUFFER_SIZE;
     private int _availableOutgoingCredit = DEFAULT_SESSION_BUFFER_SIZE;
@@ -186,6 +189,16 @@ public class Session_1_0 implements AMQSessionModel<Session_1_0>, LogSubject
         _securityToken = connection.getAddressSpace() instanceof ConfiguredObject
                 ? ((ConfiguredObject)connection.getAddressSpace()).newToken(_subject)
                 : connection.getBroker().newToken(_subject);
+        final long dispositionCoalescingLatency =
+                connection.getContextProvider().getContextValue(Long.class, Connection.DISPOSITION_COALESCING_LATENCY);
+        _dispositionCoalescer = new DispositionCoalescer(new Action<Disposition>()
+        {
+            @Override
+            public void performAction(final Disposition disposition)
+            {
+                _connection.sendFrame(_sendingChannel, disposition);
+            }
+        }, TimeUnit.MILLISECONDS.toNanos(dispositionCoalescingLatency));
     }
 
     public void setReceivingChannel(final short receivingChannel)
@@ -267,40 +280,45 @@ public class Session_1_0 implements AMQSessionModel<Session_1_0>, LogSubject
                                   final UnsignedInteger last,
                                   final DeliveryState state, final boolean settled)
     {
-
-
-        Disposition disposition = new Disposition();
-        disposition.setRole(role);
-        disposition.setFirst(first);
-        disposition.setLast(last);
-        disposition.setSettled(settled);
-
-        disposition.setState(state);
-
-
         if(settled)
         {
-            if(role == Role.RECEIVER)
-            {
-                SequenceNumber pos = new SequenceNumber(first.intValue());
-                SequenceNumber end = new SequenceNumber(last.intValue());
-                while(pos.compareTo(end)<=0)
-                {
-                    Delivery d = _incomingUnsettled.remove(new UnsignedInteger(pos.intValue()));
-
-/*
-                    _availableIncomingCredit += d.getTransfers().size();
-*/
+            UnsettledDeliveries unsettledTransfers = role == Role.RECEIVER ? _incomingUnsettled : _outgoingUnsettled;
+            unsettledTransfers.remove(first.intValue(), last.intValue());
+        }
 
-                    pos.incr();
-                }
-            }
+        if(_connection.isIOThread() && _connection.isReceivingFrames())
+        {
+            // held back until the received frames have been processed, see receivedComplete()
+            _dispositionCoalescer.add(role, first, last, state, settled);
         }
+        else
+        {
+            Disposition disposition = new Disposition();
+            disposition.setRole(role);
+            disposition.setFirst(first);
+            disposition.setLast(last);
+            disposition.setSettled(settled);
 
-        send(disposition);
+            disposition.setState(state);
+
+            send(disposition);
+        }
         //TODO - check send flow
     }
 
+    /**
+     * Sends the dispositions held back while processing the frames received in the current I/O cycle.
+     */
+    void receivedComplete()
+    {
+        _dispositionCoalescer.flush();
+    }
+
+    public long getDispositionFramesSaved()
+    {
+        return _dispositionCoalescer.getFramesSaved();
+    }
+
     public boolean hasCreditToSend()
     {
         boolean b = _outgoingSessionCredit != null && _outgoingSessionCredit.intValue() > 0;
@@ -331,10 +349,10 @@ public class Session_1_0 implements AMQSessionModel<Session_1_0>, LogSubject
         if(!Boolean.TRUE.equals(xfr.getSettled()))
         {
             Delivery delivery;
-            if((delivery = _outgoingUnsettled.get(deliveryId))== null)
+            if((delivery = _outgoingUnsettled.get(deliveryId.intValue()))== null)
             {
                 delivery = new Delivery(xfr, endpoint);
-                _outgoingUnsettled.put(deliveryId, delivery);
+                _outgoingUnsettled.put(deliveryId.intValue(), delivery);
 
             }
             else
@@ -342,7 +360,6 @@ public class Session_1_0 implements AMQSessionModel<Session_1_0>, LogSubject
                 delivery.addTransfer(xfr);
             }
             _outgoingSessionCredit = _outgoingSessionCredit.subtract(UnsignedInteger.ONE);
-            endpoint.addUnsettled(delivery);
 
         }
 
@@ -475,7 +492,7 @@ public class Session_1_0 implements AMQSessionModel<Session_1_0>, LogSubject
     {
         Role dispositionRole = disposition.getRole();
 
-        LinkedHashMap<UnsignedInteger, Delivery> unsettledTransfers;
+        UnsettledDeliveries unsettledTransfers;
 
         if(dispositionRole == Role.RECEIVER)
         {
@@ -487,25 +504,19 @@ public class Session_1_0 implements AMQSessionModel<Session_1_0>, LogSubject
 
         }
 
-        UnsignedInteger deliveryId = disposition.getFirst();
-        UnsignedInteger last = disposition.getLast();
-        if(last == null)
-        {
-            last = deliveryId;
-        }
-
+        final int first = disposition.getFirst().intValue();
+        final int last = disposition.getLast() == null ? first : disposition.getLast().intValue();
+        final boolean settled = Boolean.TRUE.equals(disposition.getSettled());
 
-        while(deliveryId.compareTo(last)<=0)
+        for(int deliveryId = first; last - deliveryId >= 0; deliveryId++)
         {
-
-            Delivery delivery = unsettledTransfers.get(deliveryId);
+            Delivery delivery = settled ? unsettledTransfers.remove(deliveryId) : unsettledTransfers.get(deliveryId);
             if(delivery != null)
             {
                 delivery.getLinkEndpoint().receiveDeliveryState(delivery,
                                                            disposition.getState(),
                                                            disposition.getSettled());
             }
-            deliveryId = deliveryId.add(UnsignedInteger.ONE);
         }
         if(disposition.getSettled())
         {
@@ -574,6 +585,7 @@ public class Session_1_0 implements AMQSessionModel<Session_1_0>, LogSubject
 
     private void send(final FrameBody frameBody)
     {
+        _dispositionCoalescer.flush();
         _connection.sendFrame(_sendingChannel, frameBody);
     }
 
@@ -584,6 +596,7 @@ public class Session_1_0 implements AMQSessionModel<Session_1_0>, LogSubject
 
     public void end(final End end)
     {
+        _dispositionCoalescer.flush();
         switch (_state)
         {
             case BEGIN_SENT:
@@ -646,11 +659,20 @@ public class Session_1_0 implements AMQSessionModel<Session_1_0>, LogSubject
                 deliveryId = endpoint.getLastDeliveryId();
             }
 
-            Delivery delivery = _incomingUnsettled.get(deliveryId);
+            if (deliveryId == null)
+            {
+                Error error = new Error();
+                error.setCondition(AmqpError.INVALID_FIELD);
+                error.setDescription("TRANSFER called on Session for link handle " + handle + " without a delivery id");
+                _connection.close(error);
+                return;
+            }
+
+            Delivery delivery = _incomingUnsettled.get(deliveryId.intValue());
             if (delivery == null)
             {
                 delivery = new Delivery(transfer, endpoint);
-                _incomingUnsettled.put(deliveryId, delivery);
+                _incomingUnsettled.put(deliveryId.intValue(), delivery);
 
                 if (Boolean.TRUE.equals(transfer.getMore()))
                 {
@@ -690,7 +712,7 @@ public class Session_1_0 implements AMQSessionModel<Session_1_0>, LogSubject
 
             if ((delivery.isComplete() && delivery.isSettled() || Boolean.TRUE.equals(transfer.getAborted())))
             {
-                _incomingUnsettled.remove(deliveryId);
+                _incomingUnsettled.remove(deliveryId.intValue());
             }
         }
     }
@@ -1208,6 +1230,11 @@ public class Session_1_0 implements AMQSessionModel<Session_1_0>, LogSubject
 
         if(_closed.compareAndSet(false, true))
         {
+            if (_logger.isDebugEnabled())
+            {
+                _logger.debug("Session " + getChannelId() + " avoided sending "
+                              + _dispositionCoalescer.getFramesSaved() + " disposition frames by coalescing");
+            }
             List<Action<? super Session_1_0>> taskList = new ArrayList<Action<? super Session_1_0>>(_taskList);
             _taskList.clear();
             for(Action<? super Session_1_0> task : taskList)
@@ -1328,6 +1355,18 @@ public class Session_1_0 implements AMQSessionModel<Session_1_0>, LogSubject
         return 0l;
     }
 
+    @Override
+    public long getPublishAuthorisationCacheHits()
+    {
+        return 0l;
+    }
+
+    @Override
+    public long getPublishAuthorisationCacheMisses()
+    {
+        return 0l;
+    }
+
     @Override
     public int getChannelId()
     {
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.qpid.server.protocol.v1_0;
+
+import org.apache.qpid.util.SerialNumberRing;
+
+/**
+ * The unsettled deliveries of one direction of a session, indexed by delivery id.
+ *
+ * Deliveries are held in a {@link SerialNumberRing}, so looking up, adding or settling a delivery requires neither
+ * hashing nor boxing of the id, and deliveries which a peer leaves unsettled indefinitely do not prevent the ring
+ * from advancing.
+ *
+ * Delivery ids are compared using serial number arithmetic.  This class is not thread safe.
+ */
+public class UnsettledDeliveries
+{
+    private final SerialNumberRing<Delivery> _deliveries;
+
+    public UnsettledDeliveries(final int initialCapacity)
+    {
+        _deliveries = new SerialNumberRing<>(initialCapacity);
+    }
+
+    public Delivery get(final int deliveryId)
+    {
+        return _deliveries.get(_deliveries.unwrap(deliveryId));
+    }
+
+    public void put(final int deliveryId, final Delivery delivery)
+    {
+        _deliveries.put(_deliveries.unwrap(deliveryId), delivery);
+    }
+
+    public Delivery remove(final int deliveryId)
+    {
+        return _deliveries.remove(_deliveries.unwrap(deliveryId));
+    }
+
+    /**
+     * Removes the deliveries with ids from first to last inclusive.
+     *
+     * @return the number of deliveries removed
+     */
+    public int remove(final int first, final int last)
+    {
+        final long lower = _deliveries.unwrap(first);
+        return _deliveries.remove(lower, lower + (last - first), null);
+    }
+
+    public int size()
+    {
+        return _deliveries.size();
+    }
+
+    public boolean isEmpty()
+    {
+        return _deliveries.isEmpty();
+    }
+}
@@ -25,11 +25,38 @@ import org.apache.qpid.server.protocol.v1_0.framing.AMQFrame;
 import org.apache.qpid.bytebuffer.QpidByteBuffer;
 import org.apache.qpid.transport.ByteBufferSender;
 
+/**
+ * Writes frames to a {@link ByteBufferSender}.
+ *
+ * Frame bodies are encoded in a single pass into a shared encoding buffer, leaving room for the frame header
+ * which is patched in once the size of the body is known. Each frame is then sent as a view onto that buffer,
+ * so successive frames occupy contiguous memory. Small payloads are copied in behind the frame body so that
+ * such frames reach the transport's gathering write as a single buffer.
+ *
+ * A frame body encoded by {@link #encode(Object)} is not encoded again when a frame carrying the same body
+ * is subsequently sent, provided the body is not modified in between.
+ *
+ * The encoding buffer is kept for the life of the writer, successive frames using up its unused tail.  It
+ * starts small and is replaced by one twice the size each time it is used up, so that a connection which
+ * only ever sends a few small frames does not hold a large buffer.
+ */
 public class FrameWriter
 {
+    private static final int HEADER_SIZE = 8;
+    private static final int INITIAL_ENCODING_BUFFER_SIZE = 4 * 1024;
+    private static final int MAXIMUM_ENCODING_BUFFER_SIZE = 64 * 1024;
+    private static final int MINIMUM_ENCODING_SPACE = 512;
+    private static final int COALESCED_PAYLOAD_THRESHOLD = 1024;
+
     private final ByteBufferSender _sender;
     private final ValueWriter.Registry _registry;
-    private static final byte[] EMPTY_BYTE_ARRAY = new byte[] {};
+
+    private QpidByteBuffer _encodingBuffer;
+    private int _encodingBufferSize = INITIAL_ENCODING_BUFFER_SIZE;
+    private QpidByteBuffer _oversizedBuffer;
+    private Object _encodedBody;
+    private int _encodedStart;
+    private int _encodedSize;
 
     public FrameWriter(final ValueWriter.Registry registry, final ByteBufferSender sender)
     {
@@ -37,46 +64,177 @@ public class FrameWriter
         _sender = sender;
     }
 
-    public <T> int send(AMQFrame<T> frame)
+    /**
+     * Encodes the given frame body, retaining the encoding for a subsequent {@link #send(AMQFrame)} of a frame
+     * carrying the same body.
+     *
+     * @return the encoded size of the frame body, excluding the frame header
+     */
+    public synchronized int encode(Object frameBody)
     {
-        final QpidByteBuffer payload = frame.getPayload() == null ? null : frame.getPayload().duplicate();
+        discardEncoding();
 
-        final int payloadLength = payload == null ? 0 : payload.remaining();
+        if (frameBody == null)
+        {
+            return 0;
+        }
+
+        final ValueWriter<Object> typeWriter = _registry.getValueWriter(frameBody);
+        QpidByteBuffer buffer = getEncodingBuffer();
+        final int start = buffer.position();
+        buffer.position(start + HEADER_SIZE);
+        final int available = buffer.remaining();
+
+        // a writer given too little space writes what fits and still returns the full encoded size; the writers'
+        // support for resuming a partially written value is not relied upon here, the body is simply encoded
+        // again once enough space is available
+        final int bodySize = typeWriter.writeToBuffer(buffer);
+
+        if (bodySize > available)
+        {
+            buffer.position(start);
+            final int required = HEADER_SIZE + bodySize + MINIMUM_ENCODING_SPACE;
+            if (required <= MAXIMUM_ENCODING_BUFFER_SIZE)
+            {
+                while (_encodingBufferSize < required)
+                {
+                    _encodingBufferSize <<= 1;
+                }
+                releaseEncodingBuffer();
+                buffer = getEncodingBuffer();
+            }
+            else
+            {
+                _oversizedBuffer = QpidByteBuffer.allocate(_sender.isDirectBufferPreferred(), HEADER_SIZE + bodySize);
+                buffer = _oversizedBuffer;
+            }
+
+            buffer.position(buffer.position() + HEADER_SIZE);
+            typeWriter.setValue(frameBody);
+            typeWriter.writeToBuffer(buffer);
+        }
+
+        _encodedBody = frameBody;
+        _encodedStart = buffer.position() - (HEADER_SIZE + bodySize);
+        _encodedSize = bodySize;
+        return bodySize;
+    }
+
+    public synchronized <T> int send(AMQFrame<T> frame)
+    {
         final T frameBody = frame.getFrameBody();
+        if (frameBody == null || frameBody != _encodedBody)
+        {
+            encode(frameBody);
+        }
 
-        final ValueWriter<T> typeWriter = frameBody == null ? null : _registry.getValueWriter(frameBody);
-        int bodySize;
-        if (typeWriter == null)
+        final QpidByteBuffer buffer;
+        if (_oversizedBuffer != null)
         {
-            bodySize = 8;
+            buffer = _oversizedBuffer;
         }
         else
         {
-            typeWriter.setValue(frame.getFrameBody());
-            QpidByteBuffer qpidByteBuffer = QpidByteBuffer.wrap(EMPTY_BYTE_ARRAY);
-            bodySize = typeWriter.writeToBuffer(qpidByteBuffer) + 8;
+            // a body has already been encoded into the current encoding buffer, which must not be replaced
+            buffer = frameBody == null ? getEncodingBuffer() : _encodingBuffer;
         }
+        final int start = frameBody == null ? buffer.position() : _encodedStart;
+        final int bodySize = frameBody == null ? 0 : _encodedSize;
+        if (frameBody == null)
+        {
+            buffer.position(start + HEADER_SIZE);
+        }
+        _encodedBody = null;
+
+        final QpidByteBuffer payload = frame.getPayload() == null ? null : frame.getPayload().duplicate();
+        final int payloadLength = payload == null ? 0 : payload.remaining();
+        final int totalSize = HEADER_SIZE + bodySize + payloadLength;
 
-        QpidByteBuffer body = QpidByteBuffer.allocate(_sender.isDirectBufferPreferred(), bodySize);
-        final int totalSize = bodySize + payloadLength;
-        body.putInt(totalSize);
-        body.put((byte)2); // DOFF
-        body.put(frame.getFrameType()); // AMQP Frame Type
-        body.putShort(frame.getChannel());
-        if(typeWriter != null)
+        buffer.putInt(start, totalSize);
+        buffer.put(start + 4, (byte) 2); // DOFF
+        buffer.put(start + 5, frame.getFrameType()); // AMQP Frame Type
+        buffer.putShort(start + 6, frame.getChannel());
+
+        final boolean coalescePayload = payload != null
+                                        && buffer != _oversizedBuffer
+                                        && payloadLength <= COALESCED_PAYLOAD_THRESHOLD
+                                        && payloadLength <= buffer.remaining();
+        if (coalescePayload)
         {
-            typeWriter.writeToBuffer(body);
+            buffer.put(payload);
         }
-        body.flip();
+
+        final int end = buffer.position();
+        buffer.position(start);
+        final QpidByteBuffer body = buffer.view(0, end - start);
+        buffer.position(end);
 
         _sender.send(body);
         body.dispose();
-        if(payload != null)
+        if (_oversizedBuffer != null)
         {
-            _sender.send(payload);
+            _oversizedBuffer.dispose();
+            _oversizedBuffer = null;
+        }
+        if (payload != null)
+        {
+            if (!coalescePayload)
+            {
+                _sender.send(payload);
+            }
             payload.dispose();
         }
         return totalSize;
     }
 
+    /**
+     * Releases the encoding buffer.  Frames already sent are unaffected.
+     */
+    public synchronized void close()
+    {
+        discardEncoding();
+        releaseEncodingBuffer();
+    }
+
+    private void releaseEncodingBuffer()
+    {
+        if (_encodingBuffer != null)
+        {
+            _encodingBuffer.dispose();
+            _encodingBuffer = null;
+        }
+    }
+
+    private QpidByteBuffer getEncodingBuffer()
+    {
+        if (_encodingBuffer == null || _encodingBuffer.remaining() < MINIMUM_ENCODING_SPACE)
+        {
+            if (_encodingBuffer != null)
+            {
+                _encodingBuffer.dispose();
+                // the buffer has been used up, so more is being sent than it holds
+                _encodingBufferSize = Math.min(_encodingBufferSize << 1, MAXIMUM_ENCODING_BUFFER_SIZE);
+            }
+            _encodingBuffer = QpidByteBuffer.allocate(_sender.isDirectBufferPreferred(), _encodingBufferSize);
+        }
+        return _encodingBuffer;
+    }
+
+    private void discardEncoding()
+    {
+        if (_encodedBody != null)
+        {
+            if (_oversizedBuffer == null)
+            {
+                // nothing has been written since, so the space can be reused
+                _encodingBuffer.position(_encodedStart);
+            }
+            _encodedBody = null;
+        }
+        if (_oversizedBuffer != null)
+        {
+            _oversizedBuffer.dispose();
+            _oversizedBuffer = null;
+        }
+    }
 }
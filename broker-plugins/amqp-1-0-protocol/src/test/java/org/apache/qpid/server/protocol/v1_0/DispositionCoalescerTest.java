@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.qpid.server.protocol.v1_0;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.server.protocol.v1_0.type.UnsignedInteger;
+import org.apache.qpid.server.protocol.v1_0.type.messaging.Accepted;
+import org.apache.qpid.server.protocol.v1_0.type.messaging.Rejected;
+import org.apache.qpid.server.protocol.v1_0.type.transport.Disposition;
+import org.apache.qpid.server.protocol.v1_0.type.transport.Role;
+import org.apache.qpid.server.util.Action;
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class DispositionCoalescerTest extends QpidTestCase
+{
+    private final List<Disposition> _sent = new ArrayList<>();
+    private final Action<Disposition> _sender = new Action<Disposition>()
+    {
+        @Override
+        public void performAction(final Disposition disposition)
+        {
+            _sent.add(disposition);
+        }
+    };
+
+    public void testContiguousSettlementsCoalesced()
+    {
+        DispositionCoalescer coalescer = new DispositionCoalescer(_sender, TimeUnit.SECONDS.toNanos(60));
+        for (int deliveryId = 10; deliveryId < 20; deliveryId++)
+        {
+            coalescer.add(Role.RECEIVER, UnsignedInteger.valueOf(deliveryId), UnsignedInteger.valueOf(deliveryId),
+                          new Accepted(), true);
+        }
+        assertTrue("Dispositions should be pending", coalescer.hasPending());
+        assertTrue("No disposition should yet have been sent", _sent.isEmpty());
+
+        coalescer.flush();
+
+        assertFalse("Dispositions should not be pending", coalescer.hasPending());
+        assertEquals("Unexpected number of dispositions sent", 1, _sent.size());
+        assertDisposition(_sent.get(0), Role.RECEIVER, 10, 19, true);
+        assertTrue("Unexpected state", _sent.get(0).getState() instanceof Accepted);
+        assertEquals("Unexpected number of frames saved", 9, coalescer.getFramesSaved());
+    }
+
+    public void testDispositionsWhichCannotBeCombinedRetainOrder()
+    {
+        DispositionCoalescer coalescer = new DispositionCoalescer(_sender, TimeUnit.SECONDS.toNanos(60));
+        final Accepted accepted = new Accepted();
+        final Rejected rejected = new Rejected();
+
+        coalescer.add(Role.RECEIVER, UnsignedInteger.valueOf(1), UnsignedInteger.valueOf(1), accepted, true);
+        coalescer.add(Role.RECEIVER, UnsignedInteger.valueOf(2), UnsignedInteger.valueOf(2), accepted, true);
+        // gap in delivery ids
+        coalescer.add(Role.RECEIVER, UnsignedInteger.valueOf(4), UnsignedInteger.valueOf(4), accepted, true);
+        // different outcome
+        coalescer.add(Role.RECEIVER, UnsignedInteger.valueOf(5), UnsignedInteger.valueOf(5), rejected, true);
+        // different settlement
+        coalescer.add(Role.RECEIVER, UnsignedInteger.valueOf(6), UnsignedInteger.valueOf(6), rejected, false);
+        // different role
+        coalescer.add(Role.SENDER, UnsignedInteger.valueOf(7), UnsignedInteger.valueOf(7), rejected, false);
+        coalescer.flush();
+
+        assertEquals("Unexpected number of dispositions sent", 5, _sent.size());
+        assertDisposition(_sent.get(0), Role.RECEIVER, 1, 2, true);
+        assertDisposition(_sent.get(1), Role.RECEIVER, 4, 4, true);
+        assertDisposition(_sent.get(2), Role.RECEIVER, 5, 5, true);
+        assertSame("Unexpected state", rejected, _sent.get(2).getState());
+        assertDisposition(_sent.get(3), Role.RECEIVER, 6, 6, false);
+        assertDisposition(_sent.get(4), Role.SENDER, 7, 7, false);
+        assertEquals("Unexpected number of frames saved", 1, coalescer.getFramesSaved());
+    }
+
+    public void testZeroLatencyBudgetSendsImmediately()
+    {
+        DispositionCoalescer coalescer = new DispositionCoalescer(_sender, 0L);
+        coalescer.add(Role.RECEIVER, UnsignedInteger.valueOf(1), UnsignedInteger.valueOf(1), new Accepted(), true);
+        coalescer.add(Role.RECEIVER, UnsignedInteger.valueOf(2), UnsignedInteger.valueOf(2), new Accepted(), true);
+
+        assertFalse("Dispositions should not be pending", coalescer.hasPending());
+        assertEquals("Unexpected number of dispositions sent", 2, _sent.size());
+        assertEquals("Unexpected number of frames saved", 0, coalescer.getFramesSaved());
+    }
+
+    public void testNumberOfPendingDispositionsBounded()
+    {
+        DispositionCoalescer coalescer = new DispositionCoalescer(_sender, TimeUnit.SECONDS.toNanos(60));
+        for (int i = 0; i < DispositionCoalescer.MAXIMUM_PENDING_DISPOSITIONS; i++)
+        {
+            coalescer.add(Role.RECEIVER, UnsignedInteger.valueOf(i * 2), UnsignedInteger.valueOf(i * 2),
+                          new Accepted(), true);
+        }
+
+        assertFalse("Dispositions should not be pending", coalescer.hasPending());
+        assertEquals("Unexpected number of dispositions sent",
+                     DispositionCoalescer.MAXIMUM_PENDING_DISPOSITIONS, _sent.size());
+    }
+
+    private void assertDisposition(final Disposition disposition,
+                                   final Role role,
+                                   final int first,
+                                   final int last,
+                                   final boolean settled)
+    {
+        assertEquals("Unexpected role", role, disposition.getRole());
+        assertEquals("Unexpected first", UnsignedInteger.valueOf(first), disposition.getFirst());
+        assertEquals("Unexpected last", UnsignedInteger.valueOf(last), disposition.getLast());
+        assertEquals("Unexpected settled", Boolean.valueOf(settled), disposition.getSettled());
+    }
+}
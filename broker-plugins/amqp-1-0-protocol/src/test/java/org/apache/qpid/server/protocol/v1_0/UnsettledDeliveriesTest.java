@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.qpid.server.protocol.v1_0;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.qpid.server.protocol.v1_0.type.UnsignedInteger;
+import org.apache.qpid.server.protocol.v1_0.type.transport.Transfer;
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class UnsettledDeliveriesTest extends QpidTestCase
+{
+    private UnsettledDeliveries _unsettledDeliveries;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _unsettledDeliveries = new UnsettledDeliveries(16);
+    }
+
+    public void testPutGetRemove()
+    {
+        Delivery delivery = createDelivery(5);
+        assertNull("Unexpected delivery", _unsettledDeliveries.get(5));
+
+        _unsettledDeliveries.put(5, delivery);
+        assertSame("Unexpected delivery", delivery, _unsettledDeliveries.get(5));
+        assertNull("Unexpected delivery", _unsettledDeliveries.get(5 + 16));
+        assertEquals("Unexpected size", 1, _unsettledDeliveries.size());
+
+        assertSame("Unexpected removed delivery", delivery, _unsettledDeliveries.remove(5));
+        assertNull("Unexpected delivery", _unsettledDeliveries.get(5));
+        assertNull("Unexpected removed delivery", _unsettledDeliveries.remove(5));
+        assertTrue("Deliveries should be empty", _unsettledDeliveries.isEmpty());
+    }
+
+    public void testGrowsBeyondInitialCapacity()
+    {
+        Map<Integer, Delivery> expected = new HashMap<>();
+        for (int deliveryId = 0; deliveryId < 1000; deliveryId++)
+        {
+            Delivery delivery = createDelivery(deliveryId);
+            _unsettledDeliveries.put(deliveryId, delivery);
+            expected.put(deliveryId, delivery);
+        }
+        assertContents(expected, 0, 1000);
+    }
+
+    public void testRemoveRange()
+    {
+        Map<Integer, Delivery> expected = new HashMap<>();
+        for (int deliveryId = 10; deliveryId < 100; deliveryId++)
+        {
+            Delivery delivery = createDelivery(deliveryId);
+            _unsettledDeliveries.put(deliveryId, delivery);
+            expected.put(deliveryId, delivery);
+        }
+
+        assertEquals("Unexpected number of deliveries removed", 21, _unsettledDeliveries.remove(0, 30));
+        assertEquals("Unexpected number of deliveries removed", 10, _unsettledDeliveries.remove(50, 59));
+        assertEquals("Unexpected number of deliveries removed", 0, _unsettledDeliveries.remove(50, 59));
+        assertEquals("Unexpected number of deliveries removed", 10, _unsettledDeliveries.remove(90, 1000));
+        for (int deliveryId = 0; deliveryId < 1000; deliveryId++)
+        {
+            if (deliveryId <= 30 || (deliveryId >= 50 && deliveryId <= 59) || deliveryId >= 90)
+            {
+                expected.remove(deliveryId);
+            }
+        }
+        assertContents(expected, 0, 1000);
+    }
+
+    public void testDeliveryIdWrapAround()
+    {
+        Map<Integer, Delivery> expected = new HashMap<>();
+        final int start = (int) UnsignedInteger.MAX_VALUE.longValue() - 50;
+        for (int i = 0; i < 100; i++)
+        {
+            final int deliveryId = start + i;
+            Delivery delivery = createDelivery(deliveryId);
+            _unsettledDeliveries.put(deliveryId, delivery);
+            expected.put(deliveryId, delivery);
+        }
+        assertContents(expected, start - 10, start + 110);
+
+        assertEquals("Unexpected number of deliveries removed", 60, _unsettledDeliveries.remove(start, start + 59));
+        for (int i = 0; i < 60; i++)
+        {
+            expected.remove(start + i);
+        }
+        assertContents(expected, start - 10, start + 110);
+    }
+
+    public void testLongUnsettledDeliveryDoesNotPreventProgress()
+    {
+        Map<Integer, Delivery> expected = new HashMap<>();
+        Delivery pinned = createDelivery(0);
+        _unsettledDeliveries.put(0, pinned);
+        expected.put(0, pinned);
+
+        final int count = 100000;
+        for (int deliveryId = 1; deliveryId < count; deliveryId++)
+        {
+            Delivery delivery = createDelivery(deliveryId);
+            _unsettledDeliveries.put(deliveryId, delivery);
+            if (deliveryId > 10)
+            {
+                assertSame("Unexpected removed delivery", expected.remove(deliveryId - 10),
+                           _unsettledDeliveries.remove(deliveryId - 10));
+            }
+            expected.put(deliveryId, delivery);
+        }
+
+        assertContents(expected, 0, count);
+        assertSame("Unexpected removed delivery", pinned, _unsettledDeliveries.remove(0));
+        expected.remove(0);
+        assertContents(expected, 0, count);
+    }
+
+    public void testDeliveryIdJumpBeyondCapacity()
+    {
+        Map<Integer, Delivery> expected = new HashMap<>();
+        for (int deliveryId = 0; deliveryId < 100000; deliveryId += 1000)
+        {
+            Delivery delivery = createDelivery(deliveryId);
+            _unsettledDeliveries.put(deliveryId, delivery);
+            expected.put(deliveryId, delivery);
+        }
+
+        final int farDeliveryId = Integer.MAX_VALUE - 10;
+        Delivery far = createDelivery(farDeliveryId);
+        _unsettledDeliveries.put(farDeliveryId, far);
+        expected.put(farDeliveryId, far);
+
+        assertEquals("Unexpected size", expected.size(), _unsettledDeliveries.size());
+        for (Map.Entry<Integer, Delivery> entry : expected.entrySet())
+        {
+            assertSame("Unexpected delivery for id " + entry.getKey(),
+                       entry.getValue(), _unsettledDeliveries.get(entry.getKey()));
+        }
+
+        for (Map.Entry<Integer, Delivery> entry : expected.entrySet())
+        {
+            assertSame("Unexpected removed delivery", entry.getValue(), _unsettledDeliveries.remove(entry.getKey()));
+        }
+        assertTrue("Deliveries should be empty", _unsettledDeliveries.isEmpty());
+    }
+
+    public void testRandomSettlementOrder()
+    {
+        Random random = new Random(1);
+        Map<Integer, Delivery> expected = new HashMap<>();
+        int nextDeliveryId = -5000;
+        for (int i = 0; i < 200000; i++)
+        {
+            int operation = random.nextInt(10);
+            if (operation < 5 || expected.isEmpty())
+            {
+                Delivery delivery = createDelivery(nextDeliveryId);
+                _unsettledDeliveries.put(nextDeliveryId, delivery);
+                expected.put(nextDeliveryId, delivery);
+                nextDeliveryId++;
+            }
+            else if (operation < 9)
+            {
+                int deliveryId = nextDeliveryId - 1 - random.nextInt(Math.min(100000, nextDeliveryId + 5001));
+                assertSame("Unexpected removed delivery", expected.remove(deliveryId),
+                           _unsettledDeliveries.remove(deliveryId));
+            }
+            else
+            {
+                int first = nextDeliveryId - random.nextInt(200);
+                int last = first + random.nextInt(50);
+                int removed = 0;
+                for (int deliveryId = first; deliveryId <= last; deliveryId++)
+                {
+                    if (expected.remove(deliveryId) != null)
+                    {
+                        removed++;
+                    }
+                }
+                assertEquals("Unexpected number of deliveries removed", removed,
+                             _unsettledDeliveries.remove(first, last));
+            }
+        }
+        assertContents(expected, -5000, nextDeliveryId);
+    }
+
+    private void assertContents(final Map<Integer, Delivery> expected, final int from, final int to)
+    {
+        assertEquals("Unexpected size", expected.size(), _unsettledDeliveries.size());
+        for (int deliveryId = from; deliveryId != to; deliveryId++)
+        {
+            assertSame("Unexpected delivery for id " + deliveryId,
+                       expected.get(deliveryId),
+                       _unsettledDeliveries.get(deliveryId));
+        }
+    }
+
+    private Delivery createDelivery(final int deliveryId)
+    {
+        Transfer transfer = new Transfer();
+        transfer.setDeliveryId(UnsignedInteger.valueOf(deliveryId));
+        return new Delivery(transfer, null);
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.server.protocol.v1_0.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+import org.apache.qpid.server.protocol.v1_0.framing.AMQFrame;
+import org.apache.qpid.server.protocol.v1_0.type.Binary;
+import org.apache.qpid.server.protocol.v1_0.type.FrameBody;
+import org.apache.qpid.server.protocol.v1_0.type.UnsignedInteger;
+import org.apache.qpid.server.protocol.v1_0.type.codec.AMQPDescribedTypeRegistry;
+import org.apache.qpid.server.protocol.v1_0.type.transport.Flow;
+import org.apache.qpid.server.protocol.v1_0.type.transport.Open;
+import org.apache.qpid.server.protocol.v1_0.type.transport.Transfer;
+import org.apache.qpid.transport.ByteBufferSender;
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class FrameWriterTest extends QpidTestCase
+{
+    private AMQPDescribedTypeRegistry _registry;
+    private CountingRegistry _countingRegistry;
+    private RecordingSender _sender;
+    private FrameWriter _frameWriter;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _registry = AMQPDescribedTypeRegistry.newInstance().registerTransportLayer()
+                .registerMessagingLayer()
+                .registerTransactionLayer()
+                .registerSecurityLayer();
+        _countingRegistry = new CountingRegistry(_registry);
+        _sender = new RecordingSender();
+        _frameWriter = new FrameWriter(_countingRegistry, _sender);
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        try
+        {
+            _frameWriter.close();
+        }
+        finally
+        {
+            super.tearDown();
+        }
+    }
+
+    public void testFramesMatchTwoPassEncoding() throws Exception
+    {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+        Open open = new Open();
+        open.setContainerId("container");
+        expected.write(encodeTwoPass(AMQFrame.createAMQFrame((short) 0, open)));
+        _frameWriter.send(AMQFrame.createAMQFrame((short) 0, open));
+
+        Flow flow = new Flow();
+        flow.setNextIncomingId(UnsignedInteger.valueOf(1));
+        flow.setIncomingWindow(UnsignedInteger.valueOf(2048));
+        expected.write(encodeTwoPass(AMQFrame.createAMQFrame((short) 3, flow)));
+        _frameWriter.send(AMQFrame.createAMQFrame((short) 3, flow));
+
+        expected.write(encodeTwoPass(AMQFrame.createAMQFrame((short) 0, null)));
+        _frameWriter.send(AMQFrame.createAMQFrame((short) 0, null));
+
+        for (int payloadSize : new int[]{0, 10, 1024, 1025, 20000})
+        {
+            Transfer transfer = createTransfer(payloadSize, 8);
+            QpidByteBuffer payload = createPayload(payloadSize);
+            expected.write(encodeTwoPass(AMQFrame.createAMQFrame((short) 1, transfer, payload)));
+            assertEquals("Unexpected frame size",
+                         expected.size() - _sender.getBytes().length,
+                         _frameWriter.send(AMQFrame.createAMQFrame((short) 1, transfer, payload)));
+            assertEquals("Payload should not be consumed", payloadSize, payload.remaining());
+            payload.dispose();
+        }
+
+        assertTrue("Unexpected frame encoding", Arrays.equals(expected.toByteArray(), _sender.getBytes()));
+    }
+
+    public void testSmallPayloadSentInSameBufferAsFrameBody() throws Exception
+    {
+        QpidByteBuffer payload = createPayload(100);
+        _frameWriter.send(AMQFrame.createAMQFrame((short) 1, createTransfer(100, 8), payload));
+        payload.dispose();
+        assertEquals("Unexpected number of buffers sent", 1, _sender.getBufferCount());
+
+        payload = createPayload(10000);
+        _frameWriter.send(AMQFrame.createAMQFrame((short) 1, createTransfer(10000, 8), payload));
+        payload.dispose();
+        assertEquals("Unexpected number of buffers sent", 3, _sender.getBufferCount());
+    }
+
+    public void testEncodedBodyIsReusedWhenSent() throws Exception
+    {
+        Transfer transfer = createTransfer(0, 8);
+
+        int size = _frameWriter.encode(transfer);
+        assertEquals("Unexpected number of encodings", 1, _countingRegistry.getCount());
+
+        int frameSize = _frameWriter.send(AMQFrame.createAMQFrame((short) 1, transfer));
+        assertEquals("Body should not be encoded again", 1, _countingRegistry.getCount());
+        assertEquals("Unexpected frame size", size + 8, frameSize);
+        assertTrue("Unexpected frame encoding",
+                   Arrays.equals(encodeTwoPass(AMQFrame.createAMQFrame((short) 1, transfer)), _sender.getBytes()));
+    }
+
+    public void testEncodedBodyModifiedBeforeSendIsEncodedAgain() throws Exception
+    {
+        Transfer transfer = createTransfer(0, 8);
+
+        _frameWriter.encode(transfer);
+        transfer.setMore(Boolean.TRUE);
+        _frameWriter.encode(transfer);
+        _frameWriter.send(AMQFrame.createAMQFrame((short) 1, transfer));
+
+        assertTrue("Unexpected frame encoding",
+                   Arrays.equals(encodeTwoPass(AMQFrame.createAMQFrame((short) 1, transfer)), _sender.getBytes()));
+    }
+
+    public void testManyFramesSpanningEncodingBuffers() throws Exception
+    {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 5000; i++)
+        {
+            Transfer transfer = createTransfer(i % 1500, 1 + (i % 200));
+            QpidByteBuffer payload = createPayload(i % 1500);
+            expected.write(encodeTwoPass(AMQFrame.createAMQFrame((short) (i % 4), transfer, payload)));
+            _frameWriter.send(AMQFrame.createAMQFrame((short) (i % 4), transfer, payload));
+            payload.dispose();
+        }
+
+        assertTrue("Unexpected frame encoding", Arrays.equals(expected.toByteArray(), _sender.getBytes()));
+    }
+
+    public void testFrameBodyLargerThanInitialEncodingBuffer() throws Exception
+    {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int deliveryTagSize : new int[]{8, 10000, 8, 30000, 8})
+        {
+            Transfer transfer = createTransfer(0, deliveryTagSize);
+            expected.write(encodeTwoPass(AMQFrame.createAMQFrame((short) 1, transfer)));
+            _frameWriter.send(AMQFrame.createAMQFrame((short) 1, transfer));
+        }
+
+        assertTrue("Unexpected frame encoding", Arrays.equals(expected.toByteArray(), _sender.getBytes()));
+    }
+
+    public void testOversizedFrameBody() throws Exception
+    {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+        Transfer small = createTransfer(0, 8);
+        expected.write(encodeTwoPass(AMQFrame.createAMQFrame((short) 1, small)));
+        _frameWriter.send(AMQFrame.createAMQFrame((short) 1, small));
+
+        Transfer large = createTransfer(0, 100000);
+        expected.write(encodeTwoPass(AMQFrame.createAMQFrame((short) 1, large)));
+        _frameWriter.send(AMQFrame.createAMQFrame((short) 1, large));
+
+        expected.write(encodeTwoPass(AMQFrame.createAMQFrame((short) 1, small)));
+        _frameWriter.send(AMQFrame.createAMQFrame((short) 1, small));
+
+        assertTrue("Unexpected frame encoding", Arrays.equals(expected.toByteArray(), _sender.getBytes()));
+    }
+
+    private Transfer createTransfer(final int payloadSize, final int deliveryTagSize)
+    {
+        Transfer transfer = new Transfer();
+        transfer.setHandle(UnsignedInteger.valueOf(payloadSize % 7));
+        transfer.setDeliveryId(UnsignedInteger.valueOf(payloadSize));
+        byte[] deliveryTag = new byte[deliveryTagSize];
+        Arrays.fill(deliveryTag, (byte) deliveryTagSize);
+        transfer.setDeliveryTag(new Binary(deliveryTag));
+        transfer.setMessageFormat(UnsignedInteger.ZERO);
+        return transfer;
+    }
+
+    private QpidByteBuffer createPayload(final int size)
+    {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++)
+        {
+            data[i] = (byte) i;
+        }
+        return QpidByteBuffer.wrap(data);
+    }
+
+    private byte[] encodeTwoPass(final AMQFrame<FrameBody> frame)
+    {
+        final FrameBody frameBody = frame.getFrameBody();
+        final ValueWriter<FrameBody> writer = frameBody == null ? null : _registry.getValueWriter(frameBody);
+        final int bodySize = writer == null ? 0 : writer.writeToBuffer(QpidByteBuffer.wrap(new byte[0]));
+        final int payloadSize = frame.getPayload() == null ? 0 : frame.getPayload().remaining();
+
+        QpidByteBuffer buffer = QpidByteBuffer.allocate(8 + bodySize + payloadSize);
+        buffer.putInt(8 + bodySize + payloadSize);
+        buffer.put((byte) 2);
+        buffer.put(frame.getFrameType());
+        buffer.putShort(frame.getChannel());
+        if (writer != null)
+        {
+            writer.writeToBuffer(buffer);
+        }
+        if (frame.getPayload() != null)
+        {
+            QpidByteBuffer payload = frame.getPayload().duplicate();
+            buffer.put(payload);
+            payload.dispose();
+        }
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        buffer.dispose();
+        return bytes;
+    }
+
+    private static class RecordingSender implements ByteBufferSender
+    {
+        private final ByteArrayOutputStream _bytes = new ByteArrayOutputStream();
+        private int _bufferCount;
+
+        @Override
+        public boolean isDirectBufferPreferred()
+        {
+            return false;
+        }
+
+        @Override
+        public void send(final QpidByteBuffer msg)
+        {
+            QpidByteBuffer dup = msg.duplicate();
+            byte[] data = new byte[dup.remaining()];
+            dup.get(data);
+            dup.dispose();
+            _bytes.write(data, 0, data.length);
+            _bufferCount++;
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        byte[] getBytes()
+        {
+            return _bytes.toByteArray();
+        }
+
+        int getBufferCount()
+        {
+            return _bufferCount;
+        }
+    }
+
+    private static class CountingRegistry implements ValueWriter.Registry
+    {
+        private final ValueWriter.Registry _delegate;
+        private int _count;
+
+        private CountingRegistry(final ValueWriter.Registry delegate)
+        {
+            _delegate = delegate;
+        }
+
+        @Override
+        public <V> ValueWriter<V> getValueWriter(final V value)
+        {
+            _count++;
+            return _delegate.getValueWriter(value);
+        }
+
+        @Override
+        public <V> ValueWriter<V> getValueWriter(final V value, final Map<Class, ValueWriter> localCache)
+        {
+            _count++;
+            return _delegate.getValueWriter(value, localCache);
+        }
+
+        @Override
+        public <V> ValueWriter<V> register(final Class<V> clazz, final ValueWriter.Factory<V> writer)
+        {
+            return _delegate.register(clazz, writer);
+        }
+
+        int getCount()
+        {
+            return _count;
+        }
+    }
+}
@@ -99,7 +99,7 @@ public class MessageConverter_1_0_to_v0_10 implements MessageConverter<Message_1
             @Override
             public void remove()
             {
-                throw new UnsupportedOperationException();
+                // nothing to release
             }
 
             @Override
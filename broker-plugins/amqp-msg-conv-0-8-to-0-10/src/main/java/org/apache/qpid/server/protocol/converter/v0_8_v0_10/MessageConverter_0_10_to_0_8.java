@@ -205,7 +205,7 @@ public class MessageConverter_0_10_to_0_8 implements MessageConverter<MessageTra
             @Override
             public void remove()
             {
-                throw new UnsupportedOperationException();
+                // nothing to release
             }
 
             @Override
@@ -90,7 +90,7 @@ public class MessageConverter_0_8_to_0_10  implements MessageConverter<AMQMessag
             @Override
             public void remove()
             {
-                throw new UnsupportedOperationException();
+                // nothing to release
             }
 
             @Override
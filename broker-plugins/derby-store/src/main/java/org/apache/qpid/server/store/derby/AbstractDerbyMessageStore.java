@@ -88,11 +88,11 @@ public abstract class AbstractDerbyMessageStore extends AbstractJDBCMessageStore
         {
             try
             {
-                doClose();
+                super.closeMessageStore();
             }
             finally
             {
-                super.closeMessageStore();
+                doClose();
             }
         }
     }
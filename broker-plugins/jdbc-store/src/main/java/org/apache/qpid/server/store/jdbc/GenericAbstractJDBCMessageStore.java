@@ -42,6 +42,7 @@ public abstract class GenericAbstractJDBCMessageStore extends org.apache.qpid.se
         if (_messageStoreOpen.compareAndSet(false, true))
         {
             _parent = parent;
+            initMessageStore(parent);
 
             doOpen(parent);
 
@@ -76,8 +77,14 @@ public abstract class GenericAbstractJDBCMessageStore extends org.apache.qpid.se
             }
             finally
             {
-                doClose();
-                super.closeMessageStore();
+                try
+                {
+                    super.closeMessageStore();
+                }
+                finally
+                {
+                    doClose();
+                }
             }
 
         }
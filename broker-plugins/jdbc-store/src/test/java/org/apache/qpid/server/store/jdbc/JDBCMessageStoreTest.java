@@ -30,10 +30,16 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.UUID;
 
+import org.apache.qpid.server.model.UUIDGenerator;
 import org.apache.qpid.server.model.VirtualHost;
+import org.apache.qpid.server.store.MessageEnqueueRecord;
 import org.apache.qpid.server.store.MessageStore;
 import org.apache.qpid.server.store.MessageStoreTestCase;
+import org.apache.qpid.server.store.StoreException;
+import org.apache.qpid.server.store.Transaction;
+import org.apache.qpid.server.store.TransactionLogResource;
 import org.apache.qpid.server.virtualhost.jdbc.JDBCVirtualHost;
 
 public class JDBCMessageStoreTest extends MessageStoreTestCase
@@ -63,6 +69,32 @@ public class JDBCMessageStoreTest extends MessageStoreTestCase
         assertTablesExist(expectedTables, false);
     }
 
+    public void testCommitOfDequeueOfMissingQueueEntryFails() throws Exception
+    {
+        final UUID queueId = UUIDGenerator.generateRandomUUID();
+        TransactionLogResource queue = createTransactionLogResource(queueId);
+
+        Transaction txn = getStore().newTransaction();
+        MessageEnqueueRecord enqueueRecord = txn.enqueueMessage(queue, createEnqueueableMessage(1L));
+        txn.commitTran();
+
+        txn = getStore().newTransaction();
+        txn.dequeueMessage(enqueueRecord);
+        txn.commitTran();
+
+        txn = getStore().newTransaction();
+        txn.dequeueMessage(enqueueRecord);
+        try
+        {
+            txn.commitTran();
+            fail("Commit of a dequeue of a missing queue entry should fail");
+        }
+        catch (StoreException e)
+        {
+            // pass
+        }
+    }
+
     @Override
     protected VirtualHost createVirtualHost()
     {
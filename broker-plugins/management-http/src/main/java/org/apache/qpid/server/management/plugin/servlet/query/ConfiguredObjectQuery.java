@@ -26,6 +26,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.PriorityQueue;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -80,16 +81,25 @@ public final class ConfiguredObjectQuery
         int offset = toInt(offsetClause, DEFAULT_OFFSET);
 
         HeadersAndValueExpressions headersAndValueExpressions = parseSelectClause(selectClause);
-
-        List<ConfiguredObject<?>> filteredObjects = whereClause == null ? objects : filterObjects(objects, whereClause);
-        List<ConfiguredObject<?>> orderedObjects = orderByClause == null ? filteredObjects : orderObjects(filteredObjects,
-                                                                                                          orderByClause,
-                                                                                                          headersAndValueExpressions.getValueExpressions());
-        List<ConfiguredObject<?>> limitedOrderedObjects = applyLimitAndOffset(orderedObjects, limit, offset);
+        BooleanExpression<ConfiguredObject> whereExpression = whereClause == null ? null : parseWhereClause(whereClause);
+        OrderByComparator comparator = orderByClause == null
+                ? null
+                : new OrderByComparator(parseOrderByClause(orderByClause),
+                                        headersAndValueExpressions.getValueExpressions());
+
+        RowCollector rowCollector = createRowCollector(comparator, limit, offset);
+        int totalNumberOfRows = 0;
+        for (ConfiguredObject<?> object : objects)
+        {
+            if (whereExpression == null || matches(whereExpression, object))
+            {
+                rowCollector.add(object, totalNumberOfRows++);
+            }
+        }
 
         _headers = headersAndValueExpressions.getHeaders();
-        _results = evaluateResults(limitedOrderedObjects, headersAndValueExpressions.getValueExpressions());
-        _totalNumberOfRows = filteredObjects.size();
+        _results = evaluateResults(rowCollector.getRows(), headersAndValueExpressions.getValueExpressions());
+        _totalNumberOfRows = totalNumberOfRows;
     }
 
     public List<List<Object>> getResults()
@@ -172,38 +182,30 @@ public final class ConfiguredObjectQuery
                 };
     }
 
-    private List<ConfiguredObject<?>> filterObjects(final List<ConfiguredObject<?>> objects, final String whereClause)
+    private BooleanExpression<ConfiguredObject> parseWhereClause(final String whereClause)
     {
-        List<ConfiguredObject<?>> filteredObjects = new ArrayList<>();
         ConfiguredObjectFilterParser parser = new ConfiguredObjectFilterParser();
         parser.setConfiguredObjectExpressionFactory(_expressionFactory);
         try
         {
-            final BooleanExpression<ConfiguredObject> expression =
-                    parser.parseWhere(whereClause);
-
-
-            for (ConfiguredObject<?> object : objects)
-            {
-                try
-                {
-                    if (expression.matches(object))
-                    {
-                        filteredObjects.add(object);
-                    }
-                }
-                catch (RuntimeException e)
-                {
-                    throw new EvaluationException("Error while evaluating object against where clause", e);
-                }
-            }
-
+            return parser.parseWhere(whereClause);
         }
         catch (ParseException | TokenMgrError e)
         {
             throw new SelectorParsingException("Unable to parse where clause", e);
         }
-        return filteredObjects;
+    }
+
+    private boolean matches(final BooleanExpression<ConfiguredObject> expression, final ConfiguredObject<?> object)
+    {
+        try
+        {
+            return expression.matches(object);
+        }
+        catch (RuntimeException e)
+        {
+            throw new EvaluationException("Error while evaluating object against where clause", e);
+        }
     }
 
     private List<List<Object>> evaluateResults(final List<ConfiguredObject<?>> filteredObjects, List<Expression> valueExpressions)
@@ -231,7 +233,23 @@ public final class ConfiguredObjectQuery
         return values;
     }
 
-    private List<ConfiguredObject<?>> applyLimitAndOffset(final List<ConfiguredObject<?>> orderedObjects, final int limit, int offset)
+    private RowCollector createRowCollector(final OrderByComparator comparator, final int limit, final int offset)
+    {
+        if (offset >= 0 && comparator == null)
+        {
+            return new WindowRowCollector(limit, offset);
+        }
+        else if (offset >= 0 && limit >= 0 && (long) offset + limit <= Integer.MAX_VALUE)
+        {
+            return new TopRowCollector(comparator, limit, offset);
+        }
+        else
+        {
+            return new SortingRowCollector(comparator, limit, offset);
+        }
+    }
+
+    private static List<ConfiguredObject<?>> applyLimitAndOffset(final List<ConfiguredObject<?>> orderedObjects, final int limit, int offset)
     {
         int size = orderedObjects.size();
         int firstIndex = offset < 0 ? Math.max(0, size + offset) : Math.min(size, offset);
@@ -240,8 +258,165 @@ public final class ConfiguredObjectQuery
         return orderedObjects.subList(firstIndex, lastIndex);
     }
 
+    private static List<ConfiguredObject<?>> toObjects(final List<OrderedRow> rows)
+    {
+        List<ConfiguredObject<?>> objects = new ArrayList<>(rows.size());
+        for (OrderedRow row : rows)
+        {
+            objects.add(row.getObject());
+        }
+        return objects;
+    }
+
+    /**
+     * Receives the objects matching the where clause in their original order and retains only
+     * those needed to produce the requested page of results.
+     */
+    private interface RowCollector
+    {
+        void add(ConfiguredObject<?> object, int index);
+        List<ConfiguredObject<?>> getRows();
+    }
+
+    /** Unordered query with a non-negative offset: only the objects inside the window are kept. */
+    private static final class WindowRowCollector implements RowCollector
+    {
+        private final int _limit;
+        private final int _offset;
+        private final List<ConfiguredObject<?>> _rows = new ArrayList<>();
+
+        private WindowRowCollector(final int limit, final int offset)
+        {
+            _limit = limit;
+            _offset = offset;
+        }
+
+        @Override
+        public void add(final ConfiguredObject<?> object, final int index)
+        {
+            if (index >= _offset && (_limit < 0 || index - _offset < _limit))
+            {
+                _rows.add(object);
+            }
+        }
+
+        @Override
+        public List<ConfiguredObject<?>> getRows()
+        {
+            return _rows;
+        }
+    }
+
+    /**
+     * Ordered query with a limit and non-negative offset: keeps the first offset + limit rows in a bounded
+     * max-heap so that the remaining objects are discarded after a single comparison with the heap head.
+     */
+    private static final class TopRowCollector implements RowCollector
+    {
+        private final int _limit;
+        private final int _offset;
+        private final int _capacity;
+        private final OrderByComparator _comparator;
+        private final PriorityQueue<OrderedRow> _heap;
+
+        private TopRowCollector(final OrderByComparator comparator, final int limit, final int offset)
+        {
+            _comparator = comparator;
+            _limit = limit;
+            _offset = offset;
+            _capacity = offset + limit;
+            _heap = new PriorityQueue<>(Math.max(1, Math.min(_capacity, 1024)), Collections.reverseOrder(comparator));
+        }
+
+        @Override
+        public void add(final ConfiguredObject<?> object, final int index)
+        {
+            if (_capacity > 0)
+            {
+                OrderedRow row = _comparator.createRow(object, index);
+                if (_heap.size() < _capacity)
+                {
+                    _heap.add(row);
+                }
+                else if (_comparator.compare(row, _heap.peek()) < 0)
+                {
+                    _heap.poll();
+                    _heap.add(row);
+                }
+            }
+        }
+
+        @Override
+        public List<ConfiguredObject<?>> getRows()
+        {
+            List<OrderedRow> orderedRows = new ArrayList<>(_heap);
+            Collections.sort(orderedRows, _comparator);
+            return applyLimitAndOffset(toObjects(orderedRows), _limit, _offset);
+        }
+    }
+
+    /** Keeps every matching object, ordering them if required, and applies limit and offset at the end. */
+    private static final class SortingRowCollector implements RowCollector
+    {
+        private final int _limit;
+        private final int _offset;
+        private final OrderByComparator _comparator;
+        private final List<ConfiguredObject<?>> _objects = new ArrayList<>();
+        private final List<OrderedRow> _rows = new ArrayList<>();
+
+        private SortingRowCollector(final OrderByComparator comparator, final int limit, final int offset)
+        {
+            _comparator = comparator;
+            _limit = limit;
+            _offset = offset;
+        }
+
+        @Override
+        public void add(final ConfiguredObject<?> object, final int index)
+        {
+            if (_comparator == null)
+            {
+                _objects.add(object);
+            }
+            else
+            {
+                _rows.add(_comparator.createRow(object, index));
+            }
+        }
+
+        @Override
+        public List<ConfiguredObject<?>> getRows()
+        {
+            if (_comparator == null)
+            {
+                return applyLimitAndOffset(_objects, _limit, _offset);
+            }
+            Collections.sort(_rows, _comparator);
+            return applyLimitAndOffset(toObjects(_rows), _limit, _offset);
+        }
+    }
+
+    /** A matching object together with its order by values, evaluated once, and its position amongst the matches. */
+    static final class OrderedRow
+    {
+        private final ConfiguredObject<?> _object;
+        private final Object[] _orderByValues;
+        private final int _index;
 
-    class OrderByComparator implements Comparator<Object>
+        private OrderedRow(final ConfiguredObject<?> object, final Object[] orderByValues, final int index)
+        {
+            _object = object;
+            _orderByValues = orderByValues;
+            _index = index;
+        }
+
+        ConfiguredObject<?> getObject()
+        {
+            return _object;
+        }
+    }
+
+    static final class OrderByComparator implements Comparator<OrderedRow>
     {
         private final List<OrderByExpression> _orderByExpressions;
 
@@ -269,8 +444,18 @@ public final class ConfiguredObjectQuery
             }
         }
 
+        OrderedRow createRow(final ConfiguredObject<?> object, final int index)
+        {
+            Object[] orderByValues = new Object[_orderByExpressions.size()];
+            for (int i = 0; i < orderByValues.length; i++)
+            {
+                orderByValues[i] = _orderByExpressions.get(i).evaluate(object);
+            }
+            return new OrderedRow(object, orderByValues, index);
+        }
+
         @Override
-        public int compare(final Object o1, final Object o2)
+        public int compare(final OrderedRow o1, final OrderedRow o2)
         {
             int index = 0;
             int comparisonResult = 0;
@@ -278,8 +463,8 @@ public final class ConfiguredObjectQuery
             {
                 try
                 {
-                    Comparable left = (Comparable) orderByExpression.evaluate(o1);
-                    Comparable right = (Comparable) orderByExpression.evaluate(o2);
+                    Comparable left = (Comparable) o1._orderByValues[index];
+                    Comparable right = (Comparable) o2._orderByValues[index];
                     if (left == null && right != null)
                     {
                         comparisonResult = -1;
@@ -308,22 +493,11 @@ public final class ConfiguredObjectQuery
                     throw new EvaluationException(String.format("The orderBy expression at position '%d' is unsupported", index), e);
                 }
             }
-            return comparisonResult;
+            // equal rows keep the order in which they matched
+            return Integer.compare(o1._index, o2._index);
         }
     }
 
-    private List<ConfiguredObject<?>> orderObjects(final List<ConfiguredObject<?>> unorderedResults,
-                                                   String orderByClause,
-                                                   final List<Expression> valueExpressions)
-    {
-        List<OrderByExpression> orderByExpressions = parseOrderByClause(orderByClause);
-        List<ConfiguredObject<?>> orderedObjects = new ArrayList<>(unorderedResults.size());
-        orderedObjects.addAll(unorderedResults);
-        Comparator<Object> comparator = new OrderByComparator(orderByExpressions, valueExpressions);
-        Collections.sort(orderedObjects, comparator);
-        return orderedObjects;
-    }
-
     private List<OrderByExpression> parseOrderByClause(final String orderByClause)
     {
         final List<OrderByExpression> orderByExpressions;
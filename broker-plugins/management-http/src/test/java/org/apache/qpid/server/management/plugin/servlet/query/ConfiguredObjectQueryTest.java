@@ -672,6 +672,61 @@ public class ConfiguredObjectQueryTest extends QpidTestCase
         assertQueryResults(new Object[][]{{"test-0"},{"test-1"},{"test-2"}}, _query.getResults());
     }
 
+    public void testLimitAndOffsetWithOrderByMatchesFullyOrderedResults() throws Exception
+    {
+        int numberOfTestObjects = 50;
+        for(int i=0;i<numberOfTestObjects;i++)
+        {
+            final int depth = (i * 7) % 10;
+            final String name = "test-" + i;
+            ConfiguredObject object = createCO(new HashMap<String, Object>()
+            {{
+                put("name", name);
+                put("depth", depth);
+            }});
+            _objects.add(object);
+        }
+
+        List<List<Object>> orderedResults =
+                new ConfiguredObjectQuery(_objects, "name,depth", "depth > 2", "depth DESC").getResults();
+        assertEquals("Unexpected number of ordered results", 35, orderedResults.size());
+
+        for (int[] limitAndOffset : new int[][]{{5, 0}, {5, 3}, {20, 30}, {0, 0}, {100, 0}})
+        {
+            int limit = limitAndOffset[0];
+            int offset = limitAndOffset[1];
+            _query = new ConfiguredObjectQuery(_objects, "name,depth", "depth > 2", "depth DESC",
+                                               String.valueOf(limit), String.valueOf(offset));
+
+            int firstIndex = Math.min(orderedResults.size(), offset);
+            int lastIndex = Math.min(orderedResults.size(), offset + limit);
+            assertEquals("Unexpected results for limit " + limit + " and offset " + offset,
+                         orderedResults.subList(firstIndex, lastIndex), _query.getResults());
+            assertEquals("Unexpected total number of rows", 35, _query.getTotalNumberOfRows());
+        }
+    }
+
+    public void testLimitAndOffsetWithoutOrderBy() throws Exception
+    {
+        int numberOfTestObjects = 5;
+        for(int i=0;i<numberOfTestObjects;i++)
+        {
+            final String name = "test-" + i;
+            ConfiguredObject object = createCO(new HashMap<String, Object>()
+            {{
+                put("name", name);
+            }});
+            _objects.add(object);
+        }
+
+        _query = new ConfiguredObjectQuery(_objects, "name", null, null, "2", "1");
+        assertQueryResults(new Object[][]{{"test-1"}, {"test-2"}}, _query.getResults());
+        assertEquals("Unexpected total number of rows", 5, _query.getTotalNumberOfRows());
+
+        _query = new ConfiguredObjectQuery(_objects, "name", null, null, "2", "-1");
+        assertQueryResults(new Object[][]{{"test-4"}}, _query.getResults());
+    }
+
     private void assertQueryResults(final Object[][] expectedAttributes,
                                     final List<List<Object>> results)
     {
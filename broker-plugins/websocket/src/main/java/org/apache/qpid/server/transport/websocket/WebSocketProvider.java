@@ -82,6 +82,7 @@ class WebSocketProvider implements AcceptingTransport
     private final MultiVersionProtocolEngineFactory _factory;
     private Server _server;
     private final long _outboundMessageBufferLimit;
+    private final int _networkBufferSize;
 
     WebSocketProvider(final Transport transport,
                       final SSLContext sslContext,
@@ -97,6 +98,7 @@ class WebSocketProvider implements AcceptingTransport
 
         _outboundMessageBufferLimit = (long) _port.getContextValue(Long.class,
                                                                    AmqpPort.PORT_AMQP_OUTBOUND_MESSAGE_BUFFER_SIZE);
+        _networkBufferSize = _port.getNetworkBufferSize();
         _factory = new MultiVersionProtocolEngineFactory(
                         _port.getParent(Broker.class),
                         _supported,
@@ -288,9 +290,7 @@ class WebSocketProvider implements AcceptingTransport
                         iter.next().run();
                     }
 
-                    QpidByteBuffer buffer = QpidByteBuffer.allocateDirect(length);
-                    buffer.put(data, offset, length);
-                    buffer.flip();
+                    QpidByteBuffer buffer = _connectionWrapper.copyToNetInputBuffer(data, offset, length);
                     _protocolEngine.received(buffer);
                     buffer.dispose();
 
@@ -340,6 +340,7 @@ class WebSocketProvider implements AcceptingTransport
         public void onClose(final int closeCode, final String message)
         {
             _protocolEngine.closed();
+            _connectionWrapper.releaseBuffers();
         }
     }
 
@@ -355,6 +356,8 @@ class WebSocketProvider implements AcceptingTransport
         private Certificate _certificate;
         private long _maxWriteIdleMillis;
         private long _maxReadIdleMillis;
+        private QpidByteBuffer _netInputBuffer;
+        private byte[] _netOutputBuffer;
 
         public ConnectionWrapper(final WebSocket.Connection connection,
                                  final SocketAddress localAddress,
@@ -490,6 +493,43 @@ class WebSocketProvider implements AcceptingTransport
             _certificate = certificate;
         }
 
+        /**
+         * Copies an inbound frame into the remaining space of this connection's pooled input buffer and returns a
+         * view of it. Views are carved from the same pooled buffer until it is exhausted, so no buffer is allocated
+         * per frame.
+         */
+        synchronized QpidByteBuffer copyToNetInputBuffer(final byte[] data, final int offset, final int length)
+        {
+            if (_netInputBuffer == null || _netInputBuffer.remaining() < length)
+            {
+                if (_netInputBuffer != null)
+                {
+                    _netInputBuffer.dispose();
+                }
+                _netInputBuffer = QpidByteBuffer.allocateDirect(Math.max(_networkBufferSize, length));
+            }
+            QpidByteBuffer buffer = _netInputBuffer.view(0, length);
+            _netInputBuffer.position(_netInputBuffer.position() + length);
+            buffer.put(data, offset, length);
+            buffer.flip();
+            return buffer;
+        }
+
+        synchronized void releaseBuffers()
+        {
+            if (_netInputBuffer != null)
+            {
+                _netInputBuffer.dispose();
+                _netInputBuffer = null;
+            }
+            _netOutputBuffer = null;
+            QpidByteBuffer buf;
+            while((buf = _buffers.poll())!= null)
+            {
+                buf.dispose();
+            }
+        }
+
         public synchronized void doWrite()
         {
             int size = 0;
@@ -501,31 +541,59 @@ class WebSocketProvider implements AcceptingTransport
                 toBeWritten.add(buf);
             }
 
-            byte[] data = new byte[size];
-            int offset = 0;
-
-            for(QpidByteBuffer tmp : toBeWritten)
-            {
-                int remaining = tmp.remaining();
-                tmp.get(data, offset, remaining);
-                tmp.dispose();
-                offset += remaining;
-            }
-            if(size > 0)
+            try
             {
-                try
+                if (size > 0)
                 {
-                    _connection.sendMessage(data, 0, size);
+                    // Jetty copies the message into its own frame buffer before sendMessage returns, so a heap
+                    // buffer's backing array can be handed over directly and the gather array can be reused.
+                    if (toBeWritten.size() == 1 && toBeWritten.get(0).hasArray())
+                    {
+                        QpidByteBuffer single = toBeWritten.get(0);
+                        _connection.sendMessage(single.array(), single.arrayOffset() + single.position(), size);
+                    }
+                    else
+                    {
+                        byte[] data = getNetOutputBuffer(size);
+                        int offset = 0;
+                        for (QpidByteBuffer tmp : toBeWritten)
+                        {
+                            int remaining = tmp.remaining();
+                            tmp.get(data, offset, remaining);
+                            offset += remaining;
+                        }
+                        _connection.sendMessage(data, 0, size);
+                    }
                     _usedOutboundMessageSpace.set(0);
                 }
-                catch (IOException e)
+            }
+            catch (IOException e)
+            {
+                LOGGER.info("Exception on write: {}", e.getMessage());
+                close();
+            }
+            finally
+            {
+                for (QpidByteBuffer tmp : toBeWritten)
                 {
-                    LOGGER.info("Exception on write: {}", e.getMessage());
-                    close();
+                    tmp.dispose();
                 }
             }
         }
 
+        private byte[] getNetOutputBuffer(final int size)
+        {
+            if (size > _networkBufferSize)
+            {
+                return new byte[size];
+            }
+            if (_netOutputBuffer == null)
+            {
+                _netOutputBuffer = new byte[_networkBufferSize];
+            }
+            return _netOutputBuffer;
+        }
+
         public synchronized void doWork()
         {
             _protocolEngine.clearWork();
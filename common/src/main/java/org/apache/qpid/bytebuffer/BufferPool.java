@@ -20,35 +20,313 @@
  */
 package org.apache.qpid.bytebuffer;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Pool of equally sized direct buffers.
+ *
+ * Each thread keeps a small local cache of buffers which it can take from and return to without any
+ * synchronisation.  When the local cache runs dry or overfills, buffers are moved in batches to or from a shared
+ * depot.  The depot is striped by thread so that threads exchanging batches do not all contend on the same queue.
+ *
+ * Buffers parked in the thread local caches count against the maximum size of the pool along with those in the
+ * depot.  To avoid updating a shared count for every buffer, a thread reserves room in the pool a batch at a time
+ * and hands reservations back once it holds two batches fewer than it has reserved; a batch moved to or from the
+ * depot takes its reservation with it.  A buffer returned when no room can be reserved is dropped.  The reservation
+ * of a thread which has died is released once the thread has been garbage collected.
+ *
+ * Hits are accumulated per thread and published whenever a full batch of them has been counted or the thread
+ * visits the depot, so the hit count may lag the true value by less than one batch per thread.
+ */
 class BufferPool
 {
+    private static final int MAX_BATCH_SIZE = 16;
+    private static final int MAX_STRIPES = 16;
+
     private final int _maxSize;
-    private final ConcurrentLinkedQueue<ByteBuffer> _pooledBuffers = new ConcurrentLinkedQueue<>();
+    private final int _batchSize;
+    private final DepotStripe[] _stripes;
+    private final AtomicInteger _depotBatchCount = new AtomicInteger();
+    private final AtomicInteger _reserved = new AtomicInteger();
+    private final ReferenceQueue<Thread> _collectedOwners = new ReferenceQueue<>();
+    private final Set<CacheOwner> _owners = Collections.newSetFromMap(new ConcurrentHashMap<CacheOwner, Boolean>());
+
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _overflows = new AtomicLong();
+
+    private final ThreadLocal<LocalCache> _localCache = new ThreadLocal<LocalCache>()
+    {
+        @Override
+        protected LocalCache initialValue()
+        {
+            final LocalCache cache = new LocalCache(_batchSize,
+                                                    (int) (Thread.currentThread().getId() % _stripes.length));
+            _owners.add(new CacheOwner(Thread.currentThread(), cache, _collectedOwners));
+            return cache;
+        }
+    };
 
     BufferPool(final int maxSize)
+    {
+        this(maxSize, Runtime.getRuntime().availableProcessors());
+    }
+
+    BufferPool(final int maxSize, final int concurrencyLevel)
     {
         _maxSize = maxSize;
+
+        int stripes = 1;
+        while (stripes < concurrencyLevel && stripes < MAX_STRIPES)
+        {
+            stripes <<= 1;
+        }
+        _stripes = new DepotStripe[stripes];
+        for (int i = 0; i < stripes; i++)
+        {
+            _stripes[i] = new DepotStripe();
+        }
+
+        // keep the room which may be reserved by each thread small relative to the pool
+        _batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE, maxSize / (4 * stripes)));
     }
 
     ByteBuffer getBuffer()
     {
-        return _pooledBuffers.poll();
+        final LocalCache cache = _localCache.get();
+        ByteBuffer buf = cache.pop();
+        if (buf == null)
+        {
+            ByteBuffer[] batch = takeBatch(cache._stripe);
+            if (batch != null)
+            {
+                cache.fill(batch);
+                buf = cache.pop();
+            }
+            _hits.addAndGet(cache.drainHits());
+            if (buf == null)
+            {
+                _misses.incrementAndGet();
+                return null;
+            }
+        }
+        if (cache._reserved - cache._count >= 2 * _batchSize)
+        {
+            cache._reserved -= _batchSize;
+            _reserved.addAndGet(-_batchSize);
+        }
+        if (++cache._hits >= _batchSize)
+        {
+            _hits.addAndGet(cache.drainHits());
+        }
+        return buf;
     }
 
     void returnBuffer(ByteBuffer buf)
     {
         buf.clear();
-        if (_pooledBuffers.size() < _maxSize)
+        final LocalCache cache = _localCache.get();
+        if (cache.isFull())
         {
-            _pooledBuffers.add(buf);
+            _hits.addAndGet(cache.drainHits());
+            offerBatch(cache._stripe, cache.spill());
         }
+        if (cache._count == cache._reserved && !reserveBatch(cache))
+        {
+            _overflows.incrementAndGet();
+            return;
+        }
+        cache.push(buf);
+    }
+
+    private ByteBuffer[] takeBatch(final int preferredStripe)
+    {
+        if (_depotBatchCount.get() == 0)
+        {
+            return null;
+        }
+        for (int i = 0; i < _stripes.length; i++)
+        {
+            ByteBuffer[] batch = _stripes[(preferredStripe + i) % _stripes.length]._batches.poll();
+            if (batch != null)
+            {
+                _depotBatchCount.decrementAndGet();
+                return batch;
+            }
+        }
+        return null;
+    }
+
+    private void offerBatch(final int stripe, final ByteBuffer[] batch)
+    {
+        _stripes[stripe]._batches.add(batch);
+        _depotBatchCount.incrementAndGet();
+    }
+
+    private boolean reserveBatch(final LocalCache cache)
+    {
+        if (tryReserveBatch() || (releaseCollectedOwners() && tryReserveBatch()))
+        {
+            cache._reserved += _batchSize;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean tryReserveBatch()
+    {
+        while (true)
+        {
+            int reserved = _reserved.get();
+            if (reserved + _batchSize > _maxSize)
+            {
+                return false;
+            }
+            if (_reserved.compareAndSet(reserved, reserved + _batchSize))
+            {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases the room reserved by the caches of threads which have been garbage collected.  Their buffers are
+     * left to be collected.
+     *
+     * @return true if any room was released
+     */
+    private boolean releaseCollectedOwners()
+    {
+        boolean released = false;
+        CacheOwner owner;
+        while ((owner = (CacheOwner) _collectedOwners.poll()) != null)
+        {
+            if (_owners.remove(owner))
+            {
+                _reserved.addAndGet(-owner._cache._reserved);
+                released = true;
+            }
+        }
+        return released;
     }
 
     public int getMaxSize()
     {
         return _maxSize;
     }
+
+    public long getHitCount()
+    {
+        return _hits.get();
+    }
+
+    public long getMissCount()
+    {
+        return _misses.get();
+    }
+
+    public long getOverflowCount()
+    {
+        return _overflows.get();
+    }
+
+    public int getDepotSize()
+    {
+        return _depotBatchCount.get() * _batchSize;
+    }
+
+    private static final class DepotStripe
+    {
+        private final ConcurrentLinkedQueue<ByteBuffer[]> _batches = new ConcurrentLinkedQueue<>();
+    }
+
+    private static final class CacheOwner extends WeakReference<Thread>
+    {
+        private final LocalCache _cache;
+
+        private CacheOwner(final Thread thread, final LocalCache cache, final ReferenceQueue<Thread> queue)
+        {
+            super(thread, queue);
+            _cache = cache;
+        }
+    }
+
+    /**
+     * Only ever accessed by its owning thread, other than the reading of its reservation once that thread has been
+     * garbage collected.
+     */
+    private static final class LocalCache
+    {
+        private final ByteBuffer[] _buffers;
+        private final int _batchSize;
+        private final int _stripe;
+        private int _count;
+        private volatile int _reserved;
+        private long _hits;
+
+        private LocalCache(final int batchSize, final int stripe)
+        {
+            _batchSize = batchSize;
+            _stripe = stripe;
+            _buffers = new ByteBuffer[2 * batchSize];
+        }
+
+        private ByteBuffer pop()
+        {
+            if (_count == 0)
+            {
+                return null;
+            }
+            ByteBuffer buf = _buffers[--_count];
+            _buffers[_count] = null;
+            return buf;
+        }
+
+        private boolean isFull()
+        {
+            return _count == _buffers.length;
+        }
+
+        private void push(final ByteBuffer buf)
+        {
+            _buffers[_count++] = buf;
+        }
+
+        private void fill(final ByteBuffer[] batch)
+        {
+            for (ByteBuffer buf : batch)
+            {
+                _buffers[_count++] = buf;
+            }
+            _reserved += batch.length;
+        }
+
+        private ByteBuffer[] spill()
+        {
+            ByteBuffer[] batch = new ByteBuffer[_batchSize];
+            _count -= _batchSize;
+            System.arraycopy(_buffers, _count, batch, 0, _batchSize);
+            for (int i = _count; i < _count + _batchSize; i++)
+            {
+                _buffers[i] = null;
+            }
+            _reserved -= _batchSize;
+            return batch;
+        }
+
+        private long drainHits()
+        {
+            long hits = _hits;
+            _hits = 0;
+            return hits;
+        }
+    }
 }
@@ -63,6 +63,7 @@ public final class QpidByteBuffer
 
     private volatile static boolean _isPoolInitialized;
     private volatile static BufferPool _bufferPool;
+    private volatile static SlabAllocator _slabAllocator;
     private volatile static int _pooledBufferSize;
     private volatile static ByteBuffer _zeroed;
 
@@ -493,6 +494,10 @@ public final class QpidByteBuffer
                 }
                 ref = new PooledByteBufferRef(buf);
             }
+            else if (_slabAllocator.isSlabAllocated(size))
+            {
+                ref = _slabAllocator.allocate(size);
+            }
             else
             {
                 QpidByteBuffer buf = _cachedBuffer.get();
@@ -524,6 +529,12 @@ public final class QpidByteBuffer
         {
             return Collections.singleton(allocateDirect(size));
         }
+        else if (_slabAllocator.isSlabAllocated(size))
+        {
+            List<QpidByteBuffer> buffers = new ArrayList<>(1);
+            buffers.add(allocateDirect(size));
+            return buffers;
+        }
         else
         {
             List<QpidByteBuffer> buffers = new ArrayList<>((size / _pooledBufferSize)+2);
@@ -719,11 +730,42 @@ public final class QpidByteBuffer
 
 
         _bufferPool = new BufferPool(maxPoolSize);
+        _zeroed = ByteBuffer.allocateDirect(bufferSize);
+        _slabAllocator = new SlabAllocator(bufferSize, _bufferPool, _zeroed);
         _pooledBufferSize = bufferSize;
-        _zeroed = ByteBuffer.allocateDirect(_pooledBufferSize);
         _isPoolInitialized = true;
     }
 
+    public static long getPoolHitCount()
+    {
+        final BufferPool bufferPool = _bufferPool;
+        return bufferPool == null ? 0L : bufferPool.getHitCount();
+    }
+
+    public static long getPoolMissCount()
+    {
+        final BufferPool bufferPool = _bufferPool;
+        return bufferPool == null ? 0L : bufferPool.getMissCount();
+    }
+
+    public static long getPoolOverflowCount()
+    {
+        final BufferPool bufferPool = _bufferPool;
+        return bufferPool == null ? 0L : bufferPool.getOverflowCount();
+    }
+
+    public static long getSlabAllocatedBytes()
+    {
+        final SlabAllocator slabAllocator = _slabAllocator;
+        return slabAllocator == null ? 0L : slabAllocator.getAllocatedBytes();
+    }
+
+    public static long getSlabUsedBytes()
+    {
+        final SlabAllocator slabAllocator = _slabAllocator;
+        return slabAllocator == null ? 0L : slabAllocator.getUsedBytes();
+    }
+
     private final class BufferInputStream extends InputStream
     {
 
@@ -0,0 +1,288 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Allocates small direct buffers from chunks which are carved into slots of a fixed size class.
+ *
+ * Slicing small buffers out of one large shared chunk means that a single small message retained on a queue pins
+ * the whole chunk.  Here each chunk only ever holds slots of one size class, slots are recycled individually as
+ * soon as they are released, and a chunk goes back to the {@link BufferPool} once all its slots are free.
+ *
+ * Threads are striped, and each stripe allocates from its own current slab for each size class, so the slab lock is
+ * normally only contended by the few threads sharing a stripe or by a thread releasing a slot concurrently.  The
+ * number of slabs held as current is bounded by the number of stripes rather than the number of threads that ever
+ * allocated.  Slabs that filled up and later had slots released are parked on a per size class queue from which any
+ * stripe may adopt them before a new chunk is taken.
+ */
+class SlabAllocator
+{
+    static final int MINIMUM_SLOT_SIZE = 64;
+    static final int MINIMUM_SLOTS_PER_SLAB = 64;
+    private static final int MAX_STRIPES = 16;
+
+    private final int _chunkSize;
+    private final int _maximumSlotSize;
+    private final int[] _slotSizes;
+    private final BufferPool _chunkPool;
+    private final ByteBuffer _zeroed;
+    private final ConcurrentLinkedQueue<Slab>[] _partialSlabs;
+    private final Set<Slab> _liveSlabs = Collections.newSetFromMap(new ConcurrentHashMap<Slab, Boolean>());
+    private final int _stripes;
+    private final AtomicReferenceArray<Slab> _currentSlabs;
+
+    SlabAllocator(final int chunkSize, final BufferPool chunkPool, final ByteBuffer zeroed)
+    {
+        this(chunkSize, chunkPool, zeroed, Runtime.getRuntime().availableProcessors());
+    }
+
+    @SuppressWarnings("unchecked")
+    SlabAllocator(final int chunkSize, final BufferPool chunkPool, final ByteBuffer zeroed, final int concurrencyLevel)
+    {
+        _chunkSize = chunkSize;
+        _chunkPool = chunkPool;
+        _zeroed = zeroed;
+
+        int classes = 0;
+        for (int slotSize = MINIMUM_SLOT_SIZE; slotSize * MINIMUM_SLOTS_PER_SLAB <= chunkSize; slotSize <<= 1)
+        {
+            classes++;
+        }
+        _slotSizes = new int[classes];
+        _partialSlabs = new ConcurrentLinkedQueue[classes];
+        for (int i = 0; i < classes; i++)
+        {
+            _slotSizes[i] = MINIMUM_SLOT_SIZE << i;
+            _partialSlabs[i] = new ConcurrentLinkedQueue<>();
+        }
+        _maximumSlotSize = classes == 0 ? 0 : _slotSizes[classes - 1];
+
+        int stripes = 1;
+        while (stripes < concurrencyLevel && stripes < MAX_STRIPES)
+        {
+            stripes <<= 1;
+        }
+        _stripes = stripes;
+        _currentSlabs = new AtomicReferenceArray<>(stripes * classes);
+    }
+
+    boolean isSlabAllocated(final int size)
+    {
+        return size > 0 && size <= _maximumSlotSize;
+    }
+
+    /**
+     * @return a buffer ref for a slot holding {@code size} bytes, or null if the size is not served by this allocator
+     */
+    ByteBufferRef allocate(final int size)
+    {
+        if (!isSlabAllocated(size))
+        {
+            return null;
+        }
+        final int sizeClass = sizeClass(size);
+        final int index = (int) (Thread.currentThread().getId() % _stripes) * _slotSizes.length + sizeClass;
+
+        Slab slab = _currentSlabs.get(index);
+        int slot = slab == null ? -1 : slab.allocate(size);
+        while (slot < 0)
+        {
+            final Slab next = nextSlab(sizeClass);
+            if (_currentSlabs.compareAndSet(index, slab, next))
+            {
+                // only the thread which replaced a current slab retires it
+                if (slab != null)
+                {
+                    slab.retire();
+                }
+                slab = next;
+            }
+            else
+            {
+                // another thread of the stripe replaced the slab first
+                next.retire();
+                slab = _currentSlabs.get(index);
+            }
+            slot = slab.allocate(size);
+        }
+        return new SlabSlotByteBufferRef(slab, slot, size);
+    }
+
+    private Slab nextSlab(final int sizeClass)
+    {
+        Slab slab;
+        while ((slab = _partialSlabs[sizeClass].poll()) != null)
+        {
+            if (slab.adopt())
+            {
+                return slab;
+            }
+        }
+
+        ByteBuffer chunk = _chunkPool.getBuffer();
+        if (chunk == null)
+        {
+            chunk = ByteBuffer.allocateDirect(_chunkSize);
+        }
+        slab = new Slab(chunk, sizeClass, _slotSizes[sizeClass]);
+        _liveSlabs.add(slab);
+        return slab;
+    }
+
+    private int sizeClass(final int size)
+    {
+        int sizeClass = 0;
+        while (_slotSizes[sizeClass] < size)
+        {
+            sizeClass++;
+        }
+        return sizeClass;
+    }
+
+    /**
+     * @return the total capacity of the chunks currently held by slabs
+     */
+    long getAllocatedBytes()
+    {
+        return (long) _liveSlabs.size() * (long) _chunkSize;
+    }
+
+    /**
+     * @return the number of bytes requested by the callers of the slots currently in use
+     */
+    long getUsedBytes()
+    {
+        long used = 0L;
+        for (Slab slab : _liveSlabs)
+        {
+            used += slab.getUsedBytes();
+        }
+        return used;
+    }
+
+    final class Slab
+    {
+        private final ByteBuffer _chunk;
+        private final int _sizeClass;
+        private final int _slotSize;
+        private final int[] _freeSlots;
+        private int _freeCount;
+        private volatile long _usedBytes;
+        private boolean _retired;
+        private boolean _queued;
+        private boolean _released;
+
+        private Slab(final ByteBuffer chunk, final int sizeClass, final int slotSize)
+        {
+            _chunk = chunk;
+            _sizeClass = sizeClass;
+            _slotSize = slotSize;
+            _freeCount = chunk.capacity() / slotSize;
+            _freeSlots = new int[_freeCount];
+            for (int i = 0; i < _freeCount; i++)
+            {
+                _freeSlots[i] = _freeCount - 1 - i;
+            }
+        }
+
+        synchronized int allocate(final int size)
+        {
+            // a thread may still see a slab as current after it has been retired, and possibly released, by another
+            if (_retired || _freeCount == 0)
+            {
+                return -1;
+            }
+            _usedBytes += size;
+            return _freeSlots[--_freeCount];
+        }
+
+        synchronized void free(final int slot, final int size)
+        {
+            ByteBuffer slotBuffer = slotBuffer(slot, _slotSize);
+            ByteBuffer zeroes = _zeroed.duplicate();
+            zeroes.limit(_slotSize);
+            slotBuffer.put(zeroes);
+
+            _freeSlots[_freeCount++] = slot;
+            _usedBytes -= size;
+            if (_retired)
+            {
+                releaseOrQueue();
+            }
+        }
+
+        synchronized void retire()
+        {
+            _retired = true;
+            releaseOrQueue();
+        }
+
+        synchronized boolean adopt()
+        {
+            _queued = false;
+            if (_released || _freeCount == 0)
+            {
+                return false;
+            }
+            _retired = false;
+            return true;
+        }
+
+        private void releaseOrQueue()
+        {
+            if (_freeCount == _freeSlots.length)
+            {
+                if (!_released)
+                {
+                    _released = true;
+                    _liveSlabs.remove(this);
+                    QpidByteBuffer.returnToPool(_chunk);
+                }
+            }
+            else if (_freeCount > 0 && !_queued)
+            {
+                _queued = true;
+                _partialSlabs[_sizeClass].add(this);
+            }
+        }
+
+        ByteBuffer slotBuffer(final int slot, final int length)
+        {
+            ByteBuffer buffer = _chunk.duplicate();
+            int offset = slot * _slotSize;
+            buffer.position(offset);
+            buffer.limit(offset + length);
+            return buffer.slice();
+        }
+
+        long getUsedBytes()
+        {
+            return _usedBytes;
+        }
+    }
+}
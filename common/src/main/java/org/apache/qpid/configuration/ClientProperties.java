@@ -147,6 +147,17 @@ public class ClientProperties
      */
     public static final String QPID_TCP_NODELAY_PROP_NAME = "qpid.tcp_nodelay";
 
+    /**
+     * System property to use the non-blocking, selector based network transport by default
+     */
+    public static final String QPID_NON_BLOCKING_IO_PROP_NAME = "qpid.non_blocking_io";
+
+    /**
+     * System property to set the number of selector threads shared by all non-blocking connections
+     */
+    public static final String QPID_NON_BLOCKING_IO_SELECTOR_THREADS_PROP_NAME = "qpid.non_blocking_io.selector_threads";
+    public static final int DEFAULT_NON_BLOCKING_IO_SELECTOR_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
     /**
      * System property to set the reject behaviour. default value will be 'normal' but can be
      * changed to 'server' in which case the server decides whether a message should be requeued
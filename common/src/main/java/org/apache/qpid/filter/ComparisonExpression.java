@@ -147,7 +147,12 @@ public abstract class ComparisonExpression<T> extends BinaryExpression<T> implem
                     Boolean.FALSE;
             }
 
-            return likePattern.matcher((String) rv).matches() ? Boolean.TRUE : Boolean.FALSE;
+            return matchesPattern((String) rv) ? Boolean.TRUE : Boolean.FALSE;
+        }
+
+        boolean matchesPattern(String value)
+        {
+            return likePattern.matcher(value).matches();
         }
 
         public boolean matches(E message)
@@ -569,7 +574,7 @@ public abstract class ComparisonExpression<T> extends BinaryExpression<T> implem
         return (object != null) && (object == Boolean.TRUE);
     }
 
-    private static class EqualExpression<E> extends ComparisonExpression<E>
+    static class EqualExpression<E> extends ComparisonExpression<E>
     {
         public EqualExpression(final Expression<E> left, final Expression<E> right)
         {
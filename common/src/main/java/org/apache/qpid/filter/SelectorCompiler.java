@@ -0,0 +1,659 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.filter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles the expression tree produced by the selector parser into a flat evaluator.
+ * <p>
+ * The compiled form gives exactly the same answers as the interpreted tree, but boolean results are carried as
+ * primitive three valued states rather than boxed {@link Boolean}s, numeric comparisons are performed on
+ * primitives, and a property referenced more than once in the selector is looked up only once per message.
+ * Sub-expressions the compiler does not recognise are evaluated by the original tree.
+ * <p>
+ * The compiled evaluator holds no per message state and may be shared between threads.
+ */
+public final class SelectorCompiler
+{
+    private static final int FALSE = 0;
+    private static final int TRUE = 1;
+    private static final int UNKNOWN = 2;
+
+    private static final int NOT_NUMERIC = 0;
+    private static final int BYTE = 1;
+    private static final int SHORT = 2;
+    private static final int INTEGER = 3;
+    private static final int LONG = 4;
+    private static final int FLOAT = 5;
+    private static final int DOUBLE = 6;
+
+    private static final int NOT_COMPARABLE = Integer.MIN_VALUE;
+
+    private static final Object ABSENT = new Object();
+
+    private SelectorCompiler()
+    {
+    }
+
+    public static <E> BooleanExpression<E> compile(BooleanExpression<E> expression)
+    {
+        if (expression instanceof CompiledSelector)
+        {
+            return expression;
+        }
+        Compilation<E> compilation = new Compilation<>();
+        BooleanNode<E> root = compilation.compileBoolean(expression);
+        int slots = compilation.assignSlots();
+        return new CompiledSelector<>(expression, root, slots);
+    }
+
+    private static final class CompiledSelector<E> implements BooleanExpression<E>
+    {
+        private final BooleanExpression<E> _expression;
+        private final BooleanNode<E> _root;
+        private final int _slots;
+
+        private CompiledSelector(final BooleanExpression<E> expression, final BooleanNode<E> root, final int slots)
+        {
+            _expression = expression;
+            _root = root;
+            _slots = slots;
+        }
+
+        @Override
+        public boolean matches(final E message)
+        {
+            return _root.test(message, newSlots()) == TRUE;
+        }
+
+        @Override
+        public Object evaluate(final E message)
+        {
+            return toBoolean(_root.test(message, newSlots()));
+        }
+
+        private Object[] newSlots()
+        {
+            return _slots == 0 ? null : new Object[_slots];
+        }
+
+        @Override
+        public String toString()
+        {
+            return _expression.toString();
+        }
+    }
+
+    private static final class Compilation<E>
+    {
+        private final Map<Expression<E>, PropertyNode<E>> _properties = new HashMap<>();
+        private final List<PropertyNode<E>> _propertyNodes = new ArrayList<>();
+
+        BooleanNode<E> compileBoolean(BooleanExpression<E> expression)
+        {
+            if (expression instanceof ConstantExpression)
+            {
+                return new ConstantBooleanNode<>(fromBoolean(((ConstantExpression<E>) expression).getValue()));
+            }
+            else if (expression instanceof LogicExpression.AndExpression)
+            {
+                LogicExpression<E> logic = (LogicExpression<E>) expression;
+                return new AndNode<>(compileBoolean((BooleanExpression<E>) logic.getLeft()),
+                                     compileBoolean((BooleanExpression<E>) logic.getRight()));
+            }
+            else if (expression instanceof LogicExpression.OrExpression)
+            {
+                LogicExpression<E> logic = (LogicExpression<E>) expression;
+                return new OrNode<>(compileBoolean((BooleanExpression<E>) logic.getLeft()),
+                                    compileBoolean((BooleanExpression<E>) logic.getRight()));
+            }
+            else if (expression instanceof UnaryExpression.NotExpression)
+            {
+                UnaryExpression<E> not = (UnaryExpression<E>) expression;
+                return new NotNode<>(compileBoolean((BooleanExpression<E>) not.getRight()));
+            }
+            else if (expression instanceof UnaryExpression.BooleanCastExpression)
+            {
+                return new BooleanCastNode<>(compileValue(((UnaryExpression<E>) expression).getRight()));
+            }
+            else if (expression instanceof ComparisonExpression.EqualExpression)
+            {
+                ComparisonExpression<E> comparison = (ComparisonExpression<E>) expression;
+                return new EqualNode<>(comparison,
+                                       compileValue(comparison.getLeft()),
+                                       compileValue(comparison.getRight()));
+            }
+            else if (expression instanceof ComparisonExpression
+                     && expression.getClass().getEnclosingClass() == ComparisonExpression.class)
+            {
+                ComparisonExpression<E> comparison = (ComparisonExpression<E>) expression;
+                return new OrderedComparisonNode<>(comparison,
+                                                   compileValue(comparison.getLeft()),
+                                                   compileValue(comparison.getRight()));
+            }
+            else if (expression instanceof ComparisonExpression.LikeExpression)
+            {
+                ComparisonExpression.LikeExpression<E> like = (ComparisonExpression.LikeExpression<E>) expression;
+                return new LikeNode<>(like, compileValue(like.getRight()));
+            }
+            else if (expression instanceof UnaryExpression.InExpression)
+            {
+                UnaryExpression.InExpression<E> in = (UnaryExpression.InExpression<E>) expression;
+                return new InNode<>(in, compileValue(in.getRight()));
+            }
+            else
+            {
+                return new InterpretedBooleanNode<>(expression);
+            }
+        }
+
+        ValueNode<E> compileValue(Expression<E> expression)
+        {
+            if (expression instanceof BooleanExpression)
+            {
+                return compileBoolean((BooleanExpression<E>) expression);
+            }
+            else if (expression instanceof ConstantExpression)
+            {
+                return new ConstantNode<>(((ConstantExpression<E>) expression).getValue());
+            }
+            else if (expression instanceof PropertyExpression)
+            {
+                PropertyNode<E> node = _properties.get(expression);
+                if (node == null)
+                {
+                    node = new PropertyNode<>(expression);
+                    _properties.put(expression, node);
+                    _propertyNodes.add(node);
+                }
+                node._references++;
+                return node;
+            }
+            else if (expression instanceof ArithmeticExpression)
+            {
+                ArithmeticExpression<E> arithmetic = (ArithmeticExpression<E>) expression;
+                return new ArithmeticNode<>(arithmetic,
+                                            compileValue(arithmetic.getLeft()),
+                                            compileValue(arithmetic.getRight()));
+            }
+            else if (expression instanceof UnaryExpression.NegativeExpression
+                     && ((UnaryExpression<E>) expression).getRight() instanceof ConstantExpression)
+            {
+                // the parser represents negative literals as the negation of a constant
+                return new ConstantNode<>(expression.evaluate(null));
+            }
+            else
+            {
+                return new InterpretedValueNode<>(expression);
+            }
+        }
+
+        int assignSlots()
+        {
+            int slots = 0;
+            for (PropertyNode<E> node : _propertyNodes)
+            {
+                if (node._references > 1)
+                {
+                    node._slot = slots++;
+                }
+            }
+            return slots;
+        }
+    }
+
+    private abstract static class ValueNode<E>
+    {
+        abstract Object value(E message, Object[] slots);
+    }
+
+    private abstract static class BooleanNode<E> extends ValueNode<E>
+    {
+        abstract int test(E message, Object[] slots);
+
+        @Override
+        final Object value(final E message, final Object[] slots)
+        {
+            return toBoolean(test(message, slots));
+        }
+    }
+
+    private static final class ConstantNode<E> extends ValueNode<E>
+    {
+        private final Object _value;
+
+        private ConstantNode(final Object value)
+        {
+            _value = value;
+        }
+
+        @Override
+        Object value(final E message, final Object[] slots)
+        {
+            return _value;
+        }
+    }
+
+    private static final class PropertyNode<E> extends ValueNode<E>
+    {
+        private final Expression<E> _expression;
+        private int _references;
+        private int _slot = -1;
+
+        private PropertyNode(final Expression<E> expression)
+        {
+            _expression = expression;
+        }
+
+        @Override
+        Object value(final E message, final Object[] slots)
+        {
+            if (_slot < 0)
+            {
+                return _expression.evaluate(message);
+            }
+
+            Object value = slots[_slot];
+            if (value == null)
+            {
+                value = _expression.evaluate(message);
+                slots[_slot] = value == null ? ABSENT : value;
+                return value;
+            }
+            return value == ABSENT ? null : value;
+        }
+    }
+
+    private static final class ArithmeticNode<E> extends ValueNode<E>
+    {
+        private final ArithmeticExpression<E> _expression;
+        private final ValueNode<E> _left;
+        private final ValueNode<E> _right;
+
+        private ArithmeticNode(final ArithmeticExpression<E> expression,
+                               final ValueNode<E> left,
+                               final ValueNode<E> right)
+        {
+            _expression = expression;
+            _left = left;
+            _right = right;
+        }
+
+        @Override
+        Object value(final E message, final Object[] slots)
+        {
+            Object lvalue = _left.value(message, slots);
+            if (lvalue == null)
+            {
+                return null;
+            }
+
+            Object rvalue = _right.value(message, slots);
+            if (rvalue == null)
+            {
+                return null;
+            }
+
+            return _expression.evaluate(lvalue, rvalue);
+        }
+    }
+
+    private static final class InterpretedValueNode<E> extends ValueNode<E>
+    {
+        private final Expression<E> _expression;
+
+        private InterpretedValueNode(final Expression<E> expression)
+        {
+            _expression = expression;
+        }
+
+        @Override
+        Object value(final E message, final Object[] slots)
+        {
+            return _expression.evaluate(message);
+        }
+    }
+
+    private static final class ConstantBooleanNode<E> extends BooleanNode<E>
+    {
+        private final int _value;
+
+        private ConstantBooleanNode(final int value)
+        {
+            _value = value;
+        }
+
+        @Override
+        int test(final E message, final Object[] slots)
+        {
+            return _value;
+        }
+    }
+
+    private static final class AndNode<E> extends BooleanNode<E>
+    {
+        private final BooleanNode<E> _left;
+        private final BooleanNode<E> _right;
+
+        private AndNode(final BooleanNode<E> left, final BooleanNode<E> right)
+        {
+            _left = left;
+            _right = right;
+        }
+
+        @Override
+        int test(final E message, final Object[] slots)
+        {
+            int left = _left.test(message, slots);
+            return left == TRUE ? _right.test(message, slots) : left;
+        }
+    }
+
+    private static final class OrNode<E> extends BooleanNode<E>
+    {
+        private final BooleanNode<E> _left;
+        private final BooleanNode<E> _right;
+
+        private OrNode(final BooleanNode<E> left, final BooleanNode<E> right)
+        {
+            _left = left;
+            _right = right;
+        }
+
+        @Override
+        int test(final E message, final Object[] slots)
+        {
+            return _left.test(message, slots) == TRUE ? TRUE : _right.test(message, slots);
+        }
+    }
+
+    private static final class NotNode<E> extends BooleanNode<E>
+    {
+        private final BooleanNode<E> _operand;
+
+        private NotNode(final BooleanNode<E> operand)
+        {
+            _operand = operand;
+        }
+
+        @Override
+        int test(final E message, final Object[] slots)
+        {
+            switch (_operand.test(message, slots))
+            {
+                case TRUE:
+                    return FALSE;
+                case FALSE:
+                    return TRUE;
+                default:
+                    return UNKNOWN;
+            }
+        }
+    }
+
+    private static final class BooleanCastNode<E> extends BooleanNode<E>
+    {
+        private final ValueNode<E> _operand;
+
+        private BooleanCastNode(final ValueNode<E> operand)
+        {
+            _operand = operand;
+        }
+
+        @Override
+        int test(final E message, final Object[] slots)
+        {
+            Object value = _operand.value(message, slots);
+            if (value == null)
+            {
+                return UNKNOWN;
+            }
+            return value.getClass() == Boolean.class && (Boolean) value ? TRUE : FALSE;
+        }
+    }
+
+    private static final class EqualNode<E> extends BooleanNode<E>
+    {
+        private final ComparisonExpression<E> _expression;
+        private final ValueNode<E> _left;
+        private final ValueNode<E> _right;
+
+        private EqualNode(final ComparisonExpression<E> expression, final ValueNode<E> left, final ValueNode<E> right)
+        {
+            _expression = expression;
+            _left = left;
+            _right = right;
+        }
+
+        @Override
+        int test(final E message, final Object[] slots)
+        {
+            Object lvalue = _left.value(message, slots);
+            Object rvalue = _right.value(message, slots);
+
+            if ((lvalue == null) ^ (rvalue == null))
+            {
+                return FALSE;
+            }
+            if (lvalue == rvalue)
+            {
+                return TRUE;
+            }
+
+            int ltype = numericType(lvalue);
+            int rtype;
+            if (ltype != NOT_NUMERIC && (rtype = numericType(rvalue)) != NOT_NUMERIC)
+            {
+                return compareNumbers((Number) lvalue, ltype, (Number) rvalue, rtype) == 0 ? TRUE : FALSE;
+            }
+
+            if (lvalue.equals(rvalue))
+            {
+                return TRUE;
+            }
+            if (lvalue instanceof Comparable && rvalue instanceof Comparable)
+            {
+                return fromBoolean(_expression.compare((Comparable) lvalue, (Comparable) rvalue));
+            }
+            return FALSE;
+        }
+    }
+
+    private static final class OrderedComparisonNode<E> extends BooleanNode<E>
+    {
+        private final ComparisonExpression<E> _expression;
+        private final ValueNode<E> _left;
+        private final ValueNode<E> _right;
+
+        private OrderedComparisonNode(final ComparisonExpression<E> expression,
+                                      final ValueNode<E> left,
+                                      final ValueNode<E> right)
+        {
+            _expression = expression;
+            _left = left;
+            _right = right;
+        }
+
+        @Override
+        int test(final E message, final Object[] slots)
+        {
+            Comparable lvalue = (Comparable) _left.value(message, slots);
+            if (lvalue == null)
+            {
+                return UNKNOWN;
+            }
+            Comparable rvalue = (Comparable) _right.value(message, slots);
+            if (rvalue == null)
+            {
+                return UNKNOWN;
+            }
+
+            int ltype = numericType(lvalue);
+            int rtype;
+            if (ltype != NOT_NUMERIC && (rtype = numericType(rvalue)) != NOT_NUMERIC)
+            {
+                int comparison = compareNumbers((Number) lvalue, ltype, (Number) rvalue, rtype);
+                return comparison != NOT_COMPARABLE && _expression.asBoolean(comparison) ? TRUE : FALSE;
+            }
+            return fromBoolean(_expression.compare(lvalue, rvalue));
+        }
+    }
+
+    private static final class LikeNode<E> extends BooleanNode<E>
+    {
+        private final ComparisonExpression.LikeExpression<E> _expression;
+        private final ValueNode<E> _operand;
+
+        private LikeNode(final ComparisonExpression.LikeExpression<E> expression, final ValueNode<E> operand)
+        {
+            _expression = expression;
+            _operand = operand;
+        }
+
+        @Override
+        int test(final E message, final Object[] slots)
+        {
+            Object value = _operand.value(message, slots);
+            if (value == null)
+            {
+                return UNKNOWN;
+            }
+            return value instanceof String && _expression.matchesPattern((String) value) ? TRUE : FALSE;
+        }
+    }
+
+    private static final class InNode<E> extends BooleanNode<E>
+    {
+        private final UnaryExpression.InExpression<E> _expression;
+        private final ValueNode<E> _operand;
+
+        private InNode(final UnaryExpression.InExpression<E> expression, final ValueNode<E> operand)
+        {
+            _expression = expression;
+            _operand = operand;
+        }
+
+        @Override
+        int test(final E message, final Object[] slots)
+        {
+            return fromBoolean(_expression.evaluate(_operand.value(message, slots), message));
+        }
+    }
+
+    private static final class InterpretedBooleanNode<E> extends BooleanNode<E>
+    {
+        private final BooleanExpression<E> _expression;
+
+        private InterpretedBooleanNode(final BooleanExpression<E> expression)
+        {
+            _expression = expression;
+        }
+
+        @Override
+        int test(final E message, final Object[] slots)
+        {
+            return fromBoolean(_expression.evaluate(message));
+        }
+    }
+
+    private static int fromBoolean(Object value)
+    {
+        if (value == null)
+        {
+            return UNKNOWN;
+        }
+        return (Boolean) value ? TRUE : FALSE;
+    }
+
+    private static Boolean toBoolean(int value)
+    {
+        switch (value)
+        {
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            default:
+                return null;
+        }
+    }
+
+    private static int numericType(Object value)
+    {
+        Class<?> clazz = value.getClass();
+        if (clazz == Integer.class)
+        {
+            return INTEGER;
+        }
+        else if (clazz == Long.class)
+        {
+            return LONG;
+        }
+        else if (clazz == Double.class)
+        {
+            return DOUBLE;
+        }
+        else if (clazz == Float.class)
+        {
+            return FLOAT;
+        }
+        else if (clazz == Short.class)
+        {
+            return SHORT;
+        }
+        else if (clazz == Byte.class)
+        {
+            return BYTE;
+        }
+        return NOT_NUMERIC;
+    }
+
+    /**
+     * Compares two boxed primitives applying the same widening rules as {@link ComparisonExpression#compare}:
+     * the narrower operand is widened to the type of the wider, except that a byte or short right hand operand
+     * is never widened and cannot be compared with a wider left hand operand.
+     */
+    private static int compareNumbers(Number left, int leftType, Number right, int rightType)
+    {
+        if (rightType < leftType && rightType <= SHORT)
+        {
+            return NOT_COMPARABLE;
+        }
+
+        switch (Math.max(leftType, rightType))
+        {
+            case BYTE:
+            case SHORT:
+            case INTEGER:
+                return Integer.compare(left.intValue(), right.intValue());
+            case LONG:
+                return Long.compare(left.longValue(), right.longValue());
+            case FLOAT:
+                return Float.compare(left.floatValue(), right.floatValue());
+            default:
+                return Double.compare(left.doubleValue(), right.doubleValue());
+        }
+    }
+}
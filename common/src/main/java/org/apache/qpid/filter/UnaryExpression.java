@@ -180,7 +180,7 @@ public abstract class UnaryExpression<T> implements Expression<T>
      */
     public abstract String getExpressionSymbol();
 
-    private static class NegativeExpression<E> extends UnaryExpression<E>
+    static class NegativeExpression<E> extends UnaryExpression<E>
     {
         public NegativeExpression(final Expression<E> left)
         {
@@ -209,7 +209,7 @@ public abstract class UnaryExpression<T> implements Expression<T>
         }
     }
 
-    private static class InExpression<E> extends BooleanUnaryExpression<E>
+    static class InExpression<E> extends BooleanUnaryExpression<E>
     {
         private final Collection<?> _inList;
         private final boolean _not;
@@ -228,8 +228,11 @@ public abstract class UnaryExpression<T> implements Expression<T>
 
         public Object evaluate(E expression)
         {
+            return evaluate(getRight().evaluate(expression), expression);
+        }
 
-            Object rvalue = getRight().evaluate(expression);
+        Object evaluate(Object rvalue, E expression)
+        {
             if (rvalue == null || !(_allowNonJms || rvalue instanceof String))
             {
                 return null;
@@ -329,7 +332,7 @@ public abstract class UnaryExpression<T> implements Expression<T>
         }
     }
 
-    private static class NotExpression<E> extends BooleanUnaryExpression<E>
+    static class NotExpression<E> extends BooleanUnaryExpression<E>
     {
         public NotExpression(final BooleanExpression<E> left)
         {
@@ -353,7 +356,7 @@ public abstract class UnaryExpression<T> implements Expression<T>
         }
     }
 
-    private static class BooleanCastExpression<E> extends BooleanUnaryExpression<E>
+    static class BooleanCastExpression<E> extends BooleanUnaryExpression<E>
     {
         public BooleanCastExpression(final Expression<E> left)
         {
@@ -47,7 +47,9 @@ public class FieldTable
     private QpidByteBuffer _encodedForm;
     private Map<AMQShortString, AMQTypedValue> _properties = null;
     private long _encodedSize;
+    private int _encodedFormLookups;
     private static final int INITIAL_HASHMAP_CAPACITY = 16;
+    private static final int MAXIMUM_ENCODED_FORM_LOOKUPS = 4;
     private final boolean _strictAMQP;
 
     public FieldTable()
@@ -107,7 +109,7 @@ public class FieldTable
                 }
                 else
                 {
-                    populateFromBuffer();
+                    return findPropertyInEncodedForm(string);
                 }
             }
         }
@@ -122,6 +124,112 @@ public class FieldTable
         }
     }
 
+    /**
+     * Looks a single property up by scanning the encoded form, skipping over the encoded values of other
+     * properties, so that the table is not decoded into a map just to read one or two of its entries.
+     * As when the map is built, a key appearing more than once takes its last value.  A table which is looked up
+     * repeatedly is decoded in full instead, so that each further lookup does not rescan it.
+     */
+    private AMQTypedValue findPropertyInEncodedForm(AMQShortString name)
+    {
+        if (++_encodedFormLookups > MAXIMUM_ENCODED_FORM_LOOKUPS)
+        {
+            populateFromBuffer();
+            return _properties == null ? null : _properties.get(name);
+        }
+
+        final QpidByteBuffer encodedForm = _encodedForm;
+        final int start = encodedForm.position();
+        final int end = encodedForm.limit();
+        try
+        {
+            int valuePosition = -1;
+            int position = start;
+            while (position < end)
+            {
+                final int keyLength = ((int) encodedForm.get(position++)) & 0xFF;
+                if (keyLength == name.length() && keyMatches(encodedForm, position, name))
+                {
+                    valuePosition = position + keyLength;
+                }
+                position += keyLength;
+                final AMQType type = AMQTypeMap.getType(encodedForm.get(position++));
+                position += getEncodedValueLength(type, encodedForm, position);
+            }
+            if (position != end)
+            {
+                throw new IndexOutOfBoundsException("Property value extends beyond the encoded table");
+            }
+
+            if (valuePosition == -1)
+            {
+                return null;
+            }
+            final QpidByteBuffer value = encodedForm.view(valuePosition - start, end - valuePosition);
+            try
+            {
+                return AMQTypedValue.readFromBuffer(value);
+            }
+            finally
+            {
+                value.dispose();
+            }
+        }
+        catch (RuntimeException e)
+        {
+            // malformed encoding - decode in full so the failure is reported as it would be for the map
+            populateFromBuffer();
+            return _properties == null ? null : _properties.get(name);
+        }
+    }
+
+    private static boolean keyMatches(final QpidByteBuffer buffer, final int position, final AMQShortString name)
+    {
+        final int length = name.length();
+        for (int i = 0; i < length; i++)
+        {
+            if (buffer.get(position + i) != (byte) name.charAt(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int getEncodedValueLength(final AMQType type, final QpidByteBuffer buffer, final int position)
+    {
+        switch (type)
+        {
+            case LONG_STRING:
+            case BINARY:
+            case ASCII_STRING:
+            case WIDE_STRING:
+            case FIELD_TABLE:
+            case FIELD_ARRAY:
+                return 4 + (int) (((long) buffer.getInt(position)) & 0xffffffffL);
+            case INTEGER:
+            case INT:
+            case FLOAT:
+                return 4;
+            case DECIMAL:
+                return 5;
+            case TIMESTAMP:
+            case LONG:
+            case DOUBLE:
+                return 8;
+            case SHORT:
+                return 2;
+            case BOOLEAN:
+            case ASCII_CHARACTER:
+            case BYTE:
+                return 1;
+            case VOID:
+                return 0;
+            default:
+                throw new IllegalArgumentException("Unexpected type " + type);
+        }
+    }
+
     private void populateFromBuffer()
     {
         try
@@ -0,0 +1,326 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport;
+
+import static org.apache.qpid.util.Serial.gt;
+import static org.apache.qpid.util.Serial.le;
+import static org.apache.qpid.util.Serial.lt;
+import static org.apache.qpid.util.Serial.max;
+import static org.apache.qpid.util.Serial.min;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link RangeSet} holding the bounds of its ranges in a single int array, rather than as a list of
+ * {@link Range} objects.  Range objects are only created when the set is iterated, or when its first or last
+ * range is requested.
+ *
+ * As with {@link RangeSetImpl}, the ranges are kept in serial number order and ranges which overlap or touch are
+ * merged.  Ranges added in ascending order, as they are when a sequence set is decoded, are appended without
+ * searching the set.
+ */
+public class CompactRangeSet implements RangeSet
+{
+    private static final int DEFAULT_CAPACITY = 4;
+
+    private int[] _bounds;
+    private int _size;
+
+    public CompactRangeSet()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CompactRangeSet(int capacity)
+    {
+        _bounds = new int[Math.max(capacity, 1) * 2];
+    }
+
+    private CompactRangeSet(CompactRangeSet copy)
+    {
+        _bounds = Arrays.copyOf(copy._bounds, Math.max(copy._size, 1) * 2);
+        _size = copy._size;
+    }
+
+    public int size()
+    {
+        return _size;
+    }
+
+    public int getLower(int index)
+    {
+        checkIndex(index);
+        return _bounds[index * 2];
+    }
+
+    public int getUpper(int index)
+    {
+        checkIndex(index);
+        return _bounds[index * 2 + 1];
+    }
+
+    public Iterator<Range> iterator()
+    {
+        return new Iterator<Range>()
+        {
+            private int _next;
+
+            public boolean hasNext()
+            {
+                return _next < _size;
+            }
+
+            public Range next()
+            {
+                if (_next >= _size)
+                {
+                    throw new NoSuchElementException();
+                }
+                final Range range = Range.newInstance(_bounds[_next * 2], _bounds[_next * 2 + 1]);
+                _next++;
+                return range;
+            }
+
+            public void remove()
+            {
+                if (_next == 0)
+                {
+                    throw new IllegalStateException();
+                }
+                _next--;
+                removeRanges(_next, 1);
+            }
+        };
+    }
+
+    public Range getFirst()
+    {
+        return Range.newInstance(getLower(0), getUpper(0));
+    }
+
+    public Range getLast()
+    {
+        return Range.newInstance(getLower(_size - 1), getUpper(_size - 1));
+    }
+
+    public boolean includes(Range range)
+    {
+        final int lower = range.getLower();
+        final int upper = range.getUpper();
+        for (int i = 0; i < _size; i++)
+        {
+            if (le(_bounds[i * 2], lower) && le(upper, _bounds[i * 2 + 1]))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean includes(int n)
+    {
+        for (int i = 0; i < _size; i++)
+        {
+            if (le(_bounds[i * 2], n) && le(n, _bounds[i * 2 + 1]))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void add(Range range)
+    {
+        add(range.getLower(), range.getUpper());
+    }
+
+    public void add(int lower, int upper)
+    {
+        if (_size == 0 || gt(lower, _bounds[_size * 2 - 1] + 1))
+        {
+            insertRange(_size, lower, upper);
+            return;
+        }
+
+        int first = 0;
+        while (first < _size && lt(_bounds[first * 2 + 1] + 1, lower))
+        {
+            first++;
+        }
+
+        int last = first;
+        int mergedLower = lower;
+        int mergedUpper = upper;
+        while (last < _size && le(_bounds[last * 2], upper + 1))
+        {
+            mergedLower = min(mergedLower, _bounds[last * 2]);
+            mergedUpper = max(mergedUpper, _bounds[last * 2 + 1]);
+            last++;
+        }
+
+        if (last == first)
+        {
+            insertRange(first, lower, upper);
+        }
+        else
+        {
+            _bounds[first * 2] = mergedLower;
+            _bounds[first * 2 + 1] = mergedUpper;
+            removeRanges(first + 1, last - first - 1);
+        }
+    }
+
+    public void add(int value)
+    {
+        add(value, value);
+    }
+
+    public void subtract(final RangeSet other)
+    {
+        if (_size == 0 || other.size() == 0)
+        {
+            return;
+        }
+
+        final int[] otherBounds = toBounds(other);
+        final int otherSize = other.size();
+        final int[] result = new int[(_size + otherSize) * 2];
+        int resultSize = 0;
+        int j = 0;
+
+        for (int i = 0; i < _size; i++)
+        {
+            int lower = _bounds[i * 2];
+            final int upper = _bounds[i * 2 + 1];
+            boolean remaining = true;
+
+            while (j < otherSize && lt(otherBounds[j * 2 + 1], lower))
+            {
+                j++;
+            }
+
+            int k = j;
+            while (remaining && k < otherSize && le(otherBounds[k * 2], upper))
+            {
+                final int otherLower = otherBounds[k * 2];
+                final int otherUpper = otherBounds[k * 2 + 1];
+                if (lt(lower, otherLower))
+                {
+                    result[resultSize * 2] = lower;
+                    result[resultSize * 2 + 1] = otherLower - 1;
+                    resultSize++;
+                }
+                if (lt(otherUpper, upper))
+                {
+                    lower = max(lower, otherUpper + 1);
+                    k++;
+                }
+                else
+                {
+                    remaining = false;
+                }
+            }
+
+            if (remaining)
+            {
+                result[resultSize * 2] = lower;
+                result[resultSize * 2 + 1] = upper;
+                resultSize++;
+            }
+        }
+
+        _bounds = result;
+        _size = resultSize;
+    }
+
+    public void clear()
+    {
+        _size = 0;
+    }
+
+    public RangeSet copy()
+    {
+        return new CompactRangeSet(this);
+    }
+
+    public String toString()
+    {
+        StringBuilder str = new StringBuilder();
+        str.append("{");
+        for (int i = 0; i < _size; i++)
+        {
+            if (i != 0)
+            {
+                str.append(", ");
+            }
+            str.append("[").append(_bounds[i * 2]).append(", ").append(_bounds[i * 2 + 1]).append("]");
+        }
+        str.append("}");
+        return str.toString();
+    }
+
+    private void checkIndex(final int index)
+    {
+        if (index < 0 || index >= _size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+        }
+    }
+
+    private void insertRange(final int index, final int lower, final int upper)
+    {
+        if (_size * 2 == _bounds.length)
+        {
+            _bounds = Arrays.copyOf(_bounds, _bounds.length * 2);
+        }
+        System.arraycopy(_bounds, index * 2, _bounds, index * 2 + 2, (_size - index) * 2);
+        _bounds[index * 2] = lower;
+        _bounds[index * 2 + 1] = upper;
+        _size++;
+    }
+
+    private void removeRanges(final int index, final int count)
+    {
+        if (count > 0)
+        {
+            System.arraycopy(_bounds, (index + count) * 2, _bounds, index * 2, (_size - index - count) * 2);
+            _size -= count;
+        }
+    }
+
+    private static int[] toBounds(final RangeSet rangeSet)
+    {
+        if (rangeSet instanceof CompactRangeSet)
+        {
+            return ((CompactRangeSet) rangeSet)._bounds;
+        }
+        final int[] bounds = new int[rangeSet.size() * 2];
+        int i = 0;
+        for (Range range : rangeSet)
+        {
+            bounds[i++] = range.getLower();
+            bounds[i++] = range.getUpper();
+        }
+        return bounds;
+    }
+}
@@ -32,6 +32,7 @@ import static org.apache.qpid.configuration.ClientProperties.QPID_SSL_KEY_MANAGE
 import static org.apache.qpid.transport.LegacyClientProperties.QPID_SSL_KEY_STORE_CERT_TYPE_PROP_NAME;
 import static org.apache.qpid.configuration.ClientProperties.QPID_SSL_TRUST_MANAGER_FACTORY_ALGORITHM_PROP_NAME;
 import static org.apache.qpid.transport.LegacyClientProperties.QPID_SSL_TRUST_STORE_CERT_TYPE_PROP_NAME;
+import static org.apache.qpid.configuration.ClientProperties.QPID_NON_BLOCKING_IO_PROP_NAME;
 import static org.apache.qpid.configuration.ClientProperties.QPID_TCP_NODELAY_PROP_NAME;
 import static org.apache.qpid.configuration.ClientProperties.RECEIVE_BUFFER_SIZE_PROP_NAME;
 import static org.apache.qpid.configuration.ClientProperties.SEND_BUFFER_SIZE_PROP_NAME;
@@ -83,6 +84,7 @@ public class ConnectionSettings
     private String password;
     private int port = 5672;
     private boolean tcpNodelay = QpidProperty.booleanProperty(Boolean.TRUE, QPID_TCP_NODELAY_PROP_NAME, AMQJ_TCP_NODELAY_PROP_NAME).get();
+    private boolean nonBlockingIo = QpidProperty.booleanProperty(Boolean.FALSE, QPID_NON_BLOCKING_IO_PROP_NAME).get();
     private int maxChannelCount = 32767;
     private int maxFrameSize = 65535;
     private Integer hearbeatIntervalLegacyMs = QpidProperty.intProperty(null, IDLE_TIMEOUT_PROP_NAME).get();
@@ -141,6 +143,16 @@ public class ConnectionSettings
         this.tcpNodelay = tcpNodelay;
     }
 
+    public boolean isNonBlockingIo()
+    {
+        return nonBlockingIo;
+    }
+
+    public void setNonBlockingIo(boolean nonBlockingIo)
+    {
+        this.nonBlockingIo = nonBlockingIo;
+    }
+
     /**
      * Gets the heartbeat interval (seconds) for 0-8/9/9-1 protocols.
      * 0 means heartbeating is disabled.
@@ -35,4 +35,14 @@ public class RangeSetFactory
     {
         return new RangeSetImpl(size);
     }
+
+    public static RangeSet createCompactRangeSet()
+    {
+        return new CompactRangeSet();
+    }
+
+    public static RangeSet createCompactRangeSet(int size)
+    {
+        return new CompactRangeSet(size);
+    }
 }
@@ -200,7 +200,7 @@ public abstract class AbstractDecoder implements Decoder
             case 1:
                 return Range.newInstance(readSequenceNo(), readSequenceNo());
             default:
-                RangeSet ranges = RangeSetFactory.createRangeSet(count);
+                RangeSet ranges = RangeSetFactory.createCompactRangeSet(count);
                 for (int i = 0; i < count; i++)
                 {
                     ranges.add(readSequenceNo(), readSequenceNo());
@@ -34,9 +34,10 @@ import org.apache.qpid.transport.ConnectionSettings;
 import org.apache.qpid.transport.ExceptionHandlingByteBufferReceiver;
 import org.apache.qpid.transport.TransportException;
 import org.apache.qpid.transport.network.NetworkConnection;
+import org.apache.qpid.transport.network.OutgoingNetworkTransport;
 import org.apache.qpid.transport.network.TransportActivity;
 
-public class IoNetworkTransport
+public class IoNetworkTransport implements OutgoingNetworkTransport
 {
 
 
@@ -58,6 +59,7 @@ public class IoNetworkTransport
                                 ticker);
     }
 
+    @Override
     public NetworkConnection connect(ConnectionSettings settings,
                                      ExceptionHandlingByteBufferReceiver delegate,
                                      TransportActivity transportActivity)
@@ -70,11 +72,7 @@ public class IoNetworkTransport
         }
         else if("socket".equalsIgnoreCase(settings.getTransport()))
         {
-            socket = _registeredSockets.remove(settings.getHost());
-            if(socket == null)
-            {
-                throw new TransportException("No socket registered with id '"+settings.getHost()+"'");
-            }
+            socket = removeRegisteredSocket(settings.getHost());
         }
         else
         {
@@ -153,6 +151,7 @@ public class IoNetworkTransport
         return socket;
     }
 
+    @Override
     public void close()
     {
         if(_connection != null)
@@ -166,6 +165,17 @@ public class IoNetworkTransport
         _registeredSockets.put(id, socket);
     }
 
+    static Socket removeRegisteredSocket(String id)
+    {
+        Socket socket = _registeredSockets.remove(id);
+        if(socket == null)
+        {
+            throw new TransportException("No socket registered with id '" + id + "'");
+        }
+        return socket;
+    }
+
+    @Override
     public NetworkConnection getConnection()
     {
         return _connection;
@@ -0,0 +1,590 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.network.io;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.security.Principal;
+import java.security.cert.Certificate;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+import org.apache.qpid.transport.ByteBufferSender;
+import org.apache.qpid.transport.ExceptionHandlingByteBufferReceiver;
+import org.apache.qpid.transport.SenderClosedException;
+import org.apache.qpid.transport.SenderException;
+import org.apache.qpid.transport.network.NetworkConnection;
+import org.apache.qpid.transport.network.Ticker;
+
+/**
+ * A network connection whose socket channel is selected upon by a {@link SelectorThread} shared with other
+ * connections, rather than having a reader and a writer thread of its own.
+ *
+ * Sent data is copied into direct output buffers which the sending thread writes on flush. Only data that
+ * the socket could not accept immediately is left for the selector thread to write. Like {@link IoSender},
+ * a sender that gets too far ahead of the socket is blocked until the backlog has drained.
+ *
+ * Reads use the read buffer of the selector thread, and the data read is copied out of it for the receiver,
+ * which may retain what it is given.  The receiver is notified of exceptions and of the close of the connection
+ * on a callback thread, so that it may block without stalling the selector thread.
+ */
+class NonBlockingNetworkConnection implements NetworkConnection, ByteBufferSender
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(NonBlockingNetworkConnection.class);
+
+    private final SocketChannel _channel;
+    private final ExceptionHandlingByteBufferReceiver _receiver;
+    private final SelectorThread _selectorThread;
+    private final Executor _callbackExecutor;
+    private final Ticker _ticker;
+    private final long _timeout;
+    private final String _remoteSocketAddress;
+    private final SocketAddress _remoteAddress;
+    private final SocketAddress _localAddress;
+
+    private final int _receiveBufferSize;
+    private SelectionKey _selectionKey;
+    private Throwable _readException;
+
+    private final Object _writeLock = new Object();
+    private final int _outputBufferSize;
+    private final long _maxPendingBytes;
+    private final Deque<QpidByteBuffer> _pendingBuffers = new ArrayDeque<>();
+    private QpidByteBuffer _currentBuffer;
+    private QpidByteBuffer _spareBuffer;
+    private long _pendingBytes;
+
+    private final AtomicBoolean _closed = new AtomicBoolean();
+    private final AtomicBoolean _channelClosed = new AtomicBoolean();
+    private volatile Throwable _exception;
+    private volatile long _maxWriteIdleMillis;
+    private volatile long _maxReadIdleMillis;
+
+    NonBlockingNetworkConnection(final SocketChannel channel,
+                                 final ExceptionHandlingByteBufferReceiver receiver,
+                                 final int sendBufferSize,
+                                 final int receiveBufferSize,
+                                 final long timeout,
+                                 final Ticker ticker,
+                                 final SelectorThread selectorThread,
+                                 final Executor callbackExecutor)
+    {
+        _channel = channel;
+        _receiver = receiver;
+        _outputBufferSize = sendBufferSize;
+        _maxPendingBytes = 2L * sendBufferSize;
+        _receiveBufferSize = receiveBufferSize;
+        _timeout = timeout;
+        _ticker = ticker;
+        _selectorThread = selectorThread;
+        _callbackExecutor = callbackExecutor;
+        _remoteAddress = channel.socket().getRemoteSocketAddress();
+        _localAddress = channel.socket().getLocalSocketAddress();
+        _remoteSocketAddress = String.format("%s-%s", _localAddress, _remoteAddress);
+    }
+
+    @Override
+    public void start()
+    {
+        _selectorThread.register(this);
+    }
+
+    @Override
+    public ByteBufferSender getSender()
+    {
+        return this;
+    }
+
+    @Override
+    public boolean isDirectBufferPreferred()
+    {
+        return false;
+    }
+
+    @Override
+    public void send(final QpidByteBuffer msg)
+    {
+        synchronized (_writeLock)
+        {
+            checkNotAlreadyClosed();
+
+            while (msg.hasRemaining())
+            {
+                if (_currentBuffer == null)
+                {
+                    _currentBuffer = allocateOutputBuffer();
+                }
+                int length = Math.min(msg.remaining(), _currentBuffer.remaining());
+                QpidByteBuffer chunk = msg.view(0, length);
+                _currentBuffer.put(chunk);
+                chunk.dispose();
+                msg.position(msg.position() + length);
+                _pendingBytes += length;
+                if (!_currentBuffer.hasRemaining())
+                {
+                    queueCurrentBuffer();
+                    if (_pendingBytes >= _maxPendingBytes)
+                    {
+                        flushPending();
+                        awaitPendingBelowLimit();
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+        synchronized (_writeLock)
+        {
+            if (!_channelClosed.get())
+            {
+                flushPending();
+            }
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if (_closed.compareAndSet(false, true))
+        {
+            synchronized (_writeLock)
+            {
+                if (!_channelClosed.get())
+                {
+                    flushPending();
+                    if (!_selectorThread.isSelectorThread())
+                    {
+                        awaitPendingWritten();
+                    }
+                }
+            }
+            _selectorThread.deregister(this);
+
+            if (_exception != null)
+            {
+                throw new SenderException(_exception);
+            }
+        }
+    }
+
+    private QpidByteBuffer allocateOutputBuffer()
+    {
+        QpidByteBuffer buffer = _spareBuffer;
+        if (buffer == null)
+        {
+            buffer = QpidByteBuffer.allocateDirect(_outputBufferSize);
+        }
+        else
+        {
+            _spareBuffer = null;
+        }
+        return buffer;
+    }
+
+    private void queueCurrentBuffer()
+    {
+        if (_currentBuffer != null)
+        {
+            if (_currentBuffer.position() == 0)
+            {
+                return;
+            }
+            _currentBuffer.flip();
+            _pendingBuffers.add(_currentBuffer);
+            _currentBuffer = null;
+        }
+    }
+
+    private void flushPending()
+    {
+        queueCurrentBuffer();
+        try
+        {
+            if (!writePending())
+            {
+                requestWriteInterest();
+            }
+        }
+        catch (IOException e)
+        {
+            writeFailed(e);
+        }
+    }
+
+    /**
+     * Writes as much of the pending output as the socket will accept.  Must be called holding the write lock.
+     *
+     * @return true if all pending output has been written
+     */
+    private boolean writePending() throws IOException
+    {
+        boolean progress = false;
+        try
+        {
+            while (!_pendingBuffers.isEmpty())
+            {
+                long written = QpidByteBuffer.write(_channel, _pendingBuffers);
+                _pendingBytes -= written;
+                QpidByteBuffer buffer;
+                while ((buffer = _pendingBuffers.peek()) != null && !buffer.hasRemaining())
+                {
+                    _pendingBuffers.poll();
+                    recycle(buffer);
+                }
+                if (written == 0L)
+                {
+                    return false;
+                }
+                progress = true;
+            }
+            return true;
+        }
+        finally
+        {
+            if (progress)
+            {
+                _writeLock.notifyAll();
+            }
+        }
+    }
+
+    private void recycle(final QpidByteBuffer buffer)
+    {
+        if (_spareBuffer == null && buffer.capacity() == _outputBufferSize)
+        {
+            buffer.clear();
+            _spareBuffer = buffer;
+        }
+        else
+        {
+            buffer.dispose();
+        }
+    }
+
+    private void requestWriteInterest()
+    {
+        if (_selectorThread.isSelectorThread())
+        {
+            updateInterestOps();
+        }
+        else
+        {
+            _selectorThread.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    updateInterestOps();
+                }
+            });
+        }
+    }
+
+    private void updateInterestOps()
+    {
+        final boolean writePending;
+        synchronized (_writeLock)
+        {
+            writePending = !_pendingBuffers.isEmpty();
+        }
+        if (_selectionKey != null && _selectionKey.isValid())
+        {
+            _selectionKey.interestOps(writePending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                                                   : SelectionKey.OP_READ);
+        }
+    }
+
+    private void awaitPendingBelowLimit()
+    {
+        if (_selectorThread.isSelectorThread())
+        {
+            // the selector thread cannot wait for itself - the backlog is written once it returns to select
+            return;
+        }
+
+        final long start = System.currentTimeMillis();
+        long elapsed = 0;
+        while (!_channelClosed.get() && _pendingBytes >= _maxPendingBytes && elapsed < _timeout)
+        {
+            try
+            {
+                _writeLock.wait(_timeout - elapsed);
+            }
+            catch (InterruptedException e)
+            {
+                // pass
+            }
+            elapsed = System.currentTimeMillis() - start;
+        }
+
+        checkNotAlreadyClosed();
+
+        if (_pendingBytes >= _maxPendingBytes)
+        {
+            LOGGER.error("write timed out for socket {}: {} bytes pending", _remoteSocketAddress, _pendingBytes);
+            _closed.set(true);
+            _selectorThread.deregister(this);
+            throw new SenderException(String.format("write timed out for socket %s: %d bytes pending",
+                                                    _remoteSocketAddress, _pendingBytes));
+        }
+    }
+
+    private void awaitPendingWritten()
+    {
+        final long start = System.currentTimeMillis();
+        long elapsed = 0;
+        while (!_channelClosed.get() && !_pendingBuffers.isEmpty() && elapsed < _timeout)
+        {
+            try
+            {
+                _writeLock.wait(_timeout - elapsed);
+            }
+            catch (InterruptedException e)
+            {
+                // pass
+            }
+            elapsed = System.currentTimeMillis() - start;
+        }
+        if (!_channelClosed.get() && !_pendingBuffers.isEmpty())
+        {
+            LOGGER.error("Timed out waiting for pending output to be written to socket {}", _remoteSocketAddress);
+        }
+    }
+
+    private void writeFailed(final IOException e)
+    {
+        LOGGER.info("Exception writing to socket '{}' : {}", _remoteSocketAddress, e.getMessage());
+        _exception = e;
+        _closed.set(true);
+        _selectorThread.deregister(this);
+    }
+
+    private void checkNotAlreadyClosed()
+    {
+        if (_closed.get() || _channelClosed.get())
+        {
+            throw new SenderClosedException(String.format("sender for socket %s is closed", _remoteSocketAddress),
+                                            _exception);
+        }
+    }
+
+    boolean registerWith(final SelectorThread selectorThread)
+    {
+        try
+        {
+            _selectionKey = _channel.register(selectorThread.getSelector(), SelectionKey.OP_READ, this);
+            updateInterestOps();
+            return true;
+        }
+        catch (ClosedChannelException e)
+        {
+            closeChannel();
+            return false;
+        }
+    }
+
+    int tick(final long currentTime)
+    {
+        if (_channelClosed.get())
+        {
+            return Integer.MAX_VALUE;
+        }
+        int tick = _ticker.getTimeToNextTick(currentTime);
+        if (tick <= 0)
+        {
+            tick = _ticker.tick(currentTime);
+        }
+        return tick;
+    }
+
+    void processSelection(final SelectionKey key)
+    {
+        if (key.isValid() && key.isWritable())
+        {
+            synchronized (_writeLock)
+            {
+                try
+                {
+                    writePending();
+                }
+                catch (IOException e)
+                {
+                    writeFailed(e);
+                }
+            }
+            updateInterestOps();
+        }
+
+        if (key.isValid() && key.isReadable())
+        {
+            doRead();
+        }
+    }
+
+    private void doRead()
+    {
+        try
+        {
+            final QpidByteBuffer readBuffer = _selectorThread.getReadBuffer(_receiveBufferSize);
+            final int read = readBuffer.read(_channel);
+            if (read == -1)
+            {
+                closeChannel();
+            }
+            else if (read > 0)
+            {
+                final byte[] data = new byte[read];
+                readBuffer.flip();
+                readBuffer.get(data);
+                _receiver.received(ByteBuffer.wrap(data));
+            }
+        }
+        catch (Exception e)
+        {
+            if (!_closed.get())
+            {
+                _readException = e;
+            }
+            closeChannel();
+        }
+    }
+
+    /**
+     * Closes the socket channel and notifies the receiver.  Only called on the selector thread, so that the
+     * receiver sees the close after any data read before it.
+     */
+    void closeChannel()
+    {
+        if (_channelClosed.compareAndSet(false, true))
+        {
+            _closed.set(true);
+            if (_selectionKey != null)
+            {
+                _selectionKey.cancel();
+            }
+            try
+            {
+                _channel.close();
+            }
+            catch (IOException e)
+            {
+                LOGGER.warn("Error closing socket", e);
+            }
+
+            synchronized (_writeLock)
+            {
+                if (_currentBuffer != null)
+                {
+                    _currentBuffer.dispose();
+                    _currentBuffer = null;
+                }
+                if (_spareBuffer != null)
+                {
+                    _spareBuffer.dispose();
+                    _spareBuffer = null;
+                }
+                QpidByteBuffer buffer;
+                while ((buffer = _pendingBuffers.poll()) != null)
+                {
+                    buffer.dispose();
+                }
+                _writeLock.notifyAll();
+            }
+
+            _selectorThread.deregister(this);
+
+            final Throwable readException = _readException;
+            _callbackExecutor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    if (readException != null)
+                    {
+                        _receiver.exception(readException);
+                    }
+                    _receiver.closed();
+                }
+            });
+        }
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress()
+    {
+        return _remoteAddress;
+    }
+
+    @Override
+    public SocketAddress getLocalAddress()
+    {
+        return _localAddress;
+    }
+
+    @Override
+    public void setMaxWriteIdleMillis(final long millis)
+    {
+        _maxWriteIdleMillis = millis;
+    }
+
+    @Override
+    public void setMaxReadIdleMillis(final long millis)
+    {
+        _maxReadIdleMillis = millis;
+    }
+
+    @Override
+    public Principal getPeerPrincipal()
+    {
+        return null;
+    }
+
+    @Override
+    public Certificate getPeerCertificate()
+    {
+        return null;
+    }
+
+    @Override
+    public long getMaxReadIdleMillis()
+    {
+        return _maxReadIdleMillis;
+    }
+
+    @Override
+    public long getMaxWriteIdleMillis()
+    {
+        return _maxWriteIdleMillis;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.network.io;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.configuration.ClientProperties;
+import org.apache.qpid.configuration.CommonProperties;
+import org.apache.qpid.thread.Threading;
+import org.apache.qpid.transport.ConnectionSettings;
+import org.apache.qpid.transport.ExceptionHandlingByteBufferReceiver;
+import org.apache.qpid.transport.TransportException;
+import org.apache.qpid.transport.network.NetworkConnection;
+import org.apache.qpid.transport.network.OutgoingNetworkTransport;
+import org.apache.qpid.transport.network.TransportActivity;
+
+/**
+ * Outgoing transport whose connections are served by a small pool of selector threads shared by all
+ * connections in the JVM, rather than by a dedicated reader and writer thread per connection.
+ */
+public class NonBlockingNetworkTransport implements OutgoingNetworkTransport
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(NonBlockingNetworkTransport.class);
+    private static final int TIMEOUT = Integer.getInteger(CommonProperties.IO_NETWORK_TRANSPORT_TIMEOUT_PROP_NAME,
+                                                          CommonProperties.IO_NETWORK_TRANSPORT_TIMEOUT_DEFAULT);
+
+    private static final AtomicInteger NEXT_SELECTOR_THREAD = new AtomicInteger();
+
+    private NetworkConnection _connection;
+
+    @Override
+    public NetworkConnection connect(ConnectionSettings settings,
+                                     ExceptionHandlingByteBufferReceiver delegate,
+                                     TransportActivity transportActivity)
+    {
+        final SocketChannel channel;
+        if("tcp".equalsIgnoreCase(settings.getTransport()))
+        {
+            channel = connectTcp(settings);
+        }
+        else if("socket".equalsIgnoreCase(settings.getTransport()))
+        {
+            Socket socket = IoNetworkTransport.removeRegisteredSocket(settings.getHost());
+            channel = socket.getChannel();
+            if(channel == null)
+            {
+                throw new TransportException("Socket registered with id '" + settings.getHost()
+                                             + "' cannot be used for non-blocking IO");
+            }
+        }
+        else
+        {
+            throw new TransportException("Unknown transport '" + settings.getTransport() + "'");
+        }
+
+        try
+        {
+            channel.configureBlocking(false);
+            IdleTimeoutTicker ticker = new IdleTimeoutTicker(transportActivity, TIMEOUT);
+            NonBlockingNetworkConnection connection =
+                    new NonBlockingNetworkConnection(channel, delegate, settings.getWriteBufferSize(),
+                                                     settings.getReadBufferSize(), TIMEOUT, ticker,
+                                                     nextSelectorThread(), SharedThreads.CALLBACK_EXECUTOR);
+            _connection = connection;
+            ticker.setConnection(connection);
+            connection.start();
+        }
+        catch(Exception e)
+        {
+            try
+            {
+                channel.close();
+            }
+            catch(IOException ioe)
+            {
+                //ignored, throw based on original exception
+            }
+
+            throw new TransportException("Error creating network connection", e);
+        }
+
+        return _connection;
+    }
+
+    private SocketChannel connectTcp(final ConnectionSettings settings)
+    {
+        SocketChannel channel = null;
+        try
+        {
+            channel = SocketChannel.open();
+            final Socket socket = channel.socket();
+            socket.setReuseAddress(true);
+            socket.setTcpNoDelay(settings.isTcpNodelay());
+            socket.setSendBufferSize(settings.getWriteBufferSize());
+            socket.setReceiveBufferSize(settings.getReadBufferSize());
+
+            if (LOGGER.isDebugEnabled())
+            {
+                LOGGER.debug("Socket options SO_RCVBUF : {}, SO_SNDBUF : {}, TCP_NODELAY : {}",
+                             socket.getReceiveBufferSize(),
+                             socket.getSendBufferSize(),
+                             socket.getTcpNoDelay());
+            }
+
+            InetAddress address = InetAddress.getByName(settings.getHost());
+            socket.connect(new InetSocketAddress(address, settings.getPort()), settings.getConnectTimeout());
+
+            if (LOGGER.isDebugEnabled())
+            {
+                LOGGER.debug("Socket connection from {} to {} established",
+                             socket.getLocalSocketAddress(),
+                             socket.getRemoteSocketAddress());
+            }
+            return channel;
+        }
+        catch (IOException e)
+        {
+            if (channel != null)
+            {
+                try
+                {
+                    channel.close();
+                }
+                catch (IOException ignore)
+                {
+                }
+            }
+
+            throw new TransportException("Error connecting to broker", e);
+        }
+    }
+
+    private static SelectorThread nextSelectorThread()
+    {
+        final SelectorThread[] selectorThreads = SharedThreads.SELECTOR_THREADS;
+        return selectorThreads[Math.abs(NEXT_SELECTOR_THREAD.getAndIncrement() % selectorThreads.length)];
+    }
+
+    /**
+     * Holds the threads shared by all connections, so that they are only started once the transport is first used.
+     * Close and exception notifications are delivered on the callback threads rather than on a selector thread,
+     * as the receiver may block in them (for instance whilst failing over), which would stall every other
+     * connection of that selector thread.
+     */
+    private static final class SharedThreads
+    {
+        private static final SelectorThread[] SELECTOR_THREADS = createSelectorThreads();
+        private static final Executor CALLBACK_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory()
+        {
+            private final AtomicInteger _threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable runnable)
+            {
+                final Thread thread;
+                try
+                {
+                    thread = Threading.getThreadFactory().createThread(runnable);
+                }
+                catch (Exception e)
+                {
+                    throw new TransportException("Error creating callback thread", e);
+                }
+                thread.setDaemon(true);
+                thread.setName("NonBlockingIo-Callback-" + _threadCount.getAndIncrement());
+                return thread;
+            }
+        });
+
+        private static SelectorThread[] createSelectorThreads()
+        {
+            int threads = Math.max(1, Integer.getInteger(ClientProperties.QPID_NON_BLOCKING_IO_SELECTOR_THREADS_PROP_NAME,
+                                                         ClientProperties.DEFAULT_NON_BLOCKING_IO_SELECTOR_THREADS));
+            final SelectorThread[] selectorThreads = new SelectorThread[threads];
+            for (int i = 0; i < threads; i++)
+            {
+                selectorThreads[i] = new SelectorThread("NonBlockingIo-" + i);
+            }
+            return selectorThreads;
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if(_connection != null)
+        {
+            _connection.close();
+        }
+    }
+
+    @Override
+    public NetworkConnection getConnection()
+    {
+        return _connection;
+    }
+}
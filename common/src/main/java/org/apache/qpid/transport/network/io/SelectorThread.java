@@ -0,0 +1,200 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport.network.io;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+import org.apache.qpid.thread.Threading;
+import org.apache.qpid.transport.TransportException;
+
+/**
+ * Selects on behalf of a number of {@link NonBlockingNetworkConnection}s, performing their reads, any writes
+ * which could not be completed by the sending thread, and their idle timeout ticks.
+ *
+ * Registration and deregistration are queued as tasks and run on the selector thread itself, so the set of
+ * connections is only ever touched by that thread.  For the same reason the connections can share a single read
+ * buffer, which is only ever used by that thread.
+ */
+final class SelectorThread implements Runnable
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(SelectorThread.class);
+
+    private final Selector _selector;
+    private final Thread _thread;
+    private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<>();
+    private final Set<NonBlockingNetworkConnection> _connections = new HashSet<>();
+    private QpidByteBuffer _readBuffer;
+
+    SelectorThread(final String name)
+    {
+        try
+        {
+            _selector = Selector.open();
+        }
+        catch (IOException e)
+        {
+            throw new TransportException("Error opening selector", e);
+        }
+
+        try
+        {
+            _thread = Threading.getThreadFactory().createThread(this);
+        }
+        catch (Exception e)
+        {
+            throw new TransportException("Error creating selector thread", e);
+        }
+        _thread.setDaemon(true);
+        _thread.setName(name);
+        _thread.start();
+    }
+
+    boolean isSelectorThread()
+    {
+        return Thread.currentThread() == _thread;
+    }
+
+    Selector getSelector()
+    {
+        return _selector;
+    }
+
+    /**
+     * Returns the read buffer shared by the connections of this selector thread, cleared and limited to the given
+     * size.  Must only be called on the selector thread, and the buffer must not be retained beyond the read.
+     */
+    QpidByteBuffer getReadBuffer(final int size)
+    {
+        if (_readBuffer == null || _readBuffer.capacity() < size)
+        {
+            if (_readBuffer != null)
+            {
+                _readBuffer.dispose();
+            }
+            _readBuffer = QpidByteBuffer.allocateDirect(size);
+        }
+        _readBuffer.clear();
+        _readBuffer.limit(size);
+        return _readBuffer;
+    }
+
+    void register(final NonBlockingNetworkConnection connection)
+    {
+        execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (connection.registerWith(SelectorThread.this))
+                {
+                    _connections.add(connection);
+                }
+            }
+        });
+    }
+
+    void deregister(final NonBlockingNetworkConnection connection)
+    {
+        execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                _connections.remove(connection);
+                connection.closeChannel();
+            }
+        });
+    }
+
+    void execute(final Runnable task)
+    {
+        _tasks.add(task);
+        if (!isSelectorThread())
+        {
+            _selector.wakeup();
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        while (true)
+        {
+            Runnable task;
+            while ((task = _tasks.poll()) != null)
+            {
+                try
+                {
+                    task.run();
+                }
+                catch (RuntimeException e)
+                {
+                    LOGGER.warn("Unexpected exception running selector task", e);
+                }
+            }
+
+            long timeout = Long.MAX_VALUE;
+            final long currentTime = System.currentTimeMillis();
+            for (NonBlockingNetworkConnection connection : _connections)
+            {
+                timeout = Math.min(timeout, connection.tick(currentTime));
+            }
+
+            try
+            {
+                _selector.select(_connections.isEmpty() ? 0L : Math.max(1L, timeout));
+            }
+            catch (IOException e)
+            {
+                LOGGER.error("Failed to select", e);
+                continue;
+            }
+
+            Iterator<SelectionKey> iterator = _selector.selectedKeys().iterator();
+            while (iterator.hasNext())
+            {
+                SelectionKey key = iterator.next();
+                iterator.remove();
+                NonBlockingNetworkConnection connection = (NonBlockingNetworkConnection) key.attachment();
+                try
+                {
+                    connection.processSelection(key);
+                }
+                catch (CancelledKeyException e)
+                {
+                    // connection closed concurrently
+                }
+            }
+        }
+    }
+}
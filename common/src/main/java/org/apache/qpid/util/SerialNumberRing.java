@@ -0,0 +1,399 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Values indexed by a mostly increasing sequence number, such as the deliveries or transfers outstanding on a
+ * session or channel.
+ *
+ * Values are held in a ring buffer whose slot is given by the sequence number modulo its capacity, so looking up,
+ * adding or removing a value requires neither hashing nor boxing of the number.  The ring covers a contiguous span
+ * of sequence numbers starting at the oldest value it holds, and doubles in size when a value falls outside of it.
+ * The span is limited to a few times the initial capacity: older values, which may be left outstanding
+ * indefinitely, are moved aside into an ordered overflow map so that the ring can continue to advance.  Every
+ * number in the overflow map is lower than every number in the ring.  The ring shrinks back towards its initial
+ * capacity as it drains.
+ *
+ * Sequence numbers are 64-bit and compared numerically.  A 32-bit serial number, compared using serial number
+ * arithmetic, is first mapped to a sequence number by {@link #unwrap(int)}.  This class is not thread safe.
+ *
+ * @param <T> the type of the values
+ */
+public class SerialNumberRing<T>
+{
+    private static final int MINIMUM_CAPACITY = 16;
+    private static final int MAXIMUM_CAPACITY = 1 << 18;
+    private static final int MAXIMUM_SPAN_FACTOR = 4;
+
+    public interface Visitor<T>
+    {
+        void visit(long sequenceNumber, T value);
+    }
+
+    private final int _initialCapacity;
+    private final int _maximumSpan;
+
+    private Object[] _ring;
+    private int _mask;
+    private long _first;
+    private long _last;
+    private int _ringSize;
+    private TreeMap<Long, T> _overflow;
+    private long _reference;
+
+    public SerialNumberRing(final int initialCapacity)
+    {
+        int capacity = MINIMUM_CAPACITY;
+        while (capacity < initialCapacity && capacity < MAXIMUM_CAPACITY)
+        {
+            capacity <<= 1;
+        }
+        _initialCapacity = capacity;
+        _maximumSpan = Math.min(MAXIMUM_CAPACITY, capacity * MAXIMUM_SPAN_FACTOR);
+        _ring = new Object[capacity];
+        _mask = capacity - 1;
+    }
+
+    /**
+     * Maps a 32-bit serial number to the sequence number nearest to that most recently added which has the same
+     * low 32 bits.
+     */
+    public long unwrap(final int serialNumber)
+    {
+        return _reference + (serialNumber - (int) _reference);
+    }
+
+    public T get(final long sequenceNumber)
+    {
+        if (_ringSize != 0 && sequenceNumber >= _first)
+        {
+            return sequenceNumber <= _last ? slot(sequenceNumber) : null;
+        }
+        return _overflow == null ? null : _overflow.get(sequenceNumber);
+    }
+
+    /**
+     * @return the value previously held for the sequence number, if any
+     */
+    public T put(final long sequenceNumber, final T value)
+    {
+        _reference = sequenceNumber;
+        if (_ringSize == 0)
+        {
+            if (inOverflow(sequenceNumber))
+            {
+                return _overflow.put(sequenceNumber, value);
+            }
+            _first = sequenceNumber;
+            _last = sequenceNumber;
+        }
+        else if (sequenceNumber < _first)
+        {
+            final long span = _last - sequenceNumber + 1;
+            if (inOverflow(sequenceNumber) || span > _maximumSpan)
+            {
+                return getOverflow().put(sequenceNumber, value);
+            }
+            ensureCapacity((int) span);
+            _first = sequenceNumber;
+        }
+        else if (sequenceNumber > _last)
+        {
+            if (sequenceNumber - _first >= _maximumSpan)
+            {
+                moveToOverflow(sequenceNumber - _maximumSpan + 1);
+            }
+            if (_ringSize == 0)
+            {
+                _first = sequenceNumber;
+            }
+            else
+            {
+                ensureCapacity((int) (sequenceNumber - _first + 1));
+            }
+            _last = sequenceNumber;
+        }
+
+        final int index = (int) sequenceNumber & _mask;
+        @SuppressWarnings("unchecked")
+        final T previous = (T) _ring[index];
+        if (previous == null)
+        {
+            _ringSize++;
+        }
+        _ring[index] = value;
+        return previous;
+    }
+
+    public T remove(final long sequenceNumber)
+    {
+        if (_ringSize != 0 && sequenceNumber >= _first)
+        {
+            if (sequenceNumber > _last)
+            {
+                return null;
+            }
+            final int index = (int) sequenceNumber & _mask;
+            @SuppressWarnings("unchecked")
+            final T value = (T) _ring[index];
+            if (value != null)
+            {
+                _ring[index] = null;
+                _ringSize--;
+                removedFromRing(sequenceNumber);
+            }
+            return value;
+        }
+        else if (_overflow != null)
+        {
+            final T value = _overflow.remove(sequenceNumber);
+            if (_overflow.isEmpty())
+            {
+                _overflow = null;
+            }
+            return value;
+        }
+        return null;
+    }
+
+    /**
+     * Passes the values with sequence numbers from lower to upper inclusive to the visitor, in sequence number
+     * order.  The visitor may alter the ring.
+     */
+    public void visit(final long lower, final long upper, final Visitor<? super T> visitor)
+    {
+        forEach(lower, upper, visitor, false);
+    }
+
+    /**
+     * Removes the values with sequence numbers from lower to upper inclusive, passing each to the visitor, if any,
+     * after it has been removed, in sequence number order.  The visitor may alter the ring.
+     *
+     * @return the number of values removed
+     */
+    public int remove(final long lower, final long upper, final Visitor<? super T> visitor)
+    {
+        return forEach(lower, upper, visitor, true);
+    }
+
+    /**
+     * Passes every value to the visitor, in sequence number order.
+     */
+    public void visitAll(final Visitor<? super T> visitor)
+    {
+        visit(Long.MIN_VALUE, Long.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Removes every value, passing each to the visitor, if any, after it has been removed, in sequence number order.
+     *
+     * @return the number of values removed
+     */
+    public int removeAll(final Visitor<? super T> visitor)
+    {
+        return remove(Long.MIN_VALUE, Long.MAX_VALUE, visitor);
+    }
+
+    public void clear()
+    {
+        _ring = new Object[_initialCapacity];
+        _mask = _initialCapacity - 1;
+        _ringSize = 0;
+        _overflow = null;
+    }
+
+    public int size()
+    {
+        return _ringSize + (_overflow == null ? 0 : _overflow.size());
+    }
+
+    public boolean isEmpty()
+    {
+        return _ringSize == 0 && _overflow == null;
+    }
+
+    private int forEach(final long lower, final long upper, final Visitor<? super T> visitor, final boolean remove)
+    {
+        int count = 0;
+        if (upper < lower)
+        {
+            return count;
+        }
+
+        if (_overflow != null)
+        {
+            // the visitor may alter the ring, so each sequence number is looked up afresh
+            final List<Long> sequenceNumbers = new ArrayList<>(_overflow.subMap(lower, true, upper, true).keySet());
+            for (long sequenceNumber : sequenceNumbers)
+            {
+                count += process(sequenceNumber, visitor, remove);
+            }
+        }
+
+        if (_ringSize != 0)
+        {
+            final long from = Math.max(lower, _first);
+            final long to = Math.min(upper, _last);
+            for (long sequenceNumber = from; sequenceNumber <= to && _ringSize != 0; sequenceNumber++)
+            {
+                count += process(sequenceNumber, visitor, remove);
+            }
+        }
+        return count;
+    }
+
+    private int process(final long sequenceNumber, final Visitor<? super T> visitor, final boolean remove)
+    {
+        final T value = remove ? remove(sequenceNumber) : get(sequenceNumber);
+        if (value == null)
+        {
+            return 0;
+        }
+        if (visitor != null)
+        {
+            visitor.visit(sequenceNumber, value);
+        }
+        return 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T slot(final long sequenceNumber)
+    {
+        return (T) _ring[(int) sequenceNumber & _mask];
+    }
+
+    private boolean inOverflow(final long sequenceNumber)
+    {
+        return _overflow != null && sequenceNumber <= _overflow.lastKey();
+    }
+
+    private void removedFromRing(final long sequenceNumber)
+    {
+        if (_ringSize == 0)
+        {
+            drained();
+            return;
+        }
+
+        if (sequenceNumber == _first)
+        {
+            while (slot(_first) == null)
+            {
+                _first++;
+            }
+        }
+        else if (sequenceNumber == _last)
+        {
+            while (slot(_last) == null)
+            {
+                _last--;
+            }
+        }
+
+        final long span = _last - _first + 1;
+        if (_ring.length > _initialCapacity && span <= _ring.length >> 2)
+        {
+            resize(Math.max(_initialCapacity, _ring.length >> 1));
+        }
+    }
+
+    /**
+     * Moves the values with sequence numbers lower than the given one to the overflow map.  The work done is bounded
+     * by the span of the ring, however far the given sequence number lies beyond it.
+     */
+    private void moveToOverflow(final long newFirst)
+    {
+        while (_ringSize != 0 && _first < newFirst)
+        {
+            final int index = (int) _first & _mask;
+            @SuppressWarnings("unchecked")
+            final T value = (T) _ring[index];
+            if (value != null)
+            {
+                _ring[index] = null;
+                _ringSize--;
+                getOverflow().put(_first, value);
+            }
+            _first++;
+        }
+        if (_ringSize == 0)
+        {
+            drained();
+        }
+        else
+        {
+            while (slot(_first) == null)
+            {
+                _first++;
+            }
+        }
+    }
+
+    private void drained()
+    {
+        if (_ring.length > _initialCapacity)
+        {
+            _ring = new Object[_initialCapacity];
+            _mask = _initialCapacity - 1;
+        }
+    }
+
+    private void ensureCapacity(final int span)
+    {
+        if (span > _ring.length)
+        {
+            int capacity = _ring.length;
+            while (capacity < span)
+            {
+                capacity <<= 1;
+            }
+            resize(capacity);
+        }
+    }
+
+    private void resize(final int capacity)
+    {
+        final Object[] ring = new Object[capacity];
+        final int mask = capacity - 1;
+        if (_ringSize != 0)
+        {
+            for (long sequenceNumber = _first; sequenceNumber <= _last; sequenceNumber++)
+            {
+                ring[(int) sequenceNumber & mask] = _ring[(int) sequenceNumber & _mask];
+            }
+        }
+        _ring = ring;
+        _mask = mask;
+    }
+
+    private TreeMap<Long, T> getOverflow()
+    {
+        if (_overflow == null)
+        {
+            _overflow = new TreeMap<>();
+        }
+        return _overflow;
+    }
+}
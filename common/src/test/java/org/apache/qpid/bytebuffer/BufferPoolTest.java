@@ -0,0 +1,152 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class BufferPoolTest extends QpidTestCase
+{
+    private static final int BUFFER_SIZE = 16;
+
+    public void testEmptyPoolReturnsNull()
+    {
+        BufferPool pool = new BufferPool(64, 1);
+        assertNull("Unexpected buffer from empty pool", pool.getBuffer());
+        assertEquals("Unexpected miss count", 1, pool.getMissCount());
+    }
+
+    public void testReturnedBufferIsReused()
+    {
+        BufferPool pool = new BufferPool(64, 1);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.put((byte) 1);
+        pool.returnBuffer(buffer);
+
+        ByteBuffer reused = pool.getBuffer();
+        assertSame("Returned buffer not reused", buffer, reused);
+        assertEquals("Buffer not cleared on return", 0, reused.position());
+    }
+
+    public void testBuffersTransferBetweenThreads() throws Exception
+    {
+        final int maxSize = 64;
+        final BufferPool pool = new BufferPool(maxSize, 1);
+        final List<ByteBuffer> returned = new ArrayList<>();
+        for (int i = 0; i < maxSize; i++)
+        {
+            returned.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        }
+
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread returner = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (ByteBuffer buffer : returned)
+                {
+                    pool.returnBuffer(buffer);
+                }
+                done.countDown();
+            }
+        });
+        returner.start();
+        assertTrue("Returning thread did not complete", done.await(10, TimeUnit.SECONDS));
+
+        assertTrue("Buffers spilled by the returning thread not visible to this thread", pool.getDepotSize() > 0);
+        ByteBuffer buffer = pool.getBuffer();
+        assertNotNull("Expected buffer from the shared depot", buffer);
+        assertTrue("Unexpected buffer from the shared depot", returned.contains(buffer));
+    }
+
+    public void testOverflowIsCounted()
+    {
+        final int maxSize = 4;
+        BufferPool pool = new BufferPool(maxSize, 1);
+        int returnedCount = 4 * maxSize;
+        for (int i = 0; i < returnedCount; i++)
+        {
+            pool.returnBuffer(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        }
+        assertTrue("Overflow not counted", pool.getOverflowCount() > 0);
+        assertTrue("Depot exceeds maximum size", pool.getDepotSize() <= maxSize);
+
+        int retrieved = 0;
+        while (pool.getBuffer() != null)
+        {
+            retrieved++;
+        }
+        assertEquals("Unexpected number of buffers retained", returnedCount - pool.getOverflowCount(), retrieved);
+    }
+
+    public void testBuffersCachedByThreadsCountAgainstMaximumSize() throws Exception
+    {
+        final int maxSize = 64;
+        final int threadCount = 8;
+        final int returnedPerThread = 16;
+        final BufferPool pool = new BufferPool(maxSize, 1);
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++)
+        {
+            threads[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < returnedPerThread; j++)
+                    {
+                        pool.returnBuffer(ByteBuffer.allocateDirect(BUFFER_SIZE));
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        assertTrue("Pool retained more than its maximum size, overflow count " + pool.getOverflowCount(),
+                   threadCount * returnedPerThread - pool.getOverflowCount() <= maxSize);
+    }
+
+    public void testHitsSatisfiedByLocalCacheArePublished()
+    {
+        BufferPool pool = new BufferPool(64, 1);
+        pool.returnBuffer(ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+        final int requests = 100;
+        for (int i = 0; i < requests; i++)
+        {
+            ByteBuffer buffer = pool.getBuffer();
+            assertNotNull("Expected buffer from the local cache", buffer);
+            pool.returnBuffer(buffer);
+        }
+        assertTrue("Hits not published, hit count " + pool.getHitCount(), pool.getHitCount() > requests - 16);
+        assertTrue("Unexpected hit count " + pool.getHitCount(), pool.getHitCount() <= requests);
+    }
+}
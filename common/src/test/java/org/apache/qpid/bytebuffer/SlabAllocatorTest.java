@@ -0,0 +1,217 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class SlabAllocatorTest extends QpidTestCase
+{
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private BufferPool _chunkPool;
+    private SlabAllocator _allocator;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        QpidByteBuffer.initialisePool(CHUNK_SIZE, 16);
+        _chunkPool = new BufferPool(16, 1);
+        _allocator = new SlabAllocator(CHUNK_SIZE, _chunkPool, ByteBuffer.allocateDirect(CHUNK_SIZE));
+    }
+
+    public void testSizeClassLimits()
+    {
+        assertFalse("Zero size should not be slab allocated", _allocator.isSlabAllocated(0));
+        assertTrue("Small size should be slab allocated", _allocator.isSlabAllocated(1));
+        assertTrue("Largest size class should be slab allocated",
+                   _allocator.isSlabAllocated(CHUNK_SIZE / SlabAllocator.MINIMUM_SLOTS_PER_SLAB));
+        assertFalse("Size above largest size class should not be slab allocated",
+                    _allocator.isSlabAllocated(CHUNK_SIZE / SlabAllocator.MINIMUM_SLOTS_PER_SLAB + 1));
+        assertNull("Unexpected ref for unsupported size", _allocator.allocate(CHUNK_SIZE));
+    }
+
+    public void testAllocatedBufferHasRequestedSize()
+    {
+        QpidByteBuffer buffer = new QpidByteBuffer(_allocator.allocate(100));
+        assertEquals("Unexpected capacity", 100, buffer.capacity());
+        assertEquals("Unexpected limit", 100, buffer.limit());
+        assertEquals("Unexpected used bytes", 100, _allocator.getUsedBytes());
+        assertEquals("Unexpected allocated bytes", CHUNK_SIZE, _allocator.getAllocatedBytes());
+        buffer.dispose();
+        assertEquals("Unexpected used bytes after dispose", 0, _allocator.getUsedBytes());
+    }
+
+    public void testSlotsDoNotOverlap()
+    {
+        List<QpidByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+        {
+            QpidByteBuffer buffer = new QpidByteBuffer(_allocator.allocate(64));
+            while (buffer.hasRemaining())
+            {
+                buffer.put((byte) i);
+            }
+            buffers.add(buffer);
+        }
+        for (int i = 0; i < buffers.size(); i++)
+        {
+            QpidByteBuffer buffer = buffers.get(i);
+            buffer.flip();
+            while (buffer.hasRemaining())
+            {
+                assertEquals("Slot content overwritten", (byte) i, buffer.get());
+            }
+            buffer.dispose();
+        }
+    }
+
+    public void testReleasedSlotIsZeroedAndReused()
+    {
+        QpidByteBuffer buffer = new QpidByteBuffer(_allocator.allocate(64));
+        buffer.put((byte) 0xFF);
+        buffer.dispose();
+
+        buffer = new QpidByteBuffer(_allocator.allocate(64));
+        assertEquals("Released slot is not zeroed", (byte) 0, buffer.get(0));
+        assertEquals("Released slot not reused", CHUNK_SIZE, _allocator.getAllocatedBytes());
+        buffer.dispose();
+    }
+
+    public void testRetainedSmallBufferPinsOnlyItsSlab()
+    {
+        int slotsPerSlab = CHUNK_SIZE / 64;
+        List<QpidByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 3 * slotsPerSlab; i++)
+        {
+            buffers.add(new QpidByteBuffer(_allocator.allocate(64)));
+        }
+        assertEquals("Unexpected allocated bytes", 3 * CHUNK_SIZE, _allocator.getAllocatedBytes());
+
+        QpidByteBuffer retained = buffers.remove(0);
+        for (QpidByteBuffer buffer : buffers)
+        {
+            buffer.dispose();
+        }
+
+        assertEquals("Unexpected used bytes", 64, _allocator.getUsedBytes());
+        assertTrue("Emptied slabs were not released", _allocator.getAllocatedBytes() <= 2 * CHUNK_SIZE);
+
+        retained.dispose();
+        assertEquals("Unexpected used bytes", 0, _allocator.getUsedBytes());
+    }
+
+    public void testQpidByteBufferUsesSlabsForSmallAllocations()
+    {
+        long usedBefore = QpidByteBuffer.getSlabUsedBytes();
+        QpidByteBuffer buffer = QpidByteBuffer.allocateDirect(10);
+        assertEquals("Unexpected capacity", 10, buffer.capacity());
+        assertEquals("Small allocation not served from slab", usedBefore + 10, QpidByteBuffer.getSlabUsedBytes());
+        buffer.dispose();
+        assertEquals("Unexpected used bytes after dispose", usedBefore, QpidByteBuffer.getSlabUsedBytes());
+    }
+
+    public void testSlabsAreNotPinnedPerThread() throws Exception
+    {
+        final SlabAllocator allocator = new SlabAllocator(CHUNK_SIZE, _chunkPool, ByteBuffer.allocateDirect(CHUNK_SIZE), 1);
+        for (int i = 0; i < 10; i++)
+        {
+            Thread thread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    new QpidByteBuffer(allocator.allocate(64)).dispose();
+                }
+            });
+            thread.start();
+            thread.join();
+        }
+        assertEquals("Unexpected allocated bytes", CHUNK_SIZE, allocator.getAllocatedBytes());
+    }
+
+    public void testThreadsSharingStripe() throws Exception
+    {
+        final SlabAllocator allocator = new SlabAllocator(CHUNK_SIZE, _chunkPool, ByteBuffer.allocateDirect(CHUNK_SIZE), 1);
+        final int slotsPerSlab = CHUNK_SIZE / 64;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++)
+        {
+            final byte value = (byte) (t + 1);
+            Thread thread = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        start.await();
+                        for (int round = 0; round < 20; round++)
+                        {
+                            List<QpidByteBuffer> buffers = new ArrayList<>();
+                            for (int i = 0; i < slotsPerSlab; i++)
+                            {
+                                QpidByteBuffer buffer = new QpidByteBuffer(allocator.allocate(64));
+                                while (buffer.hasRemaining())
+                                {
+                                    buffer.put(value);
+                                }
+                                buffers.add(buffer);
+                            }
+                            for (QpidByteBuffer buffer : buffers)
+                            {
+                                buffer.flip();
+                                while (buffer.hasRemaining())
+                                {
+                                    assertEquals("Slot content overwritten", value, buffer.get());
+                                }
+                                buffer.dispose();
+                            }
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        assertNull("Unexpected failure " + failure.get(), failure.get());
+        assertEquals("Unexpected used bytes", 0, allocator.getUsedBytes());
+        assertTrue("Slabs were not released", allocator.getAllocatedBytes() <= CHUNK_SIZE);
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.qpid.filter.selector.SelectorParser;
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class SelectorCompilerTest extends QpidTestCase
+{
+    private static final String[] SELECTORS = {
+            "a = 1",
+            "a <> 1",
+            "a > 1",
+            "a >= 1.5",
+            "a < 3000000000",
+            "a <= -2",
+            "a BETWEEN 1 AND 10",
+            "a NOT BETWEEN 1 AND 10",
+            "a > 1 AND b = 'x'",
+            "a > 1 OR b = 'x'",
+            "NOT (a > 1) OR b <> 'x'",
+            "a = b",
+            "a < b",
+            "a + 1 > b * 2",
+            "-a < 0",
+            "a IS NULL",
+            "b IS NOT NULL",
+            "b LIKE 'x%'",
+            "b NOT LIKE '_y'",
+            "b IN ('x', 'y', 'z')",
+            "b NOT IN ('x', 'y')",
+            "flag",
+            "flag AND a = 1",
+            "NOT flag OR b = 'x'",
+            "JMSPriority > 4 AND JMSDeliveryMode = 'PERSISTENT'",
+            "JMSType = 'type' OR JMSCorrelationID = 'id'",
+            "TRUE",
+            "FALSE OR a = 1"
+    };
+
+    private static final Object[] VALUES = {
+            null, (byte) 1, (short) 2, 1, 5, 3000000000L, -2L, 1.5f, 1.5d, Double.NaN, "x", "xy", true, false
+    };
+
+    public void testCompiledSelectorsAgreeWithInterpreter() throws Exception
+    {
+        List<TestMessage> messages = new ArrayList<>();
+        for (Object a : VALUES)
+        {
+            for (Object b : VALUES)
+            {
+                for (Object flag : Arrays.asList(null, true, false, "true"))
+                {
+                    messages.add(new TestMessage(a, b, flag));
+                }
+            }
+        }
+
+        for (String selector : SELECTORS)
+        {
+            BooleanExpression<FilterableMessage> interpreted = parse(selector);
+            BooleanExpression<FilterableMessage> compiled = SelectorCompiler.compile(parse(selector));
+
+            for (TestMessage message : messages)
+            {
+                String description = selector + " with " + message;
+                Object expected;
+                try
+                {
+                    expected = interpreted.evaluate(message);
+                }
+                catch (RuntimeException e)
+                {
+                    expected = e.getClass();
+                }
+
+                Object actual;
+                try
+                {
+                    actual = compiled.evaluate(message);
+                }
+                catch (RuntimeException e)
+                {
+                    actual = e.getClass();
+                }
+
+                assertEquals("Unexpected result for " + description, expected, actual);
+                if (!(expected instanceof Class))
+                {
+                    assertEquals("Unexpected match for " + description,
+                                 interpreted.matches(message),
+                                 compiled.matches(message));
+                }
+            }
+        }
+    }
+
+    public void testRepeatedPropertyIsLookedUpOncePerMessage() throws Exception
+    {
+        BooleanExpression<FilterableMessage> compiled = SelectorCompiler.compile(parse("a > 1 AND a < 10 AND b = 'x'"));
+
+        TestMessage message = new TestMessage(5, "x", null);
+        assertTrue("Selector should match", compiled.matches(message));
+        assertEquals("Unexpected number of lookups of a", 1, message.getLookups("a"));
+        assertEquals("Unexpected number of lookups of b", 1, message.getLookups("b"));
+
+        assertTrue("Selector should match", compiled.matches(message));
+        assertEquals("Property should be looked up again for a new evaluation", 2, message.getLookups("a"));
+    }
+
+    public void testCompilingCompiledSelectorReturnsSameInstance() throws Exception
+    {
+        BooleanExpression<FilterableMessage> compiled = SelectorCompiler.compile(parse("a = 1"));
+        assertSame(compiled, SelectorCompiler.compile(compiled));
+        assertEquals(parse("a = 1").toString(), compiled.toString());
+    }
+
+    private BooleanExpression<FilterableMessage> parse(String selector) throws Exception
+    {
+        SelectorParser<FilterableMessage> parser = new SelectorParser<>();
+        parser.setPropertyExpressionFactory(JMSMessagePropertyExpression.FACTORY);
+        return parser.parse(selector);
+    }
+
+    private static class TestMessage implements FilterableMessage
+    {
+        private final Map<String, Object> _headers = new HashMap<>();
+        private final Map<String, Integer> _lookups = new HashMap<>();
+
+        private TestMessage(Object a, Object b, Object flag)
+        {
+            _headers.put("a", a);
+            _headers.put("b", b);
+            _headers.put("flag", flag);
+        }
+
+        int getLookups(String name)
+        {
+            Integer lookups = _lookups.get(name);
+            return lookups == null ? 0 : lookups;
+        }
+
+        @Override
+        public Object getHeader(final String name)
+        {
+            _lookups.put(name, getLookups(name) + 1);
+            return _headers.get(name);
+        }
+
+        @Override
+        public boolean isPersistent()
+        {
+            return _headers.get("a") != null;
+        }
+
+        @Override
+        public boolean isRedelivered()
+        {
+            return false;
+        }
+
+        @Override
+        public String getReplyTo()
+        {
+            return null;
+        }
+
+        @Override
+        public String getType()
+        {
+            return _headers.get("b") instanceof String ? "type" : null;
+        }
+
+        @Override
+        public byte getPriority()
+        {
+            return _headers.get("flag") == null ? (byte) 4 : (byte) 7;
+        }
+
+        @Override
+        public String getMessageId()
+        {
+            return null;
+        }
+
+        @Override
+        public long getTimestamp()
+        {
+            return 0;
+        }
+
+        @Override
+        public String getCorrelationId()
+        {
+            return _headers.get("b") == null ? "id" : null;
+        }
+
+        @Override
+        public long getExpiration()
+        {
+            return 0;
+        }
+
+        @Override
+        public String toString()
+        {
+            return _headers.toString();
+        }
+    }
+}
@@ -25,6 +25,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collection;
@@ -624,6 +625,80 @@ public class FieldTableTest extends QpidTestCase
         Assert.assertNull(table2.getString("null-string"));
     }
 
+    public void testSinglePropertyLookupFromEncodedForm()
+    {
+        FieldTable innerTable = new FieldTable();
+        innerTable.setString("inner", "value");
+
+        FieldTable table = new FieldTable();
+        table.setTimestamp(new AMQShortString("timestamp"), 1234L);
+        table.setDecimal(new AMQShortString("decimal"), new BigDecimal("1234.00"));
+        table.setVoid(new AMQShortString("void"));
+        table.setFieldArray("array", Arrays.asList(1, "two"));
+        table.setFieldTable("table", innerTable);
+        table.setBytes("bytes", new byte[]{1, 2, 3});
+        table.setString("string", "hello");
+        table.setInteger("int", 42);
+
+        FieldTable decoded = new FieldTable(QpidByteBuffer.wrap(table.getDataAsBytes()));
+
+        Assert.assertEquals(Integer.valueOf(42), decoded.getInteger("int"));
+        Assert.assertEquals("hello", decoded.getString("string"));
+        Assert.assertEquals(Long.valueOf(1234L), decoded.getTimestamp(new AMQShortString("timestamp")));
+        Assert.assertEquals(new BigDecimal("1234.00"), decoded.getDecimal(new AMQShortString("decimal")));
+        Assert.assertEquals("value", decoded.getFieldTable("table").getString("inner"));
+        assertBytesEqual(new byte[]{1, 2, 3}, decoded.getBytes("bytes"));
+        Assert.assertNull(decoded.getObject("void"));
+        Assert.assertNull(decoded.getObject("missing"));
+        Assert.assertNull(decoded.getObject("strin"));
+        Assert.assertTrue("Lookups should not discard the encoded form", decoded.isClean());
+    }
+
+    public void testRepeatedPropertyLookupsFromEncodedFormAtOffset()
+    {
+        FieldTable table = new FieldTable();
+        table.setString("string", "hello");
+        table.setInteger("int", 42);
+        table.setBytes("bytes", new byte[]{1, 2, 3});
+
+        byte[] data = table.getDataAsBytes();
+        byte[] padded = new byte[data.length + 5];
+        System.arraycopy(data, 0, padded, 5, data.length);
+        QpidByteBuffer buffer = QpidByteBuffer.wrap(padded);
+        buffer.position(5);
+        FieldTable decoded = new FieldTable(buffer);
+
+        for (int i = 0; i < 10; i++)
+        {
+            Assert.assertEquals(Integer.valueOf(42), decoded.getInteger("int"));
+            Assert.assertEquals("hello", decoded.getString("string"));
+            assertBytesEqual(new byte[]{1, 2, 3}, decoded.getBytes("bytes"));
+            Assert.assertNull(decoded.getObject("missing"));
+        }
+        Assert.assertTrue("Lookups should not discard the encoded form", decoded.isClean());
+    }
+
+    public void testSinglePropertyLookupOfRepeatedKeyReturnsLastValue()
+    {
+        FieldTable first = new FieldTable();
+        first.setInteger("key", 1);
+        first.setInteger("other", 3);
+        FieldTable second = new FieldTable();
+        second.setInteger("key", 2);
+
+        byte[] firstData = first.getDataAsBytes();
+        byte[] secondData = second.getDataAsBytes();
+        byte[] data = new byte[firstData.length + secondData.length];
+        System.arraycopy(firstData, 0, data, 0, firstData.length);
+        System.arraycopy(secondData, 0, data, firstData.length, secondData.length);
+
+        FieldTable table = new FieldTable(QpidByteBuffer.wrap(data));
+        Assert.assertEquals(Integer.valueOf(2), table.getInteger("key"));
+        Assert.assertEquals(Integer.valueOf(3), table.getInteger("other"));
+        Assert.assertEquals(2, table.size());
+        Assert.assertEquals(Integer.valueOf(2), table.getInteger("key"));
+    }
+
     public void testEncodingSize()
     {
         FieldTable result = new FieldTable();
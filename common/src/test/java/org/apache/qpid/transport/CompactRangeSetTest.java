@@ -0,0 +1,215 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.transport;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class CompactRangeSetTest extends QpidTestCase
+{
+    public void testAddMergesTouchingRanges()
+    {
+        RangeSet ranges = new CompactRangeSet();
+        ranges.add(5, 10);
+        ranges.add(15, 20);
+        ranges.add(23, 25);
+        checkRange(ranges, 5, 10, 15, 20, 23, 25);
+
+        ranges.add(12, 14);
+        checkRange(ranges, 5, 10, 12, 20, 23, 25);
+
+        ranges.add(0, 1);
+        checkRange(ranges, 0, 1, 5, 10, 12, 20, 23, 25);
+
+        ranges.add(3, 11);
+        checkRange(ranges, 0, 1, 3, 20, 23, 25);
+
+        ranges.add(2);
+        checkRange(ranges, 0, 20, 23, 25);
+
+        ranges.add(21, 22);
+        checkRange(ranges, 0, 25);
+    }
+
+    public void testAddAcrossSerialWrapAround()
+    {
+        RangeSet ranges = new CompactRangeSet(1);
+        ranges.add(Integer.MAX_VALUE - 1, Integer.MAX_VALUE);
+        ranges.add(Integer.MIN_VALUE, Integer.MIN_VALUE + 1);
+        checkRange(ranges, Integer.MAX_VALUE - 1, Integer.MIN_VALUE + 1);
+        assertTrue(ranges.includes(Integer.MAX_VALUE));
+        assertTrue(ranges.includes(Integer.MIN_VALUE));
+        assertFalse(ranges.includes(Integer.MIN_VALUE + 2));
+    }
+
+    public void testIncludes()
+    {
+        RangeSet ranges = new CompactRangeSet();
+        ranges.add(1, 3);
+        ranges.add(7);
+
+        assertFalse(ranges.includes(0));
+        assertTrue(ranges.includes(1));
+        assertTrue(ranges.includes(3));
+        assertFalse(ranges.includes(4));
+        assertTrue(ranges.includes(7));
+        assertTrue(ranges.includes(Range.newInstance(2, 3)));
+        assertFalse(ranges.includes(Range.newInstance(3, 7)));
+    }
+
+    public void testFirstLastAndIndexedBounds()
+    {
+        CompactRangeSet ranges = new CompactRangeSet();
+        ranges.add(10, 12);
+        ranges.add(20);
+
+        assertEquals(10, ranges.getFirst().getLower());
+        assertEquals(12, ranges.getFirst().getUpper());
+        assertEquals(20, ranges.getLast().getLower());
+        assertEquals(20, ranges.getLast().getUpper());
+        assertEquals(20, ranges.getLower(1));
+        assertEquals(20, ranges.getUpper(1));
+
+        try
+        {
+            ranges.getLower(2);
+            fail("Exception not thrown");
+        }
+        catch (IndexOutOfBoundsException e)
+        {
+            // pass
+        }
+    }
+
+    public void testIteratorRemove()
+    {
+        RangeSet ranges = createRangeSet(0, 1, 3, 4, 6, 7);
+        Iterator<Range> iterator = ranges.iterator();
+        iterator.next();
+        iterator.next();
+        iterator.remove();
+        assertEquals(6, iterator.next().getLower());
+        assertFalse(iterator.hasNext());
+        checkRange(ranges, 0, 1, 6, 7);
+    }
+
+    public void testCopyIsIndependent()
+    {
+        RangeSet ranges = createRangeSet(0, 5);
+        RangeSet copy = ranges.copy();
+        ranges.add(7);
+        copy.clear();
+        checkRange(ranges, 0, 5, 7, 7);
+        checkRange(copy);
+    }
+
+    public void testSubtract()
+    {
+        RangeSet orig = createRangeSet(0, 15, 20, 30);
+        orig.subtract(createRangeSet(2, 3, 5, 6, 8, 9, 22, 23, 27, 28));
+        checkRange(orig, 0, 1, 4, 4, 7, 7, 10, 15, 20, 21, 24, 26, 29, 30);
+
+        orig = createRangeSet(0, 15, 20, 30);
+        orig.subtract(createRangeSet(0, 2, 4, 6, 10, 22, 24, 24, 27, 30));
+        checkRange(orig, 3, 3, 7, 9, 23, 23, 25, 26);
+
+        orig = createRangeSet(3, 15);
+        orig.subtract(createRangeSet(0, 10));
+        checkRange(orig, 11, 15);
+
+        orig = createRangeSet(0, 2, 4, 6);
+        orig.subtract(orig);
+        checkRange(orig);
+    }
+
+    public void testSubtractRangeSetImpl()
+    {
+        RangeSet other = RangeSetFactory.createRangeSet();
+        other.add(3, 4);
+        RangeSet orig = createRangeSet(0, 10);
+        orig.subtract(other);
+        checkRange(orig, 0, 2, 5, 10);
+    }
+
+    public void testBehavesAsRangeSetImpl()
+    {
+        Random random = new Random(1);
+        for (int iteration = 0; iteration < 200; iteration++)
+        {
+            RangeSet expected = RangeSetFactory.createRangeSet();
+            RangeSet actual = new CompactRangeSet(1);
+            for (int i = 0; i < 50; i++)
+            {
+                int lower = random.nextInt(500);
+                int upper = lower + random.nextInt(10);
+                expected.add(lower, upper);
+                actual.add(lower, upper);
+            }
+            assertEquals(expected.toString(), actual.toString());
+
+            RangeSet subtrahend = RangeSetFactory.createRangeSet();
+            for (int i = 0; i < 20; i++)
+            {
+                int lower = random.nextInt(500);
+                subtrahend.add(lower, lower + random.nextInt(20));
+            }
+            expected.subtract(subtrahend);
+            actual.subtract(subtrahend);
+            assertEquals(expected.toString(), actual.toString());
+
+            for (int value = -1; value < 520; value++)
+            {
+                assertEquals(expected.includes(value), actual.includes(value));
+            }
+        }
+    }
+
+    private RangeSet createRangeSet(int... bounds)
+    {
+        RangeSet set = new CompactRangeSet();
+        for (int i = 0; i < bounds.length; i += 2)
+        {
+            set.add(bounds[i], bounds[i + 1]);
+        }
+        return set;
+    }
+
+    private void checkRange(final RangeSet rangeSet, int... bounds)
+    {
+        assertEquals("Range count", bounds.length / 2, rangeSet.size());
+        List<Integer> actual = new ArrayList<>();
+        for (Range range : rangeSet)
+        {
+            actual.add(range.getLower());
+            actual.add(range.getUpper());
+        }
+        List<Integer> expected = new ArrayList<>();
+        for (int bound : bounds)
+        {
+            expected.add(bound);
+        }
+        assertEquals("Unexpected ranges", expected, actual);
+    }
+}
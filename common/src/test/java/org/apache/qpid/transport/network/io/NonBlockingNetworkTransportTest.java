@@ -0,0 +1,234 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.qpid.transport.network.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+import org.apache.qpid.test.utils.QpidTestCase;
+import org.apache.qpid.transport.ConnectionSettings;
+import org.apache.qpid.transport.ExceptionHandlingByteBufferReceiver;
+import org.apache.qpid.transport.SenderClosedException;
+import org.apache.qpid.transport.network.NetworkConnection;
+import org.apache.qpid.transport.network.OutgoingNetworkTransport;
+import org.apache.qpid.transport.network.TransportActivity;
+
+public class NonBlockingNetworkTransportTest extends QpidTestCase implements ExceptionHandlingByteBufferReceiver,
+                                                                           TransportActivity
+{
+    private static final int MESSAGE_SIZE = 7000;
+
+    private final ByteArrayOutputStream _received = new ByteArrayOutputStream();
+    private final CountDownLatch _closed = new CountDownLatch(1);
+    private final CountDownLatch _accepted = new CountDownLatch(1);
+    private volatile Socket _acceptedSocket;
+    private ServerSocket _serverSocket;
+    private volatile int _expectedBytes;
+    private volatile CountDownLatch _allReceived;
+    private volatile Throwable _exception;
+    private volatile String _closedThreadName;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _serverSocket = new ServerSocket(0);
+        Thread echoThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try (Socket socket = _serverSocket.accept())
+                {
+                    _acceptedSocket = socket;
+                    _accepted.countDown();
+                    InputStream in = socket.getInputStream();
+                    OutputStream out = socket.getOutputStream();
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = in.read(buffer)) != -1)
+                    {
+                        out.write(buffer, 0, read);
+                    }
+                }
+                catch (IOException e)
+                {
+                    // test will fail on missing data
+                }
+            }
+        }, "EchoServer");
+        echoThread.setDaemon(true);
+        echoThread.start();
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        try
+        {
+            _serverSocket.close();
+        }
+        finally
+        {
+            super.tearDown();
+        }
+    }
+
+    public void testFactoryHonoursNonBlockingSetting()
+    {
+        ConnectionSettings settings = new ConnectionSettings();
+        settings.setNonBlockingIo(false);
+        assertTrue(OutgoingNetworkTransportFactory.newInstance(settings) instanceof IoNetworkTransport);
+
+        settings.setNonBlockingIo(true);
+        assertTrue(OutgoingNetworkTransportFactory.newInstance(settings) instanceof NonBlockingNetworkTransport);
+    }
+
+    public void testSentDataIsEchoedAndReceived() throws Exception
+    {
+        // more than twice the send buffer size so that senders must wait for the selector to drain the backlog
+        ConnectionSettings settings = createSettings();
+        settings.setWriteBufferSize(16384);
+        byte[] data = createData(1024 * 1024);
+        _expectedBytes = data.length;
+        _allReceived = new CountDownLatch(1);
+
+        NetworkConnection connection = new NonBlockingNetworkTransport().connect(settings, this, this);
+        for (int offset = 0; offset < data.length; offset += MESSAGE_SIZE)
+        {
+            connection.getSender().send(QpidByteBuffer.wrap(data, offset, Math.min(MESSAGE_SIZE, data.length - offset)));
+        }
+        connection.getSender().flush();
+
+        assertTrue("Echoed data not received", _allReceived.await(10, TimeUnit.SECONDS));
+        synchronized (_received)
+        {
+            assertTrue("Echoed data differs from sent data", Arrays.equals(data, _received.toByteArray()));
+        }
+
+        connection.close();
+        assertTrue("Receiver was not notified of close", _closed.await(10, TimeUnit.SECONDS));
+        assertNull("Unexpected exception", _exception);
+
+        try
+        {
+            connection.getSender().send(QpidByteBuffer.wrap(data, 0, 1));
+            fail("Send after close should be rejected");
+        }
+        catch (SenderClosedException e)
+        {
+            // pass
+        }
+    }
+
+    public void testReceiverNotifiedWhenPeerCloses() throws Exception
+    {
+        OutgoingNetworkTransport transport = new NonBlockingNetworkTransport();
+        transport.connect(createSettings(), this, this);
+
+        assertTrue("Connection not accepted", _accepted.await(10, TimeUnit.SECONDS));
+        _acceptedSocket.close();
+
+        assertTrue("Receiver was not notified of close", _closed.await(10, TimeUnit.SECONDS));
+        assertFalse("Receiver should not be notified of close on a selector thread",
+                    _closedThreadName.matches("NonBlockingIo-\\d+"));
+        transport.close();
+    }
+
+    private ConnectionSettings createSettings()
+    {
+        ConnectionSettings settings = new ConnectionSettings();
+        settings.setHost("localhost");
+        settings.setPort(_serverSocket.getLocalPort());
+        settings.setNonBlockingIo(true);
+        return settings;
+    }
+
+    private byte[] createData(final int size)
+    {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++)
+        {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+
+    @Override
+    public void received(final ByteBuffer msg)
+    {
+        synchronized (_received)
+        {
+            byte[] data = new byte[msg.remaining()];
+            msg.get(data);
+            _received.write(data, 0, data.length);
+            if (_received.size() >= _expectedBytes && _allReceived != null)
+            {
+                _allReceived.countDown();
+            }
+        }
+    }
+
+    @Override
+    public void exception(final Throwable t)
+    {
+        _exception = t;
+    }
+
+    @Override
+    public void closed()
+    {
+        _closedThreadName = Thread.currentThread().getName();
+        _closed.countDown();
+    }
+
+    @Override
+    public long getLastReadTime()
+    {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public long getLastWriteTime()
+    {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void writerIdle()
+    {
+    }
+
+    @Override
+    public void readerIdle()
+    {
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class SerialNumberRingTest extends QpidTestCase
+{
+    private SerialNumberRing<String> _ring;
+    private List<Long> _visited;
+    private SerialNumberRing.Visitor<String> _visitor;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _ring = new SerialNumberRing<>(16);
+        _visited = new ArrayList<>();
+        _visitor = new SerialNumberRing.Visitor<String>()
+        {
+            @Override
+            public void visit(final long sequenceNumber, final String value)
+            {
+                assertEquals("Unexpected value", String.valueOf(sequenceNumber), value);
+                _visited.add(sequenceNumber);
+            }
+        };
+    }
+
+    public void testPutGetRemove()
+    {
+        assertNull("Unexpected previous value", _ring.put(5, "5"));
+        assertEquals("Unexpected value", "5", _ring.get(5));
+        assertNull("Unexpected value", _ring.get(5 + 16));
+        assertEquals("Unexpected previous value", "5", _ring.put(5, "5"));
+        assertEquals("Unexpected size", 1, _ring.size());
+
+        assertEquals("Unexpected removed value", "5", _ring.remove(5));
+        assertNull("Unexpected value", _ring.get(5));
+        assertNull("Unexpected removed value", _ring.remove(5));
+        assertTrue("Ring should be empty", _ring.isEmpty());
+    }
+
+    public void testLongOutstandingValueDoesNotPreventProgress()
+    {
+        Map<Long, String> expected = new TreeMap<>();
+        put(0, expected);
+        for (long sequenceNumber = 1; sequenceNumber < 100000; sequenceNumber++)
+        {
+            put(sequenceNumber, expected);
+            if (sequenceNumber > 10)
+            {
+                assertEquals("Unexpected removed value", expected.remove(sequenceNumber - 10),
+                             _ring.remove(sequenceNumber - 10));
+            }
+        }
+
+        assertContents(expected, 0, 100000);
+        assertEquals("Unexpected removed value", "0", _ring.remove(0));
+        expected.remove(0L);
+        assertContents(expected, 0, 100000);
+    }
+
+    public void testJumpFarBeyondSpan()
+    {
+        Map<Long, String> expected = new TreeMap<>();
+        for (long sequenceNumber = 0; sequenceNumber < 50; sequenceNumber += 3)
+        {
+            put(sequenceNumber, expected);
+        }
+        put(Long.MAX_VALUE - 10, expected);
+        put(Long.MAX_VALUE - 12, expected);
+
+        _ring.visitAll(_visitor);
+        assertEquals("Unexpected values visited", new ArrayList<>(expected.keySet()), _visited);
+    }
+
+    public void testValueBelowOverflowIsNotShadowedByRing()
+    {
+        Map<Long, String> expected = new TreeMap<>();
+        put(100, expected);
+        put(100000, expected);
+        assertEquals("Unexpected removed value", "100000", _ring.remove(100000));
+        expected.remove(100000L);
+
+        put(50, expected);
+        put(60, expected);
+        assertContents(expected, 0, 200);
+
+        _ring.visitAll(_visitor);
+        assertEquals("Unexpected values visited", Arrays.asList(50L, 60L, 100L), _visited);
+    }
+
+    public void testUnwrapAcrossSerialNumberWrapAround()
+    {
+        final int start = Integer.MAX_VALUE - 5;
+        long previous = _ring.unwrap(start);
+        _ring.put(previous, String.valueOf(previous));
+        for (int i = 1; i < 10; i++)
+        {
+            final long sequenceNumber = _ring.unwrap(start + i);
+            assertEquals("Unexpected sequence number", previous + 1, sequenceNumber);
+            _ring.put(sequenceNumber, String.valueOf(sequenceNumber));
+            previous = sequenceNumber;
+        }
+        assertEquals("Unexpected sequence number", previous - 9, _ring.unwrap(start));
+        assertEquals("Unexpected value", String.valueOf(previous - 9), _ring.get(_ring.unwrap(start)));
+    }
+
+    public void testRemoveRangeVisitsInOrder()
+    {
+        Map<Long, String> expected = new TreeMap<>();
+        for (long sequenceNumber = 0; sequenceNumber < 200; sequenceNumber += 2)
+        {
+            put(sequenceNumber, expected);
+        }
+        put(-500, expected);
+
+        assertEquals("Unexpected number removed", 6, _ring.remove(-1000, 9, _visitor));
+        assertEquals("Unexpected values visited", Arrays.asList(-500L, 0L, 2L, 4L, 6L, 8L), _visited);
+        expected.keySet().removeAll(_visited);
+        assertContents(expected, -1000, 200);
+    }
+
+    public void testVisitorMayRemoveDuringIteration()
+    {
+        for (long sequenceNumber = 0; sequenceNumber < 10; sequenceNumber++)
+        {
+            _ring.put(sequenceNumber, String.valueOf(sequenceNumber));
+        }
+        _ring.visitAll(new SerialNumberRing.Visitor<String>()
+        {
+            @Override
+            public void visit(final long sequenceNumber, final String value)
+            {
+                _visited.add(sequenceNumber);
+                _ring.remove(sequenceNumber + 1);
+            }
+        });
+        assertEquals("Unexpected values visited", Arrays.asList(0L, 2L, 4L, 6L, 8L), _visited);
+        assertEquals("Unexpected size", 5, _ring.size());
+    }
+
+    public void testBehavesAsSortedMap()
+    {
+        Random random = new Random(1);
+        TreeMap<Long, String> expected = new TreeMap<>();
+        long next = -5000;
+        for (int i = 0; i < 200000; i++)
+        {
+            int operation = random.nextInt(20);
+            if (operation < 10 || expected.isEmpty())
+            {
+                put(next++, expected);
+            }
+            else if (operation < 12)
+            {
+                put(next - 1 - random.nextInt(1000), expected);
+            }
+            else if (operation < 19)
+            {
+                long sequenceNumber = next - 1 - random.nextInt(2000);
+                assertEquals("Unexpected removed value", expected.remove(sequenceNumber), _ring.remove(sequenceNumber));
+            }
+            else
+            {
+                long lower = next - random.nextInt(300);
+                long upper = lower + random.nextInt(50);
+                Map<Long, String> range = expected.subMap(lower, true, upper, true);
+                List<Long> sequenceNumbers = new ArrayList<>(range.keySet());
+                range.clear();
+                _visited.clear();
+                assertEquals("Unexpected number removed", sequenceNumbers.size(), _ring.remove(lower, upper, _visitor));
+                assertEquals("Unexpected values visited", sequenceNumbers, _visited);
+            }
+        }
+        assertContents(expected, -5000, next);
+        _visited.clear();
+        assertEquals("Unexpected number removed", expected.size(), _ring.removeAll(_visitor));
+        assertEquals("Unexpected values visited", new ArrayList<>(expected.keySet()), _visited);
+        assertTrue("Ring should be empty", _ring.isEmpty());
+    }
+
+    private void put(final long sequenceNumber, final Map<Long, String> expected)
+    {
+        final String value = String.valueOf(sequenceNumber);
+        _ring.put(sequenceNumber, value);
+        expected.put(sequenceNumber, value);
+    }
+
+    private void assertContents(final Map<Long, String> expected, final long from, final long to)
+    {
+        assertEquals("Unexpected size", expected.size(), _ring.size());
+        for (long sequenceNumber = from; sequenceNumber < to; sequenceNumber++)
+        {
+            assertEquals("Unexpected value for " + sequenceNumber, expected.get(sequenceNumber),
+                         _ring.get(sequenceNumber));
+        }
+    }
+}